@@ -0,0 +1,46 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.CoffeeCup;
+import fr.imt.coffee.storage.cupboard.container.CoffeeMug;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction des contenants vides et des contenants remplis de café
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ContainerConstructionBenchmark {
+
+    private double cupCapacity = 0.15;
+    private double mugCapacity = 0.35;
+    private CoffeeType coffeeType = CoffeeType.BAHIA;
+
+    @Benchmark
+    public Cup newCup() {
+        return new Cup(cupCapacity);
+    }
+
+    @Benchmark
+    public Mug newMug() {
+        return new Mug(mugCapacity);
+    }
+
+    @Benchmark
+    public CoffeeCup newCoffeeCup() {
+        return new CoffeeCup(new Cup(cupCapacity), coffeeType);
+    }
+
+    @Benchmark
+    public CoffeeMug newCoffeeMug() {
+        return new CoffeeMug(new Mug(mugCapacity), coffeeType);
+    }
+}
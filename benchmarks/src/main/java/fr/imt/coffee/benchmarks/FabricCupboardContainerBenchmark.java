@@ -0,0 +1,63 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.storage.cupboard.FabricCupboardContainer;
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.exception.ExceptionContainerCreation;
+import fr.imt.coffee.storage.cupboard.kind.StandardContainerKind;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Création de contenants par la fabrique {@link FabricCupboardContainer}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FabricCupboardContainerBenchmark {
+
+    private FabricCupboardContainer fabricCupboardContainer;
+    //Lus depuis des champs pour que le JIT ne puisse pas propager les constantes
+    private String cupType = "cup";
+    private String mugType = "mug";
+    private String unknownType = "bowl";
+
+    @Setup
+    public void setUp() {
+        fabricCupboardContainer = FabricCupboardContainer.getFabricContainerInstance();
+    }
+
+    @Benchmark
+    public Container getCup() throws ExceptionContainerCreation {
+        return fabricCupboardContainer.getContainer(cupType, 0.15);
+    }
+
+    @Benchmark
+    public Container getMug() throws ExceptionContainerCreation {
+        return fabricCupboardContainer.getContainer(mugType, 0.35);
+    }
+
+    @Benchmark
+    public Container getCupByKind() {
+        return fabricCupboardContainer.getContainer(StandardContainerKind.CUP, 0.15);
+    }
+
+    @Benchmark
+    public Container acquireAndReleaseCup() throws ExceptionContainerCreation {
+        Container cup = fabricCupboardContainer.acquireContainer(cupType, 0.15);
+        fabricCupboardContainer.releaseContainer(cup);
+        return cup;
+    }
+
+    @Benchmark
+    public Object getUnknownContainer() {
+        try {
+            return fabricCupboardContainer.getContainer(unknownType, 0.5);
+        } catch (ExceptionContainerCreation e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.failure.GaussianFailureModel;
+import fr.imt.coffee.machine.failure.RandomGeneratorFailureModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'un tirage de panne quand plusieurs threads préparent des cafés en même temps.
+ * Un {@link Random} partagé fait échouer les CAS sur sa graine entre threads, alors que le modèle gaussien tire dans
+ * un flux par thread et ne partage rien.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class FailureModelBenchmark {
+
+    private CoffeeMachine coffeeMachine;
+    private RandomGeneratorFailureModel sharedRandomModel;
+    private GaussianFailureModel perThreadStreamModel;
+
+    @Setup
+    public void setUp() {
+        coffeeMachine = new CoffeeMachine(0, 10, 700, new VirtualBrewClock());
+        sharedRandomModel = new RandomGeneratorFailureModel(new Random(42));
+        perThreadStreamModel = new GaussianFailureModel(42);
+    }
+
+    @Benchmark
+    public boolean sharedRandom() {
+        return sharedRandomModel.isFailing(coffeeMachine);
+    }
+
+    @Benchmark
+    public boolean perThreadStream() {
+        return perThreadStreamModel.isFailing(coffeeMachine);
+    }
+}
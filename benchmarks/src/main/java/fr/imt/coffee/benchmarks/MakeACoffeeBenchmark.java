@@ -0,0 +1,65 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.exception.LackOfWaterInTankException;
+import fr.imt.coffee.machine.exception.MachineNotPluggedException;
+import fr.imt.coffee.machine.failure.BernoulliFailureModel;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import fr.imt.coffee.storage.cupboard.exception.CupNotEmptyException;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemin critique de {@link CoffeeMachine#makeACoffee} : vérifications, réservation d'eau, tirage de panne, passage
+ * dans les étages de chauffe et de pompage et service du café.
+ * La machine utilise une horloge virtuelle, la chauffe et le pompage ne durent donc rien en temps réel et le benchmark
+ * ne mesure que le coût logiciel d'une commande.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MakeACoffeeBenchmark {
+
+    private CoffeeMachine coffeeMachine;
+
+    @Setup
+    public void setUp() {
+        //Les logs INFO de chaque étape noieraient la mesure dans les entrées/sorties de la console
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.WARN);
+        coffeeMachine = new CoffeeMachine(0, 1000, 700, new VirtualBrewClock());
+        //Probabilité de panne nulle : la machine ne tombe jamais en panne pendant la mesure
+        coffeeMachine.setFailureModel(new BernoulliFailureModel(0, 42));
+        coffeeMachine.plugToElectricalPlug();
+    }
+
+    @Setup(Level.Iteration)
+    public void refill() {
+        coffeeMachine.addWaterInTank(1000);
+    }
+
+    @Benchmark
+    public CoffeeContainer makeACoffeeInCup() throws InterruptedException, LackOfWaterInTankException, MachineNotPluggedException, CupNotEmptyException {
+        refillIfNeeded();
+        return coffeeMachine.makeACoffee(new Cup(0.15), CoffeeType.ARABICA);
+    }
+
+    @Benchmark
+    public CoffeeContainer makeACoffeeInMug() throws InterruptedException, LackOfWaterInTankException, MachineNotPluggedException, CupNotEmptyException {
+        refillIfNeeded();
+        return coffeeMachine.makeACoffee(new Mug(0.35), CoffeeType.MOKA);
+    }
+
+    private void refillIfNeeded() {
+        if (coffeeMachine.getWaterTank().getAvailableVolume() < 1)
+            coffeeMachine.addWaterInTank(1000);
+    }
+}
@@ -0,0 +1,72 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.machine.history.OrderGrouping;
+import fr.imt.coffee.machine.history.OrderHistory;
+import fr.imt.coffee.machine.history.OrderReport;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parcours des colonnes de l'historique des commandes : un rapport sur plusieurs millions de commandes ne doit
+ * allouer que ses tableaux de résultats (gc.alloc.rate.norm indépendant du nombre de lignes).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderHistoryBenchmark {
+
+    private static final long HOUR = 3_600_000;
+
+    @Param({"4000000"})
+    public int rows;
+
+    private Path historyDirectory;
+    private OrderHistory history;
+
+    @Setup
+    public void setUp() throws IOException {
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.WARN);
+        historyDirectory = Files.createTempDirectory("coffee-history");
+        history = new OrderHistory(historyDirectory);
+        SplittableRandom random = new SplittableRandom(42);
+        CoffeeType[] coffeeTypes = CoffeeType.values();
+        //Un mois de commandes réparties régulièrement
+        long interval = 30 * 24 * HOUR / rows;
+        for (int row = 0; row < rows; row++) {
+            history.append(row * interval, 1 + random.nextInt(50), coffeeTypes[random.nextInt(coffeeTypes.length)],
+                    random.nextBoolean() ? 0.15 : 0.35, random.nextLong(1_000_000_000), random.nextLong(2_000_000_000));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        history.close();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(historyDirectory)) {
+            for (Path segment : segments) {
+                Files.deleteIfExists(segment);
+            }
+        }
+        Files.deleteIfExists(historyDirectory);
+    }
+
+    @Benchmark
+    public OrderReport aggregateByCoffeeType() {
+        return history.aggregate(OrderGrouping.COFFEE_TYPE);
+    }
+
+    @Benchmark
+    public OrderReport aggregateByHour() {
+        return history.aggregate(OrderGrouping.HOUR);
+    }
+}
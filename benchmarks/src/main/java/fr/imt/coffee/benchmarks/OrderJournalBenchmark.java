@@ -0,0 +1,49 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.machine.journal.OrderJournal;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'un ajout dans le journal projeté en mémoire, mise sur disque par lot comprise.
+ * Un ajout doit rester de l'ordre de la microseconde pour ne pas ralentir la préparation d'un café.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderJournalBenchmark {
+
+    private Path journalPath;
+    private OrderJournal journal;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        journalPath = Files.createTempFile("coffee-journal", ".log");
+        journal = new OrderJournal(journalPath, 1024 * 1024, OrderJournal.DEFAULT_GROUP_COMMIT_MILLIS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.deleteIfExists(journalPath);
+    }
+
+    @Benchmark
+    public void appendBrew() {
+        journal.appendBrew(CoffeeType.ARABICA, 0.15);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void appendBrewContended() {
+        journal.appendBrew(CoffeeType.ARABICA, 0.15);
+    }
+}
@@ -0,0 +1,71 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.machine.BrewResult;
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.failure.BernoulliFailureModel;
+import fr.imt.coffee.machine.queue.BackpressurePolicy;
+import fr.imt.coffee.machine.queue.OrderQueue;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Coût d'une rafale de {@value #BURST_SIZE} commandes simulées jusqu'au dernier café, passées directement à la
+ * machine ou au travers de sa file bornée. Sans file, toute la rafale s'entasse dans la file de l'étage de chauffe ;
+ * avec la file, au plus deux commandes sont en préparation et les autres attendent dans des places réutilisées.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderQueueBenchmark {
+
+    private static final int BURST_SIZE = 64;
+
+    private VirtualBrewClock virtualClock;
+    private CoffeeMachine directMachine;
+    private OrderQueue orderQueue;
+    private BiConsumer<BrewResult, Throwable> callback;
+
+    @Setup
+    public void setUp() {
+        virtualClock = new VirtualBrewClock(0);
+        directMachine = newCoffeeMachine(virtualClock);
+        orderQueue = new OrderQueue(newCoffeeMachine(virtualClock), BURST_SIZE, BackpressurePolicy.REJECT);
+        callback = (result, failure) -> { };
+    }
+
+    private static CoffeeMachine newCoffeeMachine(VirtualBrewClock virtualClock) {
+        CoffeeMachine coffeeMachine = new CoffeeMachine(0, 1e9, 700, virtualClock);
+        coffeeMachine.setFailureModel(new BernoulliFailureModel(0, 42));
+        coffeeMachine.plugToElectricalPlug();
+        coffeeMachine.addWaterInTank(1e9);
+        return coffeeMachine;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public int directBurst() {
+        for (int i = 0; i < BURST_SIZE; i++) {
+            directMachine.brewAsync(new Cup(0.1), CoffeeType.ARABICA);
+        }
+        virtualClock.runUntilIdle();
+        return directMachine.getNbCoffeeMade();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public int queuedBurst() {
+        for (int i = 0; i < BURST_SIZE; i++) {
+            orderQueue.tryOffer(new Cup(0.1), CoffeeType.ARABICA, callback);
+        }
+        virtualClock.runUntilIdle();
+        return orderQueue.getCoffeeMachine().getNbCoffeeMade();
+    }
+}
@@ -0,0 +1,68 @@
+package fr.imt.coffee.benchmarks;
+
+import fr.imt.coffee.machine.component.WaterTank;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accès concurrents à un même {@link WaterTank} : remplissages et prélèvements directs, ainsi que réservations
+ * suivies d'une consommation ou d'une libération, chacun de ces groupes étant exécuté par plusieurs threads à la fois.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class WaterTankBenchmark {
+
+    private WaterTank waterTank;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        //Réservoir assez grand pour que les prélèvements et remplissages ne soient jamais bornés
+        waterTank = new WaterTank(1_000_000, 0, 1_000_000_000);
+    }
+
+    @Benchmark
+    @Group("increaseDecrease")
+    @GroupThreads(2)
+    public double increase() {
+        return waterTank.increaseWaterVolume(0.15);
+    }
+
+    @Benchmark
+    @Group("increaseDecrease")
+    @GroupThreads(2)
+    public void decrease() {
+        waterTank.decreaseWaterVolume(0.15);
+    }
+
+    @Benchmark
+    @Group("reservations")
+    @GroupThreads(2)
+    public boolean reserveAndCommit() {
+        boolean reserved = waterTank.tryReserve(0.15);
+        if (reserved)
+            waterTank.commit(0.15);
+        return reserved;
+    }
+
+    @Benchmark
+    @Group("reservations")
+    @GroupThreads(2)
+    public boolean reserveAndRelease() {
+        boolean reserved = waterTank.tryReserve(0.15);
+        if (reserved)
+            waterTank.release(0.15);
+        return reserved;
+    }
+
+    @Benchmark
+    @Group("reservations")
+    @GroupThreads(1)
+    public double refill() {
+        return waterTank.increaseWaterVolume(0.3);
+    }
+}
@@ -1,6 +1,9 @@
 package fr.imt.coffee;
 
 import fr.imt.coffee.machine.exception.MachineNotPluggedException;
+import fr.imt.coffee.machine.http.CoffeeMachineHttpServer;
+import fr.imt.coffee.machine.load.LoadReport;
+import fr.imt.coffee.machine.load.LoadTestCommand;
 import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
 import fr.imt.coffee.storage.cupboard.container.Container;
 import fr.imt.coffee.storage.cupboard.container.Mug;
@@ -13,6 +16,10 @@ import fr.imt.coffee.machine.exception.LackOfWaterInTankException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
 
 public class MainCoffee {
 
@@ -22,8 +29,21 @@ public class MainCoffee {
     //INFO, WARNING, DEBUG, ERROR...
     public static final Logger logger = LogManager.getLogger(MainCoffee.class);
 
+    public static final int DEFAULT_HTTP_PORT = 8080;
+
     public static void main(String[] args) {
 
+        //java -jar coffee-machine.jar load --rate 5 --duration 600 --machines 2 : test de charge en simulation
+        if (args.length > 0 && "load".equals(args[0])) {
+            runLoadTest(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        //java -jar coffee-machine.jar serve 8080 : commandes par HTTP, par exemple curl -X POST "localhost:8080/order?container=cup&capacity=0.15&type=ARABICA"
+        if (args.length > 0 && "serve".equals(args[0])) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT);
+            return;
+        }
+
         FabricCupboardContainer fabricCupboardContainer = FabricCupboardContainer.getFabricContainerInstance();
         CoffeeMachine coffeeMachine = new CoffeeMachine(0.20, 3, 600);
 
@@ -61,4 +81,40 @@ public class MainCoffee {
         }
 
     }
+
+    /**
+     * Rejoue une trace de commandes ou une charge de Poisson sur un parc simulé et logue le bilan de la charge
+     * @param args Options de la commande load
+     */
+    private static void runLoadTest(String[] args) {
+        try {
+            LoadTestCommand command = LoadTestCommand.parse(args);
+            LoadReport report = command.run();
+            if (command.getReportPath() != null)
+                logger.info("Load report written to " + command.getReportPath());
+            logger.info(report.toString());
+        } catch (IllegalArgumentException | IOException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Démarre le serveur HTTP d'une machine à café branchée et remplie, arrêté avec la JVM
+     * @param port Port d'écoute
+     */
+    private static void serve(int port) {
+        CoffeeMachine coffeeMachine = new CoffeeMachine(0.20, 3, 600);
+        coffeeMachine.plugToElectricalPlug();
+        coffeeMachine.addWaterInTank(2);
+        try {
+            CoffeeMachineHttpServer server = new CoffeeMachineHttpServer(coffeeMachine, new InetSocketAddress(port));
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                logger.info(server.getMetrics().toString());
+                server.stop(1);
+            }));
+        } catch (IOException e) {
+            logger.error("Cannot listen on port " + port + " : " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,180 @@
+package fr.imt.coffee.machine;
+
+import fr.imt.coffee.machine.exception.LackOfWaterInTankException;
+import fr.imt.coffee.machine.exception.MachineNotPluggedException;
+import fr.imt.coffee.machine.exception.OrderQueueFullException;
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.exception.CupNotEmptyException;
+
+/**
+ * Issue d'une commande passée avec {@link CoffeeMachine#brewAsync(fr.imt.coffee.storage.cupboard.container.Container, fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType)} :
+ * café servi ({@link Success}), commande refusée avec sa raison ({@link Rejected}) ou machine tombée en panne
+ * ({@link OutOfOrder}). Aucune autre issue n'existe : le constructeur est privé et les trois issues sont finales.
+ * Les refus et la panne sont des instances partagées, une commande refusée n'alloue donc rien.
+ */
+public abstract class BrewResult {
+
+    private static final OutOfOrder OUT_OF_ORDER = new OutOfOrder();
+    private static final Rejected[] REJECTIONS = new Rejected[RejectionReason.values().length];
+
+    static {
+        for (RejectionReason reason : RejectionReason.values()) {
+            REJECTIONS[reason.ordinal()] = new Rejected(reason);
+        }
+    }
+
+    private BrewResult() {
+    }
+
+    /**
+     * @param coffee Café servi
+     * @return Issue d'une commande servie
+     */
+    public static Success success(CoffeeContainer coffee) {
+        return new Success(coffee);
+    }
+
+    /**
+     * @param reason Raison du refus
+     * @return Issue partagée des commandes refusées pour cette raison
+     */
+    public static Rejected rejected(RejectionReason reason) {
+        return REJECTIONS[reason.ordinal()];
+    }
+
+    /**
+     * @return Issue partagée des commandes non servies car la machine est tombée en panne
+     */
+    public static OutOfOrder outOfOrder() {
+        return OUT_OF_ORDER;
+    }
+
+    public boolean isSuccess() {
+        return false;
+    }
+
+    public boolean isRejected() {
+        return false;
+    }
+
+    public boolean isOutOfOrder() {
+        return false;
+    }
+
+    /**
+     * @return Café servi, null si la commande n'a pas été servie
+     */
+    public CoffeeContainer getCoffee() {
+        return null;
+    }
+
+    /**
+     * @return Raison du refus, null si la commande n'a pas été refusée
+     */
+    public RejectionReason getRejectionReason() {
+        return null;
+    }
+
+    /**
+     * Raison pour laquelle une commande est refusée avant d'être préparée
+     */
+    public enum RejectionReason {
+        NOT_PLUGGED("You must plug your coffee machine to an electrical plug."),
+        LACK_OF_WATER("You must add more water in the water tank."),
+        CONTAINER_NOT_EMPTY("The container given is not empty."),
+        QUEUE_FULL("The order queue of the coffee machine is full.");
+
+        private final String message;
+
+        RejectionReason(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return Exception historiquement levée pour ce refus, pour les API qui lèvent encore des exceptions
+         */
+        public Exception toException() {
+            switch (this) {
+                case NOT_PLUGGED:
+                    return new MachineNotPluggedException(message);
+                case LACK_OF_WATER:
+                    return new LackOfWaterInTankException(message);
+                case QUEUE_FULL:
+                    return new OrderQueueFullException(message);
+                default:
+                    return new CupNotEmptyException(message);
+            }
+        }
+    }
+
+    /**
+     * Café servi
+     */
+    public static final class Success extends BrewResult {
+        private final CoffeeContainer coffee;
+
+        private Success(CoffeeContainer coffee) {
+            this.coffee = coffee;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return true;
+        }
+
+        @Override
+        public CoffeeContainer getCoffee() {
+            return coffee;
+        }
+
+        public String toString() {
+            return "Success : " + coffee;
+        }
+    }
+
+    /**
+     * Commande refusée avant d'être préparée
+     */
+    public static final class Rejected extends BrewResult {
+        private final RejectionReason reason;
+
+        private Rejected(RejectionReason reason) {
+            this.reason = reason;
+        }
+
+        @Override
+        public boolean isRejected() {
+            return true;
+        }
+
+        @Override
+        public RejectionReason getRejectionReason() {
+            return reason;
+        }
+
+        public String toString() {
+            return "Rejected : " + reason.getMessage();
+        }
+    }
+
+    /**
+     * Commande non servie car la machine est tombée en panne
+     */
+    public static final class OutOfOrder extends BrewResult {
+        private OutOfOrder() {
+        }
+
+        @Override
+        public boolean isOutOfOrder() {
+            return true;
+        }
+
+        public String toString() {
+            return "Out of order";
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package fr.imt.coffee.machine;
+
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Résultat d'une fournée de cafés lancée avec {@link CoffeeMachine#makeCoffees(List, fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType)}.
+ * Chaque contenant de la fournée a son propre résultat : café servi, erreur ou panne de la machine.
+ */
+public class CoffeeBatchResult {
+
+    private final List<Item> items;
+
+    CoffeeBatchResult(List<Container> containers) {
+        List<Item> batchItems = new ArrayList<>(containers.size());
+        for (Container container : containers) {
+            batchItems.add(new Item(container));
+        }
+        this.items = Collections.unmodifiableList(batchItems);
+    }
+
+    /**
+     * @return Résultats de la fournée, dans l'ordre des contenants donnés
+     */
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * @return Cafés servis par la fournée
+     */
+    public List<CoffeeContainer> getCoffees() {
+        List<CoffeeContainer> coffees = new ArrayList<>(items.size());
+        for (Item item : items) {
+            if (item.isSuccess())
+                coffees.add(item.getCoffee());
+        }
+        return coffees;
+    }
+
+    /**
+     * @return Nombre de cafés servis par la fournée
+     */
+    public int getNbCoffeeMade() {
+        int nbCoffeeMade = 0;
+        for (Item item : items) {
+            if (item.isSuccess())
+                nbCoffeeMade++;
+        }
+        return nbCoffeeMade;
+    }
+
+    /**
+     * @return true si tous les cafés de la fournée ont été servis
+     */
+    public boolean isComplete() {
+        return getNbCoffeeMade() == items.size();
+    }
+
+    /**
+     * Résultat d'un contenant de la fournée
+     */
+    public static class Item {
+        private final Container container;
+        private CoffeeContainer coffee;
+        private Exception failure;
+        private BrewResult.RejectionReason rejectionReason;
+        private boolean outOfOrder;
+
+        private Item(Container container) {
+            this.container = container;
+        }
+
+        void succeed(CoffeeContainer coffee) {
+            this.coffee = coffee;
+        }
+
+        void fail(Exception failure) {
+            this.failure = failure;
+        }
+
+        void reject(BrewResult.RejectionReason rejectionReason) {
+            this.rejectionReason = rejectionReason;
+        }
+
+        void failOutOfOrder() {
+            this.outOfOrder = true;
+        }
+
+        /**
+         * @return Contenant donné pour ce café
+         */
+        public Container getContainer() {
+            return container;
+        }
+
+        /**
+         * @return Café servi, null si le café n'a pas pu être fait
+         */
+        public CoffeeContainer getCoffee() {
+            return coffee;
+        }
+
+        /**
+         * @return Erreur ayant empêché de faire le café (LackOfWaterInTankException, MachineNotPluggedException,
+         * CupNotEmptyException...), null si le café a été servi ou si la machine est tombée en panne
+         */
+        public Exception getFailure() {
+            //L'exception d'un refus n'est créée que si elle est demandée
+            if (failure == null && rejectionReason != null)
+                failure = rejectionReason.toException();
+            return failure;
+        }
+
+        /**
+         * @return Raison pour laquelle le contenant a été refusé, null s'il ne l'a pas été
+         */
+        public BrewResult.RejectionReason getRejectionReason() {
+            return rejectionReason;
+        }
+
+        /**
+         * @return true si le café n'a pas été fait car la machine est tombée en panne
+         */
+        public boolean isOutOfOrder() {
+            return outOfOrder;
+        }
+
+        public boolean isSuccess() {
+            return coffee != null;
+        }
+    }
+}
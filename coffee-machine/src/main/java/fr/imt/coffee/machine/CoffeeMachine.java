@@ -1,38 +1,128 @@
 package fr.imt.coffee.machine;
 
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.clock.SystemBrewClock;
 import fr.imt.coffee.machine.component.ElectricalResistance;
 import fr.imt.coffee.machine.component.WaterPump;
 import fr.imt.coffee.machine.component.WaterTank;
 import fr.imt.coffee.machine.exception.LackOfWaterInTankException;
 import fr.imt.coffee.machine.exception.MachineNotPluggedException;
+import fr.imt.coffee.machine.failure.FailureModel;
+import fr.imt.coffee.machine.failure.GaussianFailureModel;
+import fr.imt.coffee.machine.failure.RandomGeneratorFailureModel;
+import fr.imt.coffee.machine.history.OrderHistory;
+import fr.imt.coffee.machine.journal.JournalState;
+import fr.imt.coffee.machine.journal.OrderJournal;
+import fr.imt.coffee.machine.metrics.BrewMetrics;
+import fr.imt.coffee.machine.metrics.CoffeeMachineMetrics;
+import fr.imt.coffee.machine.metrics.ThroughputStats;
+import fr.imt.coffee.machine.pipeline.BrewOrder;
+import fr.imt.coffee.machine.pipeline.BrewStage;
+import fr.imt.coffee.machine.queue.OrderQueue;
+import fr.imt.coffee.machine.scheduler.ArrivalRateEstimator;
+import fr.imt.coffee.machine.scheduler.RefillController;
 import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
 import fr.imt.coffee.storage.cupboard.container.*;
 import fr.imt.coffee.storage.cupboard.exception.CupNotEmptyException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class CoffeeMachine {
 
     public static final Logger logger = LogManager.getLogger(CoffeeMachine.class);
 
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    private final int id;
     private final WaterTank waterTank;
     private final WaterPump waterPump;
     private final ElectricalResistance electricalResistance;
-    private boolean isPlugged;
-    private boolean isOutOfOrder;
-    private int nbCoffeeMade;
-    private Random randomGenerator;
+    private volatile boolean isPlugged;
+    private volatile boolean isOutOfOrder;
+    private final LongAdder nbCoffeeMade;
+    private final ThroughputStats throughputStats;
+    private volatile FailureModel failureModel;
+    private final BrewClock clock;
+    private final BrewStage heatingStage;
+    private final BrewStage pumpingStage;
+    private final AtomicInteger pendingOrders;
+    private final BrewMetrics brewMetrics;
+    private final ArrivalRateEstimator arrivalRateEstimator;
+    private final CoffeeMachineMetrics metrics;
+    private volatile OrderJournal journal;
+    private volatile RefillController refillController;
+    private volatile OrderHistory orderHistory;
+    private volatile OrderQueue orderQueue;
 
     public CoffeeMachine(double minWaterTank, double maxWaterTank, double pumpingCapacity){
+        this(minWaterTank, maxWaterTank, pumpingCapacity, SystemBrewClock.getDefaultClock());
+    }
+
+    /**
+     * Machine à café dont les composants font passer le temps avec l'horloge donnée.
+     * Avec une {@link fr.imt.coffee.machine.clock.VirtualBrewClock} la machine fonctionne en mode simulation.
+     * @param minWaterTank Volume d'eau minimal du réservoir en litres
+     * @param maxWaterTank Volume d'eau maximal du réservoir en litres
+     * @param pumpingCapacity Débit de la pompe en litres par heure
+     * @param clock Horloge de la machine
+     */
+    public CoffeeMachine(double minWaterTank, double maxWaterTank, double pumpingCapacity, BrewClock clock){
+        this(minWaterTank, maxWaterTank, pumpingCapacity, 1000, clock);
+    }
+
+    /**
+     * Machine à café dont la résistance a la puissance donnée
+     * @param minWaterTank Volume d'eau minimal du réservoir en litres
+     * @param maxWaterTank Volume d'eau maximal du réservoir en litres
+     * @param pumpingCapacity Débit de la pompe en litres par heure
+     * @param resistancePower Puissance de la résistance en watts
+     * @param clock Horloge de la machine
+     */
+    public CoffeeMachine(double minWaterTank, double maxWaterTank, double pumpingCapacity, double resistancePower, BrewClock clock){
+        this(NEXT_ID.getAndIncrement(), minWaterTank, maxWaterTank, pumpingCapacity, resistancePower, clock);
+    }
+
+    /**
+     * Machine à café dont l'identifiant est stable d'une exécution à l'autre, par exemple son numéro de série.
+     * C'est cet identifiant qui est rangé dans l'historique des commandes et dans les snapshots, et qui choisit le
+     * flux de tirage des pannes de la machine.
+     * @param id Identifiant de la machine, choisi par l'appelant pour ne pas en partager avec une autre machine
+     * @param minWaterTank Volume d'eau minimal du réservoir en litres
+     * @param maxWaterTank Volume d'eau maximal du réservoir en litres
+     * @param pumpingCapacity Débit de la pompe en litres par heure
+     * @param resistancePower Puissance de la résistance en watts
+     * @param clock Horloge de la machine
+     */
+    public CoffeeMachine(int id, double minWaterTank, double maxWaterTank, double pumpingCapacity, double resistancePower, BrewClock clock){
+        this.id = id;
+        this.clock = clock;
         this.waterTank = new WaterTank(0, minWaterTank, maxWaterTank);
-        this.waterPump = new WaterPump(pumpingCapacity/3600); //On convertie les L/h en L/seconde
-        this.electricalResistance = new ElectricalResistance(1000);
+        this.waterPump = new WaterPump(pumpingCapacity/3600, clock); //On convertie les L/h en L/seconde
+        this.electricalResistance = new ElectricalResistance(resistancePower, clock);
         this.isPlugged = false;
         this.isOutOfOrder = false;
-        this.nbCoffeeMade = 0;
-        this.randomGenerator = new Random();
+        this.nbCoffeeMade = new LongAdder();
+        this.throughputStats = new ThroughputStats(clock);
+        this.failureModel = new GaussianFailureModel();
+        this.pendingOrders = new AtomicInteger();
+        this.brewMetrics = new BrewMetrics();
+        this.arrivalRateEstimator = new ArrivalRateEstimator();
+        //Pipeline de préparation : la commande N+1 chauffe pendant que la commande N est pompée
+        this.heatingStage = new BrewStage("heating",
+                order -> order.isPreheating() ? electricalResistance.preheatAsync()
+                        : electricalResistance.waterHeatingAsync(order.getWaterVolume()), clock);
+        this.pumpingStage = new BrewStage("pumping",
+                order -> waterPump.pumpWaterAsync(order.getWaterVolume(), waterTank), clock);
+        this.metrics = new CoffeeMachineMetrics(this);
     }
 
     /**
@@ -47,14 +137,54 @@ public class CoffeeMachine {
      */
     public void reset(){
         isOutOfOrder = false;
+        OrderJournal orderJournal = journal;
+        if (orderJournal != null)
+            orderJournal.appendReset();
     }
 
     /**
      * Ajoute de l'eau dans le réservoir
      * @param waterVolume Volume d'eau en litres à ajouter
+     * @return Volume d'eau réellement ajouté, sans dépasser le volume maximal du réservoir
+     */
+    public double addWaterInTank(double waterVolume){
+        double addedVolume = this.waterTank.increaseWaterVolume(waterVolume);
+        OrderJournal orderJournal = journal;
+        if (orderJournal != null)
+            orderJournal.appendRefill(addedVolume);
+        return addedVolume;
+    }
+
+    /**
+     * Restaure l'état de la machine à partir de son journal puis y journalise les événements suivants :
+     * cafés servis, remplissages du réservoir, pannes et RAZ.
+     * A appeler au démarrage, avant de passer des commandes à la machine.
+     * @param orderJournal Journal de la machine
+     * @return État restauré
+     */
+    public JournalState recover(OrderJournal orderJournal){
+        JournalState state = orderJournal.replay();
+        nbCoffeeMade.reset();
+        nbCoffeeMade.add(state.getNbCoffeeMade());
+        isOutOfOrder = state.isOutOfOrder();
+        double missingVolume = state.getWaterVolume() - waterTank.getActualVolume();
+        if (missingVolume > 0)
+            waterTank.increaseWaterVolume(missingVolume);
+        else
+            waterTank.decreaseWaterVolume(-missingVolume);
+        this.journal = orderJournal;
+        logger.info("Coffee machine " + id + " recovered from " + orderJournal.getPath() + " : " + state);
+        return state;
+    }
+
+    /**
+     * Écrit l'état complet de la machine dans son journal : le prochain rejeu partira de cet état
      */
-    public void addWaterInTank(double waterVolume){
-        this.waterTank.increaseWaterVolume(waterVolume);
+    public void checkpoint(){
+        OrderJournal orderJournal = journal;
+        if (orderJournal == null)
+            throw new IllegalStateException("The coffee machine has no journal.");
+        orderJournal.appendSnapshot(nbCoffeeMade.sum(), waterTank.getActualVolume(), isOutOfOrder);
     }
 
     /**
@@ -63,63 +193,383 @@ public class CoffeeMachine {
      * Le contenant du café retourné ne doit pas être vide et doit avoir la même capacité que le contenant passsé en paramètre
      * Le contenant doit également avoir son coffeeType qui est égale au type de café passé en paramètre
      * Le nombre de café de la machine doit être incrémenté de 1
+     * Simple enveloppe bloquante autour de {@link #makeACoffeeAsync(Container, CoffeeType)}
      * @param container Contenant pour faire couler le café
      * @param coffeeType Type de café dans l'énumération CoffeeType.java
      * @return Contenant non vide avec son type de café
      * @throws LackOfWaterInTankException Exception à lever lorsque que l'on manque d'eau dans le réservoir, message "You must plug your coffee machine to an electrical plug."
      * @throws MachineNotPluggedException Exception levée lorsque que la machine n'est pas branchée, message : "You must add more water in the water tank."
      * @throws CupNotEmptyException Exception levée lorsque le contenant donné en paramètre n'est pas vide, message : "The container given is not empty."
-     * @throws InterruptedException Exception levée lorsqu'un problème survient dans les Threads lors du sleep
+     * @throws InterruptedException Exception levée lorsque le Thread est interrompu pendant l'attente du café
      */
     public CoffeeContainer makeACoffee(Container container, CoffeeType coffeeType) throws LackOfWaterInTankException, InterruptedException, MachineNotPluggedException, CupNotEmptyException {
+        CompletableFuture<CoffeeContainer> coffee = makeACoffeeAsync(container, coffeeType);
+        try {
+            return clock.await(coffee);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LackOfWaterInTankException)
+                throw (LackOfWaterInTankException) cause;
+            if (cause instanceof MachineNotPluggedException)
+                throw (MachineNotPluggedException) cause;
+            if (cause instanceof CupNotEmptyException)
+                throw (CupNotEmptyException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Version non bloquante de {@link #makeACoffee(Container, CoffeeType)}, enveloppe de
+     * {@link #brewAsync(Container, CoffeeType)} qui transforme les refus en exceptions.
+     * Les erreurs (machine non branchée, manque d'eau, contenant non vide) sont transmises en complétant la future
+     * exceptionnellement. Si la machine tombe en panne, la future est complétée avec null.
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café dans l'énumération CoffeeType.java
+     * @return Future complétée avec le contenant non vide et son type de café
+     */
+    public CompletableFuture<CoffeeContainer> makeACoffeeAsync(Container container, CoffeeType coffeeType) {
+        CompletableFuture<BrewResult> result = brewAsync(container, coffeeType);
+        //Une issue déjà connue au retour de brewAsync n'a pas besoin d'étape supplémentaire
+        BrewResult immediateResult = result.getNow(null);
+        if (immediateResult != null)
+            return toCoffee(immediateResult);
+        //Une commande qui attend l'eau du remplissage peut encore être refusée plus tard
+        return result.thenCompose(CoffeeMachine::toCoffee);
+    }
+
+    private static CompletableFuture<CoffeeContainer> toCoffee(BrewResult result) {
+        return result.isRejected()
+                ? CompletableFuture.failedFuture(result.getRejectionReason().toException())
+                : CompletableFuture.completedFuture(result.getCoffee());
+    }
+
+    /**
+     * Fait couler un café sans lever d'exception pour les refus courants.
+     * Simple enveloppe bloquante autour de {@link #brewAsync(Container, CoffeeType)}
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café dans l'énumération CoffeeType.java
+     * @return Café servi, commande refusée avec sa raison ou machine en panne
+     * @throws InterruptedException Exception levée lorsque le Thread est interrompu pendant l'attente du café
+     */
+    public BrewResult brew(Container container, CoffeeType coffeeType) throws InterruptedException {
+        try {
+            return clock.await(brewAsync(container, coffeeType));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Passe une commande sans lever ni allouer d'exception pour les refus courants.
+     * Les vérifications sont faites dans le thread appelant, la commande passe ensuite dans l'étage de chauffe puis,
+     * via sa file d'attente, dans l'étage de pompage. La chauffe et le pompage sont planifiés sur l'ordonnanceur de
+     * l'horloge de la machine : aucun thread n'est mis en attente pendant que le café coule.
+     * Une commande refusée (machine non branchée, manque d'eau, contenant non vide) ou non servie car la machine est
+     * tombée en panne donne une future déjà complétée avec une issue partagée.
+     * Avec un {@link RefillController}, une commande qui manque d'eau est repassée à chaque arrivée d'eau du
+     * remplissage au lieu d'être refusée : son issue, refus compris, n'est alors connue qu'après le retour.
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café dans l'énumération CoffeeType.java
+     * @return Future complétée avec l'issue de la commande, exceptionnellement seulement si la chauffe ou le pompage échoue
+     */
+    public CompletableFuture<BrewResult> brewAsync(Container container, CoffeeType coffeeType) {
+        long orderTime = clock.currentTimeMillis();
+        arrivalRateEstimator.record(orderTime);
+        return submitOrder(container, coffeeType, orderTime);
+    }
+
+    private CompletableFuture<BrewResult> submitOrder(Container container, CoffeeType coffeeType, long orderTime) {
+        long validationStart = clock.nanoTime();
         if(!isPlugged){
-            throw new MachineNotPluggedException("You must plug your coffee machine to an electrical plug.");
+            brewMetrics.recordNotPluggedRejection();
+            return CompletableFuture.completedFuture(BrewResult.rejected(BrewResult.RejectionReason.NOT_PLUGGED));
         }
 
-        if (waterTank.getActualVolume() < container.getCapacity()){
-            throw new LackOfWaterInTankException("You must add more water in the water tank.");
+        //Le contenant est vérifié avant de réserver l'eau : un contenant plein n'a pas à être de capacité valide
+        if (!container.isEmpty() || container instanceof CoffeeContainer){
+            brewMetrics.recordContainerNotEmptyRejection();
+            return CompletableFuture.completedFuture(BrewResult.rejected(BrewResult.RejectionReason.CONTAINER_NOT_EMPTY));
         }
 
-        if (!container.isEmpty()){
-            throw new CupNotEmptyException("The container given is not empty.");
+        //L'eau est réservée dès la commande pour que deux commandes concurrentes ne vident pas le réservoir
+        double waterVolume = container.getCapacity();
+        if (!waterTank.tryReserve(waterVolume)){
+            RefillController controller = refillController;
+            CompletableFuture<Double> water = controller == null || waterVolume > waterTank.getMaxVolume() - waterTank.getMinVolume()
+                    ? null : controller.awaitWater();
+            if (water != null)
+                return water.thenCompose(addedVolume -> submitOrder(container, coffeeType, orderTime));
+            brewMetrics.recordLackOfWaterRejection();
+            return CompletableFuture.completedFuture(BrewResult.rejected(BrewResult.RejectionReason.LACK_OF_WATER));
         }
 
-        coffeeMachineFailure();
+        brewMetrics.getValidationLatency().record(clock.nanoTime() - validationStart);
+
+        boolean failed = checkFailure();
 
-        if(isOutOfOrder){
+        if(failed){
+            waterTank.release(waterVolume);
+            brewMetrics.recordOutOfOrderRejection();
             logger.warn("The machine is out of order. Please reset the coffee machine");
-            return null;
+            return CompletableFuture.completedFuture(BrewResult.outOfOrder());
         }
 
-        electricalResistance.waterHeating(container.getCapacity());
-        waterPump.pumpWater(container.getCapacity(), waterTank);
+        RefillController controller = refillController;
+        if (controller != null)
+            controller.onWaterReserved(waterVolume);
+        BrewOrder order = new BrewOrder(container, coffeeType, clock.nanoTime());
+        pendingOrders.incrementAndGet();
+        return heatingStage.submit(order)
+                .thenCompose(heatedOrder -> {
+                    long heatingEnd = clock.nanoTime();
+                    return pumpingStage.submit(heatedOrder).thenApply(pumpedOrder -> heatingEnd);
+                })
+                .whenComplete((heatingEnd, failure) -> {
+                    pendingOrders.decrementAndGet();
+                    //L'eau réservée n'est consommée qu'à la fin du pompage, on la rend si la commande a échoué avant
+                    if (failure != null)
+                        waterTank.release(waterVolume);
+                })
+                .thenApply(heatingEnd -> {
+                    CoffeeContainer coffee = serveCoffee(container, coffeeType);
+                    recordOrder(coffee, orderTime, order.getSubmissionTime(), heatingEnd);
+                    return BrewResult.success(coffee);
+                });
+    }
+
+    /**
+     * Préchauffe la chaudière en passant par l'étage de chauffe, à la suite des cafés déjà commandés
+     * @return Future complétée avec la durée en millisecondes entre la demande et la fin de la préchauffe, ou
+     * exceptionnellement si la machine n'est pas branchée
+     */
+    public CompletableFuture<Double> preheatAsync() {
+        if(!isPlugged){
+            return CompletableFuture.failedFuture(new MachineNotPluggedException("You must plug your coffee machine to an electrical plug."));
+        }
+        long submissionTime = clock.nanoTime();
+        return heatingStage.submit(BrewOrder.preheating(submissionTime))
+                .thenApply(preheatingOrder -> (clock.nanoTime() - submissionTime) / 1e6);
+    }
 
+    /**
+     * Verse le café dans le contenant une fois l'eau chauffée et pompée
+     * @param container Contenant dans lequel le café a coulé
+     * @param coffeeType Type de café
+     * @return CoffeeCup ou CoffeeMug selon le contenant, null si le contenant n'est pas reconnu
+     */
+    private CoffeeContainer serveCoffee(Container container, CoffeeType coffeeType) {
         CoffeeContainer coffeeContainer = null;
         if(container instanceof Cup) {
             coffeeContainer = new CoffeeCup((Cup) container, coffeeType);
-            nbCoffeeMade++;
         }
         else if(container instanceof Mug) {
             coffeeContainer = new CoffeeMug((Mug) container, coffeeType);
-            nbCoffeeMade++;
         }
-        else if(container instanceof CoffeeContainer)
-            throw new CupNotEmptyException("The container given is not empty.");
+        if (coffeeContainer != null) {
+            nbCoffeeMade.increment();
+            throughputStats.record(coffeeType);
+        }
+        OrderJournal orderJournal = journal;
+        if (coffeeContainer != null && orderJournal != null)
+            orderJournal.appendBrew(coffeeType, container.getCapacity());
+        return coffeeContainer;
+    }
+
+    /**
+     * Ajoute un café servi à l'historique des commandes de la machine, s'il y en a un
+     * @param coffee Café servi, null si le contenant n'est pas reconnu
+     * @param orderTime Date de la commande
+     * @param submissionTime Instant de la commande en nanosecondes
+     * @param heatingEnd Instant de la fin de la chauffe en nanosecondes
+     */
+    private void recordOrder(CoffeeContainer coffee, long orderTime, long submissionTime, long heatingEnd) {
+        OrderHistory history = orderHistory;
+        if (coffee != null && history != null)
+            history.append(orderTime, id, coffee.getCoffeeType(), coffee.getCapacity(),
+                    heatingEnd - submissionTime, clock.nanoTime() - heatingEnd);
+    }
+
+    /**
+     * Fait une fournée de cafés du même type en une seule chauffe.
+     * Simple enveloppe bloquante autour de {@link #makeCoffeesAsync(List, CoffeeType)}
+     * @param containers Contenants pour faire couler les cafés
+     * @param coffeeType Type de café dans l'énumération CoffeeType.java
+     * @return Résultat de chaque contenant de la fournée
+     * @throws InterruptedException Exception levée lorsque le Thread est interrompu pendant l'attente des cafés
+     */
+    public CoffeeBatchResult makeCoffees(List<Container> containers, CoffeeType coffeeType) throws InterruptedException {
+        try {
+            return clock.await(makeCoffeesAsync(containers, coffeeType));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Fait une fournée de cafés du même type sans bloquer le thread appelant.
+     * La fournée est vérifiée en une fois : l'eau de tous les contenants est réservée d'un coup, la machine ne tire
+     * qu'une fois au sort une panne et chauffe le volume cumulé en un seul cycle. L'eau chaude est ensuite pompée dans
+     * chaque contenant.
+     * Les erreurs sont données contenant par contenant : un contenant non vide n'empêche pas de servir les autres et,
+     * s'il n'y a pas assez d'eau pour toute la fournée, les premiers contenants sont servis tant que l'eau suffit.
+     * @param containers Contenants pour faire couler les cafés
+     * @param coffeeType Type de café dans l'énumération CoffeeType.java
+     * @return Future complétée avec le résultat de chaque contenant lorsque toute la fournée est terminée
+     */
+    public CompletableFuture<CoffeeBatchResult> makeCoffeesAsync(List<Container> containers, CoffeeType coffeeType) {
+        CoffeeBatchResult batchResult = new CoffeeBatchResult(containers);
+        long arrivalTime = clock.currentTimeMillis();
+        for (int i = 0; i < containers.size(); i++) {
+            arrivalRateEstimator.record(arrivalTime);
+        }
+
+        long validationStart = clock.nanoTime();
+        if(!isPlugged){
+            for (CoffeeBatchResult.Item item : batchResult.getItems()) {
+                brewMetrics.recordNotPluggedRejection();
+                item.reject(BrewResult.RejectionReason.NOT_PLUGGED);
+            }
+            return CompletableFuture.completedFuture(batchResult);
+        }
 
+        List<CoffeeBatchResult.Item> acceptedItems = new ArrayList<>(containers.size());
+        double batchVolume = 0;
+        for (CoffeeBatchResult.Item item : batchResult.getItems()) {
+            Container container = item.getContainer();
+            if (!container.isEmpty() || container instanceof CoffeeContainer) {
+                brewMetrics.recordContainerNotEmptyRejection();
+                item.reject(BrewResult.RejectionReason.CONTAINER_NOT_EMPTY);
+            } else {
+                acceptedItems.add(item);
+                batchVolume += container.getCapacity();
+            }
+        }
 
+        //On réserve l'eau de toute la fournée, à défaut celle des premiers contenants tant que l'eau suffit
+        while (!acceptedItems.isEmpty() && !waterTank.tryReserve(batchVolume)) {
+            CoffeeBatchResult.Item rejectedItem = acceptedItems.remove(acceptedItems.size() - 1);
+            batchVolume -= rejectedItem.getContainer().getCapacity();
+            brewMetrics.recordLackOfWaterRejection();
+            rejectedItem.reject(BrewResult.RejectionReason.LACK_OF_WATER);
+        }
+        if (acceptedItems.isEmpty()) {
+            return CompletableFuture.completedFuture(batchResult);
+        }
+        brewMetrics.getValidationLatency().record(clock.nanoTime() - validationStart);
 
-        return coffeeContainer;
+        boolean failed = checkFailure();
+
+        if(failed){
+            waterTank.release(batchVolume);
+            for (CoffeeBatchResult.Item item : acceptedItems) {
+                brewMetrics.recordOutOfOrderRejection();
+                item.failOutOfOrder();
+            }
+            logger.warn("The machine is out of order. Please reset the coffee machine");
+            return CompletableFuture.completedFuture(batchResult);
+        }
+
+        RefillController controller = refillController;
+        if (controller != null) {
+            for (CoffeeBatchResult.Item item : acceptedItems) {
+                controller.onWaterReserved(item.getContainer().getCapacity());
+            }
+        }
+        double reservedVolume = batchVolume;
+        pendingOrders.addAndGet(acceptedItems.size());
+        List<Container> batchContainers = new ArrayList<>(acceptedItems.size());
+        for (CoffeeBatchResult.Item item : acceptedItems) {
+            batchContainers.add(item.getContainer());
+        }
+        BrewOrder batchOrder = BrewOrder.batch(batchContainers, coffeeType, reservedVolume, clock.nanoTime());
+        return heatingStage.submit(batchOrder)
+                .handle((heatedOrder, heatingFailure) -> {
+                    if (heatingFailure != null) {
+                        waterTank.release(reservedVolume);
+                        pendingOrders.addAndGet(-acceptedItems.size());
+                        for (CoffeeBatchResult.Item item : acceptedItems) {
+                            item.fail(toException(heatingFailure));
+                        }
+                        return CompletableFuture.completedFuture(batchResult);
+                    }
+                    long heatingEnd = clock.nanoTime();
+                    return dispenseBatch(acceptedItems, coffeeType, arrivalTime, batchOrder.getSubmissionTime(), heatingEnd)
+                            .thenApply(dispensed -> batchResult);
+                })
+                .thenCompose(result -> result);
     }
 
     /**
-     * Tirage aléatoire d'un nombre en suivant une loi normale.
-     * Permet de simuler une panne sur la cafetière. Probabilité d'une panne d'environ 32% (1*Omega)
-     * Si la valeur absolue du double tiré est supérieur ou égale à 1 alors une on considère une panne
+     * Pompe l'eau chaude d'une fournée dans chacun de ses contenants
      */
-    public void coffeeMachineFailure(){
-        double nxt = randomGenerator.nextGaussian();
+    private CompletableFuture<Void> dispenseBatch(List<CoffeeBatchResult.Item> items, CoffeeType coffeeType,
+                                                  long orderTime, long submissionTime, long heatingEnd) {
+        CompletableFuture<?>[] dispensedItems = new CompletableFuture<?>[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            CoffeeBatchResult.Item item = items.get(i);
+            BrewOrder order = new BrewOrder(item.getContainer(), coffeeType, clock.nanoTime());
+            dispensedItems[i] = pumpingStage.submit(order)
+                    .handle((pumpedOrder, pumpingFailure) -> {
+                        pendingOrders.decrementAndGet();
+                        if (pumpingFailure != null) {
+                            waterTank.release(order.getWaterVolume());
+                            item.fail(toException(pumpingFailure));
+                        } else {
+                            CoffeeContainer coffee = serveCoffee(item.getContainer(), coffeeType);
+                            recordOrder(coffee, orderTime, submissionTime, heatingEnd);
+                            item.succeed(coffee);
+                        }
+                        return null;
+                    });
+        }
+        return CompletableFuture.allOf(dispensedItems);
+    }
+
+    private static Exception toException(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause);
+    }
 
-        isOutOfOrder = (Math.abs(nxt) >= 1);
+    /**
+     * Tire au sort une panne en mesurant la latence du tirage
+     * @return Vrai si la machine est tombée en panne lors de ce tirage
+     */
+    private boolean checkFailure() {
+        long failureCheckStart = clock.nanoTime();
+        boolean failed = coffeeMachineFailure();
+        brewMetrics.getFailureCheckLatency().record(clock.nanoTime() - failureCheckStart);
+        return failed;
+    }
+
+    /**
+     * Tirage aléatoire d'une panne suivant le modèle de panne de la machine.
+     * Par défaut, un nombre est tiré en suivant une loi normale et si sa valeur absolue est supérieure ou égale à 1
+     * alors on considère une panne. Probabilité d'une panne d'environ 32% (1*Omega)
+     * @return Résultat du tirage, à utiliser plutôt que {@link #isOutOfOrder()} qu'une autre commande peut avoir
+     * changé entre-temps
+     */
+    public boolean coffeeMachineFailure(){
+        boolean wasOutOfOrder = isOutOfOrder;
+        boolean failed = failureModel.isFailing(this);
+        isOutOfOrder = failed;
+        OrderJournal orderJournal = journal;
+        if (failed != wasOutOfOrder && orderJournal != null)
+            orderJournal.appendOutOfOrder(failed);
+        return failed;
     }
 
     public String toString(){
@@ -128,7 +578,14 @@ public class CoffeeMachine {
         "- water pump : " + waterPump.toString() + "\n" +
         "- electrical resistance : " + electricalResistance + "\n" +
         "- is plugged : " + isPlugged + "\n"+
-        "and made " + nbCoffeeMade + " coffees";
+        "and made " + nbCoffeeMade.sum() + " coffees";
+    }
+
+    /**
+     * @return Identifiant donné à la construction de la machine, à défaut numéro unique dans la JVM
+     */
+    public int getId() {
+        return id;
     }
 
     public WaterTank getWaterTank() {
@@ -156,18 +613,137 @@ public class CoffeeMachine {
     }
 
     public int getNbCoffeeMade() {
-        return nbCoffeeMade;
+        return nbCoffeeMade.intValue();
     }
 
+    /**
+     * Remplace le compteur de cafés faits, par exemple à la restauration de la machine.
+     * Les statistiques par type de café ne sont pas modifiées.
+     * @param nbCoffeeMade Nombre de cafés faits par la machine
+     */
     public void setNbCoffeeMade(int nbCoffeeMade) {
-        this.nbCoffeeMade = nbCoffeeMade;
+        this.nbCoffeeMade.reset();
+        this.nbCoffeeMade.add(nbCoffeeMade);
     }
 
+    /**
+     * @return Nombre de cafés servis et rythmes glissants, type de café par type de café
+     */
+    public ThroughputStats getThroughputStats() {
+        return throughputStats;
+    }
+
+    /**
+     * @return Générateur du modèle de panne s'il a été donné par {@link #setRandomGenerator(Random)}, null sinon
+     */
     public Random getRandomGenerator() {
-        return randomGenerator;
+        FailureModel model = failureModel;
+        return model instanceof RandomGeneratorFailureModel ? ((RandomGeneratorFailureModel) model).getRandomGenerator() : null;
     }
 
+    /**
+     * Remplace le modèle de panne par le modèle gaussien historique tirant dans le générateur donné.
+     * Le générateur est partagé par tous les threads : pour des tirages sans contention, préférer
+     * {@link #setFailureModel(FailureModel)} avec un modèle à flux par thread.
+     * @param randomGenerator Générateur des tirages de panne
+     */
     public void setRandomGenerator(Random randomGenerator) {
-        this.randomGenerator = randomGenerator;
+        this.failureModel = new RandomGeneratorFailureModel(randomGenerator);
+    }
+
+    public FailureModel getFailureModel() {
+        return failureModel;
+    }
+
+    public void setFailureModel(FailureModel failureModel) {
+        this.failureModel = failureModel;
+    }
+
+    public BrewClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return Nombre de commandes acceptées par la machine et pas encore servies
+     */
+    public int getPendingOrders() {
+        return pendingOrders.get();
+    }
+
+    /**
+     * @return Journal de la machine, null si la machine n'est pas journalisée
+     */
+    public OrderJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return Rythme d'arrivée des commandes de la machine
+     */
+    public ArrivalRateEstimator getArrivalRateEstimator() {
+        return arrivalRateEstimator;
+    }
+
+    /**
+     * @return Contrôleur du remplissage automatique du réservoir, null si le réservoir n'est rempli qu'à la main
+     */
+    public RefillController getRefillController() {
+        return refillController;
+    }
+
+    /**
+     * Branché par {@link RefillController#start()}
+     * @param refillController Contrôleur du remplissage automatique du réservoir, null pour le débrancher
+     */
+    public void setRefillController(RefillController refillController) {
+        this.refillController = refillController;
+    }
+
+    /**
+     * @return Historique dans lequel la machine range les cafés servis, null si elle n'en a pas
+     */
+    public OrderHistory getOrderHistory() {
+        return orderHistory;
+    }
+
+    /**
+     * @param orderHistory Historique dans lequel ranger les cafés servis, partageable entre les machines d'une flotte
+     */
+    public void setOrderHistory(OrderHistory orderHistory) {
+        this.orderHistory = orderHistory;
+    }
+
+    /**
+     * @return File bornée devant la machine, null si les commandes lui sont passées directement
+     */
+    public OrderQueue getOrderQueue() {
+        return orderQueue;
+    }
+
+    /**
+     * Branché par le constructeur de {@link OrderQueue}
+     * @param orderQueue File bornée devant la machine
+     */
+    public void setOrderQueue(OrderQueue orderQueue) {
+        this.orderQueue = orderQueue;
+    }
+
+    public BrewMetrics getBrewMetrics() {
+        return brewMetrics;
+    }
+
+    /**
+     * @return MBean exposant les mesures de la machine, à enregistrer avec {@link CoffeeMachineMetrics#register()}
+     */
+    public CoffeeMachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public BrewStage getHeatingStage() {
+        return heatingStage;
+    }
+
+    public BrewStage getPumpingStage() {
+        return pumpingStage;
     }
 }
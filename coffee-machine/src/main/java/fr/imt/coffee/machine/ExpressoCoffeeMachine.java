@@ -1,8 +1,22 @@
 package fr.imt.coffee.machine;
 
+import fr.imt.coffee.machine.clock.BrewClock;
+
 public class ExpressoCoffeeMachine extends CoffeeMachine{
 
     public ExpressoCoffeeMachine(double minWaterTank, double maxWaterTank, double pumpingCapacity) {
         super(minWaterTank, maxWaterTank, pumpingCapacity);
     }
+
+    public ExpressoCoffeeMachine(double minWaterTank, double maxWaterTank, double pumpingCapacity, BrewClock clock) {
+        super(minWaterTank, maxWaterTank, pumpingCapacity, clock);
+    }
+
+    public ExpressoCoffeeMachine(double minWaterTank, double maxWaterTank, double pumpingCapacity, double resistancePower, BrewClock clock) {
+        super(minWaterTank, maxWaterTank, pumpingCapacity, resistancePower, clock);
+    }
+
+    public ExpressoCoffeeMachine(int id, double minWaterTank, double maxWaterTank, double pumpingCapacity, double resistancePower, BrewClock clock) {
+        super(id, minWaterTank, maxWaterTank, pumpingCapacity, resistancePower, clock);
+    }
 }
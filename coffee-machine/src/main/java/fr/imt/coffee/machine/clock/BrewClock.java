@@ -0,0 +1,46 @@
+package fr.imt.coffee.machine.clock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Horloge utilisée par la machine à café et ses composants pour mesurer et faire passer le temps.
+ * {@link SystemBrewClock} attend réellement, {@link VirtualBrewClock} fait avancer un temps virtuel pour simuler
+ * des journées entières de commandes en quelques secondes.
+ */
+public interface BrewClock {
+
+    /**
+     * @return Temps courant de l'horloge en nanosecondes, uniquement utile pour mesurer des durées
+     */
+    long nanoTime();
+
+    /**
+     * @return Date courante de l'horloge en millisecondes depuis le 1er janvier 1970
+     */
+    long currentTimeMillis();
+
+    /**
+     * Met en attente le thread appelant pendant la durée donnée
+     * @param millis Durée en millisecondes
+     * @throws InterruptedException Exception levée si le thread est interrompu pendant l'attente
+     */
+    void sleep(double millis) throws InterruptedException;
+
+    /**
+     * Planifie la fin d'une attente sans bloquer le thread appelant
+     * @param millis Durée en millisecondes
+     * @return Future complétée une fois la durée écoulée
+     */
+    CompletableFuture<Void> delay(double millis);
+
+    /**
+     * Attend le résultat d'une future dont la complétion dépend de cette horloge
+     * @param future Future à attendre
+     * @param <T> Type du résultat
+     * @return Résultat de la future
+     * @throws InterruptedException Exception levée si le thread est interrompu pendant l'attente
+     * @throws ExecutionException Exception levée si la future a été complétée exceptionnellement
+     */
+    <T> T await(CompletableFuture<T> future) throws InterruptedException, ExecutionException;
+}
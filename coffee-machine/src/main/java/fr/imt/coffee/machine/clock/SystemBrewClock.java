@@ -0,0 +1,63 @@
+package fr.imt.coffee.machine.clock;
+
+import fr.imt.coffee.machine.scheduler.BrewScheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Horloge réelle : les attentes durent vraiment et les fins d'attente sont planifiées sur un ordonnanceur
+ */
+public class SystemBrewClock implements BrewClock {
+
+    private static final SystemBrewClock DEFAULT_CLOCK = new SystemBrewClock(BrewScheduler.getSharedScheduler());
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param scheduler Ordonnanceur sur lequel planifier les fins d'attente
+     */
+    public SystemBrewClock(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return Horloge réelle utilisant l'ordonnanceur partagé {@link BrewScheduler}
+     */
+    public static SystemBrewClock getDefaultClock() {
+        return DEFAULT_CLOCK;
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(double millis) throws InterruptedException {
+        Thread.sleep((long) millis);
+    }
+
+    @Override
+    public CompletableFuture<Void> delay(double millis) {
+        CompletableFuture<Void> delayed = new CompletableFuture<>();
+        scheduler.schedule(() -> delayed.complete(null), (long) millis, TimeUnit.MILLISECONDS);
+        return delayed;
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future) throws InterruptedException, ExecutionException {
+        return future.get();
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+}
@@ -0,0 +1,163 @@
+package fr.imt.coffee.machine.clock;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Horloge virtuelle de simulation à événements discrets.
+ * Les attentes ne bloquent jamais : elles deviennent des événements datés dans un échéancier, et le temps virtuel
+ * saute directement d'un événement au suivant. Une machine construite avec cette horloge effectue exactement les mêmes
+ * changements d'état qu'avec l'horloge réelle, mais des millions de commandes sont simulées en quelques secondes.
+ * Le thread qui pilote la simulation fait avancer le temps avec {@link #runUntilIdle()}, {@link #runUntil(long)} ou
+ * {@link #await(CompletableFuture)}.
+ */
+public class VirtualBrewClock implements BrewClock {
+
+    private final long startTimeMillis;
+    private final PriorityQueue<ScheduledEvent> events = new PriorityQueue<>();
+    private long now;
+    private long nextSequence;
+    private long processedEvents;
+
+    /**
+     * Horloge virtuelle démarrant à la date courante du système
+     */
+    public VirtualBrewClock() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * @param startTimeMillis Date de départ de la simulation en millisecondes depuis le 1er janvier 1970
+     */
+    public VirtualBrewClock(long startTimeMillis) {
+        this.startTimeMillis = startTimeMillis;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return startTimeMillis + nanoTime() / 1_000_000;
+    }
+
+    /**
+     * Fait avancer le temps virtuel de la durée donnée en traitant les événements prévus entre temps
+     * @param millis Durée en millisecondes
+     */
+    @Override
+    public void sleep(double millis) {
+        runUntil(nanoTime() + toNanos(millis));
+    }
+
+    @Override
+    public CompletableFuture<Void> delay(double millis) {
+        CompletableFuture<Void> delayed = new CompletableFuture<>();
+        schedule(millis, () -> delayed.complete(null));
+        return delayed;
+    }
+
+    /**
+     * Fait avancer la simulation jusqu'à la complétion de la future
+     * @throws IllegalStateException Exception levée si l'échéancier est vide alors que la future n'est pas complétée
+     */
+    @Override
+    public <T> T await(CompletableFuture<T> future) throws InterruptedException, ExecutionException {
+        while (!future.isDone()) {
+            if (!runNextEvent())
+                throw new IllegalStateException("No more scheduled event, the future will never complete");
+        }
+        return future.get();
+    }
+
+    /**
+     * Planifie une action dans le temps virtuel, par exemple l'arrivée d'une commande
+     * @param delayMillis Délai en millisecondes à partir du temps virtuel courant
+     * @param action Action à exécuter
+     */
+    public void schedule(double delayMillis, Runnable action) {
+        synchronized (this) {
+            events.add(new ScheduledEvent(now + toNanos(delayMillis), nextSequence++, action));
+        }
+    }
+
+    /**
+     * Exécute le prochain événement de l'échéancier en avançant le temps virtuel jusqu'à sa date
+     * @return false si l'échéancier est vide
+     */
+    public boolean runNextEvent() {
+        ScheduledEvent event;
+        synchronized (this) {
+            event = events.poll();
+            if (event == null)
+                return false;
+            now = Math.max(now, event.time);
+            processedEvents++;
+        }
+        event.action.run();
+        return true;
+    }
+
+    /**
+     * Exécute tous les événements jusqu'à ce que l'échéancier soit vide
+     */
+    public void runUntilIdle() {
+        while (runNextEvent()) {
+            //Chaque événement peut en planifier de nouveaux
+        }
+    }
+
+    /**
+     * Exécute les événements prévus jusqu'à la date donnée puis place le temps virtuel à cette date
+     * @param time Date virtuelle en nanosecondes
+     */
+    public void runUntil(long time) {
+        while (true) {
+            synchronized (this) {
+                ScheduledEvent next = events.peek();
+                if (next == null || next.time > time) {
+                    now = Math.max(now, time);
+                    return;
+                }
+            }
+            runNextEvent();
+        }
+    }
+
+    /**
+     * @return Nombre d'événements de l'échéancier pas encore exécutés
+     */
+    public synchronized int getPendingEvents() {
+        return events.size();
+    }
+
+    public synchronized long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    private static long toNanos(double millis) {
+        return (long) (millis * 1_000_000);
+    }
+
+    private static class ScheduledEvent implements Comparable<ScheduledEvent> {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        private ScheduledEvent(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(ScheduledEvent other) {
+            //Deux événements à la même date sont exécutés dans leur ordre de planification
+            int comparison = Long.compare(time, other.time);
+            return comparison != 0 ? comparison : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -1,10 +1,34 @@
 package fr.imt.coffee.machine.component;
 
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.clock.SystemBrewClock;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Résistance électrique et chaudière de la cafetière.
+ * La chaudière garde un petit volume d'eau chaude après chaque chauffe. Ce volume se refroidit avec le temps
+ * (loi de refroidissement de Newton) et préchauffe l'eau froide de la chauffe suivante : deux cafés enchaînés
+ * chauffent donc beaucoup plus vite qu'un café machine froide.
+ */
 public class ElectricalResistance {
+    public static final double AMBIENT_TEMPERATURE = 20;
+    public static final double TARGET_TEMPERATURE = 90;
+    public static final double DEFAULT_RETAINED_WATER_VOLUME = 0.1;
+    public static final double DEFAULT_COOLING_TIME_CONSTANT = 120_000;
+
     private final double power;
+    private final BrewClock clock;
+    private final double retainedWaterVolume;
+    private final double coolingTimeConstant;
+    private final DoubleAdder savedHeatingTime = new DoubleAdder();
+    private final DoubleAdder preheatingEnergy = new DoubleAdder();
+    //Température de la chaudière à la fin de la dernière chauffe
+    private double boilerTemperature = AMBIENT_TEMPERATURE;
+    private long boilerTemperatureTime;
     public static final Logger logger = LogManager.getLogger(ElectricalResistance.class);
 
     /**
@@ -12,7 +36,30 @@ public class ElectricalResistance {
      * @param power Puissance en Watts de la résistance
      */
     public ElectricalResistance(double power){
+        this(power, SystemBrewClock.getDefaultClock());
+    }
+
+    /**
+     * Résistance électrique permettant de chauffer l'eau de la cafetière
+     * @param power Puissance en Watts de la résistance
+     * @param clock Horloge faisant passer le temps de chauffe
+     */
+    public ElectricalResistance(double power, BrewClock clock){
+        this(power, clock, DEFAULT_RETAINED_WATER_VOLUME, DEFAULT_COOLING_TIME_CONSTANT);
+    }
+
+    /**
+     * Résistance électrique permettant de chauffer l'eau de la cafetière
+     * @param power Puissance en Watts de la résistance
+     * @param clock Horloge faisant passer le temps de chauffe
+     * @param retainedWaterVolume Volume d'eau chaude gardé par la chaudière entre deux chauffes en litres, 0 pour toujours chauffer depuis la température ambiante
+     * @param coolingTimeConstant Constante de temps du refroidissement de la chaudière en millisecondes
+     */
+    public ElectricalResistance(double power, BrewClock clock, double retainedWaterVolume, double coolingTimeConstant){
         this.power = power;
+        this.clock = clock;
+        this.retainedWaterVolume = retainedWaterVolume;
+        this.coolingTimeConstant = coolingTimeConstant;
     }
 
     /**
@@ -23,18 +70,136 @@ public class ElectricalResistance {
      * @throws InterruptedException Exception levée en cas de problèmes lors du sleep par le Thread
      */
     public double waterHeating(double waterVolume) throws InterruptedException {
-        // durée de chauffe d'un volume d'eau
-        // Temps en sec = (masse x Ceau x (temp finale - temp départ)) / puissance résistance
-        // on vient ensuite multiplier par 1000 pour avoir le temps en ms puis diviser par 10 pour éviter un temps d'attente trop long
-        double heatingTime = ((waterVolume * 4180 * (90 - 20)) / power) * 1000 / 10;
+        double heatingTime = startHeating(waterVolume);
         logger.info("Water heating time : "  +  heatingTime);
         logger.info("Water heating...");
-        Thread.sleep((long) (heatingTime));
+        clock.sleep(heatingTime);
+        finishHeating();
         logger.info("Water heating OK");
         return heatingTime;
     }
 
+    /**
+     * Version non bloquante de {@link #waterHeating(double)} : la fin de chauffe est planifiée sur l'horloge
+     * au lieu de mettre en attente le thread appelant.
+     * @param waterVolume Masse d'eau à chauffer (en L car 1l = 1kg)
+     * @return Future complétée avec le temps de chauffe lorsque l'eau est chaude
+     */
+    public CompletableFuture<Double> waterHeatingAsync(double waterVolume) {
+        double heatingTime = startHeating(waterVolume);
+        logger.info("Water heating time : "  +  heatingTime);
+        logger.info("Water heating...");
+        return clock.delay(heatingTime).thenApply(heated -> {
+            finishHeating();
+            logger.info("Water heating OK");
+            return heatingTime;
+        });
+    }
+
+    /**
+     * Préchauffe l'eau gardée par la chaudière jusqu'à {@value #TARGET_TEMPERATURE} °C, sans bloquer le thread appelant
+     * @return Future complétée avec le temps de préchauffe lorsque la chaudière est chaude
+     */
+    public CompletableFuture<Double> preheatAsync() {
+        double preheatingTime = startPreheating();
+        logger.info("Boiler preheating time : " + preheatingTime);
+        return clock.delay(preheatingTime).thenApply(heated -> {
+            finishHeating();
+            return preheatingTime;
+        });
+    }
+
+    /**
+     * Calcule la durée de chauffe d'un volume d'eau à température ambiante, machine froide.
+     * Temps en sec = (masse x Ceau x (temp finale - temp départ)) / puissance résistance
+     * on vient ensuite multiplier par 1000 pour avoir le temps en ms puis diviser par 10 pour éviter un temps d'attente trop long
+     * @param waterVolume Masse d'eau à chauffer (en L car 1l = 1kg)
+     * @return Temps de chauffe en millisecondes
+     */
+    public double computeHeatingTime(double waterVolume) {
+        return computeHeatingTime(waterVolume, AMBIENT_TEMPERATURE);
+    }
+
+    /**
+     * Calcule la durée de chauffe d'un volume d'eau jusqu'à {@value #TARGET_TEMPERATURE} °C
+     * @param waterVolume Masse d'eau à chauffer (en L car 1l = 1kg)
+     * @param startTemperature Température de départ de l'eau en °C
+     * @return Temps de chauffe en millisecondes
+     */
+    public double computeHeatingTime(double waterVolume, double startTemperature) {
+        return ((waterVolume * 4180 * (TARGET_TEMPERATURE - startTemperature)) / power) * 1000 / 10;
+    }
+
+    /**
+     * Calcule la température de l'eau froide une fois mélangée à l'eau gardée par la chaudière
+     * @param waterVolume Volume d'eau froide versé dans la chaudière en litres
+     * @param boilerTemperature Température de la chaudière en °C
+     * @return Température de départ de la chauffe en °C
+     */
+    public double computeStartTemperature(double waterVolume, double boilerTemperature) {
+        if (boilerTemperature <= AMBIENT_TEMPERATURE || retainedWaterVolume <= 0)
+            return AMBIENT_TEMPERATURE;
+        return (waterVolume * AMBIENT_TEMPERATURE + retainedWaterVolume * boilerTemperature) / (waterVolume + retainedWaterVolume);
+    }
+
+    /**
+     * @return Température actuelle de la chaudière en °C, refroidie depuis la dernière chauffe
+     */
+    public synchronized double getBoilerTemperature() {
+        double elapsedTime = (clock.nanoTime() - boilerTemperatureTime) / 1e6;
+        return AMBIENT_TEMPERATURE + (boilerTemperature - AMBIENT_TEMPERATURE) * Math.exp(-elapsedTime / coolingTimeConstant);
+    }
+
+    /**
+     * Calcule le temps de chauffe selon la température de la chaudière et compte le temps gagné sur une chauffe à froid
+     */
+    private synchronized double startHeating(double waterVolume) {
+        double heatingTime = computeHeatingTime(waterVolume, computeStartTemperature(waterVolume, getBoilerTemperature()));
+        savedHeatingTime.add(computeHeatingTime(waterVolume) - heatingTime);
+        return heatingTime;
+    }
+
+    private synchronized double startPreheating() {
+        double boilerTemperature = getBoilerTemperature();
+        preheatingEnergy.add(retainedWaterVolume * 4180 * Math.max(0, TARGET_TEMPERATURE - boilerTemperature));
+        return computeHeatingTime(retainedWaterVolume, boilerTemperature);
+    }
+
+    private synchronized void finishHeating() {
+        boilerTemperature = TARGET_TEMPERATURE;
+        boilerTemperatureTime = clock.nanoTime();
+    }
+
+    /**
+     * @return Temps de chauffe gagné grâce à l'eau chaude gardée par la chaudière, en millisecondes
+     */
+    public double getSavedHeatingTime() {
+        return savedHeatingTime.sum();
+    }
+
+    /**
+     * @return Énergie dépensée à préchauffer la chaudière, en joules
+     */
+    public double getPreheatingEnergy() {
+        return preheatingEnergy.sum();
+    }
+
+    public double getRetainedWaterVolume() {
+        return retainedWaterVolume;
+    }
+
+    /**
+     * @return Constante de temps du refroidissement de la chaudière en millisecondes
+     */
+    public double getCoolingTimeConstant() {
+        return coolingTimeConstant;
+    }
+
     public double getPower() {
         return power;
     }
+
+    public BrewClock getClock() {
+        return clock;
+    }
 }
@@ -1,20 +1,34 @@
 package fr.imt.coffee.machine.component;
 
-import fr.imt.coffee.MainCoffee;
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.clock.SystemBrewClock;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.concurrent.CompletableFuture;
+
 public class WaterPump {
 
     public static final Logger logger = LogManager.getLogger(WaterPump.class);
     private final double pumpingCapacity;
+    private final BrewClock clock;
 
     /**
      * Pompe à eau de la cafetière
      * @param pumpingCapacity Capacité de la pompe en litres par secondes
      */
     public WaterPump(double pumpingCapacity){
+        this(pumpingCapacity, SystemBrewClock.getDefaultClock());
+    }
+
+    /**
+     * Pompe à eau de la cafetière
+     * @param pumpingCapacity Capacité de la pompe en litres par secondes
+     * @param clock Horloge faisant passer le temps de pompage
+     */
+    public WaterPump(double pumpingCapacity, BrewClock clock){
         this.pumpingCapacity = pumpingCapacity;
+        this.clock = clock;
     }
 
     /**
@@ -26,16 +40,47 @@ public class WaterPump {
      * @throws InterruptedException Exception levée en cas de problèmes lors du sleep par le Thread
      */
     public double pumpWater(double waterVolume, WaterTank waterTank) throws InterruptedException {
-        double pumpingTime = (waterVolume / pumpingCapacity) * 1000 * 2;
+        double pumpingTime = computePumpingTime(waterVolume);
         logger.info("Pumping time : "  +  pumpingTime);
         logger.info("Pumping...");
-        Thread.sleep((long) (pumpingTime));
+        clock.sleep(pumpingTime);
         waterTank.decreaseWaterVolume(waterVolume);
         logger.info("Pumping OK");
         return pumpingTime;
     }
 
+    /**
+     * Version non bloquante de {@link #pumpWater(double, WaterTank)} : le volume, préalablement réservé avec
+     * {@link WaterTank#tryReserve(double)}, est consommé à la fin du pompage planifiée sur l'horloge.
+     * @param waterVolume Volume d'eau réservé à pomper
+     * @param waterTank Réservoir d'eau
+     * @return Future complétée avec le temps de pompage lorsque l'eau a été pompée
+     */
+    public CompletableFuture<Double> pumpWaterAsync(double waterVolume, WaterTank waterTank) {
+        double pumpingTime = computePumpingTime(waterVolume);
+        logger.info("Pumping time : "  +  pumpingTime);
+        logger.info("Pumping...");
+        return clock.delay(pumpingTime).thenApply(pumped -> {
+            waterTank.commit(waterVolume);
+            logger.info("Pumping OK");
+            return pumpingTime;
+        });
+    }
+
+    /**
+     * Calcule la durée de pompage d'un volume d'eau
+     * @param waterVolume Volume d'eau à pomper
+     * @return Temps de pompage en millisecondes multiplié par 2
+     */
+    public double computePumpingTime(double waterVolume) {
+        return (waterVolume / pumpingCapacity) * 1000 * 2;
+    }
+
     public double getPumpingCapacity() {
         return pumpingCapacity;
     }
+
+    public BrewClock getClock() {
+        return clock;
+    }
 }
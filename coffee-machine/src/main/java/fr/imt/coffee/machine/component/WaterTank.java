@@ -1,9 +1,25 @@
 package fr.imt.coffee.machine.component;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réservoir d'eau de la cafetière, utilisable sans verrou par plusieurs threads.
+ * Les volumes sont stockés en virgule fixe (microlitres) dans des compteurs atomiques.
+ * Une commande réserve d'abord son volume avec {@link #tryReserve(double)}, puis le consomme avec
+ * {@link #commit(double)} une fois pompé, ou le rend avec {@link #release(double)} si elle est abandonnée :
+ * deux commandes concurrentes ne peuvent donc pas vider le réservoir en dessous de son volume minimal.
+ */
 public class WaterTank {
+    private static final double MICROLITRES_PER_LITRE = 1_000_000;
+
     private final double maxVolume;
     private final double minVolume;
-    private double actualVolume;
+    private final long maxMicrolitres;
+    private final long minMicrolitres;
+    //Volume d'eau réellement présent dans le réservoir
+    private final AtomicLong actualMicrolitres;
+    //Volume d'eau présent et non réservé par une commande en cours
+    private final AtomicLong unreservedMicrolitres;
 
     /**
      * Réservoir d'eau de la cafetière.
@@ -14,23 +30,78 @@ public class WaterTank {
     public WaterTank(double initialVolume, double minVolume, double maxVolume){
         this.maxVolume = maxVolume;
         this.minVolume = minVolume;
-        this.actualVolume = initialVolume;
+        this.maxMicrolitres = toMicrolitres(maxVolume);
+        this.minMicrolitres = toMicrolitres(minVolume);
+        this.actualMicrolitres = new AtomicLong(toMicrolitres(initialVolume));
+        this.unreservedMicrolitres = new AtomicLong(toMicrolitres(initialVolume));
     }
 
     /**
-     * Réduit le volume d'eau du réservoir
+     * Réduit le volume d'eau du réservoir sans passer par une réservation.
+     * Aucun contrôle du volume minimal n'est fait ici, les commandes passent par {@link #tryReserve(double)}.
      * @param waterVolumeToDecrease Volume d'eau à enlever
+     * @throws IllegalArgumentException Exception levée si le volume n'est pas un nombre positif ou nul et fini
      */
     public void decreaseWaterVolume(double waterVolumeToDecrease){
-        this.actualVolume -= waterVolumeToDecrease;
+        long microlitres = toMicrolitres(checkNonNegativeVolume(waterVolumeToDecrease));
+        //On retire d'abord le volume disponible pour ne jamais laisser réserver de l'eau déjà partie
+        unreservedMicrolitres.addAndGet(-microlitres);
+        actualMicrolitres.addAndGet(-microlitres);
     }
 
     /**
-     * Augmente le volume d'eau dans le réservoir
+     * Augmente le volume d'eau dans le réservoir sans dépasser son volume maximal
      * @param waterVolumeToIncrease Volume d'eau à ajouter dans le réservoir
+     * @return Volume d'eau réellement ajouté, le surplus au-delà du volume maximal n'est pas ajouté
+     * @throws IllegalArgumentException Exception levée si le volume n'est pas un nombre positif ou nul et fini
+     */
+    public double increaseWaterVolume(double waterVolumeToIncrease){
+        long microlitres = toMicrolitres(checkNonNegativeVolume(waterVolumeToIncrease));
+        long current;
+        long added;
+        do {
+            current = actualMicrolitres.get();
+            added = Math.min(microlitres, Math.max(0, maxMicrolitres - current));
+        } while (!actualMicrolitres.compareAndSet(current, current + added));
+        //On ajoute l'eau au volume disponible seulement une fois qu'elle est dans le réservoir
+        unreservedMicrolitres.addAndGet(added);
+        return toLitres(added);
+    }
+
+    /**
+     * Réserve un volume d'eau pour une commande si le réservoir reste au-dessus de son volume minimal.
+     * La réservation est faite par compare-and-set, sans verrou.
+     * @param waterVolume Volume d'eau à réserver
+     * @return true si le volume a été réservé, false s'il n'y a pas assez d'eau
+     * @throws IllegalArgumentException Exception levée si le volume n'est pas un nombre strictement positif et fini
+     */
+    public boolean tryReserve(double waterVolume){
+        long microlitres = toMicrolitres(checkVolume(waterVolume));
+        while (true) {
+            long unreserved = unreservedMicrolitres.get();
+            if (unreserved - microlitres < minMicrolitres)
+                return false;
+            if (unreservedMicrolitres.compareAndSet(unreserved, unreserved - microlitres))
+                return true;
+        }
+    }
+
+    /**
+     * Consomme un volume d'eau préalablement réservé avec {@link #tryReserve(double)}
+     * @param waterVolume Volume d'eau réservé qui a été pompé
+     * @throws IllegalArgumentException Exception levée si le volume n'est pas un nombre strictement positif et fini
      */
-    public void increaseWaterVolume(double waterVolumeToIncrease){
-        this.actualVolume += waterVolumeToIncrease;
+    public void commit(double waterVolume){
+        actualMicrolitres.addAndGet(-toMicrolitres(checkVolume(waterVolume)));
+    }
+
+    /**
+     * Rend au réservoir un volume d'eau réservé qui ne sera finalement pas pompé
+     * @param waterVolume Volume d'eau réservé à libérer
+     * @throws IllegalArgumentException Exception levée si le volume n'est pas un nombre strictement positif et fini
+     */
+    public void release(double waterVolume){
+        unreservedMicrolitres.addAndGet(toMicrolitres(checkVolume(waterVolume)));
     }
 
     public double getMaxVolume() {
@@ -42,7 +113,50 @@ public class WaterTank {
     }
 
     public double getActualVolume() {
-        return actualVolume;
+        return toLitres(actualMicrolitres.get());
+    }
+
+    /**
+     * @return Volume d'eau réservé par les commandes en cours et pas encore pompé
+     */
+    public double getReservedVolume() {
+        return toLitres(actualMicrolitres.get() - unreservedMicrolitres.get());
     }
-}
 
+    /**
+     * @return Volume d'eau pouvant encore être réservé sans descendre sous le volume minimal
+     */
+    public double getAvailableVolume() {
+        return toLitres(Math.max(0, unreservedMicrolitres.get() - minMicrolitres));
+    }
+
+    public String toString(){
+        return getActualVolume() + " l (min " + minVolume + " l, max " + maxVolume + " l, reserved " + getReservedVolume() + " l)";
+    }
+
+    /**
+     * Un volume nul, négatif, NaN ou infini ferait monter le réservoir ou corromprait les compteurs en virgule fixe
+     */
+    private static double checkVolume(double waterVolume) {
+        if (!(waterVolume > 0) || Double.isInfinite(waterVolume))
+            throw new IllegalArgumentException("The water volume must be a positive finite number : " + waterVolume);
+        return waterVolume;
+    }
+
+    /**
+     * Ajouter ou enlever un volume nul ne change rien, mais un volume négatif inverserait l'opération
+     */
+    private static double checkNonNegativeVolume(double waterVolume) {
+        if (!(waterVolume >= 0) || Double.isInfinite(waterVolume))
+            throw new IllegalArgumentException("The water volume must be a finite, non negative number : " + waterVolume);
+        return waterVolume;
+    }
+
+    private static long toMicrolitres(double litres) {
+        return Math.round(litres * MICROLITRES_PER_LITRE);
+    }
+
+    private static double toLitres(long microlitres) {
+        return microlitres / MICROLITRES_PER_LITRE;
+    }
+}
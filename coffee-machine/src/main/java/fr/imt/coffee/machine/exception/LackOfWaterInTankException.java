@@ -2,6 +2,6 @@ package fr.imt.coffee.machine.exception;
 
 public class LackOfWaterInTankException extends Exception{
     public LackOfWaterInTankException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -2,6 +2,6 @@ package fr.imt.coffee.machine.exception;
 
 public class MachineNotPluggedException extends Exception {
     public MachineNotPluggedException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
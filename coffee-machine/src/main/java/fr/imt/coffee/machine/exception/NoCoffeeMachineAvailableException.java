@@ -0,0 +1,7 @@
+package fr.imt.coffee.machine.exception;
+
+public class NoCoffeeMachineAvailableException extends Exception {
+    public NoCoffeeMachineAvailableException(String message) {
+        super(message, null, false, false);
+    }
+}
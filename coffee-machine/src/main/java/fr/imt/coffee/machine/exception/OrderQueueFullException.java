@@ -0,0 +1,7 @@
+package fr.imt.coffee.machine.exception;
+
+public class OrderQueueFullException extends NoCoffeeMachineAvailableException {
+    public OrderQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package fr.imt.coffee.machine.failure;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+/**
+ * Chaque commande fait tomber la machine en panne avec une probabilité fixe
+ */
+public class BernoulliFailureModel implements FailureModel {
+
+    private final double failureProbability;
+    private final RandomStreams randomStreams;
+
+    /**
+     * @param failureProbability Probabilité de panne à chaque commande, entre 0 et 1
+     * @param seed Graine des tirages, pour rejouer les mêmes pannes
+     */
+    public BernoulliFailureModel(double failureProbability, long seed) {
+        if (failureProbability < 0 || failureProbability > 1)
+            throw new IllegalArgumentException("The failure probability must be between 0 and 1.");
+        this.failureProbability = failureProbability;
+        this.randomStreams = new RandomStreams(seed);
+    }
+
+    @Override
+    public boolean isFailing(CoffeeMachine coffeeMachine) {
+        return randomStreams.nextDraw(coffeeMachine.getId()).nextDouble() < failureProbability;
+    }
+
+    public double getFailureProbability() {
+        return failureProbability;
+    }
+
+    public String toString() {
+        return "Bernoulli failure model, p = " + failureProbability + ", seed " + randomStreams.getSeed();
+    }
+}
@@ -0,0 +1,16 @@
+package fr.imt.coffee.machine.failure;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+/**
+ * Modèle de panne d'une machine à café : tire au sort, à chaque commande, si la machine tombe en panne.
+ * Un modèle peut être appelé par plusieurs threads en même temps.
+ */
+public interface FailureModel {
+
+    /**
+     * @param coffeeMachine Machine qui prépare la commande
+     * @return Vrai si la machine tombe en panne
+     */
+    boolean isFailing(CoffeeMachine coffeeMachine);
+}
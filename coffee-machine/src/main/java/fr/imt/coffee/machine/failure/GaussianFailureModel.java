@@ -0,0 +1,38 @@
+package fr.imt.coffee.machine.failure;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Modèle de panne historique de la machine : un nombre est tiré suivant une loi normale centrée réduite et la machine
+ * tombe en panne si sa valeur absolue est supérieure ou égale à 1, soit une probabilité d'environ 32% (1*Omega).
+ * Les tirages se font dans un flux par machine ({@link RandomStreams}).
+ */
+public class GaussianFailureModel implements FailureModel {
+
+    private final RandomStreams randomStreams;
+
+    /**
+     * Modèle de panne dont la graine est tirée au hasard
+     */
+    public GaussianFailureModel() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * @param seed Graine des tirages, pour rejouer les mêmes pannes
+     */
+    public GaussianFailureModel(long seed) {
+        this.randomStreams = new RandomStreams(seed);
+    }
+
+    @Override
+    public boolean isFailing(CoffeeMachine coffeeMachine) {
+        return Math.abs(RandomStreams.nextGaussian(randomStreams.nextDraw(coffeeMachine.getId()))) >= 1;
+    }
+
+    public String toString() {
+        return "Gaussian failure model, seed " + randomStreams.getSeed();
+    }
+}
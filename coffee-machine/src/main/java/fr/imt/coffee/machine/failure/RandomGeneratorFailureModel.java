@@ -0,0 +1,27 @@
+package fr.imt.coffee.machine.failure;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+import java.util.Random;
+
+/**
+ * Modèle de panne gaussien tirant dans un {@link Random} donné, par exemple un mock dont la valeur de nextGaussian()
+ * est contrôlée. Le Random est partagé par tous les threads qui préparent des cafés.
+ */
+public class RandomGeneratorFailureModel implements FailureModel {
+
+    private final Random randomGenerator;
+
+    public RandomGeneratorFailureModel(Random randomGenerator) {
+        this.randomGenerator = randomGenerator;
+    }
+
+    @Override
+    public boolean isFailing(CoffeeMachine coffeeMachine) {
+        return Math.abs(randomGenerator.nextGaussian()) >= 1;
+    }
+
+    public Random getRandomGenerator() {
+        return randomGenerator;
+    }
+}
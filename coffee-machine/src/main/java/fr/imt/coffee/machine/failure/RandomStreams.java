@@ -0,0 +1,85 @@
+package fr.imt.coffee.machine.failure;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flux de nombres aléatoires par machine, tous dérivés d'une même graine.
+ * Le n-ième tirage d'une machine se fait dans un {@link SplittableRandom} dont la graine ne dépend que de la graine
+ * racine, de la clé de la machine et de n : le tirage ne prend aucun verrou, seul un compteur propre à la machine est
+ * incrémenté, et les tirages d'une machine sont les mêmes d'une exécution à l'autre quels que soient les threads,
+ * virtuels ou non, qui préparent ses cafés et l'ordre dans lequel ils sont créés.
+ */
+public class RandomStreams {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final ConcurrentMap<Long, AtomicLong> drawCounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param seed Graine dont sont dérivés tous les flux
+     */
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param key Clé du flux, par exemple l'identifiant de la machine
+     * @return Générateur du prochain tirage du flux, à n'utiliser que pour ce tirage
+     */
+    public SplittableRandom nextDraw(long key) {
+        AtomicLong drawCount = drawCounts.get(key);
+        if (drawCount == null)
+            drawCount = drawCounts.computeIfAbsent(key, newKey -> new AtomicLong());
+        return draw(key, drawCount.getAndIncrement());
+    }
+
+    /**
+     * @param key Clé du flux
+     * @param index Rang du tirage dans le flux
+     * @return Générateur du tirage de rang donné, toujours le même pour une graine, une clé et un rang donnés
+     */
+    public SplittableRandom draw(long key, long index) {
+        long streamSeed = mix64(seed + mix64(key * GOLDEN_GAMMA));
+        return new SplittableRandom(mix64(streamSeed + index * GOLDEN_GAMMA));
+    }
+
+    /**
+     * @param key Clé du flux
+     * @return Nombre de tirages faits dans le flux
+     */
+    public long getDrawCount(long key) {
+        AtomicLong drawCount = drawCounts.get(key);
+        return drawCount == null ? 0 : drawCount.get();
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Tire un nombre suivant une loi normale centrée réduite (méthode polaire de Marsaglia)
+     * @param random Générateur du tirage
+     * @return Nombre tiré
+     */
+    public static double nextGaussian(SplittableRandom random) {
+        double x;
+        double y;
+        double s;
+        do {
+            x = 2 * random.nextDouble() - 1;
+            y = 2 * random.nextDouble() - 1;
+            s = x * x + y * y;
+        } while (s >= 1 || s == 0);
+        return x * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
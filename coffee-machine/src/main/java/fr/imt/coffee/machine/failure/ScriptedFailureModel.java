@@ -0,0 +1,51 @@
+package fr.imt.coffee.machine.failure;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pannes écrites à l'avance, pour les tests : la n-ième commande donne la n-ième issue du script.
+ * Une fois le script épuisé, la machine ne tombe plus en panne, ou le script recommence s'il est cyclique.
+ */
+public class ScriptedFailureModel implements FailureModel {
+
+    private final boolean[] outcomes;
+    private final boolean isCyclic;
+    private final AtomicInteger nextOutcome = new AtomicInteger();
+
+    /**
+     * @param outcomes Issues successives des commandes, vrai pour une panne
+     */
+    public ScriptedFailureModel(boolean... outcomes) {
+        this(outcomes, false);
+    }
+
+    private ScriptedFailureModel(boolean[] outcomes, boolean isCyclic) {
+        this.outcomes = outcomes.clone();
+        this.isCyclic = isCyclic;
+    }
+
+    /**
+     * @param outcomes Issues successives des commandes, vrai pour une panne
+     * @return Modèle qui recommence le script une fois épuisé
+     */
+    public static ScriptedFailureModel cyclic(boolean... outcomes) {
+        return new ScriptedFailureModel(outcomes, true);
+    }
+
+    @Override
+    public boolean isFailing(CoffeeMachine coffeeMachine) {
+        int index = nextOutcome.getAndIncrement();
+        if (isCyclic && outcomes.length > 0)
+            index %= outcomes.length;
+        return index < outcomes.length && outcomes[index];
+    }
+
+    /**
+     * @return Nombre de commandes tirées
+     */
+    public int getDraws() {
+        return nextOutcome.get();
+    }
+}
@@ -0,0 +1,48 @@
+package fr.imt.coffee.machine.failure;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+/**
+ * Modèle d'usure : la probabilité de panne croît avec le nombre de cafés faits par la machine.
+ * La durée de vie suit une loi de Weibull : la probabilité de panne pendant le café n+1 est
+ * 1 - exp(H(n) - H(n+1)) avec H(n) = (n / vie caractéristique) ^ forme.
+ * Une forme supérieure à 1 donne une machine qui s'use, une forme de 1 une probabilité de panne constante.
+ */
+public class WearFailureModel implements FailureModel {
+
+    private final double characteristicLife;
+    private final double shape;
+    private final RandomStreams randomStreams;
+
+    /**
+     * @param characteristicLife Nombre de cafés après lequel environ 63% des machines sont tombées en panne
+     * @param shape Forme de la loi de Weibull
+     * @param seed Graine des tirages, pour rejouer les mêmes pannes
+     */
+    public WearFailureModel(double characteristicLife, double shape, long seed) {
+        if (characteristicLife <= 0 || shape <= 0)
+            throw new IllegalArgumentException("The characteristic life and the shape must be positive.");
+        this.characteristicLife = characteristicLife;
+        this.shape = shape;
+        this.randomStreams = new RandomStreams(seed);
+    }
+
+    /**
+     * @param nbCoffeeMade Nombre de cafés déjà faits par la machine
+     * @return Probabilité de panne pendant le café suivant
+     */
+    public double getFailureProbability(long nbCoffeeMade) {
+        double cumulativeHazard = Math.pow(nbCoffeeMade / characteristicLife, shape);
+        double nextCumulativeHazard = Math.pow((nbCoffeeMade + 1) / characteristicLife, shape);
+        return -Math.expm1(cumulativeHazard - nextCumulativeHazard);
+    }
+
+    @Override
+    public boolean isFailing(CoffeeMachine coffeeMachine) {
+        return randomStreams.nextDraw(coffeeMachine.getId()).nextDouble() < getFailureProbability(coffeeMachine.getNbCoffeeMade());
+    }
+
+    public String toString() {
+        return "Wear failure model, characteristic life " + characteristicLife + " coffees, shape " + shape;
+    }
+}
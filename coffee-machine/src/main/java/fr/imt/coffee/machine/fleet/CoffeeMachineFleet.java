@@ -0,0 +1,268 @@
+package fr.imt.coffee.machine.fleet;
+
+import fr.imt.coffee.machine.BrewResult;
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.clock.SystemBrewClock;
+import fr.imt.coffee.machine.exception.NoCoffeeMachineAvailableException;
+import fr.imt.coffee.machine.metrics.ThroughputStats;
+import fr.imt.coffee.machine.recovery.RecoveryManager;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.exception.CupNotEmptyException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Flotte de machines à café fonctionnant côte à côte.
+ * Chaque commande est envoyée à une machine choisie par la {@link RoutingPolicy} à partir de l'état courant des
+ * machines : commandes en cours, eau disponible, panne et branchement.
+ * Si la machine choisie tombe en panne ou ne peut plus servir la commande, celle-ci est renvoyée vers une autre machine.
+ * Avec un {@link RecoveryManager}, les machines en panne sont remises en service automatiquement, les machines qui
+ * tombent trop souvent en panne sont écartées par leur disjoncteur et une commande qui ne trouve aucune machine
+ * attend la prochaine remise en service au lieu d'échouer.
+ */
+public class CoffeeMachineFleet {
+
+    public static final Logger logger = LogManager.getLogger(CoffeeMachineFleet.class);
+
+    private final List<CoffeeMachine> coffeeMachines;
+    private final RoutingPolicy routingPolicy;
+    private final BrewClock clock;
+    private final RecoveryManager recoveryManager;
+    private final long creationTime;
+
+    /**
+     * @param routingPolicy Politique de choix de la machine pour chaque commande
+     */
+    public CoffeeMachineFleet(RoutingPolicy routingPolicy) {
+        this(routingPolicy, SystemBrewClock.getDefaultClock());
+    }
+
+    /**
+     * @param routingPolicy Politique de choix de la machine pour chaque commande
+     * @param clock Horloge des machines de la flotte, utilisée pour attendre les cafés et mesurer le débit
+     */
+    public CoffeeMachineFleet(RoutingPolicy routingPolicy, BrewClock clock) {
+        this(routingPolicy, clock, null);
+    }
+
+    /**
+     * @param routingPolicy Politique de choix de la machine pour chaque commande
+     * @param clock Horloge des machines de la flotte, utilisée pour attendre les cafés et mesurer le débit
+     * @param recoveryManager Remise en service des machines en panne, null pour laisser les machines en panne
+     */
+    public CoffeeMachineFleet(RoutingPolicy routingPolicy, BrewClock clock, RecoveryManager recoveryManager) {
+        this.coffeeMachines = new CopyOnWriteArrayList<>();
+        this.routingPolicy = routingPolicy;
+        this.clock = clock;
+        this.recoveryManager = recoveryManager;
+        this.creationTime = clock.nanoTime();
+    }
+
+    /**
+     * Ajoute une machine à café à la flotte
+     * @param coffeeMachine Machine à ajouter
+     */
+    public void addCoffeeMachine(CoffeeMachine coffeeMachine) {
+        coffeeMachines.add(coffeeMachine);
+    }
+
+    /**
+     * Retire une machine à café de la flotte, les commandes déjà acceptées par la machine sont tout de même servies
+     * @param coffeeMachine Machine à retirer
+     */
+    public void removeCoffeeMachine(CoffeeMachine coffeeMachine) {
+        coffeeMachines.remove(coffeeMachine);
+    }
+
+    /**
+     * Fait couler un café sur une machine de la flotte. Simple enveloppe bloquante autour de
+     * {@link #makeACoffeeAsync(Container, CoffeeType)}
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café dans l'énumération CoffeeType.java
+     * @return Contenant non vide avec son type de café
+     * @throws NoCoffeeMachineAvailableException Exception levée quand aucune machine de la flotte ne peut servir la commande
+     * @throws CupNotEmptyException Exception levée lorsque le contenant donné en paramètre n'est pas vide
+     * @throws InterruptedException Exception levée lorsque le Thread est interrompu pendant l'attente du café
+     */
+    public CoffeeContainer makeACoffee(Container container, CoffeeType coffeeType) throws NoCoffeeMachineAvailableException, CupNotEmptyException, InterruptedException {
+        try {
+            return clock.await(makeACoffeeAsync(container, coffeeType));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NoCoffeeMachineAvailableException)
+                throw (NoCoffeeMachineAvailableException) cause;
+            if (cause instanceof CupNotEmptyException)
+                throw (CupNotEmptyException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Fait couler un café sur une machine de la flotte sans bloquer le thread appelant.
+     * Quand la machine choisie tombe en panne, n'est plus branchée ou n'a plus assez d'eau, la commande est renvoyée
+     * vers une autre machine de la flotte.
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café dans l'énumération CoffeeType.java
+     * @return Future complétée avec le café, ou exceptionnellement avec NoCoffeeMachineAvailableException si aucune
+     * machine ne peut servir la commande ou CupNotEmptyException si le contenant n'est pas vide
+     */
+    public CompletableFuture<CoffeeContainer> makeACoffeeAsync(Container container, CoffeeType coffeeType) {
+        return route(container, coffeeType, new ArrayList<>(), 0);
+    }
+
+    private CompletableFuture<CoffeeContainer> route(Container container, CoffeeType coffeeType, List<CoffeeMachine> failedMachines, int retries) {
+        List<CoffeeMachine> candidates = getAvailableMachines(container.getCapacity(), failedMachines);
+        if (candidates.isEmpty()) {
+            CompletableFuture<Void> nextRecovery = recoveryManager == null || retries >= recoveryManager.getMaxRetries()
+                    ? null : recoveryManager.getNextRecovery();
+            if (nextRecovery != null) {
+                logger.warn("No coffee machine available, waiting for a machine to recover");
+                return nextRecovery.thenCompose(recovered -> route(container, coffeeType, new ArrayList<>(), retries + 1));
+            }
+            return CompletableFuture.failedFuture(new NoCoffeeMachineAvailableException(
+                    "No coffee machine of the fleet can make this coffee."));
+        }
+
+        CoffeeMachine coffeeMachine = routingPolicy.selectMachine(candidates, container.getCapacity());
+        //Les refus sont des issues et non des exceptions : un basculement vers une autre machine n'alloue pas d'exception
+        return coffeeMachine.brewAsync(container, coffeeType)
+                .handle((result, failure) -> {
+                    if (failure != null)
+                        return CompletableFuture.<CoffeeContainer>failedFuture(failure instanceof CompletionException ? failure.getCause() : failure);
+                    if (result.isSuccess() && result.getCoffee() != null) {
+                        if (recoveryManager != null)
+                            recoveryManager.recordSuccess(coffeeMachine);
+                        return CompletableFuture.completedFuture(result.getCoffee());
+                    }
+                    if (result.isRejected() && result.getRejectionReason() == BrewResult.RejectionReason.CONTAINER_NOT_EMPTY)
+                        return CompletableFuture.<CoffeeContainer>failedFuture(result.getRejectionReason().toException());
+                    if (!result.isRejected() && recoveryManager != null)
+                        recoveryManager.recordFailure(coffeeMachine);
+                    logger.warn("The coffee machine cannot make this coffee, failing over to another machine");
+                    failedMachines.add(coffeeMachine);
+                    return route(container, coffeeType, failedMachines, retries);
+                })
+                .thenCompose(coffee -> coffee);
+    }
+
+    /**
+     * @param waterVolume Volume d'eau nécessaire à la commande
+     * @param excludedMachines Machines à ne pas utiliser
+     * @return Machines de la flotte branchées, en état de marche, dont le disjoncteur est fermé et ayant assez d'eau
+     * disponible
+     */
+    private List<CoffeeMachine> getAvailableMachines(double waterVolume, List<CoffeeMachine> excludedMachines) {
+        List<CoffeeMachine> availableMachines = new ArrayList<>(coffeeMachines.size());
+        for (CoffeeMachine coffeeMachine : coffeeMachines) {
+            if (coffeeMachine.isPlugged()
+                    && !coffeeMachine.isOutOfOrder()
+                    && (recoveryManager == null || recoveryManager.isAvailable(coffeeMachine))
+                    && coffeeMachine.getWaterTank().getAvailableVolume() >= waterVolume
+                    && !excludedMachines.contains(coffeeMachine))
+                availableMachines.add(coffeeMachine);
+        }
+        return availableMachines;
+    }
+
+    public List<CoffeeMachine> getCoffeeMachines() {
+        return Collections.unmodifiableList(coffeeMachines);
+    }
+
+    /**
+     * @return Remise en service des machines en panne, null si la flotte n'en a pas
+     */
+    public RecoveryManager getRecoveryManager() {
+        return recoveryManager;
+    }
+
+    public RoutingPolicy getRoutingPolicy() {
+        return routingPolicy;
+    }
+
+    /**
+     * @return Nombre total de cafés faits par les machines de la flotte
+     */
+    public long getNbCoffeeMade() {
+        long nbCoffeeMade = 0;
+        for (CoffeeMachine coffeeMachine : coffeeMachines) {
+            nbCoffeeMade += coffeeMachine.getNbCoffeeMade();
+        }
+        return nbCoffeeMade;
+    }
+
+    /**
+     * @param coffeeType Type de café
+     * @return Nombre de cafés de ce type faits par les machines de la flotte
+     */
+    public long getNbCoffeeMade(CoffeeType coffeeType) {
+        return ThroughputStats.getCount(getThroughputStats(), coffeeType);
+    }
+
+    /**
+     * @param coffeeType Type de café
+     * @param window Fenêtre du rythme
+     * @return Cafés de ce type servis par seconde par la flotte sur la fenêtre
+     */
+    public double getRate(CoffeeType coffeeType, ThroughputStats.RateWindow window) {
+        return ThroughputStats.getRate(getThroughputStats(), coffeeType, window);
+    }
+
+    /**
+     * @param window Fenêtre du rythme
+     * @return Cafés servis par seconde par la flotte sur la fenêtre, tous types confondus
+     */
+    public double getRate(ThroughputStats.RateWindow window) {
+        double rate = 0;
+        for (CoffeeMachine coffeeMachine : coffeeMachines) {
+            rate += coffeeMachine.getThroughputStats().getRate(window);
+        }
+        return rate;
+    }
+
+    private List<ThroughputStats> getThroughputStats() {
+        List<ThroughputStats> throughputStats = new ArrayList<>(coffeeMachines.size());
+        for (CoffeeMachine coffeeMachine : coffeeMachines) {
+            throughputStats.add(coffeeMachine.getThroughputStats());
+        }
+        return throughputStats;
+    }
+
+    /**
+     * @return Nombre total de commandes en cours sur les machines de la flotte
+     */
+    public int getPendingOrders() {
+        int pendingOrders = 0;
+        for (CoffeeMachine coffeeMachine : coffeeMachines) {
+            pendingOrders += coffeeMachine.getPendingOrders();
+        }
+        return pendingOrders;
+    }
+
+    /**
+     * @return Débit de la flotte en cafés par seconde depuis sa création
+     */
+    public double getThroughput() {
+        double elapsedSeconds = (clock.nanoTime() - creationTime) / 1e9;
+        return elapsedSeconds <= 0 ? 0 : getNbCoffeeMade() / elapsedSeconds;
+    }
+
+    public String toString() {
+        return "Your coffee machine fleet has " + coffeeMachines.size() + " machines, " +
+                getPendingOrders() + " pending orders and made " + getNbCoffeeMade() + " coffees";
+    }
+}
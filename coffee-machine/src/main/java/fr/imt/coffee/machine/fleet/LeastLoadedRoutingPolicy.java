@@ -0,0 +1,35 @@
+package fr.imt.coffee.machine.fleet;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+import java.util.List;
+
+/**
+ * Envoie la commande à la machine qui a le moins de commandes en cours.
+ * En cas d'égalité, la machine ayant le plus d'eau disponible est choisie.
+ */
+public class LeastLoadedRoutingPolicy implements RoutingPolicy {
+
+    @Override
+    public CoffeeMachine selectMachine(List<CoffeeMachine> candidates, double waterVolume) {
+        CoffeeMachine selected = candidates.get(0);
+        for (int i = 1; i < candidates.size(); i++) {
+            CoffeeMachine candidate = candidates.get(i);
+            if (isLessLoaded(candidate, selected))
+                selected = candidate;
+        }
+        return selected;
+    }
+
+    /**
+     * Compare la charge de deux machines
+     * @return true si la première machine est moins chargée que la seconde
+     */
+    static boolean isLessLoaded(CoffeeMachine machine, CoffeeMachine other) {
+        int pendingOrders = machine.getPendingOrders();
+        int otherPendingOrders = other.getPendingOrders();
+        if (pendingOrders != otherPendingOrders)
+            return pendingOrders < otherPendingOrders;
+        return machine.getWaterTank().getAvailableVolume() > other.getWaterTank().getAvailableVolume();
+    }
+}
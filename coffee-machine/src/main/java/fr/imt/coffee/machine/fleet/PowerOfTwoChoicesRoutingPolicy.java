@@ -0,0 +1,30 @@
+package fr.imt.coffee.machine.fleet;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tire deux machines au hasard et envoie la commande à la moins chargée des deux.
+ * La répartition obtenue est presque aussi bonne que celle de {@link LeastLoadedRoutingPolicy} sans avoir à lire
+ * la charge de toutes les machines de la flotte à chaque commande.
+ */
+public class PowerOfTwoChoicesRoutingPolicy implements RoutingPolicy {
+
+    @Override
+    public CoffeeMachine selectMachine(List<CoffeeMachine> candidates, double waterVolume) {
+        int size = candidates.size();
+        if (size == 1)
+            return candidates.get(0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        //Deuxième tirage parmi les autres machines pour ne pas comparer une machine avec elle-même
+        int second = (first + 1 + random.nextInt(size - 1)) % size;
+
+        CoffeeMachine firstMachine = candidates.get(first);
+        CoffeeMachine secondMachine = candidates.get(second);
+        return LeastLoadedRoutingPolicy.isLessLoaded(secondMachine, firstMachine) ? secondMachine : firstMachine;
+    }
+}
@@ -0,0 +1,19 @@
+package fr.imt.coffee.machine.fleet;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+
+import java.util.List;
+
+/**
+ * Politique de choix de la machine qui va servir une commande dans une flotte de machines à café
+ */
+public interface RoutingPolicy {
+
+    /**
+     * Choisit une machine parmi les machines capables de servir la commande
+     * @param candidates Machines branchées, en état de marche et ayant assez d'eau disponible. Jamais vide.
+     * @param waterVolume Volume d'eau nécessaire à la commande
+     * @return Machine choisie parmi les candidates
+     */
+    CoffeeMachine selectMachine(List<CoffeeMachine> candidates, double waterVolume);
+}
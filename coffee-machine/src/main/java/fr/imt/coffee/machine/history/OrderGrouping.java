@@ -0,0 +1,96 @@
+package fr.imt.coffee.machine.history;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+
+import java.time.Instant;
+
+/**
+ * Regroupement des commandes dans un rapport de l'historique
+ */
+public enum OrderGrouping {
+    /**
+     * Par type de café
+     */
+    COFFEE_TYPE,
+    /**
+     * Par capacité du contenant, par tranche de 1 cl jusqu'à {@value #MAX_CAPACITY_CENTILITRES} cl, les contenants
+     * plus grands sont dans la dernière tranche
+     */
+    CAPACITY,
+    /**
+     * Par heure, depuis le début de la période du rapport
+     */
+    HOUR,
+    /**
+     * Par heure de la journée (UTC), toutes journées confondues
+     */
+    HOUR_OF_DAY,
+    /**
+     * Par machine à café : un groupe par identifiant de machine présent sur la période, par ordre croissant
+     */
+    MACHINE;
+
+    public static final int MAX_CAPACITY_CENTILITRES = 200;
+
+    static final long HOUR_MILLIS = 3_600_000;
+    static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    /**
+     * @param fromMillis Début de la période du rapport
+     * @param toMillis Fin exclue de la période du rapport
+     * @return Nombre de groupes du rapport, 0 par machine : les groupes sont ajoutés au fil du parcours
+     */
+    int getGroupCount(long fromMillis, long toMillis) {
+        switch (this) {
+            case COFFEE_TYPE:
+                return CoffeeType.values().length;
+            case CAPACITY:
+                return MAX_CAPACITY_CENTILITRES + 1;
+            case HOUR:
+                long hours = Math.max(1, (toMillis - fromMillis + HOUR_MILLIS - 1) / HOUR_MILLIS);
+                if (hours > Integer.MAX_VALUE / 8)
+                    throw new IllegalArgumentException("The report period is too long to be grouped by hour.");
+                return (int) hours;
+            case HOUR_OF_DAY:
+                return 24;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param fromMillis Début de la période du rapport
+     * @param toMillis Fin exclue de la période du rapport
+     * @return Durée en millisecondes couverte par chaque groupe
+     */
+    long getGroupDuration(long fromMillis, long toMillis) {
+        switch (this) {
+            case HOUR:
+                return HOUR_MILLIS;
+            case HOUR_OF_DAY:
+                return Math.max(HOUR_MILLIS, (toMillis - fromMillis) / 24);
+            default:
+                return toMillis - fromMillis;
+        }
+    }
+
+    /**
+     * @param group Groupe du rapport, identifiant de la machine pour un rapport par machine
+     * @param fromMillis Début de la période du rapport
+     * @return Nom du groupe
+     */
+    String getLabel(int group, long fromMillis) {
+        switch (this) {
+            case COFFEE_TYPE:
+                return CoffeeType.values()[group].name();
+            case CAPACITY:
+                return group == MAX_CAPACITY_CENTILITRES ? ">= " + group + " cl" : group + " cl";
+            case HOUR:
+                return Instant.ofEpochMilli(fromMillis + group * HOUR_MILLIS).toString();
+            case HOUR_OF_DAY:
+                return group + "h";
+            default:
+                return "machine " + group;
+        }
+    }
+}
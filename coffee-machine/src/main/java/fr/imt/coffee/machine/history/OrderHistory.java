@@ -0,0 +1,273 @@
+package fr.imt.coffee.machine.history;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Historique des commandes servies, rangé hors du tas Java dans des segments en colonnes projetés en mémoire
+ * ({@link OrderHistorySegment}). Une commande occupe {@value OrderHistorySegment#ROW_SIZE} octets et aucun objet :
+ * des mois de commandes tiennent dans quelques fichiers.
+ * Les ajouts se font un par un sous verrou, comme dans le journal des commandes. Les rapports ({@link #aggregate})
+ * parcourent les colonnes en parallèle sur le {@link ForkJoinPool} commun : chaque tâche cumule une tranche de lignes
+ * dans ses propres tableaux, sans allocation par ligne, puis les tâches sont fusionnées. Les segments hors de la
+ * période du rapport ne sont pas lus.
+ */
+public class OrderHistory implements Closeable {
+
+    public static final Logger logger = LogManager.getLogger(OrderHistory.class);
+
+    public static final int DEFAULT_SEGMENT_ROWS = 1 << 20;
+
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".col";
+    private static final int MIN_TASK_ROWS = 1 << 16;
+
+    private final Path directory;
+    private final int segmentRows;
+    private final List<OrderHistorySegment> segments = new CopyOnWriteArrayList<>();
+    private boolean isClosed;
+
+    /**
+     * Ouvre ou crée un historique dont les segments font {@value #DEFAULT_SEGMENT_ROWS} lignes
+     * @param directory Dossier des segments
+     * @throws IOException Exception levée si le dossier ou les segments ne peuvent pas être ouverts
+     */
+    public OrderHistory(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_ROWS);
+    }
+
+    /**
+     * Ouvre ou crée un historique. Les segments déjà présents dans le dossier sont rouverts dans l'ordre, sans être
+     * réécrits : seul l'ajout de commandes modifie le dernier segment.
+     * @param directory Dossier des segments
+     * @param segmentRows Nombre de lignes des nouveaux segments
+     * @throws IOException Exception levée si le dossier ou les segments ne peuvent pas être ouverts
+     */
+    public OrderHistory(Path directory, int segmentRows) throws IOException {
+        if (segmentRows <= 0 || segmentRows > (Integer.MAX_VALUE - OrderHistorySegment.HEADER_SIZE) / OrderHistorySegment.ROW_SIZE)
+            throw new IllegalArgumentException("Invalid number of rows per segment : " + segmentRows);
+        this.directory = Files.createDirectories(directory);
+        this.segmentRows = segmentRows;
+
+        List<Path> segmentPaths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segmentPaths::add);
+        }
+        segmentPaths.sort(null);
+        for (Path segmentPath : segmentPaths) {
+            OrderHistorySegment segment = OrderHistorySegment.open(segmentPath);
+            segments.add(segment);
+        }
+        logger.info("Order history " + directory + " opened with " + getRowCount() + " orders");
+    }
+
+    /**
+     * Ajoute une commande servie à l'historique
+     * @param timeMillis Date de la commande
+     * @param machineId Identifiant de la machine qui a servi le café
+     * @param coffeeType Type de café
+     * @param capacity Capacité du contenant en litres
+     * @param heatingNanos Durée en nanosecondes entre la commande et la fin de la chauffe
+     * @param pumpingNanos Durée en nanosecondes entre la fin de la chauffe et la fin du pompage
+     */
+    public synchronized void append(long timeMillis, int machineId, CoffeeType coffeeType, double capacity, long heatingNanos, long pumpingNanos) {
+        if (isClosed)
+            throw new IllegalStateException("The order history " + directory + " is closed.");
+        int capacityMicrolitres = (int) Math.min(Integer.MAX_VALUE, Math.round(capacity * 1e6));
+        int heatingMicros = toMicros(heatingNanos);
+        int pumpingMicros = toMicros(pumpingNanos);
+        byte coffeeTypeOrdinal = (byte) coffeeType.ordinal();
+        OrderHistorySegment segment = segments.isEmpty() ? newSegment() : segments.get(segments.size() - 1);
+        if (!segment.append(timeMillis, machineId, capacityMicrolitres, heatingMicros, pumpingMicros, coffeeTypeOrdinal)) {
+            newSegment().append(timeMillis, machineId, capacityMicrolitres, heatingMicros, pumpingMicros, coffeeTypeOrdinal);
+        }
+    }
+
+    private OrderHistorySegment newSegment() {
+        Path segmentPath = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX));
+        try {
+            OrderHistorySegment segment = OrderHistorySegment.create(segmentPath, segmentRows);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create the order history segment " + segmentPath, e);
+        }
+    }
+
+    private static int toMicros(long nanos) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, nanos / 1000));
+    }
+
+    /**
+     * @param grouping Regroupement des commandes
+     * @return Rapport de toutes les commandes de l'historique
+     */
+    public OrderReport aggregate(OrderGrouping grouping) {
+        long fromMillis = Long.MAX_VALUE;
+        long toMillis = Long.MIN_VALUE;
+        for (OrderHistorySegment segment : segments) {
+            if (segment.getRows() > 0) {
+                fromMillis = Math.min(fromMillis, segment.getMinTime());
+                toMillis = Math.max(toMillis, segment.getMaxTime() + 1);
+            }
+        }
+        return fromMillis > toMillis ? aggregate(grouping, 0, 0) : aggregate(grouping, fromMillis, toMillis);
+    }
+
+    /**
+     * Rapport des commandes passées sur une période. Les lignes sont parcourues en parallèle.
+     * @param grouping Regroupement des commandes
+     * @param fromMillis Début de la période
+     * @param toMillis Fin exclue de la période
+     * @return Rapport des commandes de la période
+     */
+    public OrderReport aggregate(OrderGrouping grouping, long fromMillis, long toMillis) {
+        int groupCount = grouping.getGroupCount(fromMillis, toMillis);
+
+        //Découpage en tranches de lignes : quelques tranches par cœur, pas moins de MIN_TASK_ROWS lignes chacune
+        List<OrderHistorySegment> scannedSegments = new ArrayList<>();
+        List<int[]> slices = new ArrayList<>();
+        long rowCount = 0;
+        for (OrderHistorySegment segment : segments) {
+            if (segment.getRows() > 0 && segment.getMaxTime() >= fromMillis && segment.getMinTime() < toMillis) {
+                scannedSegments.add(segment);
+                rowCount += segment.getRows();
+            }
+        }
+        int sliceRows = (int) Math.max(MIN_TASK_ROWS, rowCount / (4L * ForkJoinPool.getCommonPoolParallelism()));
+        for (int segmentIndex = 0; segmentIndex < scannedSegments.size(); segmentIndex++) {
+            int rows = scannedSegments.get(segmentIndex).getRows();
+            for (int firstRow = 0; firstRow < rows; firstRow += sliceRows) {
+                slices.add(new int[]{segmentIndex, firstRow, Math.min(rows, firstRow + sliceRows)});
+            }
+        }
+
+        if (slices.isEmpty())
+            return new OrderReport(grouping, fromMillis, toMillis, groupCount);
+        return ForkJoinPool.commonPool().invoke(new AggregateTask(scannedSegments, slices, 0, slices.size(),
+                grouping, fromMillis, toMillis, groupCount));
+    }
+
+    /**
+     * @return Nombre de commandes de l'historique
+     */
+    public long getRowCount() {
+        long rowCount = 0;
+        for (OrderHistorySegment segment : segments) {
+            rowCount += segment.getRows();
+        }
+        return rowCount;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Force les segments sur le disque
+     */
+    public void flush() {
+        for (OrderHistorySegment segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Force les segments sur le disque et refuse les ajouts suivants
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            isClosed = true;
+        }
+        flush();
+    }
+
+    public String toString() {
+        return "Order history " + directory + " : " + getRowCount() + " orders in " + getSegmentCount() + " segments";
+    }
+
+    /**
+     * Cumule une suite de tranches, en coupant la suite en deux tant qu'elle a plus d'une tranche
+     */
+    private static class AggregateTask extends RecursiveTask<OrderReport> {
+        private final List<OrderHistorySegment> segments;
+        private final List<int[]> slices;
+        private final int firstSlice;
+        private final int lastSlice;
+        private final OrderGrouping grouping;
+        private final long fromMillis;
+        private final long toMillis;
+        private final int groupCount;
+
+        private AggregateTask(List<OrderHistorySegment> segments, List<int[]> slices, int firstSlice, int lastSlice,
+                              OrderGrouping grouping, long fromMillis, long toMillis, int groupCount) {
+            this.segments = segments;
+            this.slices = slices;
+            this.firstSlice = firstSlice;
+            this.lastSlice = lastSlice;
+            this.grouping = grouping;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.groupCount = groupCount;
+        }
+
+        @Override
+        protected OrderReport compute() {
+            if (lastSlice - firstSlice > 1) {
+                int middleSlice = (firstSlice + lastSlice) >>> 1;
+                AggregateTask secondHalf = new AggregateTask(segments, slices, middleSlice, lastSlice, grouping, fromMillis, toMillis, groupCount);
+                secondHalf.fork();
+                OrderReport report = new AggregateTask(segments, slices, firstSlice, middleSlice, grouping, fromMillis, toMillis, groupCount).compute();
+                report.merge(secondHalf.join());
+                return report;
+            }
+            int[] slice = slices.get(firstSlice);
+            OrderReport report = new OrderReport(grouping, fromMillis, toMillis, groupCount);
+            scan(segments.get(slice[0]), slice[1], slice[2], report);
+            return report;
+        }
+
+        private void scan(OrderHistorySegment segment, int firstRow, int lastRow, OrderReport report) {
+            for (int row = firstRow; row < lastRow; row++) {
+                long time = segment.getTime(row);
+                if (time < fromMillis || time >= toMillis)
+                    continue;
+                int group;
+                switch (grouping) {
+                    case COFFEE_TYPE:
+                        group = segment.getCoffeeType(row);
+                        break;
+                    case CAPACITY:
+                        group = Math.min(OrderGrouping.MAX_CAPACITY_CENTILITRES, segment.getCapacityMicrolitres(row) / 10_000);
+                        break;
+                    case HOUR:
+                        group = (int) ((time - fromMillis) / OrderGrouping.HOUR_MILLIS);
+                        break;
+                    case HOUR_OF_DAY:
+                        group = (int) (Math.floorMod(time, OrderGrouping.DAY_MILLIS) / OrderGrouping.HOUR_MILLIS);
+                        break;
+                    default:
+                        group = report.addMachineGroup(segment.getMachineId(row));
+                }
+                report.add(group, segment.getCapacityMicrolitres(row), segment.getHeatingMicros(row), segment.getPumpingMicros(row));
+            }
+        }
+    }
+}
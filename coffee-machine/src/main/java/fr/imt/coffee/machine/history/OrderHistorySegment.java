@@ -0,0 +1,175 @@
+package fr.imt.coffee.machine.history;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Segment de l'historique des commandes : un fichier projeté en mémoire qui range un nombre fixe de lignes colonne
+ * par colonne. Chaque colonne est un tableau de primitives contigu, une agrégation ne lit donc que les colonnes dont
+ * elle a besoin.
+ *
+ * Format : un en-tête de {@value #HEADER_SIZE} octets (magic, version, capacité, nombre de lignes, première et
+ * dernière date) puis les colonnes date (long), machine (int), capacité du contenant en microlitres (int), durée
+ * de la chauffe et durée du pompage en microsecondes (int), type de café (byte).
+ */
+class OrderHistorySegment {
+
+    static final int MAGIC = 0x4F524448;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int ROW_SIZE = Long.BYTES + 4 * Integer.BYTES + Byte.BYTES;
+
+    private static final int CAPACITY_POSITION = 8;
+    private static final int ROWS_POSITION = 12;
+    private static final int MIN_TIME_POSITION = 16;
+    private static final int MAX_TIME_POSITION = 24;
+    //La version 2 ajoutait le plus grand identifiant de machine à l'en-tête, sans changer les colonnes : il est ignoré
+    private static final int MAX_MACHINE_ID_VERSION = 2;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int timeColumn;
+    private final int machineColumn;
+    private final int capacityColumn;
+    private final int heatingColumn;
+    private final int pumpingColumn;
+    private final int coffeeTypeColumn;
+    private volatile int rows;
+    private volatile long minTime;
+    private volatile long maxTime;
+
+    private OrderHistorySegment(Path path, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.timeColumn = HEADER_SIZE;
+        this.machineColumn = timeColumn + Long.BYTES * capacity;
+        this.capacityColumn = machineColumn + Integer.BYTES * capacity;
+        this.heatingColumn = capacityColumn + Integer.BYTES * capacity;
+        this.pumpingColumn = heatingColumn + Integer.BYTES * capacity;
+        this.coffeeTypeColumn = pumpingColumn + Integer.BYTES * capacity;
+    }
+
+    /**
+     * Crée un segment vide
+     * @param path Chemin du fichier du segment
+     * @param capacity Nombre de lignes du segment
+     * @return Segment vide
+     * @throws IOException Exception levée si le fichier ne peut pas être créé ou projeté en mémoire
+     */
+    static OrderHistorySegment create(Path path, int capacity) throws IOException {
+        OrderHistorySegment segment = new OrderHistorySegment(path, map(path, HEADER_SIZE + (long) ROW_SIZE * capacity), capacity);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putInt(CAPACITY_POSITION, capacity);
+        segment.minTime = Long.MAX_VALUE;
+        segment.maxTime = Long.MIN_VALUE;
+        segment.writeHeader();
+        return segment;
+    }
+
+    /**
+     * Ouvre un segment écrit précédemment
+     * @param path Chemin du fichier du segment
+     * @return Segment et ses lignes
+     * @throws IOException Exception levée si le fichier ne peut pas être projeté en mémoire ou n'est pas un segment
+     */
+    static OrderHistorySegment open(Path path) throws IOException {
+        MappedByteBuffer header = map(path, HEADER_SIZE);
+        int version = header.getInt(4);
+        if (header.getInt(0) != MAGIC || (version != VERSION && version != MAX_MACHINE_ID_VERSION))
+            throw new IOException(path + " is not an order history segment.");
+        int capacity = header.getInt(CAPACITY_POSITION);
+        OrderHistorySegment segment = new OrderHistorySegment(path, map(path, HEADER_SIZE + (long) ROW_SIZE * capacity), capacity);
+        segment.rows = Math.min(capacity, header.getInt(ROWS_POSITION));
+        segment.minTime = header.getLong(MIN_TIME_POSITION);
+        segment.maxTime = header.getLong(MAX_TIME_POSITION);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Ajoute une ligne au segment. Un seul thread écrit à la fois, les lecteurs ne voient la ligne qu'une fois le
+     * nombre de lignes mis à jour.
+     * @return Faux si le segment est plein
+     */
+    boolean append(long timeMillis, int machineId, int capacityMicrolitres, int heatingMicros, int pumpingMicros, byte coffeeType) {
+        int row = rows;
+        if (row == capacity)
+            return false;
+        buffer.putLong(timeColumn + Long.BYTES * row, timeMillis);
+        buffer.putInt(machineColumn + Integer.BYTES * row, machineId);
+        buffer.putInt(capacityColumn + Integer.BYTES * row, capacityMicrolitres);
+        buffer.putInt(heatingColumn + Integer.BYTES * row, heatingMicros);
+        buffer.putInt(pumpingColumn + Integer.BYTES * row, pumpingMicros);
+        buffer.put(coffeeTypeColumn + row, coffeeType);
+        minTime = Math.min(minTime, timeMillis);
+        maxTime = Math.max(maxTime, timeMillis);
+        rows = row + 1;
+        writeHeader();
+        return true;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(MIN_TIME_POSITION, minTime);
+        buffer.putLong(MAX_TIME_POSITION, maxTime);
+        buffer.putInt(ROWS_POSITION, rows);
+    }
+
+    long getTime(int row) {
+        return buffer.getLong(timeColumn + Long.BYTES * row);
+    }
+
+    int getMachineId(int row) {
+        return buffer.getInt(machineColumn + Integer.BYTES * row);
+    }
+
+    int getCapacityMicrolitres(int row) {
+        return buffer.getInt(capacityColumn + Integer.BYTES * row);
+    }
+
+    int getHeatingMicros(int row) {
+        return buffer.getInt(heatingColumn + Integer.BYTES * row);
+    }
+
+    int getPumpingMicros(int row) {
+        return buffer.getInt(pumpingColumn + Integer.BYTES * row);
+    }
+
+    int getCoffeeType(int row) {
+        return buffer.get(coffeeTypeColumn + row);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    Path getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,215 @@
+package fr.imt.coffee.machine.history;
+
+import java.util.Arrays;
+
+/**
+ * Rapport de débit et de latence des commandes de l'historique sur une période, groupe par groupe.
+ * Les mesures sont rangées dans des tableaux de primitives indexés par groupe : un rapport ne crée pas d'objet par
+ * commande ni par groupe.
+ * Par machine, les groupes sont les identifiants de machine rencontrés, rangés par ordre croissant : un identifiant
+ * stable, comme un numéro de série, ne fait pas grandir les tableaux au delà du nombre de machines.
+ * La latence d'une commande est la durée entre la commande et le service du café : attente et chauffe, puis attente
+ * et pompage.
+ */
+public class OrderReport {
+
+    private final OrderGrouping grouping;
+    private final long fromMillis;
+    private final long toMillis;
+    //Identifiants de machine des groupes, par ordre croissant, null si le rapport n'est pas par machine
+    private int[] machineIds;
+    private long[] counts;
+    private long[] volumes;
+    private long[] heatingTimes;
+    private long[] pumpingTimes;
+    private long[] maxLatencies;
+
+    OrderReport(OrderGrouping grouping, long fromMillis, long toMillis, int groupCount) {
+        this.grouping = grouping;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.machineIds = grouping == OrderGrouping.MACHINE ? new int[0] : null;
+        this.counts = new long[groupCount];
+        this.volumes = new long[groupCount];
+        this.heatingTimes = new long[groupCount];
+        this.pumpingTimes = new long[groupCount];
+        this.maxLatencies = new long[groupCount];
+    }
+
+    /**
+     * @param machineId Identifiant de machine
+     * @return Groupe de la machine, créé à sa première commande
+     */
+    int addMachineGroup(int machineId) {
+        int group = Arrays.binarySearch(machineIds, machineId);
+        if (group >= 0)
+            return group;
+        //Rare : une fois par machine et par tranche de lignes
+        group = -group - 1;
+        machineIds = insert(machineIds, group, machineId);
+        counts = insert(counts, group);
+        volumes = insert(volumes, group);
+        heatingTimes = insert(heatingTimes, group);
+        pumpingTimes = insert(pumpingTimes, group);
+        maxLatencies = insert(maxLatencies, group);
+        return group;
+    }
+
+    private static int[] insert(int[] values, int index, int value) {
+        int[] newValues = new int[values.length + 1];
+        System.arraycopy(values, 0, newValues, 0, index);
+        System.arraycopy(values, index, newValues, index + 1, values.length - index);
+        newValues[index] = value;
+        return newValues;
+    }
+
+    private static long[] insert(long[] values, int index) {
+        long[] newValues = new long[values.length + 1];
+        System.arraycopy(values, 0, newValues, 0, index);
+        System.arraycopy(values, index, newValues, index + 1, values.length - index);
+        return newValues;
+    }
+
+    void add(int group, int capacityMicrolitres, int heatingMicros, int pumpingMicros) {
+        counts[group]++;
+        volumes[group] += capacityMicrolitres;
+        heatingTimes[group] += heatingMicros;
+        pumpingTimes[group] += pumpingMicros;
+        maxLatencies[group] = Math.max(maxLatencies[group], (long) heatingMicros + pumpingMicros);
+    }
+
+    void merge(OrderReport report) {
+        for (int reportGroup = 0; reportGroup < report.counts.length; reportGroup++) {
+            int group = machineIds == null ? reportGroup : addMachineGroup(report.machineIds[reportGroup]);
+            counts[group] += report.counts[reportGroup];
+            volumes[group] += report.volumes[reportGroup];
+            heatingTimes[group] += report.heatingTimes[reportGroup];
+            pumpingTimes[group] += report.pumpingTimes[reportGroup];
+            maxLatencies[group] = Math.max(maxLatencies[group], report.maxLatencies[reportGroup]);
+        }
+    }
+
+    public OrderGrouping getGrouping() {
+        return grouping;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public int getGroupCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Nom du groupe : type de café, capacité, heure ou machine
+     */
+    public String getLabel(int group) {
+        return grouping.getLabel(machineIds == null ? group : machineIds[group], fromMillis);
+    }
+
+    /**
+     * @param group Groupe d'un rapport par machine
+     * @return Identifiant de la machine du groupe
+     */
+    public int getMachineId(int group) {
+        if (machineIds == null)
+            throw new IllegalStateException("The report is grouped by " + grouping + ", not by machine.");
+        return machineIds[group];
+    }
+
+    /**
+     * @param machineId Identifiant de machine
+     * @return Groupe de la machine dans un rapport par machine, -1 si elle n'a servi aucun café sur la période
+     */
+    public int getMachineGroup(int machineId) {
+        if (machineIds == null)
+            throw new IllegalStateException("The report is grouped by " + grouping + ", not by machine.");
+        return Math.max(-1, Arrays.binarySearch(machineIds, machineId));
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Nombre de cafés servis
+     */
+    public long getCount(int group) {
+        return counts[group];
+    }
+
+    /**
+     * @return Nombre de cafés servis sur la période
+     */
+    public long getTotalCount() {
+        long totalCount = 0;
+        for (long count : counts) {
+            totalCount += count;
+        }
+        return totalCount;
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Débit en cafés par heure sur la durée couverte par le groupe
+     */
+    public double getThroughput(int group) {
+        long groupDuration = grouping.getGroupDuration(fromMillis, toMillis);
+        return groupDuration <= 0 ? 0 : counts[group] * (double) OrderGrouping.HOUR_MILLIS / groupDuration;
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Volume de café servi en litres
+     */
+    public double getVolume(int group) {
+        return volumes[group] / 1e6;
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Latence moyenne en millisecondes, 0 si aucun café n'a été servi
+     */
+    public double getMeanLatency(int group) {
+        return counts[group] == 0 ? 0 : (heatingTimes[group] + pumpingTimes[group]) / 1000.0 / counts[group];
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Latence maximale en millisecondes
+     */
+    public double getMaxLatency(int group) {
+        return maxLatencies[group] / 1000.0;
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Durée moyenne en millisecondes entre la commande et la fin de la chauffe
+     */
+    public double getMeanHeatingTime(int group) {
+        return counts[group] == 0 ? 0 : heatingTimes[group] / 1000.0 / counts[group];
+    }
+
+    /**
+     * @param group Groupe du rapport
+     * @return Durée moyenne en millisecondes entre la fin de la chauffe et la fin du pompage
+     */
+    public double getMeanPumpingTime(int group) {
+        return counts[group] == 0 ? 0 : pumpingTimes[group] / 1000.0 / counts[group];
+    }
+
+    public String toString() {
+        StringBuilder report = new StringBuilder("Orders by " + grouping + " :");
+        for (int group = 0; group < counts.length; group++) {
+            if (counts[group] == 0)
+                continue;
+            report.append("\n- ").append(getLabel(group)).append(" : ").append(counts[group]).append(" coffees, ")
+                    .append(String.format("%.1f", getThroughput(group))).append(" coffees/h, mean latency ")
+                    .append(String.format("%.1f", getMeanLatency(group))).append(" ms");
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,357 @@
+package fr.imt.coffee.machine.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.imt.coffee.machine.BrewResult;
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.component.WaterTank;
+import fr.imt.coffee.machine.queue.OrderQueue;
+import fr.imt.coffee.storage.cupboard.Cupboard;
+import fr.imt.coffee.storage.cupboard.FabricCupboardContainer;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.exception.ExceptionContainerCreation;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serveur HTTP embarqué d'une machine à café, construit sur le {@link HttpServer} du JDK.
+ * <ul>
+ *     <li>{@code POST /order?container=cup&capacity=0.15&type=ARABICA} : fait couler un café</li>
+ *     <li>{@code GET /status} : état de la machine en JSON</li>
+ *     <li>{@code POST /refill?volume=1.5} : ajoute de l'eau dans le réservoir, jusqu'à le remplir sans volume</li>
+ *     <li>{@code POST /reset} : RAZ de la machine en panne</li>
+ *     <li>{@code GET /metrics} : mesures du serveur HTTP</li>
+ * </ul>
+ * Les paramètres sont lus dans l'URL ou dans un corps {@code application/x-www-form-urlencoded}.
+ * Une commande attend son café dans le thread de la requête : chaque requête a son thread virtuel quand le JDK en
+ * propose (Java 21 et plus), une attente ne coûte alors aucun thread de la plateforme ; sinon les requêtes sont
+ * servies par un pool de threads à la demande.
+ * Si la machine a une file de commandes ({@link CoffeeMachine#getOrderQueue()}), les commandes y passent.
+ * Avec un {@link Cupboard}, les contenants sont pris dans le placard ({@link #setCupboard(Cupboard)}).
+ */
+public class CoffeeMachineHttpServer implements Closeable {
+
+    public static final Logger logger = LogManager.getLogger(CoffeeMachineHttpServer.class);
+
+    public static final String NO_CONTAINER = "NO_CONTAINER";
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final CoffeeMachine coffeeMachine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final HttpServerMetrics metrics = new HttpServerMetrics();
+    private final FabricCupboardContainer fabricCupboardContainer = FabricCupboardContainer.getFabricContainerInstance();
+    private volatile Cupboard cupboard;
+
+    /**
+     * @param coffeeMachine Machine à café servie par le serveur
+     * @param address Adresse d'écoute, le port 0 choisit un port libre
+     * @throws IOException Exception levée si l'adresse ne peut pas être ouverte
+     */
+    public CoffeeMachineHttpServer(CoffeeMachine coffeeMachine, InetSocketAddress address) throws IOException {
+        this(coffeeMachine, address, newRequestExecutor());
+    }
+
+    /**
+     * @param coffeeMachine Machine à café servie par le serveur
+     * @param address Adresse d'écoute, le port 0 choisit un port libre
+     * @param executor Exécuteur des requêtes, arrêté avec le serveur
+     * @throws IOException Exception levée si l'adresse ne peut pas être ouverte
+     */
+    public CoffeeMachineHttpServer(CoffeeMachine coffeeMachine, InetSocketAddress address, ExecutorService executor) throws IOException {
+        this.coffeeMachine = coffeeMachine;
+        this.executor = executor;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        addEndpoint("/order", "POST", this::order);
+        addEndpoint("/status", "GET", parameters -> new Response(200, status()));
+        addEndpoint("/refill", "POST", this::refill);
+        addEndpoint("/reset", "POST", parameters -> {
+            coffeeMachine.reset();
+            return new Response(200, status());
+        });
+        addEndpoint("/metrics", "GET", parameters -> new Response(200, metrics()));
+    }
+
+    /**
+     * Crée l'exécuteur d'un thread virtuel par requête s'il est disponible. La fabrique est cherchée par réflexion
+     * car le projet compile encore pour Java 11.
+     * @return Exécuteur des requêtes
+     */
+    public static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads are not available, HTTP requests are served by a cached thread pool");
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "coffee-http-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Coffee machine " + coffeeMachine.getId() + " listens on " + getAddress());
+    }
+
+    /**
+     * Arrête le serveur et son exécuteur
+     * @param delaySeconds Délai maximal en secondes laissé aux requêtes en cours
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        stop(0);
+    }
+
+    /**
+     * @return Adresse d'écoute, avec le port réellement ouvert
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public HttpServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public CoffeeMachine getCoffeeMachine() {
+        return coffeeMachine;
+    }
+
+    public Cupboard getCupboard() {
+        return cupboard;
+    }
+
+    /**
+     * Sert les commandes avec les contenants du placard : une commande est refusée ({@value #NO_CONTAINER}) s'il
+     * n'a plus de contenant propre du type et de la capacité demandés
+     * @param cupboard Placard, null pour créer un contenant neuf à chaque commande
+     */
+    public void setCupboard(Cupboard cupboard) {
+        this.cupboard = cupboard;
+    }
+
+    private void addEndpoint(String path, String method, Endpoint endpoint) {
+        server.createContext(path, exchange -> {
+            long startTime = System.nanoTime();
+            InetSocketAddress remoteAddress = exchange.getRemoteAddress();
+            metrics.recordRequestStart(remoteAddress, startTime);
+            Response response;
+            try {
+                if (!path.equals(exchange.getRequestURI().getPath()))
+                    response = error(404, "Unknown path " + exchange.getRequestURI().getPath());
+                else if (!method.equals(exchange.getRequestMethod()))
+                    response = error(405, "Method " + exchange.getRequestMethod() + " not allowed, use " + method);
+                else
+                    response = endpoint.handle(readParameters(exchange));
+            } catch (IllegalArgumentException e) {
+                response = error(400, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response = error(503, "The server is stopping");
+            } catch (Exception e) {
+                logger.error("HTTP request " + exchange.getRequestURI() + " failed : " + e);
+                response = error(500, e.toString());
+            }
+            //Compté avant l'envoi : un client qui a reçu sa réponse la voit dans les mesures
+            boolean isConnectionClosed = "close".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Connection"));
+            metrics.recordRequestEnd(remoteAddress, isConnectionClosed, response.statusCode, startTime, System.nanoTime());
+            send(exchange, response);
+        });
+    }
+
+    private Response order(Map<String, String> parameters) throws InterruptedException, ExecutionException {
+        String containerName = requireParameter(parameters, "container");
+        double capacity = Double.parseDouble(requireParameter(parameters, "capacity"));
+        //Écrit pour refuser aussi NaN
+        if (!(capacity > 0) || Double.isInfinite(capacity))
+            throw new IllegalArgumentException("The capacity must be a positive number of litres");
+        CoffeeType coffeeType = CoffeeType.valueOf(requireParameter(parameters, "type").toUpperCase(Locale.ROOT));
+        ContainerKind containerKind;
+        try {
+            containerKind = fabricCupboardContainer.getContainerKind(containerName);
+        } catch (ExceptionContainerCreation e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+
+        Cupboard currentCupboard = cupboard;
+        Container container;
+        if (currentCupboard == null) {
+            container = fabricCupboardContainer.getContainer(containerKind, capacity);
+        } else {
+            //Admission sans verrou : une commande sans contenant propre est refusée avant d'attendre la machine
+            container = currentCupboard.isAvailable(containerKind, capacity) ? currentCupboard.take(containerKind, capacity) : null;
+            if (container == null)
+                return new Response(503, new JsonObject()
+                        .add("container", containerName)
+                        .add("capacity", capacity)
+                        .add("type", coffeeType.name())
+                        .add("served", false)
+                        .add("reason", NO_CONTAINER)
+                        .add("message", "No clean " + containerName + " of " + capacity + " l in the cupboard."));
+        }
+
+        OrderQueue orderQueue = coffeeMachine.getOrderQueue();
+        BrewResult result;
+        boolean served = false;
+        try {
+            result = orderQueue != null
+                    ? coffeeMachine.getClock().await(orderQueue.submit(container, coffeeType))
+                    : coffeeMachine.brew(container, coffeeType);
+            served = result.isSuccess();
+        } finally {
+            //Le contenant d'une commande non servie, refusée, interrompue ou en échec, est resté propre : il retourne au placard
+            if (currentCupboard != null && !served)
+                currentCupboard.returnContainer(containerKind, container);
+        }
+
+        JsonObject json = new JsonObject()
+                .add("container", containerName)
+                .add("capacity", capacity)
+                .add("type", coffeeType.name())
+                .add("served", result.isSuccess());
+        if (result.isSuccess())
+            return new Response(200, json);
+        if (result.isRejected()) {
+            BrewResult.RejectionReason reason = result.getRejectionReason();
+            json.add("reason", reason.name()).add("message", reason.getMessage());
+            return new Response(reason == BrewResult.RejectionReason.CONTAINER_NOT_EMPTY ? 409 : 503, json);
+        }
+        return new Response(503, json.add("reason", "OUT_OF_ORDER").add("message", "The coffee machine is out of order."));
+    }
+
+    private Response refill(Map<String, String> parameters) {
+        WaterTank waterTank = coffeeMachine.getWaterTank();
+        String volume = parameters.get("volume");
+        double waterVolume = volume != null ? Double.parseDouble(volume) : waterTank.getMaxVolume() - waterTank.getActualVolume();
+        if (!(waterVolume >= 0) || Double.isInfinite(waterVolume))
+            throw new IllegalArgumentException("The water volume must be a finite, non negative number of litres");
+        double addedVolume = coffeeMachine.addWaterInTank(waterVolume);
+        return new Response(200, new JsonObject()
+                .add("addedVolume", addedVolume)
+                .add("waterVolume", waterTank.getActualVolume()));
+    }
+
+    /**
+     * @return Données de {@link CoffeeMachine#toString()} en JSON
+     */
+    private JsonObject status() {
+        WaterTank waterTank = coffeeMachine.getWaterTank();
+        return new JsonObject()
+                .add("id", coffeeMachine.getId())
+                .add("waterTank", new JsonObject()
+                        .add("volume", waterTank.getActualVolume())
+                        .add("minVolume", waterTank.getMinVolume())
+                        .add("maxVolume", waterTank.getMaxVolume())
+                        .add("reservedVolume", waterTank.getReservedVolume()))
+                .add("pumpingCapacity", coffeeMachine.getWaterPump().getPumpingCapacity())
+                .add("resistancePower", coffeeMachine.getElectricalResistance().getPower())
+                .add("plugged", coffeeMachine.isPlugged())
+                .add("outOfOrder", coffeeMachine.isOutOfOrder())
+                .add("pendingOrders", coffeeMachine.getPendingOrders())
+                .add("nbCoffeeMade", coffeeMachine.getNbCoffeeMade());
+    }
+
+    private JsonObject metrics() {
+        return new JsonObject()
+                .add("acceptedConnections", metrics.getAcceptedConnections())
+                .add("openConnections", metrics.getOpenConnections())
+                .add("requests", metrics.getRequests())
+                .add("activeRequests", metrics.getActiveRequests())
+                .add("maxActiveRequests", metrics.getMaxActiveRequests())
+                .add("responses2xx", metrics.getResponses(2))
+                .add("responses4xx", metrics.getResponses(4))
+                .add("responses5xx", metrics.getResponses(5))
+                .add("latencyP50Millis", metrics.getLatencyHistogram().getPercentile(50) / 1e6)
+                .add("latencyP99Millis", metrics.getLatencyHistogram().getPercentile(99) / 1e6)
+                .add("latencyMaxMillis", metrics.getLatencyHistogram().getMax() / 1e6);
+    }
+
+    private static String requireParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty())
+            throw new IllegalArgumentException("Missing parameter " + name);
+        return value;
+    }
+
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parseParameters(exchange.getRequestURI().getRawQuery(), parameters);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] content = body.readAllBytes();
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded"))
+                parseParameters(new String(content, StandardCharsets.UTF_8), parameters);
+        }
+        return parameters;
+    }
+
+    private static void parseParameters(String query, Map<String, String> parameters) {
+        if (query == null || query.isEmpty())
+            return;
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Response error(int statusCode, String message) {
+        return new Response(statusCode, new JsonObject().add("error", message));
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(response.statusCode, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Traitement d'une requête à partir de ses paramètres
+     */
+    private interface Endpoint {
+        Response handle(Map<String, String> parameters) throws Exception;
+    }
+
+    private static class Response {
+        private final int statusCode;
+        private final JsonObject body;
+
+        private Response(int statusCode, JsonObject body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package fr.imt.coffee.machine.http;
+
+import fr.imt.coffee.machine.metrics.LatencyHistogram;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesures du serveur HTTP : connexions, requêtes en cours, réponses par classe de statut et latences des requêtes.
+ * Le {@code HttpServer} du JDK ne signale ni l'ouverture ni la fermeture des connexions : une connexion est reconnue
+ * à l'adresse et au port du client, et considérée comme fermée après une requête {@code Connection: close} ou
+ * lorsqu'elle est restée inactive plus longtemps que le délai d'inactivité du serveur.
+ */
+public class HttpServerMetrics {
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 30_000;
+
+    private static final int PRUNE_INTERVAL = 1024;
+
+    private final long idleTimeoutNanos;
+    private final Map<InetSocketAddress, Long> lastRequestByConnection = new ConcurrentHashMap<>();
+    private final LongAdder acceptedConnections = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final LongAccumulator maxActiveRequests = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] responsesByStatusClass = new LongAdder[6];
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    public HttpServerMetrics() {
+        this(DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param idleTimeoutMillis Délai en millisecondes après lequel une connexion inactive est considérée comme fermée
+     */
+    public HttpServerMetrics(long idleTimeoutMillis) {
+        this.idleTimeoutNanos = idleTimeoutMillis * 1_000_000;
+        for (int i = 0; i < responsesByStatusClass.length; i++) {
+            responsesByStatusClass[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Compte le début d'une requête
+     * @param remoteAddress Adresse et port du client
+     * @param startTime Date de début de la requête en nanosecondes
+     */
+    void recordRequestStart(InetSocketAddress remoteAddress, long startTime) {
+        requests.increment();
+        maxActiveRequests.accumulate(activeRequests.incrementAndGet());
+        if (remoteAddress != null && lastRequestByConnection.put(remoteAddress, startTime) == null) {
+            acceptedConnections.increment();
+            if (acceptedConnections.sum() % PRUNE_INTERVAL == 0)
+                pruneIdleConnections(startTime);
+        }
+    }
+
+    /**
+     * Compte la fin d'une requête
+     * @param remoteAddress Adresse et port du client
+     * @param isConnectionClosed Vrai si le client a demandé la fermeture de la connexion
+     * @param statusCode Statut HTTP de la réponse
+     * @param startTime Date de début de la requête en nanosecondes
+     * @param endTime Date de fin de la requête en nanosecondes
+     */
+    void recordRequestEnd(InetSocketAddress remoteAddress, boolean isConnectionClosed, int statusCode, long startTime, long endTime) {
+        activeRequests.decrementAndGet();
+        responsesByStatusClass[Math.min(Math.max(statusCode / 100, 0), 5)].increment();
+        latencyHistogram.record(endTime - startTime);
+        if (remoteAddress != null) {
+            if (isConnectionClosed)
+                lastRequestByConnection.remove(remoteAddress);
+            else
+                lastRequestByConnection.put(remoteAddress, endTime);
+        }
+    }
+
+    private void pruneIdleConnections(long now) {
+        lastRequestByConnection.values().removeIf(lastRequest -> now - lastRequest > idleTimeoutNanos);
+    }
+
+    /**
+     * @return Nombre de connexions ouvertes par les clients depuis le démarrage
+     */
+    public long getAcceptedConnections() {
+        return acceptedConnections.sum();
+    }
+
+    /**
+     * @return Nombre estimé de connexions ouvertes
+     */
+    public int getOpenConnections() {
+        pruneIdleConnections(System.nanoTime());
+        return lastRequestByConnection.size();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+
+    /**
+     * @return Plus grand nombre de requêtes servies en même temps
+     */
+    public long getMaxActiveRequests() {
+        return maxActiveRequests.get();
+    }
+
+    /**
+     * @param statusClass Classe de statut, par exemple 2 pour les réponses 2xx
+     * @return Nombre de réponses de la classe
+     */
+    public long getResponses(int statusClass) {
+        return responsesByStatusClass[statusClass].sum();
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    public String toString() {
+        return "HTTP server : " + getRequests() + " requests (" + getActiveRequests() + " active), "
+                + getAcceptedConnections() + " connections accepted, " + getOpenConnections() + " open";
+    }
+}
@@ -0,0 +1,66 @@
+package fr.imt.coffee.machine.http;
+
+/**
+ * Écriture minimale d'un objet JSON plat ou imbriqué, sans dépendance externe
+ */
+class JsonObject {
+
+    private final StringBuilder json = new StringBuilder("{");
+
+    JsonObject add(String name, String value) {
+        appendName(name);
+        if (value == null) {
+            json.append("null");
+            return this;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if (character == '"' || character == '\\')
+                json.append('\\').append(character);
+            else if (character == '\n')
+                json.append("\\n");
+            else if (character < 0x20)
+                json.append(String.format("\\u%04x", (int) character));
+            else
+                json.append(character);
+        }
+        json.append('"');
+        return this;
+    }
+
+    JsonObject add(String name, double value) {
+        appendName(name);
+        //NaN et l'infini n'existent pas en JSON
+        json.append(Double.isFinite(value) ? String.valueOf(value) : "null");
+        return this;
+    }
+
+    JsonObject add(String name, long value) {
+        appendName(name);
+        json.append(value);
+        return this;
+    }
+
+    JsonObject add(String name, boolean value) {
+        appendName(name);
+        json.append(value);
+        return this;
+    }
+
+    JsonObject add(String name, JsonObject value) {
+        appendName(name);
+        json.append(value);
+        return this;
+    }
+
+    private void appendName(String name) {
+        if (json.length() > 1)
+            json.append(',');
+        json.append('"').append(name).append("\":");
+    }
+
+    public String toString() {
+        return json + "}";
+    }
+}
@@ -0,0 +1,34 @@
+package fr.imt.coffee.machine.journal;
+
+/**
+ * Types des enregistrements du journal d'une machine à café
+ */
+public enum JournalRecordType {
+    /** État complet de la machine : nombre de cafés faits, volume d'eau du réservoir et panne */
+    SNAPSHOT,
+    /** Café servi : volume d'eau consommé et type de café */
+    BREW,
+    /** Eau ajoutée dans le réservoir : volume réellement ajouté */
+    REFILL,
+    /** Changement de l'état de panne de la machine */
+    OUT_OF_ORDER,
+    /** RAZ de la machine */
+    RESET;
+
+    private static final JournalRecordType[] VALUES = values();
+
+    /**
+     * @return Code écrit dans le journal, 0 est réservé à la zone vide du fichier
+     */
+    int getCode() {
+        return ordinal() + 1;
+    }
+
+    /**
+     * @param code Code lu dans le journal
+     * @return Type correspondant, null si le code ne correspond à aucun type
+     */
+    static JournalRecordType fromCode(int code) {
+        return code >= 1 && code <= VALUES.length ? VALUES[code - 1] : null;
+    }
+}
@@ -0,0 +1,45 @@
+package fr.imt.coffee.machine.journal;
+
+/**
+ * État d'une machine à café reconstruit en rejouant son journal
+ */
+public class JournalState {
+
+    private final long nbCoffeeMade;
+    private final double waterVolume;
+    private final boolean isOutOfOrder;
+    private final long replayedRecords;
+
+    JournalState(long nbCoffeeMade, double waterVolume, boolean isOutOfOrder, long replayedRecords) {
+        this.nbCoffeeMade = nbCoffeeMade;
+        this.waterVolume = waterVolume;
+        this.isOutOfOrder = isOutOfOrder;
+        this.replayedRecords = replayedRecords;
+    }
+
+    public long getNbCoffeeMade() {
+        return nbCoffeeMade;
+    }
+
+    /**
+     * @return Volume d'eau du réservoir en litres
+     */
+    public double getWaterVolume() {
+        return waterVolume;
+    }
+
+    public boolean isOutOfOrder() {
+        return isOutOfOrder;
+    }
+
+    /**
+     * @return Nombre d'enregistrements rejoués après le dernier snapshot
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    public String toString() {
+        return nbCoffeeMade + " coffees made, " + waterVolume + " L in the water tank, out of order : " + isOutOfOrder;
+    }
+}
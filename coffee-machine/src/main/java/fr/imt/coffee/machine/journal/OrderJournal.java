@@ -0,0 +1,405 @@
+package fr.imt.coffee.machine.journal;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal des événements d'une machine à café : cafés servis, remplissages du réservoir, pannes et RAZ.
+ * Le journal est un fichier en ajout seul projeté en mémoire : un ajout écrit un enregistrement de taille fixe dans
+ * la projection, sans appel système, et ne coûte que quelques centaines de nanosecondes.
+ * Les écritures sont rendues durables par lot (group commit) : un thread dédié au journal force périodiquement
+ * les pages modifiées sur le disque, sans occuper l'ordonnanceur des cafés, {@link #flush()} permet de le faire
+ * immédiatement.
+ * Au redémarrage, {@link #replay()} reconstruit l'état de la machine à partir du dernier snapshot et des
+ * enregistrements écrits après lui. Le journal retient la position de ce snapshot : le rejeu ne relit pas les
+ * enregistrements précédents, et {@link #compact()} les supprime du fichier. Le compactage est fait automatiquement
+ * quand la projection est pleine et que le dernier snapshot en libère au moins la moitié.
+ *
+ * Format d'un enregistrement de {@value #RECORD_SIZE} octets : code du type (int), somme de contrôle (int),
+ * numéro de séquence (long) et deux valeurs (long). La lecture s'arrête au premier enregistrement vide, mal numéroté
+ * ou dont la somme de contrôle est fausse : un enregistrement écrit à moitié lors d'un arrêt brutal est ignoré, et
+ * tout ce qui le suit est effacé à l'ouverture avant d'être écrasé par les ajouts suivants.
+ */
+public class OrderJournal implements Closeable {
+
+    public static final Logger logger = LogManager.getLogger(OrderJournal.class);
+
+    public static final int RECORD_SIZE = 32;
+    public static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+    public static final long DEFAULT_GROUP_COMMIT_MILLIS = 10;
+
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / RECORD_SIZE;
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final Path path;
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int writePosition;
+    private int snapshotPosition = -1;
+    private long nextSequence;
+    private long compactions;
+    private boolean isClosed;
+    private volatile long durableSequence;
+
+    /**
+     * Ouvre ou crée un journal rendu durable toutes les {@value #DEFAULT_GROUP_COMMIT_MILLIS} ms
+     * @param path Chemin du fichier du journal
+     * @throws IOException Exception levée si le fichier ne peut pas être ouvert ou projeté en mémoire
+     */
+    public OrderJournal(Path path) throws IOException {
+        this(path, DEFAULT_INITIAL_CAPACITY, DEFAULT_GROUP_COMMIT_MILLIS);
+    }
+
+    /**
+     * Ouvre ou crée un journal. Les enregistrements déjà présents sont relus pour retrouver la fin du journal.
+     * @param path Chemin du fichier du journal
+     * @param initialCapacity Nombre d'enregistrements projetés en mémoire à l'ouverture, la projection double ensuite à chaque fois qu'elle est pleine
+     * @param groupCommitMillis Intervalle en millisecondes entre deux mises sur disque, 0 pour ne les faire que par {@link #flush()}
+     * @throws IOException Exception levée si le fichier ne peut pas être ouvert ou projeté en mémoire
+     */
+    public OrderJournal(Path path, int initialCapacity, long groupCommitMillis) throws IOException {
+        if (initialCapacity <= 0 || initialCapacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("The initial capacity must be between 1 and " + MAX_CAPACITY + " records.");
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existingRecords = channel.size() / RECORD_SIZE;
+        this.capacity = (int) Math.min(MAX_CAPACITY, Math.max(initialCapacity, existingRecords));
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+
+        //Recherche de la fin du journal : premier enregistrement invalide
+        long sequence = 1;
+        int position = 0;
+        while (position < capacity && isValidRecord(position, sequence)) {
+            if (buffer.getInt(position * RECORD_SIZE) == JournalRecordType.SNAPSHOT.getCode())
+                snapshotPosition = position;
+            position++;
+            sequence++;
+        }
+        this.writePosition = position;
+        this.nextSequence = sequence;
+        this.durableSequence = sequence - 1;
+        clearTail();
+
+        if (groupCommitMillis > 0) {
+            //Un force() peut bloquer plusieurs millisecondes : il ne doit pas retarder les cafés planifiés
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-journal-flusher-" + path.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleAtFixedRate(this::groupCommit, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Efface les octets situés après la fin du journal. Après un arrêt brutal, des enregistrements valides d'une
+     * exécution précédente peuvent suivre l'enregistrement écrit à moitié : les ajouts suivants n'en écrasent qu'une
+     * partie, et ceux qui restent, bien numérotés, seraient rejoués à l'ouverture suivante.
+     */
+    private void clearTail() {
+        int clearedRecords = 0;
+        for (int position = writePosition; position < capacity; position++) {
+            int offset = position * RECORD_SIZE;
+            if (buffer.getLong(offset) == 0 && buffer.getLong(offset + 8) == 0
+                    && buffer.getLong(offset + 16) == 0 && buffer.getLong(offset + 24) == 0)
+                continue;
+            for (int field = 0; field < RECORD_SIZE; field += Long.BYTES) {
+                buffer.putLong(offset + field, 0);
+            }
+            clearedRecords++;
+        }
+        if (clearedRecords > 0) {
+            buffer.force();
+            logger.warn("Journal " + path + " : " + clearedRecords + " records after the end of the journal cleared");
+        }
+    }
+
+    /**
+     * Ajoute un café servi au journal
+     * @param coffeeType Type de café
+     * @param waterVolume Volume d'eau consommé en litres
+     */
+    public void appendBrew(CoffeeType coffeeType, double waterVolume) {
+        append(JournalRecordType.BREW, Double.doubleToRawLongBits(waterVolume), coffeeType.ordinal());
+    }
+
+    /**
+     * Ajoute un remplissage du réservoir au journal
+     * @param waterVolume Volume d'eau réellement ajouté en litres
+     */
+    public void appendRefill(double waterVolume) {
+        append(JournalRecordType.REFILL, Double.doubleToRawLongBits(waterVolume), 0);
+    }
+
+    /**
+     * Ajoute un changement de l'état de panne au journal
+     * @param isOutOfOrder Nouvel état de panne de la machine
+     */
+    public void appendOutOfOrder(boolean isOutOfOrder) {
+        append(JournalRecordType.OUT_OF_ORDER, isOutOfOrder ? 1 : 0, 0);
+    }
+
+    /**
+     * Ajoute une RAZ de la machine au journal
+     */
+    public void appendReset() {
+        append(JournalRecordType.RESET, 0, 0);
+    }
+
+    /**
+     * Ajoute l'état complet de la machine au journal : le rejeu repart du dernier snapshot
+     * @param nbCoffeeMade Nombre de cafés faits par la machine
+     * @param waterVolume Volume d'eau du réservoir en litres
+     * @param isOutOfOrder État de panne de la machine
+     */
+    public void appendSnapshot(long nbCoffeeMade, double waterVolume, boolean isOutOfOrder) {
+        append(JournalRecordType.SNAPSHOT, Double.doubleToRawLongBits(waterVolume), nbCoffeeMade << 1 | (isOutOfOrder ? 1 : 0));
+    }
+
+    private synchronized void append(JournalRecordType type, long firstValue, long secondValue) {
+        if (isClosed)
+            throw new IllegalStateException("The journal " + path + " is closed.");
+        if (writePosition == capacity)
+            grow();
+
+        long sequence = nextSequence++;
+        int offset = writePosition++ * RECORD_SIZE;
+        buffer.putLong(offset + 8, sequence);
+        buffer.putLong(offset + 16, firstValue);
+        buffer.putLong(offset + 24, secondValue);
+        buffer.putInt(offset + 4, checksum(type.getCode(), sequence, firstValue, secondValue));
+        //Le type est écrit en dernier : tant qu'il vaut 0 l'enregistrement est ignoré à la relecture
+        buffer.putInt(offset, type.getCode());
+        if (type == JournalRecordType.SNAPSHOT)
+            snapshotPosition = offset / RECORD_SIZE;
+    }
+
+    private void grow() {
+        //Compacter plutôt que grossir si le dernier snapshot libère au moins la moitié de la projection
+        if (snapshotPosition >= capacity / 2 || (capacity == MAX_CAPACITY && snapshotPosition > 0)) {
+            compactFromSnapshot();
+            return;
+        }
+        if (capacity == MAX_CAPACITY)
+            throw new IllegalStateException("The journal " + path + " is full.");
+        int newCapacity = (int) Math.min(MAX_CAPACITY, 2L * capacity);
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) newCapacity * RECORD_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("The journal " + path + " cannot grow.", e);
+        }
+        capacity = newCapacity;
+    }
+
+    /**
+     * Supprime du fichier les enregistrements antérieurs au dernier snapshot, inutiles au rejeu.
+     * Les enregistrements conservés sont écrits dans un nouveau fichier qui remplace l'ancien par un renommage
+     * atomique : un arrêt brutal pendant le compactage laisse l'ancien journal intact.
+     * @return Nombre d'enregistrements supprimés, 0 si le journal ne contient pas de snapshot
+     */
+    public synchronized long compact() {
+        if (isClosed)
+            throw new IllegalStateException("The journal " + path + " is closed.");
+        if (snapshotPosition <= 0)
+            return 0;
+        return compactFromSnapshot();
+    }
+
+    private int compactFromSnapshot() {
+        int removedRecords = snapshotPosition;
+        int keptRecords = writePosition - snapshotPosition;
+        Path compactedPath = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            try (FileChannel compacted = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                //Les enregistrements conservés sont renumérotés à partir de 1, comme dans un journal neuf
+                ByteBuffer records = ByteBuffer.allocate(Math.min(keptRecords, 1024) * RECORD_SIZE);
+                for (int position = 0; position < keptRecords; position++) {
+                    int offset = (snapshotPosition + position) * RECORD_SIZE;
+                    int code = buffer.getInt(offset);
+                    long sequence = position + 1;
+                    long firstValue = buffer.getLong(offset + 16);
+                    long secondValue = buffer.getLong(offset + 24);
+                    records.putInt(code).putInt(checksum(code, sequence, firstValue, secondValue))
+                            .putLong(sequence).putLong(firstValue).putLong(secondValue);
+                    if (!records.hasRemaining() || position == keptRecords - 1) {
+                        records.flip();
+                        while (records.hasRemaining())
+                            compacted.write(records);
+                        records.clear();
+                    }
+                }
+                compacted.force(true);
+            }
+            channel.close();
+            Files.move(compactedPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        } catch (IOException e) {
+            isClosed = true;
+            throw new IllegalStateException("The journal " + path + " cannot be compacted.", e);
+        }
+        writePosition = keptRecords;
+        snapshotPosition = 0;
+        nextSequence = keptRecords + 1;
+        durableSequence = keptRecords;
+        compactions++;
+        logger.info("Journal " + path + " compacted : " + removedRecords + " records removed, " + keptRecords + " kept");
+        return removedRecords;
+    }
+
+    /**
+     * Force sur le disque tous les enregistrements ajoutés jusqu'ici
+     */
+    public void flush() {
+        MappedByteBuffer bufferToForce;
+        long appendedSequence;
+        long compactionCount;
+        synchronized (this) {
+            if (isClosed)
+                return;
+            bufferToForce = buffer;
+            appendedSequence = nextSequence - 1;
+            compactionCount = compactions;
+        }
+        if (appendedSequence == durableSequence)
+            return;
+        //La mise sur disque se fait hors du verrou : les ajouts continuent pendant ce temps
+        bufferToForce.force();
+        synchronized (this) {
+            //Un compactage pendant la mise sur disque a renuméroté les enregistrements
+            if (compactionCount == compactions)
+                durableSequence = Math.max(durableSequence, appendedSequence);
+        }
+    }
+
+    private void groupCommit() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Unable to flush the journal " + path, e);
+        }
+    }
+
+    /**
+     * Rejoue le journal : part du dernier snapshot puis applique les enregistrements écrits après lui
+     * @return État de la machine à la fin du journal, machine neuve si le journal est vide
+     */
+    public synchronized JournalState replay() {
+        long nbCoffeeMade = 0;
+        double waterVolume = 0;
+        boolean isOutOfOrder = false;
+        long replayedRecords = 0;
+
+        //Les enregistrements antérieurs au dernier snapshot sont écrasés par lui : inutile de les relire
+        for (int position = Math.max(0, snapshotPosition); position < writePosition; position++) {
+            int offset = position * RECORD_SIZE;
+            JournalRecordType type = JournalRecordType.fromCode(buffer.getInt(offset));
+            long firstValue = buffer.getLong(offset + 16);
+            long secondValue = buffer.getLong(offset + 24);
+            replayedRecords++;
+            switch (type) {
+                case SNAPSHOT:
+                    waterVolume = Double.longBitsToDouble(firstValue);
+                    nbCoffeeMade = secondValue >>> 1;
+                    isOutOfOrder = (secondValue & 1) == 1;
+                    replayedRecords = 0;
+                    break;
+                case BREW:
+                    waterVolume -= Double.longBitsToDouble(firstValue);
+                    nbCoffeeMade++;
+                    break;
+                case REFILL:
+                    waterVolume += Double.longBitsToDouble(firstValue);
+                    break;
+                case OUT_OF_ORDER:
+                    isOutOfOrder = firstValue == 1;
+                    break;
+                case RESET:
+                    isOutOfOrder = false;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journal record type " + type);
+            }
+        }
+        return new JournalState(nbCoffeeMade, waterVolume, isOutOfOrder, replayedRecords);
+    }
+
+    private boolean isValidRecord(int position, long expectedSequence) {
+        int offset = position * RECORD_SIZE;
+        int code = buffer.getInt(offset);
+        if (JournalRecordType.fromCode(code) == null)
+            return false;
+        long sequence = buffer.getLong(offset + 8);
+        long firstValue = buffer.getLong(offset + 16);
+        long secondValue = buffer.getLong(offset + 24);
+        return sequence == expectedSequence
+                && buffer.getInt(offset + 4) == checksum(code, sequence, firstValue, secondValue);
+    }
+
+    private static int checksum(int code, long sequence, long firstValue, long secondValue) {
+        long hash = (code * MIX) ^ sequence;
+        hash = (hash * MIX) ^ firstValue;
+        hash = (hash * MIX) ^ secondValue;
+        hash *= MIX;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * @return Nombre d'enregistrements du journal
+     */
+    public synchronized long getRecordCount() {
+        return writePosition;
+    }
+
+    /**
+     * @return Nombre d'enregistrements forcés sur le disque
+     */
+    public long getDurableRecordCount() {
+        return durableSequence;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Arrête la mise sur disque périodique, force les derniers enregistrements sur le disque puis ferme le fichier
+     * @throws IOException Exception levée si le fichier ne peut pas être fermé
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null)
+            flusher.shutdown();
+        flush();
+        synchronized (this) {
+            if (isClosed)
+                return;
+            isClosed = true;
+            channel.close();
+        }
+    }
+
+    public String toString() {
+        return path + " : " + getRecordCount() + " records, " + getDurableRecordCount() + " on disk";
+    }
+}
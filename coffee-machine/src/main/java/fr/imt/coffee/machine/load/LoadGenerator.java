@@ -0,0 +1,154 @@
+package fr.imt.coffee.machine.load;
+
+import fr.imt.coffee.machine.BrewResult;
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.exception.NoCoffeeMachineAvailableException;
+import fr.imt.coffee.machine.fleet.CoffeeMachineFleet;
+import fr.imt.coffee.machine.queue.OrderQueue;
+import fr.imt.coffee.storage.cupboard.FabricCupboardContainer;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.exception.CupNotEmptyException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Rejoue une charge de commandes sur une machine, une flotte ou les files de plusieurs machines, en simulation sur
+ * une {@link VirtualBrewClock}. La charge est ouverte : chaque commande arrive à sa date, que les commandes
+ * précédentes aient été servies ou non, ce qui reproduit les pics de production.
+ * Les commandes sont lues au fil de la simulation : seule la prochaine arrivée est planifiée, une trace de plusieurs
+ * millions de commandes ne tient donc jamais en mémoire.
+ */
+public class LoadGenerator {
+
+    public static final Logger logger = LogManager.getLogger(LoadGenerator.class);
+
+    public static final String OUT_OF_ORDER = "OUT_OF_ORDER";
+    public static final String NO_MACHINE_AVAILABLE = "NO_MACHINE_AVAILABLE";
+    public static final String FAILED = "FAILED";
+
+    private final VirtualBrewClock clock;
+    private final OrderTarget target;
+    private final FabricCupboardContainer fabricCupboardContainer = FabricCupboardContainer.getFabricContainerInstance();
+    private LoadReport report;
+    private long startTime;
+    private IOException readFailure;
+
+    /**
+     * Charge passée directement à une machine
+     * @param clock Horloge virtuelle de la machine
+     * @param coffeeMachine Machine à charger
+     */
+    public LoadGenerator(VirtualBrewClock clock, CoffeeMachine coffeeMachine) {
+        this.clock = clock;
+        this.target = (container, coffeeType, arrivalTime) -> coffeeMachine.brewAsync(container, coffeeType)
+                .whenComplete((result, failure) -> report.recordOutcome(toOutcome(result, failure), arrivalTime, clock.nanoTime()));
+    }
+
+    /**
+     * Charge répartie par la politique de routage d'une flotte
+     * @param clock Horloge virtuelle des machines de la flotte
+     * @param fleet Flotte à charger
+     */
+    public LoadGenerator(VirtualBrewClock clock, CoffeeMachineFleet fleet) {
+        this.clock = clock;
+        this.target = (container, coffeeType, arrivalTime) -> fleet.makeACoffeeAsync(container, coffeeType)
+                .whenComplete((coffee, failure) -> report.recordOutcome(toOutcome(coffee != null, failure), arrivalTime, clock.nanoTime()));
+    }
+
+    /**
+     * Charge passée aux files bornées de plusieurs machines : chaque commande va dans la file la moins chargée,
+     * et une commande refusée par sa file pleine est comptée comme QUEUE_FULL
+     * @param clock Horloge virtuelle des machines
+     * @param orderQueues Files des machines à charger
+     */
+    public LoadGenerator(VirtualBrewClock clock, List<OrderQueue> orderQueues) {
+        if (orderQueues.isEmpty())
+            throw new IllegalArgumentException("At least one order queue is needed.");
+        List<OrderQueue> queues = new ArrayList<>(orderQueues);
+        this.clock = clock;
+        this.target = (container, coffeeType, arrivalTime) -> {
+            OrderQueue orderQueue = queues.get(0);
+            for (OrderQueue candidate : queues) {
+                if (candidate.getQueueDepth() + candidate.getInFlightOrders() < orderQueue.getQueueDepth() + orderQueue.getInFlightOrders())
+                    orderQueue = candidate;
+            }
+            boolean isQueued = orderQueue.tryOffer(container, coffeeType,
+                    (result, failure) -> report.recordOutcome(toOutcome(result, failure), arrivalTime, clock.nanoTime()));
+            if (!isQueued)
+                report.recordOutcome(BrewResult.RejectionReason.QUEUE_FULL.name(), arrivalTime, clock.nanoTime());
+        };
+    }
+
+    /**
+     * Rejoue toutes les commandes de la source puis laisse la simulation aller jusqu'au dernier café
+     * @param source Commandes à rejouer, fermée à la fin de la charge
+     * @return Bilan de la charge
+     * @throws IOException Exception levée si la source ne peut pas être lue
+     */
+    public LoadReport run(OrderSource source) throws IOException {
+        report = new LoadReport();
+        readFailure = null;
+        startTime = clock.nanoTime();
+        try (OrderSource orders = source) {
+            if (orders.next())
+                scheduleNextArrival(orders);
+            clock.runUntilIdle();
+        }
+        if (readFailure != null)
+            throw readFailure;
+        logger.info("Load test finished : " + report.getOrders() + " orders, " + report.getServedOrders() + " served");
+        return report;
+    }
+
+    private void scheduleNextArrival(OrderSource orders) {
+        long arrivalTime = startTime + orders.getArrivalMillis() * 1_000_000;
+        Container container = fabricCupboardContainer.getContainer(orders.getContainerKind(), orders.getCapacity());
+        CoffeeType coffeeType = orders.getCoffeeType();
+        clock.schedule((arrivalTime - clock.nanoTime()) / 1e6, () -> {
+            report.recordArrival(arrivalTime);
+            target.order(container, coffeeType, arrivalTime);
+            try {
+                if (orders.next())
+                    scheduleNextArrival(orders);
+            } catch (IOException e) {
+                //Les commandes déjà arrivées sont servies, puis la charge est arrêtée en erreur
+                readFailure = e;
+            }
+        });
+    }
+
+    private static String toOutcome(BrewResult result, Throwable failure) {
+        if (failure != null)
+            return FAILED;
+        if (result.isRejected())
+            return result.getRejectionReason().name();
+        if (result.isOutOfOrder() || result.getCoffee() == null)
+            return OUT_OF_ORDER;
+        return LoadReport.SERVED;
+    }
+
+    private static String toOutcome(boolean isServed, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof NoCoffeeMachineAvailableException)
+            return NO_MACHINE_AVAILABLE;
+        if (cause instanceof CupNotEmptyException)
+            return BrewResult.RejectionReason.CONTAINER_NOT_EMPTY.name();
+        if (cause != null)
+            return FAILED;
+        return isServed ? LoadReport.SERVED : OUT_OF_ORDER;
+    }
+
+    /**
+     * Destination des commandes de la charge
+     */
+    private interface OrderTarget {
+        void order(Container container, CoffeeType coffeeType, long arrivalTime);
+    }
+}
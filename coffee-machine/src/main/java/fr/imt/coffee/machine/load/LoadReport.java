@@ -0,0 +1,135 @@
+package fr.imt.coffee.machine.load;
+
+import fr.imt.coffee.machine.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bilan d'une charge rejouée par le {@link LoadGenerator} : débit, centiles des latences entre l'arrivée d'une
+ * commande et son issue, et nombre de commandes non servies par cause.
+ * Le bilan est rempli par le thread qui pilote la simulation.
+ */
+public class LoadReport {
+
+    public static final String SERVED = "SERVED";
+
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private final Map<String, Long> outcomes = new TreeMap<>();
+    private long orders;
+    private long servedOrders;
+    private long firstArrivalNanos = Long.MAX_VALUE;
+    private long lastCompletionNanos = Long.MIN_VALUE;
+
+    void recordArrival(long arrivalNanos) {
+        orders++;
+        firstArrivalNanos = Math.min(firstArrivalNanos, arrivalNanos);
+    }
+
+    /**
+     * @param outcome {@link #SERVED} ou cause pour laquelle la commande n'a pas été servie
+     * @param arrivalNanos Arrivée de la commande
+     * @param completionNanos Issue de la commande
+     */
+    void recordOutcome(String outcome, long arrivalNanos, long completionNanos) {
+        if (SERVED.equals(outcome)) {
+            servedOrders++;
+            latencyHistogram.record(completionNanos - arrivalNanos);
+        }
+        outcomes.merge(outcome, 1L, Long::sum);
+        lastCompletionNanos = Math.max(lastCompletionNanos, completionNanos);
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public long getServedOrders() {
+        return servedOrders;
+    }
+
+    /**
+     * @return Nombre de commandes arrivées mais sans issue à la fin de la charge
+     */
+    public long getUnfinishedOrders() {
+        long finishedOrders = 0;
+        for (long count : outcomes.values()) {
+            finishedOrders += count;
+        }
+        return orders - finishedOrders;
+    }
+
+    /**
+     * @return Nombre de commandes non servies, par cause (NOT_PLUGGED, LACK_OF_WATER, OUT_OF_ORDER...)
+     */
+    public Map<String, Long> getRejections() {
+        Map<String, Long> rejections = new TreeMap<>(outcomes);
+        rejections.remove(SERVED);
+        return Collections.unmodifiableMap(rejections);
+    }
+
+    /**
+     * @return Durée en secondes entre la première arrivée et la dernière issue
+     */
+    public double getElapsedSeconds() {
+        return lastCompletionNanos <= firstArrivalNanos ? 0 : (lastCompletionNanos - firstArrivalNanos) / 1e9;
+    }
+
+    /**
+     * @return Cafés servis par seconde sur la durée de la charge
+     */
+    public double getThroughput() {
+        double elapsedSeconds = getElapsedSeconds();
+        return elapsedSeconds == 0 ? 0 : servedOrders / elapsedSeconds;
+    }
+
+    /**
+     * @return Histogramme des latences des cafés servis, en nanosecondes
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * @param percentile Centile entre 0 et 100
+     * @return Latence des cafés servis en millisecondes pour ce centile
+     */
+    public double getLatencyPercentileMillis(double percentile) {
+        return latencyHistogram.getPercentile(percentile) / 1e6;
+    }
+
+    /**
+     * Écrit le bilan dans un fichier texte
+     * @param path Chemin du fichier, remplacé s'il existe
+     * @throws IOException Exception levée si le fichier ne peut pas être écrit
+     */
+    public void write(Path path) throws IOException {
+        Files.writeString(path, toString());
+    }
+
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Orders : ").append(orders).append(", served : ").append(servedOrders)
+                .append(", unfinished : ").append(getUnfinishedOrders()).append('\n');
+        report.append("Elapsed : ").append(String.format("%.3f", getElapsedSeconds())).append(" s, throughput : ")
+                .append(String.format("%.3f", getThroughput())).append(" coffees/s\n");
+        report.append("Latency : mean ").append(String.format("%.1f", latencyHistogram.getMean() / 1e6)).append(" ms");
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            report.append(", p").append(percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile))
+                    .append(' ').append(String.format("%.1f", getLatencyPercentileMillis(percentile))).append(" ms");
+        }
+        report.append(", max ").append(String.format("%.1f", latencyHistogram.getMax() / 1e6)).append(" ms\n");
+        report.append("Rejections :");
+        Map<String, Long> rejections = getRejections();
+        if (rejections.isEmpty())
+            report.append(" none");
+        for (Map.Entry<String, Long> rejection : rejections.entrySet()) {
+            report.append(' ').append(rejection.getKey()).append(' ').append(rejection.getValue());
+        }
+        return report.append('\n').toString();
+    }
+}
@@ -0,0 +1,173 @@
+package fr.imt.coffee.machine.load;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.failure.BernoulliFailureModel;
+import fr.imt.coffee.machine.fleet.CoffeeMachineFleet;
+import fr.imt.coffee.machine.fleet.LeastLoadedRoutingPolicy;
+import fr.imt.coffee.machine.queue.BackpressurePolicy;
+import fr.imt.coffee.machine.queue.EarliestDeadlineFirstSchedulingPolicy;
+import fr.imt.coffee.machine.queue.FifoSchedulingPolicy;
+import fr.imt.coffee.machine.queue.OrderQueue;
+import fr.imt.coffee.machine.queue.SchedulingPolicy;
+import fr.imt.coffee.machine.queue.ShortestJobFirstSchedulingPolicy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Commande {@code load} de la ligne de commande : rejoue une trace de commandes ou une charge de Poisson sur un
+ * parc de machines simulé, puis produit le bilan de la charge.
+ * Sans option --queue, les commandes passent par une flotte avec routage vers la machine la moins chargée ;
+ * avec --queue, chaque machine a sa file bornée et les commandes vont dans la file la moins remplie.
+ */
+public class LoadTestCommand {
+
+    public static final String USAGE = "Usage : load (--trace FILE | --rate ORDERS_PER_SECOND [--duration SECONDS] [--mug-share SHARE])"
+            + " [--machines N] [--queue CAPACITY] [--scheduling fifo|sjf|edf] [--failure-probability P] [--seed SEED] [--report FILE]";
+
+    public static final long DEFAULT_DURATION = 60;
+    public static final int DEFAULT_MACHINES = 1;
+    public static final long DEFAULT_SEED = 42;
+    public static final double WATER_TANK_VOLUME = 1000;
+    public static final double PUMPING_CAPACITY = 600;
+
+    private Path tracePath;
+    private double ratePerSecond;
+    private long durationSeconds = DEFAULT_DURATION;
+    private double mugShare = PoissonOrderSource.DEFAULT_MUG_SHARE;
+    private int machines = DEFAULT_MACHINES;
+    private int queueCapacity;
+    private String scheduling = "fifo";
+    private double failureProbability;
+    private long seed = DEFAULT_SEED;
+    private Path reportPath;
+
+    private LoadTestCommand() {
+    }
+
+    /**
+     * Lit les options de la commande
+     * @param args Options, sans le nom de la commande
+     * @return Commande prête à être lancée
+     * @throws IllegalArgumentException Exception levée si une option est inconnue, incomplète ou invalide, son message
+     * rappelle l'usage de la commande
+     */
+    public static LoadTestCommand parse(String[] args) {
+        LoadTestCommand command = new LoadTestCommand();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException("Missing value for option " + option);
+                String value = args[++i];
+                switch (option) {
+                    case "--trace":
+                        command.tracePath = Paths.get(value);
+                        break;
+                    case "--rate":
+                        command.ratePerSecond = Double.parseDouble(value);
+                        break;
+                    case "--duration":
+                        command.durationSeconds = Long.parseLong(value);
+                        break;
+                    case "--mug-share":
+                        command.mugShare = Double.parseDouble(value);
+                        break;
+                    case "--machines":
+                        command.machines = Integer.parseInt(value);
+                        break;
+                    case "--queue":
+                        command.queueCapacity = Integer.parseInt(value);
+                        break;
+                    case "--scheduling":
+                        command.scheduling = value;
+                        break;
+                    case "--failure-probability":
+                        command.failureProbability = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        command.seed = Long.parseLong(value);
+                        break;
+                    case "--report":
+                        command.reportPath = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if ((command.tracePath == null) == (command.ratePerSecond <= 0))
+                throw new IllegalArgumentException("Either --trace or a positive --rate is needed");
+            if (command.machines <= 0)
+                throw new IllegalArgumentException("At least one machine is needed");
+            if (command.queueCapacity < 0)
+                throw new IllegalArgumentException("The queue capacity must not be negative");
+            command.createSchedulingPolicy();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number " + e.getMessage() + "\n" + USAGE, e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + "\n" + USAGE, e);
+        }
+        return command;
+    }
+
+    /**
+     * Lance la charge sur un parc neuf de machines simulées
+     * @return Bilan de la charge, également écrit dans le fichier de --report s'il est donné
+     * @throws IOException Exception levée si la trace ne peut pas être lue ou le bilan écrit
+     */
+    public LoadReport run() throws IOException {
+        VirtualBrewClock clock = new VirtualBrewClock(0);
+        List<CoffeeMachine> coffeeMachines = new ArrayList<>();
+        for (int i = 0; i < machines; i++) {
+            CoffeeMachine coffeeMachine = new CoffeeMachine(0, WATER_TANK_VOLUME, PUMPING_CAPACITY, clock);
+            coffeeMachine.plugToElectricalPlug();
+            coffeeMachine.addWaterInTank(WATER_TANK_VOLUME);
+            coffeeMachine.setFailureModel(new BernoulliFailureModel(failureProbability, seed + i));
+            coffeeMachines.add(coffeeMachine);
+        }
+
+        LoadGenerator loadGenerator;
+        if (queueCapacity > 0) {
+            List<OrderQueue> orderQueues = new ArrayList<>();
+            for (CoffeeMachine coffeeMachine : coffeeMachines) {
+                orderQueues.add(new OrderQueue(coffeeMachine, queueCapacity, BackpressurePolicy.REJECT, createSchedulingPolicy()));
+            }
+            loadGenerator = new LoadGenerator(clock, orderQueues);
+        } else {
+            CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy(), clock);
+            for (CoffeeMachine coffeeMachine : coffeeMachines) {
+                fleet.addCoffeeMachine(coffeeMachine);
+            }
+            loadGenerator = new LoadGenerator(clock, fleet);
+        }
+
+        OrderSource source = tracePath != null
+                ? new OrderTraceReader(tracePath)
+                : new PoissonOrderSource(ratePerSecond, durationSeconds * 1000, mugShare, seed);
+        LoadReport report = loadGenerator.run(source);
+        if (reportPath != null)
+            report.write(reportPath);
+        return report;
+    }
+
+    private SchedulingPolicy createSchedulingPolicy() {
+        switch (scheduling) {
+            case "fifo":
+                return new FifoSchedulingPolicy();
+            case "sjf":
+                return new ShortestJobFirstSchedulingPolicy();
+            case "edf":
+                return new EarliestDeadlineFirstSchedulingPolicy();
+            default:
+                throw new IllegalArgumentException("Unknown scheduling policy " + scheduling);
+        }
+    }
+
+    public Path getReportPath() {
+        return reportPath;
+    }
+}
@@ -0,0 +1,36 @@
+package fr.imt.coffee.machine.load;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Suite de commandes rejouée par le {@link LoadGenerator}, dans l'ordre de leurs dates d'arrivée.
+ * La source se lit comme un curseur : {@link #next()} passe à la commande suivante, dont les champs sont ensuite lus
+ * par les accesseurs. Une source n'alloue donc rien par commande.
+ */
+public interface OrderSource extends Closeable {
+
+    /**
+     * Passe à la commande suivante
+     * @return false s'il n'y a plus de commande
+     * @throws IOException Exception levée si la commande ne peut pas être lue
+     */
+    boolean next() throws IOException;
+
+    /**
+     * @return Date d'arrivée de la commande en millisecondes depuis le début de la charge, jamais décroissante
+     */
+    long getArrivalMillis();
+
+    ContainerKind getContainerKind();
+
+    /**
+     * @return Capacité du contenant en litres
+     */
+    double getCapacity();
+
+    CoffeeType getCoffeeType();
+}
@@ -0,0 +1,233 @@
+package fr.imt.coffee.machine.load;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKindRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lecture en flux d'une trace de commandes, par exemple extraite des journaux de production.
+ * Chaque ligne décrit une commande : date d'arrivée en millisecondes depuis le début de la trace, type de contenant,
+ * capacité en litres et type de café, séparés par des virgules, par exemple {@code 1250,mug,0.35,ARABICA}.
+ * Les lignes vides et celles commençant par # sont ignorées.
+ *
+ * Le fichier est lu par blocs de {@value #BUFFER_SIZE} octets dans un tampon direct, et les lignes sont analysées
+ * octet par octet dans le tampon : aucune chaîne n'est créée par commande et une trace de plusieurs gigaoctets se
+ * rejoue en mémoire constante.
+ */
+public class OrderTraceReader implements OrderSource {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final CoffeeType[] COFFEE_TYPES = CoffeeType.values();
+    private static final byte[][] COFFEE_TYPE_NAMES = new byte[COFFEE_TYPES.length][];
+
+    static {
+        for (int i = 0; i < COFFEE_TYPES.length; i++) {
+            COFFEE_TYPE_NAMES[i] = COFFEE_TYPES[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ContainerKind[] containerKinds;
+    private final byte[][] containerKindNames;
+    private boolean isEndOfFile;
+    private long lineNumber;
+
+    private long arrivalMillis;
+    private ContainerKind containerKind;
+    private double capacity;
+    private CoffeeType coffeeType;
+
+    /**
+     * Ouvre une trace dont les types de contenants sont ceux du registre par défaut
+     * @param path Chemin de la trace
+     * @throws IOException Exception levée si le fichier ne peut pas être ouvert
+     */
+    public OrderTraceReader(Path path) throws IOException {
+        this(path, ContainerKindRegistry.getRegistryInstance());
+    }
+
+    /**
+     * @param path Chemin de la trace
+     * @param containerKindRegistry Registre des types de contenants que la trace peut nommer
+     * @throws IOException Exception levée si le fichier ne peut pas être ouvert
+     */
+    public OrderTraceReader(Path path, ContainerKindRegistry containerKindRegistry) throws IOException {
+        this.path = path;
+        this.containerKinds = containerKindRegistry.getContainerKinds().toArray(new ContainerKind[0]);
+        this.containerKindNames = new byte[containerKinds.length][];
+        for (int i = 0; i < containerKinds.length; i++) {
+            containerKindNames[i] = containerKinds[i].getName().getBytes(StandardCharsets.US_ASCII);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.limit(0);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (true) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0)
+                return false;
+            int lineStart = buffer.position();
+            buffer.position(Math.min(lineEnd + 1, buffer.limit()));
+            lineNumber++;
+            //Fin de ligne Windows
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r')
+                lineEnd--;
+            if (lineEnd == lineStart || buffer.get(lineStart) == '#')
+                continue;
+            parseLine(lineStart, lineEnd);
+            return true;
+        }
+    }
+
+    /**
+     * Cherche la fin de la ligne courante en rechargeant le tampon si besoin
+     * @return Index du saut de ligne, ou de la fin des données pour une dernière ligne sans saut de ligne, -1 à la fin du fichier
+     */
+    private int findLineEnd() throws IOException {
+        int searchStart = buffer.position();
+        while (true) {
+            for (int i = searchStart; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n')
+                    return i;
+            }
+            if (isEndOfFile)
+                return buffer.hasRemaining() ? buffer.limit() : -1;
+            int remaining = buffer.remaining();
+            if (remaining == buffer.capacity())
+                throw new IOException("Line " + (lineNumber + 1) + " of " + path + " is longer than " + BUFFER_SIZE + " bytes.");
+            buffer.compact();
+            isEndOfFile = channel.read(buffer) < 0;
+            buffer.flip();
+            searchStart = remaining;
+        }
+    }
+
+    private void parseLine(int lineStart, int lineEnd) throws IOException {
+        int firstComma = indexOf(',', lineStart, lineEnd);
+        int secondComma = firstComma < 0 ? -1 : indexOf(',', firstComma + 1, lineEnd);
+        int thirdComma = secondComma < 0 ? -1 : indexOf(',', secondComma + 1, lineEnd);
+        if (thirdComma < 0)
+            throw invalidLine("4 comma separated fields expected");
+
+        long arrival = parseLong(lineStart, firstComma);
+        if (arrival < arrivalMillis)
+            throw invalidLine("arrival times must not decrease");
+        arrivalMillis = arrival;
+        containerKind = containerKinds[find(containerKindNames, firstComma + 1, secondComma, "container kind")];
+        capacity = parseDecimal(secondComma + 1, thirdComma);
+        coffeeType = COFFEE_TYPES[find(COFFEE_TYPE_NAMES, thirdComma + 1, lineEnd, "coffee type")];
+    }
+
+    private int indexOf(char character, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == character)
+                return i;
+        }
+        return -1;
+    }
+
+    private long parseLong(int from, int to) throws IOException {
+        if (from == to)
+            throw invalidLine("empty arrival time");
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw invalidLine("invalid arrival time");
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Lit un nombre décimal positif sans exposant, par exemple 0.35
+     */
+    private double parseDecimal(int from, int to) throws IOException {
+        long mantissa = 0;
+        double divisor = 1;
+        boolean isFraction = false;
+        boolean hasDigit = false;
+        for (int i = from; i < to; i++) {
+            byte character = buffer.get(i);
+            if (character == '.' && !isFraction) {
+                isFraction = true;
+                continue;
+            }
+            int digit = character - '0';
+            if (digit < 0 || digit > 9)
+                throw invalidLine("invalid capacity");
+            mantissa = mantissa * 10 + digit;
+            hasDigit = true;
+            if (isFraction)
+                divisor *= 10;
+        }
+        if (!hasDigit)
+            throw invalidLine("invalid capacity");
+        if (mantissa == 0)
+            throw invalidLine("the capacity must be positive");
+        return mantissa / divisor;
+    }
+
+    private int find(byte[][] names, int from, int to, String field) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i];
+            if (name.length != to - from)
+                continue;
+            boolean isMatching = true;
+            for (int j = 0; j < name.length && isMatching; j++) {
+                isMatching = Character.toLowerCase(buffer.get(from + j)) == Character.toLowerCase(name[j]);
+            }
+            if (isMatching)
+                return i;
+        }
+        throw invalidLine("unknown " + field);
+    }
+
+    private IOException invalidLine(String reason) {
+        return new IOException("Invalid order at line " + lineNumber + " of " + path + " : " + reason);
+    }
+
+    @Override
+    public long getArrivalMillis() {
+        return arrivalMillis;
+    }
+
+    @Override
+    public ContainerKind getContainerKind() {
+        return containerKind;
+    }
+
+    @Override
+    public double getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public CoffeeType getCoffeeType() {
+        return coffeeType;
+    }
+
+    /**
+     * @return Numéro de la dernière ligne lue
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
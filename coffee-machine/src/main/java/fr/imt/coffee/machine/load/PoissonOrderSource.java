@@ -0,0 +1,91 @@
+package fr.imt.coffee.machine.load;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+import fr.imt.coffee.storage.cupboard.kind.StandardContainerKind;
+
+import java.util.SplittableRandom;
+
+/**
+ * Commandes en boucle ouverte : les arrivées suivent un processus de Poisson au rythme donné, indépendamment des
+ * cafés servis. Les durées entre deux arrivées sont tirées suivant une loi exponentielle.
+ * Une part des commandes sont des mugs, les autres des tasses, et le type de café est tiré uniformément.
+ */
+public class PoissonOrderSource implements OrderSource {
+
+    public static final double DEFAULT_MUG_SHARE = 0.3;
+    public static final double CUP_CAPACITY = 0.15;
+    public static final double MUG_CAPACITY = 0.35;
+
+    private static final CoffeeType[] COFFEE_TYPES = CoffeeType.values();
+
+    private final double meanInterArrivalMillis;
+    private final long durationMillis;
+    private final double mugShare;
+    private final SplittableRandom random;
+    private double arrivalTime;
+    private ContainerKind containerKind;
+    private CoffeeType coffeeType;
+
+    /**
+     * @param ratePerSecond Nombre moyen de commandes par seconde
+     * @param durationMillis Durée de la charge en millisecondes
+     * @param seed Graine des tirages, une même graine redonne les mêmes commandes
+     */
+    public PoissonOrderSource(double ratePerSecond, long durationMillis, long seed) {
+        this(ratePerSecond, durationMillis, DEFAULT_MUG_SHARE, seed);
+    }
+
+    /**
+     * @param ratePerSecond Nombre moyen de commandes par seconde
+     * @param durationMillis Durée de la charge en millisecondes
+     * @param mugShare Part des commandes servies dans un mug, entre 0 et 1
+     * @param seed Graine des tirages, une même graine redonne les mêmes commandes
+     */
+    public PoissonOrderSource(double ratePerSecond, long durationMillis, double mugShare, long seed) {
+        if (ratePerSecond <= 0)
+            throw new IllegalArgumentException("The arrival rate must be positive.");
+        if (mugShare < 0 || mugShare > 1)
+            throw new IllegalArgumentException("The mug share must be between 0 and 1.");
+        this.meanInterArrivalMillis = 1000 / ratePerSecond;
+        this.durationMillis = durationMillis;
+        this.mugShare = mugShare;
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public boolean next() {
+        //1 - u est dans ]0, 1] : le logarithme est toujours fini
+        arrivalTime -= meanInterArrivalMillis * Math.log(1 - random.nextDouble());
+        if (arrivalTime >= durationMillis)
+            return false;
+        containerKind = random.nextDouble() < mugShare ? StandardContainerKind.MUG : StandardContainerKind.CUP;
+        coffeeType = COFFEE_TYPES[random.nextInt(COFFEE_TYPES.length)];
+        return true;
+    }
+
+    @Override
+    public long getArrivalMillis() {
+        return (long) arrivalTime;
+    }
+
+    @Override
+    public ContainerKind getContainerKind() {
+        return containerKind;
+    }
+
+    @Override
+    public double getCapacity() {
+        return containerKind == StandardContainerKind.MUG ? MUG_CAPACITY : CUP_CAPACITY;
+    }
+
+    @Override
+    public CoffeeType getCoffeeType() {
+        return coffeeType;
+    }
+
+    @Override
+    public void close() {
+        //Rien à libérer
+    }
+}
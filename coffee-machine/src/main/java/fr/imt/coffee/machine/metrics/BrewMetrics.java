@@ -0,0 +1,76 @@
+package fr.imt.coffee.machine.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesures du chemin de préparation d'une machine à café : latences des étapes de vérification et de tirage de panne,
+ * et nombre de commandes refusées pour chaque cause.
+ * Les latences de chauffe et de pompage sont mesurées par les étages du pipeline.
+ */
+public class BrewMetrics {
+
+    private final LatencyHistogram validationLatency = new LatencyHistogram();
+    private final LatencyHistogram failureCheckLatency = new LatencyHistogram();
+    private final LongAdder notPluggedRejections = new LongAdder();
+    private final LongAdder lackOfWaterRejections = new LongAdder();
+    private final LongAdder containerNotEmptyRejections = new LongAdder();
+    private final LongAdder outOfOrderRejections = new LongAdder();
+
+    /**
+     * @return Latences des vérifications des commandes acceptées : branchement, réservation d'eau, contenant vide
+     */
+    public LatencyHistogram getValidationLatency() {
+        return validationLatency;
+    }
+
+    /**
+     * @return Latences du tirage de panne
+     */
+    public LatencyHistogram getFailureCheckLatency() {
+        return failureCheckLatency;
+    }
+
+    public void recordNotPluggedRejection() {
+        notPluggedRejections.increment();
+    }
+
+    public void recordLackOfWaterRejection() {
+        lackOfWaterRejections.increment();
+    }
+
+    public void recordContainerNotEmptyRejection() {
+        containerNotEmptyRejections.increment();
+    }
+
+    public void recordOutOfOrderRejection() {
+        outOfOrderRejections.increment();
+    }
+
+    /**
+     * @return Nombre de commandes refusées car la machine n'était pas branchée (MachineNotPluggedException)
+     */
+    public long getNotPluggedRejections() {
+        return notPluggedRejections.sum();
+    }
+
+    /**
+     * @return Nombre de commandes refusées par manque d'eau (LackOfWaterInTankException)
+     */
+    public long getLackOfWaterRejections() {
+        return lackOfWaterRejections.sum();
+    }
+
+    /**
+     * @return Nombre de commandes refusées car le contenant n'était pas vide (CupNotEmptyException)
+     */
+    public long getContainerNotEmptyRejections() {
+        return containerNotEmptyRejections.sum();
+    }
+
+    /**
+     * @return Nombre de commandes non servies car la machine est tombée en panne
+     */
+    public long getOutOfOrderRejections() {
+        return outOfOrderRejections.sum();
+    }
+}
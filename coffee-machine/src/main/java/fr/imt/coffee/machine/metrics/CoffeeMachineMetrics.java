@@ -0,0 +1,324 @@
+package fr.imt.coffee.machine.metrics;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.pipeline.BrewStage;
+import fr.imt.coffee.machine.queue.OrderQueue;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * MBean exposant en JMX les mesures d'une machine à café : compteurs, niveau du réservoir, température de la
+ * chaudière et temps de chauffe gagné, profondeur de la file de commandes, refus par cause et latences des étapes de vérification, de tirage de panne,
+ * de chauffe et de pompage.
+ */
+public class CoffeeMachineMetrics implements CoffeeMachineMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000;
+
+    private final CoffeeMachine coffeeMachine;
+    private final ObjectName objectName;
+
+    /**
+     * @param coffeeMachine Machine à café dont les mesures sont exposées
+     * @throws IllegalArgumentException Exception levée si le nom JMX de la machine n'est pas valide
+     */
+    public CoffeeMachineMetrics(CoffeeMachine coffeeMachine) {
+        this.coffeeMachine = coffeeMachine;
+        try {
+            this.objectName = new ObjectName("fr.imt.coffee:type=CoffeeMachine,id=" + coffeeMachine.getId());
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Enregistre le MBean de la machine auprès du serveur JMX de la plateforme
+     * @throws InstanceAlreadyExistsException Exception levée si le MBean de la machine est déjà enregistré
+     * @throws MBeanRegistrationException Exception levée si l'enregistrement a échoué
+     * @throws NotCompliantMBeanException Exception levée si le MBean n'est pas conforme
+     */
+    public void register() throws InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    /**
+     * Retire le MBean de la machine du serveur JMX de la plateforme, s'il y est enregistré
+     * @throws MBeanRegistrationException Exception levée si le retrait a échoué
+     */
+    public void unregister() throws MBeanRegistrationException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (mBeanServer.isRegistered(objectName))
+                mBeanServer.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            //Retiré entre temps par un autre thread
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    private BrewMetrics brewMetrics() {
+        return coffeeMachine.getBrewMetrics();
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getNbCoffeeMade() {
+        return coffeeMachine.getNbCoffeeMade();
+    }
+
+    @Override
+    public double getCoffeesPerSecondLastSecond() {
+        return coffeeMachine.getThroughputStats().getRate(ThroughputStats.RateWindow.ONE_SECOND);
+    }
+
+    @Override
+    public double getCoffeesPerSecondLastMinute() {
+        return coffeeMachine.getThroughputStats().getRate(ThroughputStats.RateWindow.ONE_MINUTE);
+    }
+
+    @Override
+    public double getCoffeesPerSecondLastFifteenMinutes() {
+        return coffeeMachine.getThroughputStats().getRate(ThroughputStats.RateWindow.FIFTEEN_MINUTES);
+    }
+
+    @Override
+    public int getPendingOrders() {
+        return coffeeMachine.getPendingOrders();
+    }
+
+    @Override
+    public int getOrderQueueDepth() {
+        OrderQueue orderQueue = coffeeMachine.getOrderQueue();
+        return orderQueue == null ? 0 : orderQueue.getQueueDepth();
+    }
+
+    @Override
+    public int getOrderQueueMaxDepth() {
+        OrderQueue orderQueue = coffeeMachine.getOrderQueue();
+        return orderQueue == null ? 0 : orderQueue.getMaxQueueDepth();
+    }
+
+    @Override
+    public long getOrderQueueRejections() {
+        OrderQueue orderQueue = coffeeMachine.getOrderQueue();
+        return orderQueue == null ? 0 : orderQueue.getRejectedOrders();
+    }
+
+    @Override
+    public long getOrderQueueSpills() {
+        OrderQueue orderQueue = coffeeMachine.getOrderQueue();
+        return orderQueue == null ? 0 : orderQueue.getSpilledOrders();
+    }
+
+    @Override
+    public double getOrderQueueWaitP99Millis() {
+        OrderQueue orderQueue = coffeeMachine.getOrderQueue();
+        return orderQueue == null ? 0 : toMillis(orderQueue.getQueueTimeHistogram().getPercentile(99));
+    }
+
+    @Override
+    public boolean isPlugged() {
+        return coffeeMachine.isPlugged();
+    }
+
+    @Override
+    public boolean isOutOfOrder() {
+        return coffeeMachine.isOutOfOrder();
+    }
+
+    @Override
+    public double getTankLevel() {
+        return coffeeMachine.getWaterTank().getActualVolume();
+    }
+
+    @Override
+    public double getTankReservedVolume() {
+        return coffeeMachine.getWaterTank().getReservedVolume();
+    }
+
+    @Override
+    public double getTankAvailableVolume() {
+        return coffeeMachine.getWaterTank().getAvailableVolume();
+    }
+
+    @Override
+    public long getNotPluggedRejections() {
+        return brewMetrics().getNotPluggedRejections();
+    }
+
+    @Override
+    public long getLackOfWaterRejections() {
+        return brewMetrics().getLackOfWaterRejections();
+    }
+
+    @Override
+    public long getContainerNotEmptyRejections() {
+        return brewMetrics().getContainerNotEmptyRejections();
+    }
+
+    @Override
+    public long getOutOfOrderRejections() {
+        return brewMetrics().getOutOfOrderRejections();
+    }
+
+    @Override
+    public long getValidationCount() {
+        return brewMetrics().getValidationLatency().getCount();
+    }
+
+    @Override
+    public double getValidationMeanMillis() {
+        return toMillis(brewMetrics().getValidationLatency().getMean());
+    }
+
+    @Override
+    public double getValidationP50Millis() {
+        return toMillis(brewMetrics().getValidationLatency().getPercentile(50));
+    }
+
+    @Override
+    public double getValidationP99Millis() {
+        return toMillis(brewMetrics().getValidationLatency().getPercentile(99));
+    }
+
+    @Override
+    public double getValidationMaxMillis() {
+        return toMillis(brewMetrics().getValidationLatency().getMax());
+    }
+
+    @Override
+    public long getFailureCheckCount() {
+        return brewMetrics().getFailureCheckLatency().getCount();
+    }
+
+    @Override
+    public double getFailureCheckMeanMillis() {
+        return toMillis(brewMetrics().getFailureCheckLatency().getMean());
+    }
+
+    @Override
+    public double getFailureCheckP50Millis() {
+        return toMillis(brewMetrics().getFailureCheckLatency().getPercentile(50));
+    }
+
+    @Override
+    public double getFailureCheckP99Millis() {
+        return toMillis(brewMetrics().getFailureCheckLatency().getPercentile(99));
+    }
+
+    @Override
+    public double getFailureCheckMaxMillis() {
+        return toMillis(brewMetrics().getFailureCheckLatency().getMax());
+    }
+
+    private BrewStage heatingStage() {
+        return coffeeMachine.getHeatingStage();
+    }
+
+    @Override
+    public long getHeatingCount() {
+        return heatingStage().getServiceTimeHistogram().getCount();
+    }
+
+    @Override
+    public double getHeatingMeanMillis() {
+        return toMillis(heatingStage().getServiceTimeHistogram().getMean());
+    }
+
+    @Override
+    public double getHeatingP50Millis() {
+        return toMillis(heatingStage().getServiceTimeHistogram().getPercentile(50));
+    }
+
+    @Override
+    public double getHeatingP99Millis() {
+        return toMillis(heatingStage().getServiceTimeHistogram().getPercentile(99));
+    }
+
+    @Override
+    public double getHeatingMaxMillis() {
+        return toMillis(heatingStage().getServiceTimeHistogram().getMax());
+    }
+
+    @Override
+    public double getHeatingWaitP99Millis() {
+        return toMillis(heatingStage().getWaitTimeHistogram().getPercentile(99));
+    }
+
+    @Override
+    public int getHeatingQueueDepth() {
+        return heatingStage().getQueueDepth();
+    }
+
+    @Override
+    public double getHeatingOccupancy() {
+        return heatingStage().getOccupancy();
+    }
+
+    @Override
+    public double getBoilerTemperature() {
+        return coffeeMachine.getElectricalResistance().getBoilerTemperature();
+    }
+
+    @Override
+    public double getSavedHeatingMillis() {
+        return coffeeMachine.getElectricalResistance().getSavedHeatingTime();
+    }
+
+    private BrewStage pumpingStage() {
+        return coffeeMachine.getPumpingStage();
+    }
+
+    @Override
+    public long getPumpingCount() {
+        return pumpingStage().getServiceTimeHistogram().getCount();
+    }
+
+    @Override
+    public double getPumpingMeanMillis() {
+        return toMillis(pumpingStage().getServiceTimeHistogram().getMean());
+    }
+
+    @Override
+    public double getPumpingP50Millis() {
+        return toMillis(pumpingStage().getServiceTimeHistogram().getPercentile(50));
+    }
+
+    @Override
+    public double getPumpingP99Millis() {
+        return toMillis(pumpingStage().getServiceTimeHistogram().getPercentile(99));
+    }
+
+    @Override
+    public double getPumpingMaxMillis() {
+        return toMillis(pumpingStage().getServiceTimeHistogram().getMax());
+    }
+
+    @Override
+    public double getPumpingWaitP99Millis() {
+        return toMillis(pumpingStage().getWaitTimeHistogram().getPercentile(99));
+    }
+
+    @Override
+    public int getPumpingQueueDepth() {
+        return pumpingStage().getQueueDepth();
+    }
+
+    @Override
+    public double getPumpingOccupancy() {
+        return pumpingStage().getOccupancy();
+    }
+}
@@ -0,0 +1,102 @@
+package fr.imt.coffee.machine.metrics;
+
+/**
+ * Interface JMX des mesures d'une machine à café, lisible depuis JConsole ou VisualVM.
+ * Les latences sont données en millisecondes.
+ */
+public interface CoffeeMachineMetricsMBean {
+
+    long getNbCoffeeMade();
+
+    double getCoffeesPerSecondLastSecond();
+
+    double getCoffeesPerSecondLastMinute();
+
+    double getCoffeesPerSecondLastFifteenMinutes();
+
+    int getPendingOrders();
+
+    int getOrderQueueDepth();
+
+    int getOrderQueueMaxDepth();
+
+    long getOrderQueueRejections();
+
+    long getOrderQueueSpills();
+
+    double getOrderQueueWaitP99Millis();
+
+    boolean isPlugged();
+
+    boolean isOutOfOrder();
+
+    double getTankLevel();
+
+    double getTankReservedVolume();
+
+    double getTankAvailableVolume();
+
+    long getNotPluggedRejections();
+
+    long getLackOfWaterRejections();
+
+    long getContainerNotEmptyRejections();
+
+    long getOutOfOrderRejections();
+
+    long getValidationCount();
+
+    double getValidationMeanMillis();
+
+    double getValidationP50Millis();
+
+    double getValidationP99Millis();
+
+    double getValidationMaxMillis();
+
+    long getFailureCheckCount();
+
+    double getFailureCheckMeanMillis();
+
+    double getFailureCheckP50Millis();
+
+    double getFailureCheckP99Millis();
+
+    double getFailureCheckMaxMillis();
+
+    long getHeatingCount();
+
+    double getHeatingMeanMillis();
+
+    double getHeatingP50Millis();
+
+    double getHeatingP99Millis();
+
+    double getHeatingMaxMillis();
+
+    double getHeatingWaitP99Millis();
+
+    int getHeatingQueueDepth();
+
+    double getHeatingOccupancy();
+
+    double getBoilerTemperature();
+
+    double getSavedHeatingMillis();
+
+    long getPumpingCount();
+
+    double getPumpingMeanMillis();
+
+    double getPumpingP50Millis();
+
+    double getPumpingP99Millis();
+
+    double getPumpingMaxMillis();
+
+    double getPumpingWaitP99Millis();
+
+    int getPumpingQueueDepth();
+
+    double getPumpingOccupancy();
+}
@@ -0,0 +1,117 @@
+package fr.imt.coffee.machine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences en nanosecondes, à faible coût et utilisable sans verrou par plusieurs threads.
+ * Les valeurs sont rangées dans des classes log-linéaires : 8 classes par puissance de 2, soit une précision
+ * d'environ 12%, pour toutes les durées de la nanoseconde à plusieurs siècles.
+ * Enregistrer une valeur ne crée aucun objet.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Enregistre une latence
+     * @param nanos Latence en nanosecondes, les valeurs négatives sont comptées comme nulles
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.increment();
+        totalTime.add(value);
+        maxTime.accumulate(value);
+    }
+
+    /**
+     * @return Nombre de latences enregistrées
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * @return Latence moyenne en nanosecondes
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalTime.sum() / count;
+    }
+
+    /**
+     * @return Latence maximale en nanosecondes
+     */
+    public long getMax() {
+        return maxTime.get();
+    }
+
+    /**
+     * Calcule un centile des latences enregistrées, à la précision d'une classe de l'histogramme
+     * @param percentile Centile entre 0 et 100, par exemple 99 pour le p99
+     * @return Borne supérieure en nanosecondes de la classe contenant le centile, 0 si rien n'a été enregistré
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulativeCount += snapshot[i];
+            if (cumulativeCount >= rank)
+                return Math.min(bucketUpperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Remet l'histogramme à zéro. Les valeurs enregistrées pendant la remise à zéro peuvent être perdues.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalTime.reset();
+        maxTime.reset();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    public String toString() {
+        return "count " + getCount() + ", mean " + String.format("%.3f", getMean() / 1e6) + " ms, p50 " +
+                String.format("%.3f", getPercentile(50) / 1e6) + " ms, p99 " +
+                String.format("%.3f", getPercentile(99) / 1e6) + " ms";
+    }
+}
@@ -0,0 +1,83 @@
+package fr.imt.coffee.machine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rythme d'événements sur une fenêtre glissante, mis à jour sans verrou.
+ * La fenêtre est découpée en tranches de temps rangées dans un anneau. Chaque case de l'anneau contient, dans un
+ * seul long, le numéro de la tranche qu'elle compte ({@value #EPOCH_SHIFT} bits de poids fort) et son nombre
+ * d'événements : un compare-and-set suffit pour compter un événement ou recycler une case d'une tranche expirée.
+ */
+public class RollingRate {
+
+    private static final int EPOCH_SHIFT = 24;
+    private static final long COUNT_MASK = (1L << EPOCH_SHIFT) - 1;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final AtomicLongArray buckets;
+
+    /**
+     * @param windowMillis Durée de la fenêtre en millisecondes
+     * @param bucketCount Nombre de tranches de la fenêtre
+     */
+    public RollingRate(long windowMillis, int bucketCount) {
+        if (bucketCount <= 0 || windowMillis < bucketCount)
+            throw new IllegalArgumentException("The window must last at least one millisecond per bucket.");
+        this.bucketMillis = windowMillis / bucketCount;
+        this.bucketCount = bucketCount;
+        this.buckets = new AtomicLongArray(bucketCount);
+    }
+
+    /**
+     * Compte un événement
+     * @param timeMillis Date de l'événement
+     */
+    public void record(long timeMillis) {
+        long epoch = Math.floorDiv(timeMillis, bucketMillis);
+        int index = (int) Math.floorMod(epoch, (long) bucketCount);
+        while (true) {
+            long bucket = buckets.get(index);
+            long bucketEpoch = bucket >>> EPOCH_SHIFT;
+            long updatedBucket;
+            if (bucketEpoch == epoch) {
+                //Une tranche pleine n'est plus comptée plutôt que de déborder sur le numéro de tranche
+                if ((bucket & COUNT_MASK) == COUNT_MASK)
+                    return;
+                updatedBucket = bucket + 1;
+            } else if (bucketEpoch < epoch) {
+                updatedBucket = epoch << EPOCH_SHIFT | 1;
+            } else {
+                //Événement plus ancien que la tranche de sa case, il est déjà hors de la fenêtre
+                return;
+            }
+            if (buckets.compareAndSet(index, bucket, updatedBucket))
+                return;
+        }
+    }
+
+    /**
+     * @param timeMillis Date de la mesure
+     * @return Nombre d'événements par seconde sur la fenêtre finissant à cette date
+     */
+    public double getRate(long timeMillis) {
+        long currentEpoch = Math.floorDiv(timeMillis, bucketMillis);
+        long count = 0;
+        for (int index = 0; index < bucketCount; index++) {
+            long bucket = buckets.get(index);
+            long bucketEpoch = bucket >>> EPOCH_SHIFT;
+            if (bucketEpoch <= currentEpoch && bucketEpoch > currentEpoch - bucketCount)
+                count += bucket & COUNT_MASK;
+        }
+        //La tranche courante n'est pas finie : la fenêtre ne couvre qu'une partie de sa durée
+        long elapsedMillis = (bucketCount - 1) * bucketMillis + Math.floorMod(timeMillis, bucketMillis) + 1;
+        return count * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return Durée de la fenêtre en millisecondes
+     */
+    public long getWindowMillis() {
+        return bucketMillis * bucketCount;
+    }
+}
@@ -0,0 +1,141 @@
+package fr.imt.coffee.machine.metrics;
+
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Débit des cafés servis, type de café par type de café : nombre total dans un compteur réparti ({@link LongAdder})
+ * et rythmes glissants sur une seconde, une minute et quinze minutes ({@link RollingRate}).
+ * La table par type est remplie à la création et n'est plus modifiée ensuite : les threads qui servent des cafés ne
+ * prennent aucun verrou.
+ */
+public class ThroughputStats {
+
+    /**
+     * Fenêtres des rythmes glissants
+     */
+    public enum RateWindow {
+        ONE_SECOND(1000, 10),
+        ONE_MINUTE(60_000, 60),
+        FIFTEEN_MINUTES(900_000, 60);
+
+        private final long windowMillis;
+        private final int bucketCount;
+
+        RateWindow(long windowMillis, int bucketCount) {
+            this.windowMillis = windowMillis;
+            this.bucketCount = bucketCount;
+        }
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+    }
+
+    private final BrewClock clock;
+    private final Map<CoffeeType, CoffeeTypeStats> statsByCoffeeType = new EnumMap<>(CoffeeType.class);
+
+    /**
+     * @param clock Horloge de la machine à café, qui date les cafés servis
+     */
+    public ThroughputStats(BrewClock clock) {
+        this.clock = clock;
+        for (CoffeeType coffeeType : CoffeeType.values()) {
+            statsByCoffeeType.put(coffeeType, new CoffeeTypeStats());
+        }
+    }
+
+    /**
+     * Compte un café servi
+     * @param coffeeType Type du café
+     */
+    public void record(CoffeeType coffeeType) {
+        long now = clock.currentTimeMillis();
+        CoffeeTypeStats stats = statsByCoffeeType.get(coffeeType);
+        stats.count.increment();
+        for (RollingRate rate : stats.rates) {
+            rate.record(now);
+        }
+    }
+
+    /**
+     * @param coffeeType Type de café
+     * @return Nombre de cafés de ce type servis
+     */
+    public long getCount(CoffeeType coffeeType) {
+        return statsByCoffeeType.get(coffeeType).count.sum();
+    }
+
+    /**
+     * @param coffeeType Type de café
+     * @param window Fenêtre du rythme
+     * @return Cafés de ce type servis par seconde sur la fenêtre
+     */
+    public double getRate(CoffeeType coffeeType, RateWindow window) {
+        return statsByCoffeeType.get(coffeeType).rates[window.ordinal()].getRate(clock.currentTimeMillis());
+    }
+
+    /**
+     * @param window Fenêtre du rythme
+     * @return Cafés servis par seconde sur la fenêtre, tous types confondus
+     */
+    public double getRate(RateWindow window) {
+        double rate = 0;
+        for (CoffeeType coffeeType : CoffeeType.values()) {
+            rate += getRate(coffeeType, window);
+        }
+        return rate;
+    }
+
+    /**
+     * @param stats Débits de plusieurs machines
+     * @param coffeeType Type de café
+     * @return Nombre de cafés de ce type servis par toutes les machines
+     */
+    public static long getCount(Collection<ThroughputStats> stats, CoffeeType coffeeType) {
+        long count = 0;
+        for (ThroughputStats machineStats : stats) {
+            count += machineStats.getCount(coffeeType);
+        }
+        return count;
+    }
+
+    /**
+     * @param stats Débits de plusieurs machines
+     * @param coffeeType Type de café
+     * @param window Fenêtre du rythme
+     * @return Cafés de ce type servis par seconde par toutes les machines sur la fenêtre
+     */
+    public static double getRate(Collection<ThroughputStats> stats, CoffeeType coffeeType, RateWindow window) {
+        double rate = 0;
+        for (ThroughputStats machineStats : stats) {
+            rate += machineStats.getRate(coffeeType, window);
+        }
+        return rate;
+    }
+
+    public String toString() {
+        StringBuilder description = new StringBuilder();
+        for (CoffeeType coffeeType : CoffeeType.values()) {
+            description.append(coffeeType).append(" : ").append(getCount(coffeeType)).append(" coffees, ")
+                    .append(String.format("%.2f", getRate(coffeeType, RateWindow.ONE_MINUTE))).append("/s over 1 min\n");
+        }
+        return description.toString();
+    }
+
+    private static class CoffeeTypeStats {
+        private final LongAdder count = new LongAdder();
+        private final RollingRate[] rates = new RollingRate[RateWindow.values().length];
+
+        private CoffeeTypeStats() {
+            for (RateWindow window : RateWindow.values()) {
+                rates[window.ordinal()] = new RollingRate(window.windowMillis, window.bucketCount);
+            }
+        }
+    }
+}
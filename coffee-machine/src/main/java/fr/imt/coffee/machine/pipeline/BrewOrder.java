@@ -0,0 +1,114 @@
+package fr.imt.coffee.machine.pipeline;
+
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Commande de café qui circule entre les étages du pipeline de la machine
+ */
+public class BrewOrder {
+    private final Container container;
+    private final List<Container> batchContainers;
+    private final CoffeeType coffeeType;
+    private final double waterVolume;
+    private final long submissionTime;
+    private final boolean isPreheating;
+
+    /**
+     * @param container Contenant dans lequel faire couler le café
+     * @param coffeeType Type de café commandé
+     * @param submissionTime Instant de la commande en nanosecondes
+     */
+    public BrewOrder(Container container, CoffeeType coffeeType, long submissionTime) {
+        this(container, coffeeType, container.getCapacity(), submissionTime);
+    }
+
+    /**
+     * @param container Contenant dans lequel faire couler le café
+     * @param coffeeType Type de café commandé
+     * @param waterVolume Volume d'eau à traiter, par exemple le volume cumulé d'une fournée de cafés
+     * @param submissionTime Instant de la commande en nanosecondes
+     */
+    public BrewOrder(Container container, CoffeeType coffeeType, double waterVolume, long submissionTime) {
+        this(container, null, coffeeType, waterVolume, submissionTime, false);
+    }
+
+    private BrewOrder(Container container, List<Container> batchContainers, CoffeeType coffeeType, double waterVolume,
+                      long submissionTime, boolean isPreheating) {
+        this.container = container;
+        this.batchContainers = batchContainers;
+        this.coffeeType = coffeeType;
+        this.waterVolume = waterVolume;
+        this.submissionTime = submissionTime;
+        this.isPreheating = isPreheating;
+    }
+
+    /**
+     * Ordre de préchauffe de la chaudière, sans contenant ni café. Il passe par l'étage de chauffe comme une commande
+     * et ne chauffe donc jamais en même temps qu'un café.
+     * @param submissionTime Instant de l'ordre en nanosecondes
+     * @return Ordre de préchauffe
+     */
+    public static BrewOrder preheating(long submissionTime) {
+        return new BrewOrder(null, null, null, 0, submissionTime, true);
+    }
+
+    /**
+     * Commande d'une fournée de cafés chauffée en un seul cycle : son volume d'eau est celui de tous les contenants
+     * @param containers Contenants de la fournée, le premier sert de contenant de la commande
+     * @param coffeeType Type de café commandé
+     * @param waterVolume Volume d'eau cumulé de la fournée
+     * @param submissionTime Instant de la commande en nanosecondes
+     * @return Commande de la fournée
+     */
+    public static BrewOrder batch(List<Container> containers, CoffeeType coffeeType, double waterVolume, long submissionTime) {
+        if (containers.isEmpty())
+            throw new IllegalArgumentException("A batch must contain at least one container.");
+        return new BrewOrder(containers.get(0), Collections.unmodifiableList(containers), coffeeType, waterVolume, submissionTime, false);
+    }
+
+    public Container getContainer() {
+        return container;
+    }
+
+    /**
+     * @return Contenants de la commande : tous ceux d'une fournée, sinon le seul contenant de la commande
+     */
+    public List<Container> getContainers() {
+        if (batchContainers != null)
+            return batchContainers;
+        return container == null ? Collections.emptyList() : Collections.singletonList(container);
+    }
+
+    /**
+     * @return Vrai pour une fournée de cafés
+     */
+    public boolean isBatch() {
+        return batchContainers != null;
+    }
+
+    public CoffeeType getCoffeeType() {
+        return coffeeType;
+    }
+
+    /**
+     * @return Volume d'eau nécessaire à la commande, par défaut égal à la capacité du contenant
+     */
+    public double getWaterVolume() {
+        return waterVolume;
+    }
+
+    public long getSubmissionTime() {
+        return submissionTime;
+    }
+
+    /**
+     * @return Vrai pour un ordre de préchauffe de la chaudière
+     */
+    public boolean isPreheating() {
+        return isPreheating;
+    }
+}
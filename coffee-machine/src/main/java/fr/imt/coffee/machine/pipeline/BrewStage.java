@@ -0,0 +1,223 @@
+package fr.imt.coffee.machine.pipeline;
+
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.clock.SystemBrewClock;
+import fr.imt.coffee.machine.metrics.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Étage du pipeline de préparation (chauffe, pompage...).
+ * Un étage ne traite qu'une commande à la fois, les commandes suivantes attendent dans sa file.
+ * Dès qu'une commande quitte l'étage, la suivante y entre : deux étages différents travaillent donc en parallèle
+ * sur deux commandes différentes.
+ * L'étage tient des compteurs d'occupation permettant de repérer le goulot d'étranglement de la machine, ainsi que
+ * les histogrammes des temps d'attente dans la file et des temps de traitement des commandes.
+ */
+public class BrewStage {
+    private final String name;
+    private final Function<BrewOrder, CompletableFuture<?>> work;
+    private final BrewClock clock;
+    private final Queue<StageTask> waitingTasks = new ArrayDeque<>();
+    private final long creationTime;
+    private final LatencyHistogram waitTimeHistogram = new LatencyHistogram();
+    private final LatencyHistogram serviceTimeHistogram = new LatencyHistogram();
+
+    private boolean busy;
+    private StageTask currentTask;
+    private long busySince;
+    private long busyTime;
+    private long processedOrders;
+    private int maxQueueDepth;
+
+    /**
+     * @param name Nom de l'étage, utilisé dans les logs et le toString
+     * @param work Travail à effectuer pour une commande, la future retournée est complétée à la fin du travail
+     */
+    public BrewStage(String name, Function<BrewOrder, CompletableFuture<?>> work) {
+        this(name, work, SystemBrewClock.getDefaultClock());
+    }
+
+    /**
+     * @param name Nom de l'étage, utilisé dans les logs et le toString
+     * @param work Travail à effectuer pour une commande, la future retournée est complétée à la fin du travail
+     * @param clock Horloge utilisée pour mesurer l'occupation de l'étage
+     */
+    public BrewStage(String name, Function<BrewOrder, CompletableFuture<?>> work, BrewClock clock) {
+        this.name = name;
+        this.work = work;
+        this.clock = clock;
+        this.creationTime = clock.nanoTime();
+    }
+
+    /**
+     * Fait entrer une commande dans l'étage, ou dans sa file d'attente si l'étage est occupé
+     * @param order Commande à traiter
+     * @return Future complétée avec la commande lorsque l'étage a fini de la traiter
+     */
+    public CompletableFuture<BrewOrder> submit(BrewOrder order) {
+        StageTask task = new StageTask(order, clock.nanoTime());
+        synchronized (this) {
+            if (busy) {
+                waitingTasks.add(task);
+                maxQueueDepth = Math.max(maxQueueDepth, waitingTasks.size());
+                return task.done;
+            }
+            busy = true;
+            busySince = task.submissionTime;
+            currentTask = task;
+        }
+        start(task);
+        return task.done;
+    }
+
+    /**
+     * Fait passer les commandes dans l'étage l'une après l'autre. Un travail terminé dès son lancement (commande
+     * refusée, durée nulle, horloge virtuelle) enchaîne la commande suivante dans la boucle et non par récursion :
+     * une longue file d'attente ne fait pas déborder la pile.
+     */
+    private void start(StageTask firstTask) {
+        StageTask task = firstTask;
+        while (task != null) {
+            task.startTime = clock.nanoTime();
+            waitTimeHistogram.record(task.startTime - task.submissionTime);
+            CompletableFuture<?> stageWork;
+            try {
+                stageWork = work.apply(task.order);
+            } catch (RuntimeException e) {
+                stageWork = CompletableFuture.failedFuture(e);
+            }
+            if (!stageWork.isDone()) {
+                StageTask startedTask = task;
+                stageWork.whenComplete((result, failure) -> start(finish(startedTask, failure)));
+                return;
+            }
+            task = finish(task, stageWork.handle((result, failure) -> failure).join());
+        }
+    }
+
+    /**
+     * Libère l'étage puis transmet la commande terminée à la suite du pipeline
+     * @return Commande suivante à faire entrer dans l'étage, null si la file est vide
+     */
+    private StageTask finish(StageTask task, Throwable failure) {
+        StageTask nextTask;
+        synchronized (this) {
+            long now = clock.nanoTime();
+            serviceTimeHistogram.record(now - task.startTime);
+            busyTime += now - busySince;
+            processedOrders++;
+            nextTask = waitingTasks.poll();
+            currentTask = nextTask;
+            if (nextTask == null) {
+                busy = false;
+            } else {
+                busySince = now;
+            }
+        }
+        if (failure != null) {
+            task.done.completeExceptionally(failure);
+        } else {
+            task.done.complete(task.order);
+        }
+        return nextTask;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized boolean isBusy() {
+        return busy;
+    }
+
+    /**
+     * @return Nombre de commandes en attente devant l'étage
+     */
+    public synchronized int getQueueDepth() {
+        return waitingTasks.size();
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized long getProcessedOrders() {
+        return processedOrders;
+    }
+
+    /**
+     * @return Temps cumulé en nanosecondes pendant lequel l'étage a été occupé, commande en cours comprise
+     */
+    public synchronized long getBusyTime() {
+        return busy ? busyTime + (clock.nanoTime() - busySince) : busyTime;
+    }
+
+    /**
+     * @return Taux d'occupation de l'étage entre 0 et 1 depuis sa création
+     */
+    public double getOccupancy() {
+        long elapsed = clock.nanoTime() - creationTime;
+        return elapsed <= 0 ? 0 : Math.min(1, (double) getBusyTime() / elapsed);
+    }
+
+    /**
+     * @return Copie des commandes en attente devant l'étage, dans leur ordre de passage
+     */
+    public synchronized List<BrewOrder> getWaitingOrders() {
+        List<BrewOrder> waitingOrders = new ArrayList<>(waitingTasks.size());
+        for (StageTask task : waitingTasks) {
+            waitingOrders.add(task.order);
+        }
+        return waitingOrders;
+    }
+
+    /**
+     * @return Copie des commandes présentes dans l'étage : la commande en cours de traitement puis celles en attente
+     */
+    public synchronized List<BrewOrder> getInFlightOrders() {
+        List<BrewOrder> inFlightOrders = new ArrayList<>(waitingTasks.size() + 1);
+        if (currentTask != null)
+            inFlightOrders.add(currentTask.order);
+        for (StageTask task : waitingTasks) {
+            inFlightOrders.add(task.order);
+        }
+        return inFlightOrders;
+    }
+
+    /**
+     * @return Histogramme des temps d'attente des commandes dans la file de l'étage
+     */
+    public LatencyHistogram getWaitTimeHistogram() {
+        return waitTimeHistogram;
+    }
+
+    /**
+     * @return Histogramme des temps de traitement des commandes par l'étage
+     */
+    public LatencyHistogram getServiceTimeHistogram() {
+        return serviceTimeHistogram;
+    }
+
+    public String toString() {
+        return name + " stage : occupancy " + String.format("%.2f", getOccupancy()) +
+                ", " + getProcessedOrders() + " orders processed, " + getQueueDepth() + " waiting";
+    }
+
+    private static class StageTask {
+        private final BrewOrder order;
+        private final long submissionTime;
+        private final CompletableFuture<BrewOrder> done = new CompletableFuture<>();
+        private long startTime;
+
+        private StageTask(BrewOrder order, long submissionTime) {
+            this.order = order;
+            this.submissionTime = submissionTime;
+        }
+    }
+}
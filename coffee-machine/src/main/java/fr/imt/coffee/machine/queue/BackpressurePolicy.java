@@ -0,0 +1,20 @@
+package fr.imt.coffee.machine.queue;
+
+/**
+ * Conduite d'une {@link OrderQueue} pleine lorsqu'une commande arrive
+ */
+public enum BackpressurePolicy {
+    /**
+     * Le producteur attend qu'une place se libère. A réserver aux horloges réelles : avec une horloge virtuelle,
+     * le thread bloqué est celui qui devrait faire avancer la simulation.
+     */
+    BLOCK,
+    /**
+     * La commande est refusée
+     */
+    REJECT,
+    /**
+     * La commande est passée à la file d'une autre machine, puis refusée si cette file est pleine aussi
+     */
+    SPILL
+}
@@ -0,0 +1,38 @@
+package fr.imt.coffee.machine.queue;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+/**
+ * Prépare d'abord les commandes dont l'échéance est la plus proche.
+ * Une commande sans échéance reçoit l'échéance par défaut à partir de son entrée dans la file : elle vieillit comme
+ * les autres et finit par passer devant les commandes arrivées après elle avec une échéance plus lointaine.
+ */
+public class EarliestDeadlineFirstSchedulingPolicy implements SchedulingPolicy {
+
+    public static final long DEFAULT_DEADLINE = 60_000;
+
+    private final long defaultDeadlineNanos;
+
+    public EarliestDeadlineFirstSchedulingPolicy() {
+        this(DEFAULT_DEADLINE);
+    }
+
+    /**
+     * @param defaultDeadlineMillis Délai en millisecondes donné aux commandes passées sans échéance
+     */
+    public EarliestDeadlineFirstSchedulingPolicy(long defaultDeadlineMillis) {
+        if (defaultDeadlineMillis < 0)
+            throw new IllegalArgumentException("The default deadline must be positive.");
+        this.defaultDeadlineNanos = defaultDeadlineMillis * 1_000_000;
+    }
+
+    @Override
+    public long rank(CoffeeMachine coffeeMachine, Container container, long enqueueTime, long deadline) {
+        return deadline == Long.MAX_VALUE ? enqueueTime + defaultDeadlineNanos : deadline;
+    }
+
+    public long getDefaultDeadlineMillis() {
+        return defaultDeadlineNanos / 1_000_000;
+    }
+}
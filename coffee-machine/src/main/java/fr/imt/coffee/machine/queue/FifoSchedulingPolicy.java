@@ -0,0 +1,15 @@
+package fr.imt.coffee.machine.queue;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+/**
+ * Prépare les commandes dans leur ordre d'arrivée
+ */
+public class FifoSchedulingPolicy implements SchedulingPolicy {
+
+    @Override
+    public long rank(CoffeeMachine coffeeMachine, Container container, long enqueueTime, long deadline) {
+        return enqueueTime;
+    }
+}
@@ -0,0 +1,569 @@
+package fr.imt.coffee.machine.queue;
+
+import fr.imt.coffee.machine.BrewResult;
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.metrics.LatencyHistogram;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Container;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * File bornée des commandes d'une machine à café, plusieurs producteurs et un seul consommateur.
+ * Les places de la file sont allouées à la création et réutilisées : un anneau de places dont chacune porte un numéro
+ * de séquence. Un producteur réserve une place par un compare-and-set sur la queue de la file, y écrit sa commande puis
+ * la publie en avançant le numéro de séquence de la place. Le consommateur la reprend et la rend aux producteurs en
+ * avançant à nouveau ce numéro d'un tour d'anneau.
+ *
+ * Le consommateur n'est pas un thread dédié : le thread qui publie une commande ou termine un café vide la file s'il
+ * n'y a pas déjà un consommateur en cours. La file est vidée par lots, tant que la machine a moins de
+ * {@link #getMaxInFlightOrders()} commandes en préparation : au-delà, les commandes restent dans la file et la
+ * contre-pression s'applique ({@link BackpressurePolicy}).
+ *
+ * Les commandes reprises de l'anneau, au plus une fenêtre de la taille d'un lot, attendent dans un tas où la
+ * {@link SchedulingPolicy} choisit la prochaine commande à préparer : arrivée (FIFO), plus courte d'abord (SJF) ou
+ * échéance la plus proche d'abord (EDF).
+ */
+public class OrderQueue {
+
+    public static final Logger logger = LogManager.getLogger(OrderQueue.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    public static final int DEFAULT_MAX_IN_FLIGHT_ORDERS = 2;
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final CoffeeMachine coffeeMachine;
+    private final BrewClock clock;
+    private final BackpressurePolicy backpressurePolicy;
+    private final SchedulingPolicy schedulingPolicy;
+    private final int capacity;
+    private final int mask;
+    private final int batchSize;
+    private final int maxInFlightOrders;
+    private final long creationTime;
+    private final OrderSlot[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private volatile long releasedHead;
+
+    //Commandes reprises de l'anneau, rangées dans un tas selon leur rang. Tas et places libres ne sont utilisés que
+    //par le consommateur, et leurs places sont réutilisées d'une commande à l'autre
+    private final OrderSlot[] scheduledOrders;
+    private final OrderSlot[] freeScheduledSlots;
+    private int freeScheduledSlotCount;
+    private int scheduledOrderCount;
+
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private final AtomicInteger inFlightOrders = new AtomicInteger();
+    private final ReentrantLock notFullLock = new ReentrantLock();
+    private final Condition notFull = notFullLock.newCondition();
+    private volatile int waitingProducers;
+    private volatile OrderQueue spillQueue;
+
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder enqueuedOrders = new LongAdder();
+    private final LongAdder rejectedOrders = new LongAdder();
+    private final LongAdder spilledOrders = new LongAdder();
+    private final LongAdder blockedOffers = new LongAdder();
+    private final LongAdder drainedBatches = new LongAdder();
+    private final LongAdder drainedOrders = new LongAdder();
+    private final LongAdder missedDeadlines = new LongAdder();
+    private final LatencyHistogram queueTimeHistogram = new LatencyHistogram();
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    public OrderQueue(CoffeeMachine coffeeMachine) {
+        this(coffeeMachine, DEFAULT_CAPACITY, BackpressurePolicy.REJECT);
+    }
+
+    public OrderQueue(CoffeeMachine coffeeMachine, int capacity, BackpressurePolicy backpressurePolicy) {
+        this(coffeeMachine, capacity, backpressurePolicy, new FifoSchedulingPolicy());
+    }
+
+    public OrderQueue(CoffeeMachine coffeeMachine, int capacity, BackpressurePolicy backpressurePolicy, SchedulingPolicy schedulingPolicy) {
+        this(coffeeMachine, capacity, backpressurePolicy, schedulingPolicy, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT_ORDERS);
+    }
+
+    /**
+     * Crée la file et la branche devant la machine
+     * @param coffeeMachine Machine qui prépare les commandes de la file
+     * @param capacity Nombre de places de la file, arrondi à la puissance de deux supérieure
+     * @param backpressurePolicy Conduite lorsque la file est pleine
+     * @param schedulingPolicy Ordre dans lequel la machine prépare les commandes reprises de la file
+     * @param batchSize Nombre maximal de commandes reprises de la file et ordonnancées ensemble
+     * @param maxInFlightOrders Nombre maximal de commandes en préparation dans la machine, 2 pour que la chauffe
+     *                          d'une commande recouvre le pompage de la précédente
+     */
+    public OrderQueue(CoffeeMachine coffeeMachine, int capacity, BackpressurePolicy backpressurePolicy,
+                      SchedulingPolicy schedulingPolicy, int batchSize, int maxInFlightOrders) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The capacity must be between 1 and " + (1 << 30) + " orders.");
+        if (batchSize <= 0 || maxInFlightOrders <= 0)
+            throw new IllegalArgumentException("The batch size and the maximum number of orders in flight must be positive.");
+        this.coffeeMachine = coffeeMachine;
+        this.clock = coffeeMachine.getClock();
+        this.backpressurePolicy = backpressurePolicy;
+        this.schedulingPolicy = schedulingPolicy;
+        this.capacity = roundToPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.batchSize = batchSize;
+        this.maxInFlightOrders = maxInFlightOrders;
+        this.creationTime = clock.nanoTime();
+        this.slots = new OrderSlot[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            slots[i] = new OrderSlot();
+            sequences.set(i, i);
+        }
+        this.scheduledOrders = new OrderSlot[batchSize];
+        this.freeScheduledSlots = new OrderSlot[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            freeScheduledSlots[i] = new OrderSlot();
+        }
+        this.freeScheduledSlotCount = batchSize;
+        coffeeMachine.setOrderQueue(this);
+    }
+
+    private static int roundToPowerOfTwo(int capacity) {
+        int roundedCapacity = 1;
+        while (roundedCapacity < capacity) {
+            roundedCapacity <<= 1;
+        }
+        return roundedCapacity;
+    }
+
+    /**
+     * Met une commande sans échéance dans la file si une place est libre, sans jamais attendre ni déborder sur une autre file
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café
+     * @param callback Appelé avec l'issue de la commande, ou l'échec de la chauffe ou du pompage
+     * @return false si la file est pleine
+     */
+    public boolean tryOffer(Container container, CoffeeType coffeeType, BiConsumer<BrewResult, Throwable> callback) {
+        return tryOffer(container, coffeeType, NO_DEADLINE, callback);
+    }
+
+    /**
+     * Met une commande dans la file si une place est libre, sans jamais attendre ni déborder sur une autre file
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café
+     * @param deadlineMillis Délai en millisecondes dans lequel le café doit être servi, {@link #NO_DEADLINE} s'il n'y en a pas
+     * @param callback Appelé avec l'issue de la commande, ou l'échec de la chauffe ou du pompage
+     * @return false si la file est pleine
+     */
+    public boolean tryOffer(Container container, CoffeeType coffeeType, long deadlineMillis, BiConsumer<BrewResult, Throwable> callback) {
+        if (!tryPublish(container, coffeeType, deadlineMillis, callback))
+            return false;
+        drain();
+        return true;
+    }
+
+    /**
+     * Met une commande sans échéance dans la file en appliquant la contre-pression si elle est pleine
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café
+     * @param callback Appelé avec l'issue de la commande, ou l'échec de la chauffe ou du pompage
+     * @return false si la commande est refusée, le callback n'est alors pas appelé
+     * @throws InterruptedException Exception levée si le thread est interrompu en attendant une place
+     */
+    public boolean offer(Container container, CoffeeType coffeeType, BiConsumer<BrewResult, Throwable> callback) throws InterruptedException {
+        return offer(container, coffeeType, NO_DEADLINE, callback);
+    }
+
+    /**
+     * Met une commande dans la file en appliquant la contre-pression si elle est pleine
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café
+     * @param deadlineMillis Délai en millisecondes dans lequel le café doit être servi, {@link #NO_DEADLINE} s'il n'y en a pas
+     * @param callback Appelé avec l'issue de la commande, ou l'échec de la chauffe ou du pompage
+     * @return false si la commande est refusée, le callback n'est alors pas appelé
+     * @throws InterruptedException Exception levée si le thread est interrompu en attendant une place
+     */
+    public boolean offer(Container container, CoffeeType coffeeType, long deadlineMillis, BiConsumer<BrewResult, Throwable> callback) throws InterruptedException {
+        if (tryOffer(container, coffeeType, deadlineMillis, callback))
+            return true;
+        switch (backpressurePolicy) {
+            case BLOCK:
+                blockedOffers.increment();
+                awaitSlot(container, coffeeType, deadlineMillis, callback);
+                drain();
+                return true;
+            case SPILL:
+                OrderQueue spill = spillQueue;
+                if (spill != null && spill.tryOffer(container, coffeeType, deadlineMillis, callback)) {
+                    spilledOrders.increment();
+                    return true;
+                }
+                rejectedOrders.increment();
+                return false;
+            default:
+                rejectedOrders.increment();
+                return false;
+        }
+    }
+
+    /**
+     * Met une commande sans échéance dans la file et donne son issue dans une future
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café
+     * @return Future complétée avec l'issue de la commande, refusée avec {@link BrewResult.RejectionReason#QUEUE_FULL} si la file est pleine
+     * @throws InterruptedException Exception levée si le thread est interrompu en attendant une place
+     */
+    public CompletableFuture<BrewResult> submit(Container container, CoffeeType coffeeType) throws InterruptedException {
+        return submit(container, coffeeType, NO_DEADLINE);
+    }
+
+    /**
+     * Met une commande dans la file et donne son issue dans une future
+     * @param container Contenant pour faire couler le café
+     * @param coffeeType Type de café
+     * @param deadlineMillis Délai en millisecondes dans lequel le café doit être servi, {@link #NO_DEADLINE} s'il n'y en a pas
+     * @return Future complétée avec l'issue de la commande, refusée avec {@link BrewResult.RejectionReason#QUEUE_FULL} si la file est pleine
+     * @throws InterruptedException Exception levée si le thread est interrompu en attendant une place
+     */
+    public CompletableFuture<BrewResult> submit(Container container, CoffeeType coffeeType, long deadlineMillis) throws InterruptedException {
+        CompletableFuture<BrewResult> result = new CompletableFuture<>();
+        boolean isAccepted = offer(container, coffeeType, deadlineMillis, (brewResult, failure) -> {
+            if (failure != null)
+                result.completeExceptionally(failure);
+            else
+                result.complete(brewResult);
+        });
+        if (!isAccepted)
+            result.complete(BrewResult.rejected(BrewResult.RejectionReason.QUEUE_FULL));
+        return result;
+    }
+
+    private boolean tryPublish(Container container, CoffeeType coffeeType, long deadlineMillis, BiConsumer<BrewResult, Throwable> callback) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence < position)
+                return false;
+            if (sequence == position && tail.compareAndSet(position, position + 1)) {
+                long now = clock.nanoTime();
+                OrderSlot slot = slots[index];
+                slot.container = container;
+                slot.coffeeType = coffeeType;
+                slot.callback = callback;
+                slot.enqueueTime = now;
+                slot.deadline = deadlineMillis == NO_DEADLINE ? NO_DEADLINE : now + deadlineMillis * 1_000_000;
+                //Publication : le consommateur ne lit la place qu'après avoir vu ce numéro
+                sequences.set(index, position + 1);
+                enqueuedOrders.increment();
+                //La tête peut être en retard sur les places déjà rendues par le consommateur
+                maxQueueDepth.accumulate(Math.min(capacity, position + 1 - releasedHead));
+                return true;
+            }
+        }
+    }
+
+    private void awaitSlot(Container container, CoffeeType coffeeType, long deadlineMillis,
+                           BiConsumer<BrewResult, Throwable> callback) throws InterruptedException {
+        notFullLock.lockInterruptibly();
+        try {
+            waitingProducers++;
+            try {
+                //La file est vérifiée à nouveau après s'être déclaré en attente, pour ne pas manquer un signal
+                while (!tryPublish(container, coffeeType, deadlineMillis, callback)) {
+                    notFull.await();
+                }
+            } finally {
+                waitingProducers--;
+            }
+        } finally {
+            notFullLock.unlock();
+        }
+    }
+
+    /**
+     * Vide la file si aucun autre thread ne le fait déjà. Une demande faite pendant qu'un thread vide la file est
+     * comptée, et ce thread refait un tour avant de rendre la main.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0)
+            return;
+        int missedRequests = 1;
+        do {
+            drainBatches();
+            missedRequests = drainRequests.addAndGet(-missedRequests);
+        } while (missedRequests != 0);
+    }
+
+    /**
+     * Reprend les commandes de l'anneau tant que le tas a de la place, puis lance la préparation des commandes de plus
+     * petit rang tant que la machine en accepte
+     */
+    private void drainBatches() {
+        while (true) {
+            int takenOrders = takeBatch();
+            if (takenOrders > 0) {
+                drainedBatches.increment();
+                drainedOrders.add(takenOrders);
+            }
+            int dispatchedOrders = 0;
+            while (scheduledOrderCount > 0 && inFlightOrders.get() < maxInFlightOrders) {
+                OrderSlot order = pollScheduledOrder();
+                inFlightOrders.incrementAndGet();
+                releaseSlot();
+                brew(order.container, order.coffeeType, order.callback, order.enqueueTime, order.deadline);
+                order.container = null;
+                order.coffeeType = null;
+                order.callback = null;
+                freeScheduledSlots[freeScheduledSlotCount++] = order;
+                dispatchedOrders++;
+            }
+            if (dispatchedOrders > 0 && waitingProducers > 0)
+                signalNotFull();
+            if (takenOrders == 0 && dispatchedOrders == 0)
+                return;
+        }
+    }
+
+    /**
+     * Rend aux producteurs la plus ancienne place de l'anneau reprise par le consommateur. Les places sont rendues
+     * dans l'ordre de l'anneau, une par commande mise en préparation, quel que soit l'ordre de préparation : une
+     * commande reprise dans le tas compte donc toujours dans la capacité de la file.
+     */
+    private void releaseSlot() {
+        long position = releasedHead;
+        sequences.set((int) position & mask, position + capacity);
+        releasedHead = position + 1;
+    }
+
+    /**
+     * Reprend les commandes publiées dans l'anneau tant que le tas a de la place. Leurs places ne sont rendues qu'à
+     * leur mise en préparation.
+     * @return Nombre de commandes reprises
+     */
+    private int takeBatch() {
+        long position = head;
+        int takenOrders = 0;
+        while (freeScheduledSlotCount > 0) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1)
+                break;
+            OrderSlot slot = slots[index];
+            OrderSlot order = freeScheduledSlots[--freeScheduledSlotCount];
+            freeScheduledSlots[freeScheduledSlotCount] = null;
+            order.container = slot.container;
+            order.coffeeType = slot.coffeeType;
+            order.callback = slot.callback;
+            order.enqueueTime = slot.enqueueTime;
+            order.deadline = slot.deadline;
+            order.sequence = position;
+            order.rank = schedulingPolicy.rank(coffeeMachine, order.container, order.enqueueTime - creationTime,
+                    order.deadline == NO_DEADLINE ? NO_DEADLINE : order.deadline - creationTime);
+            addScheduledOrder(order);
+            slot.container = null;
+            slot.coffeeType = null;
+            slot.callback = null;
+            position++;
+            takenOrders++;
+        }
+        head = position;
+        return takenOrders;
+    }
+
+    private void addScheduledOrder(OrderSlot order) {
+        int index = scheduledOrderCount;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBefore(order, scheduledOrders[parent]))
+                break;
+            scheduledOrders[index] = scheduledOrders[parent];
+            index = parent;
+        }
+        scheduledOrders[index] = order;
+        scheduledOrderCount++;
+    }
+
+    private OrderSlot pollScheduledOrder() {
+        OrderSlot first = scheduledOrders[0];
+        int count = scheduledOrderCount - 1;
+        OrderSlot last = scheduledOrders[count];
+        scheduledOrders[count] = null;
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= count)
+                break;
+            if (child + 1 < count && isBefore(scheduledOrders[child + 1], scheduledOrders[child]))
+                child++;
+            if (!isBefore(scheduledOrders[child], last))
+                break;
+            scheduledOrders[index] = scheduledOrders[child];
+            index = child;
+        }
+        if (count > 0)
+            scheduledOrders[index] = last;
+        scheduledOrderCount = count;
+        return first;
+    }
+
+    private static boolean isBefore(OrderSlot order, OrderSlot other) {
+        return order.rank != other.rank ? order.rank < other.rank : order.sequence < other.sequence;
+    }
+
+    private void brew(Container container, CoffeeType coffeeType, BiConsumer<BrewResult, Throwable> callback,
+                      long enqueueTime, long deadline) {
+        queueTimeHistogram.record(clock.nanoTime() - enqueueTime);
+        coffeeMachine.brewAsync(container, coffeeType).whenComplete((result, failure) -> {
+            long now = clock.nanoTime();
+            inFlightOrders.decrementAndGet();
+            latencyHistogram.record(now - enqueueTime);
+            if (now > deadline)
+                missedDeadlines.increment();
+            try {
+                callback.accept(result, failure);
+            } catch (RuntimeException e) {
+                logger.error("Order callback of coffee machine " + coffeeMachine.getId() + " failed", e);
+            }
+            drain();
+        });
+    }
+
+    private void signalNotFull() {
+        notFullLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            notFullLock.unlock();
+        }
+    }
+
+    /**
+     * @return Nombre de commandes dans la file, reprises par le consommateur mais pas encore en préparation comprises
+     */
+    public int getQueueDepth() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - releasedHead));
+    }
+
+    /**
+     * @return Plus grand nombre de commandes vu dans la file
+     */
+    public int getMaxQueueDepth() {
+        return (int) maxQueueDepth.get();
+    }
+
+    /**
+     * @return Nombre de commandes reprises de la file et pas encore servies
+     */
+    public int getInFlightOrders() {
+        return inFlightOrders.get();
+    }
+
+    public long getEnqueuedOrders() {
+        return enqueuedOrders.sum();
+    }
+
+    /**
+     * @return Nombre de commandes refusées car la file était pleine
+     */
+    public long getRejectedOrders() {
+        return rejectedOrders.sum();
+    }
+
+    /**
+     * @return Nombre de commandes passées à la file de débordement
+     */
+    public long getSpilledOrders() {
+        return spilledOrders.sum();
+    }
+
+    /**
+     * @return Nombre de commandes dont le producteur a attendu une place
+     */
+    public long getBlockedOffers() {
+        return blockedOffers.sum();
+    }
+
+    /**
+     * @return Nombre moyen de commandes reprises par lot
+     */
+    public double getMeanBatchSize() {
+        long batches = drainedBatches.sum();
+        return batches == 0 ? 0 : (double) drainedOrders.sum() / batches;
+    }
+
+    /**
+     * @return Nombre de commandes servies après leur échéance
+     */
+    public long getMissedDeadlines() {
+        return missedDeadlines.sum();
+    }
+
+    /**
+     * @return Histogramme des temps passés par les commandes dans la file
+     */
+    public LatencyHistogram getQueueTimeHistogram() {
+        return queueTimeHistogram;
+    }
+
+    /**
+     * @return Histogramme des temps entre l'entrée des commandes dans la file et leur issue
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxInFlightOrders() {
+        return maxInFlightOrders;
+    }
+
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    public SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    public CoffeeMachine getCoffeeMachine() {
+        return coffeeMachine;
+    }
+
+    public OrderQueue getSpillQueue() {
+        return spillQueue;
+    }
+
+    /**
+     * @param spillQueue File, en général celle d'une autre machine, qui reçoit les commandes quand celle-ci est pleine
+     *                   avec {@link BackpressurePolicy#SPILL}
+     */
+    public void setSpillQueue(OrderQueue spillQueue) {
+        this.spillQueue = spillQueue;
+    }
+
+    public String toString() {
+        return "Order queue of coffee machine " + coffeeMachine.getId() + " : " + getQueueDepth() + "/" + capacity +
+                " orders waiting, " + getInFlightOrders() + " in flight, " + getRejectedOrders() + " rejected";
+    }
+
+    private static final class OrderSlot {
+        private Container container;
+        private CoffeeType coffeeType;
+        private BiConsumer<BrewResult, Throwable> callback;
+        private long enqueueTime;
+        private long deadline;
+        private long rank;
+        private long sequence;
+    }
+}
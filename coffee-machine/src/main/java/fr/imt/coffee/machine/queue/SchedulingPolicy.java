@@ -0,0 +1,23 @@
+package fr.imt.coffee.machine.queue;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+/**
+ * Politique d'ordonnancement des commandes en attente dans une {@link OrderQueue}.
+ * Le rang d'une commande est calculé une seule fois, quand le consommateur la reprend de la file : parmi les commandes
+ * reprises, la machine prépare d'abord celle de plus petit rang, puis celle entrée la première à rang égal.
+ * Un vieillissement linéaire garde un rang fixe : retirer du rang le temps d'attente multiplié par un taux revient,
+ * à un instant donné, à ajouter à tous les rangs la date d'entrée multipliée par ce même taux.
+ */
+public interface SchedulingPolicy {
+
+    /**
+     * @param coffeeMachine Machine qui va préparer la commande
+     * @param container Contenant de la commande
+     * @param enqueueTime Entrée de la commande dans la file, en nanosecondes depuis la création de la file
+     * @param deadline Échéance de la commande, en nanosecondes depuis la création de la file, {@link Long#MAX_VALUE} si elle n'en a pas
+     * @return Rang de la commande, les petits rangs passent en premier
+     */
+    long rank(CoffeeMachine coffeeMachine, Container container, long enqueueTime, long deadline);
+}
@@ -0,0 +1,52 @@
+package fr.imt.coffee.machine.queue;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+/**
+ * Prépare d'abord les commandes les plus courtes : la durée prévue d'une commande est sa durée de chauffe machine
+ * froide plus sa durée de pompage, qui croissent toutes deux avec la capacité du contenant.
+ * Pour qu'un mug ne soit jamais affamé par un flot de tasses, chaque nanoseconde d'attente retire
+ * {@link #getAgingRate()} nanosecondes à sa durée prévue : un mug passe au plus tard
+ * (durée du mug - durée de la tasse) / taux de vieillissement après une tasse arrivée en même temps que lui.
+ */
+public class ShortestJobFirstSchedulingPolicy implements SchedulingPolicy {
+
+    public static final double DEFAULT_AGING_RATE = 1;
+
+    private final double agingRate;
+
+    public ShortestJobFirstSchedulingPolicy() {
+        this(DEFAULT_AGING_RATE);
+    }
+
+    /**
+     * @param agingRate Nanosecondes de durée prévue retirées par nanoseconde d'attente, 0 pour ne pas vieillir
+     */
+    public ShortestJobFirstSchedulingPolicy(double agingRate) {
+        if (agingRate < 0)
+            throw new IllegalArgumentException("The aging rate must be positive.");
+        this.agingRate = agingRate;
+    }
+
+    @Override
+    public long rank(CoffeeMachine coffeeMachine, Container container, long enqueueTime, long deadline) {
+        return (long) (predictBrewTime(coffeeMachine, container) + agingRate * enqueueTime);
+    }
+
+    /**
+     * @param coffeeMachine Machine qui va préparer la commande
+     * @param container Contenant de la commande
+     * @return Durée prévue de la commande en nanosecondes
+     */
+    public static double predictBrewTime(CoffeeMachine coffeeMachine, Container container) {
+        double waterVolume = container.getCapacity();
+        double brewTimeMillis = coffeeMachine.getElectricalResistance().computeHeatingTime(waterVolume)
+                + coffeeMachine.getWaterPump().computePumpingTime(waterVolume);
+        return brewTimeMillis * 1_000_000;
+    }
+
+    public double getAgingRate() {
+        return agingRate;
+    }
+}
@@ -0,0 +1,111 @@
+package fr.imt.coffee.machine.recovery;
+
+import fr.imt.coffee.machine.clock.BrewClock;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Disjoncteur d'une machine à café.
+ * Fermé, il laisse passer les commandes et compte les pannes. Quand la machine tombe trop souvent en panne sur une
+ * fenêtre de temps, il s'ouvre : plus aucune commande n'est envoyée à la machine pendant la durée d'ouverture.
+ * Il passe ensuite à demi-ouvert : la prochaine commande servie le referme, la prochaine panne le rouvre.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final BrewClock clock;
+    private final int failureThreshold;
+    private final long failureWindow;
+    private final long openDuration;
+    private final Deque<Long> failureTimes = new ArrayDeque<>();
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private long openings;
+
+    /**
+     * @param clock Horloge de la machine
+     * @param failureThreshold Nombre de pannes sur la fenêtre qui ouvre le disjoncteur
+     * @param failureWindowMillis Durée de la fenêtre de comptage des pannes en millisecondes
+     * @param openDurationMillis Durée d'ouverture du disjoncteur en millisecondes
+     */
+    public CircuitBreaker(BrewClock clock, int failureThreshold, long failureWindowMillis, long openDurationMillis) {
+        this.clock = clock;
+        this.failureThreshold = failureThreshold;
+        this.failureWindow = failureWindowMillis * 1_000_000;
+        this.openDuration = openDurationMillis * 1_000_000;
+    }
+
+    /**
+     * @return Vrai si une commande peut être envoyée à la machine
+     */
+    public synchronized boolean allowRequest() {
+        return getState() != State.OPEN;
+    }
+
+    /**
+     * Compte une panne de la machine
+     * @return Vrai si cette panne a ouvert le disjoncteur
+     */
+    public synchronized boolean recordFailure() {
+        long now = clock.nanoTime();
+        State currentState = getState();
+        if (currentState == State.OPEN)
+            return false;
+        if (currentState == State.HALF_OPEN) {
+            open(now);
+            return true;
+        }
+
+        failureTimes.addLast(now);
+        while (!failureTimes.isEmpty() && now - failureTimes.peekFirst() > failureWindow) {
+            failureTimes.removeFirst();
+        }
+        if (failureTimes.size() >= failureThreshold) {
+            open(now);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compte une commande servie par la machine
+     */
+    public synchronized void recordSuccess() {
+        if (getState() == State.HALF_OPEN)
+            state = State.CLOSED;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openUntil = now + openDuration;
+        openings++;
+        failureTimes.clear();
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.nanoTime() >= openUntil)
+            state = State.HALF_OPEN;
+        return state;
+    }
+
+    /**
+     * @return Nombre d'ouvertures du disjoncteur
+     */
+    public synchronized long getOpenings() {
+        return openings;
+    }
+
+    /**
+     * @return Durée d'ouverture du disjoncteur en millisecondes
+     */
+    public long getOpenDuration() {
+        return openDuration / 1_000_000;
+    }
+
+    public String toString() {
+        return "circuit breaker " + getState() + ", opened " + getOpenings() + " times";
+    }
+}
@@ -0,0 +1,49 @@
+package fr.imt.coffee.machine.recovery;
+
+/**
+ * Délais d'attente croissants entre deux tentatives : le délai est multiplié à chaque tentative, sans dépasser un
+ * délai maximal
+ */
+public class ExponentialBackoff {
+
+    private final double initialDelay;
+    private final double multiplier;
+    private final double maxDelay;
+
+    /**
+     * @param initialDelay Délai avant la première tentative en millisecondes
+     * @param multiplier Facteur appliqué au délai à chaque nouvelle tentative
+     * @param maxDelay Délai maximal en millisecondes
+     */
+    public ExponentialBackoff(double initialDelay, double multiplier, double maxDelay) {
+        if (initialDelay < 0 || multiplier < 1 || maxDelay < initialDelay)
+            throw new IllegalArgumentException("Invalid backoff : initial delay " + initialDelay + ", multiplier " + multiplier + ", max delay " + maxDelay);
+        this.initialDelay = initialDelay;
+        this.multiplier = multiplier;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * @param attempt Rang de la tentative, à partir de 0
+     * @return Délai avant la tentative en millisecondes
+     */
+    public double getDelay(int attempt) {
+        return Math.min(maxDelay, initialDelay * Math.pow(multiplier, attempt));
+    }
+
+    public double getInitialDelay() {
+        return initialDelay;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getMaxDelay() {
+        return maxDelay;
+    }
+
+    public String toString() {
+        return initialDelay + " ms x " + multiplier + " up to " + maxDelay + " ms";
+    }
+}
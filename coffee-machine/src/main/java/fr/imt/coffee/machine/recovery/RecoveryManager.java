@@ -0,0 +1,168 @@
+package fr.imt.coffee.machine.recovery;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.BrewClock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remise en service automatique des machines à café tombées en panne.
+ * Une machine en panne est remise à zéro après un délai qui croît avec ses pannes successives
+ * ({@link ExponentialBackoff}) et revient à son délai initial dès qu'elle sert un café.
+ * Chaque machine a son {@link CircuitBreaker} : une machine qui retombe sans cesse en panne n'est plus utilisée
+ * pendant la durée d'ouverture du disjoncteur.
+ * Une commande qui ne trouve aucune machine disponible peut attendre la prochaine remise en service
+ * ({@link #getNextRecovery()}), au plus {@link #getMaxRetries()} fois.
+ */
+public class RecoveryManager {
+
+    public static final Logger logger = LogManager.getLogger(RecoveryManager.class);
+
+    public static final ExponentialBackoff DEFAULT_RESET_BACKOFF = new ExponentialBackoff(1000, 2, 60_000);
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_FAILURE_WINDOW = 60_000;
+    public static final long DEFAULT_OPEN_DURATION = 30_000;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private final BrewClock clock;
+    private final ExponentialBackoff resetBackoff;
+    private final int failureThreshold;
+    private final long failureWindowMillis;
+    private final long openDurationMillis;
+    private final int maxRetries;
+    private final Map<CoffeeMachine, MachineHealth> healthByMachine = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingRecoveries = new AtomicInteger();
+    private final LongAdder autoResets = new LongAdder();
+    private final AtomicReference<CompletableFuture<Void>> nextRecovery = new AtomicReference<>(new CompletableFuture<>());
+
+    public RecoveryManager(BrewClock clock) {
+        this(clock, DEFAULT_RESET_BACKOFF, DEFAULT_FAILURE_THRESHOLD, DEFAULT_FAILURE_WINDOW, DEFAULT_OPEN_DURATION, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * @param clock Horloge des machines à café
+     * @param resetBackoff Délais avant la remise à zéro automatique d'une machine en panne
+     * @param failureThreshold Nombre de pannes sur la fenêtre qui ouvre le disjoncteur d'une machine
+     * @param failureWindowMillis Durée de la fenêtre de comptage des pannes en millisecondes
+     * @param openDurationMillis Durée d'ouverture du disjoncteur en millisecondes
+     * @param maxRetries Nombre de fois où une commande peut attendre une remise en service
+     */
+    public RecoveryManager(BrewClock clock, ExponentialBackoff resetBackoff, int failureThreshold,
+                           long failureWindowMillis, long openDurationMillis, int maxRetries) {
+        this.clock = clock;
+        this.resetBackoff = resetBackoff;
+        this.failureThreshold = failureThreshold;
+        this.failureWindowMillis = failureWindowMillis;
+        this.openDurationMillis = openDurationMillis;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param coffeeMachine Machine à café
+     * @return Vrai si le disjoncteur de la machine laisse passer les commandes
+     */
+    public boolean isAvailable(CoffeeMachine coffeeMachine) {
+        return getHealth(coffeeMachine).circuitBreaker.allowRequest();
+    }
+
+    /**
+     * Compte un café servi : le disjoncteur se referme s'il était demi-ouvert et le délai de remise à zéro revient
+     * à sa valeur initiale
+     * @param coffeeMachine Machine qui a servi le café
+     */
+    public void recordSuccess(CoffeeMachine coffeeMachine) {
+        MachineHealth health = getHealth(coffeeMachine);
+        health.circuitBreaker.recordSuccess();
+        health.consecutiveFailures.set(0);
+    }
+
+    /**
+     * Compte une panne : planifie la remise à zéro de la machine si elle est en panne et ouvre son disjoncteur si
+     * elle tombe trop souvent en panne
+     * @param coffeeMachine Machine tombée en panne
+     */
+    public void recordFailure(CoffeeMachine coffeeMachine) {
+        MachineHealth health = getHealth(coffeeMachine);
+        if (health.circuitBreaker.recordFailure()) {
+            logger.warn("Coffee machine " + coffeeMachine.getId() + " fails too often, no more orders for " + openDurationMillis + " ms");
+            scheduleRecovery(openDurationMillis, () -> { });
+        }
+        if (coffeeMachine.isOutOfOrder() && health.isResetScheduled.compareAndSet(false, true)) {
+            double delay = resetBackoff.getDelay(health.consecutiveFailures.getAndIncrement());
+            logger.info("Coffee machine " + coffeeMachine.getId() + " will be reset in " + delay + " ms");
+            scheduleRecovery(delay, () -> {
+                coffeeMachine.reset();
+                health.isResetScheduled.set(false);
+                autoResets.increment();
+            });
+        }
+    }
+
+    private void scheduleRecovery(double delay, Runnable recovery) {
+        pendingRecoveries.incrementAndGet();
+        clock.delay(delay).thenRun(() -> {
+            recovery.run();
+            pendingRecoveries.decrementAndGet();
+            nextRecovery.getAndSet(new CompletableFuture<>()).complete(null);
+        });
+    }
+
+    /**
+     * @return Future complétée à la prochaine remise à zéro ou fermeture d'un disjoncteur, null si aucune n'est prévue
+     */
+    public CompletableFuture<Void> getNextRecovery() {
+        //La future est lue avant le compteur : si une remise en service la remplace entre temps, elle est déjà complétée
+        CompletableFuture<Void> recovery = nextRecovery.get();
+        return pendingRecoveries.get() > 0 || recovery.isDone() ? recovery : null;
+    }
+
+    /**
+     * @param coffeeMachine Machine à café
+     * @return Disjoncteur de la machine
+     */
+    public CircuitBreaker getCircuitBreaker(CoffeeMachine coffeeMachine) {
+        return getHealth(coffeeMachine).circuitBreaker;
+    }
+
+    private MachineHealth getHealth(CoffeeMachine coffeeMachine) {
+        return healthByMachine.computeIfAbsent(coffeeMachine, machine ->
+                new MachineHealth(new CircuitBreaker(clock, failureThreshold, failureWindowMillis, openDurationMillis)));
+    }
+
+    /**
+     * @return Nombre de remises à zéro automatiques faites
+     */
+    public long getAutoResets() {
+        return autoResets.sum();
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public ExponentialBackoff getResetBackoff() {
+        return resetBackoff;
+    }
+
+    public String toString() {
+        return "Recovery manager : " + getAutoResets() + " automatic resets, " + pendingRecoveries.get() + " pending recoveries";
+    }
+
+    private static class MachineHealth {
+        private final CircuitBreaker circuitBreaker;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicBoolean isResetScheduled = new AtomicBoolean();
+
+        private MachineHealth(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
+    }
+}
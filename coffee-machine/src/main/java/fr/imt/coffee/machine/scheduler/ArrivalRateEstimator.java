@@ -0,0 +1,170 @@
+package fr.imt.coffee.machine.scheduler;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estimation du rythme d'arrivée des commandes d'une machine à café.
+ * Deux estimations sont tenues :
+ * - un rythme récent, moyenne mobile exponentielle des arrivées qui décroît avec une constante de temps donnée ;
+ * - un profil journalier, découpé en créneaux (par défaut 96 créneaux de 15 minutes), dont chaque créneau est une
+ *   moyenne mobile exponentielle, d'un jour à l'autre, du rythme observé sur ce créneau.
+ * Le profil permet d'anticiper les commandes du matin alors que le rythme récent est nul après la nuit.
+ * Les temps sont en millisecondes et les rythmes en commandes par milliseconde.
+ *
+ * Une arrivée est comptée sans verrou dans un {@link LongAdder} : les commandes simultanées ne se disputent pas un
+ * moniteur. Le temps est découpé en tranches d'environ 1/{@value #BUCKETS_PER_TIME_CONSTANT} de la constante de
+ * temps, alignées sur les créneaux ; les arrivées d'une tranche sont datées de son milieu et reportées dans les deux
+ * estimations à la prochaine lecture, par exemple au tick de préchauffe, ou au passage à la tranche suivante.
+ * Seul ce passage prend le verrou, une fois par tranche et non une fois par commande.
+ */
+public class ArrivalRateEstimator {
+
+    public static final double DEFAULT_TIME_CONSTANT = 600_000;
+    public static final long DEFAULT_SLOT_DURATION = 900_000;
+    public static final int DEFAULT_SLOTS_PER_PERIOD = 96;
+    public static final double DEFAULT_PROFILE_WEIGHT = 0.3;
+    public static final int BUCKETS_PER_TIME_CONSTANT = 16;
+
+    private final double timeConstant;
+    private final long slotDuration;
+    private final double profileWeight;
+    private final double[] slotRates;
+    private final long bucketsPerSlot;
+    private final LongAdder pendingArrivals = new LongAdder();
+
+    private volatile long currentBucket = Long.MIN_VALUE;
+    private double recentRate;
+    private double recentRateTime;
+    private long currentSlot = Long.MIN_VALUE;
+    private long currentSlotCount;
+
+    public ArrivalRateEstimator() {
+        this(DEFAULT_TIME_CONSTANT, DEFAULT_SLOT_DURATION, DEFAULT_SLOTS_PER_PERIOD, DEFAULT_PROFILE_WEIGHT);
+    }
+
+    /**
+     * @param timeConstant Constante de temps du rythme récent en millisecondes
+     * @param slotDuration Durée d'un créneau du profil en millisecondes
+     * @param slotsPerPeriod Nombre de créneaux du profil avant qu'il ne se répète, 96 créneaux de 15 minutes pour un profil journalier
+     * @param profileWeight Poids entre 0 et 1 du dernier rythme observé dans un créneau face aux jours précédents
+     */
+    public ArrivalRateEstimator(double timeConstant, long slotDuration, int slotsPerPeriod, double profileWeight) {
+        this.timeConstant = timeConstant;
+        this.slotDuration = slotDuration;
+        this.profileWeight = profileWeight;
+        this.slotRates = new double[slotsPerPeriod];
+        this.bucketsPerSlot = (long) Math.max(1, Math.min(slotDuration,
+                Math.ceil(BUCKETS_PER_TIME_CONSTANT * slotDuration / timeConstant)));
+    }
+
+    /**
+     * Compte l'arrivée d'une commande, sans verrou tant que la tranche de temps ne change pas
+     * @param timeMillis Instant de la commande
+     */
+    public void record(long timeMillis) {
+        if (bucketIndex(timeMillis) > currentBucket)
+            foldUntil(timeMillis);
+        //Une arrivée comptée juste après un report est reportée avec la tranche suivante
+        pendingArrivals.increment();
+    }
+
+    /**
+     * @param timeMillis Instant de l'estimation
+     * @return Rythme récent des commandes, en commandes par milliseconde
+     */
+    public synchronized double getRecentRate(long timeMillis) {
+        foldUntil(timeMillis);
+        return decayedRate(timeMillis);
+    }
+
+    /**
+     * @param timeMillis Instant dont on cherche le créneau
+     * @return Rythme des commandes appris pour le créneau contenant l'instant, en commandes par milliseconde
+     */
+    public synchronized double getProfileRate(long timeMillis) {
+        foldUntil(timeMillis);
+        return slotRates[slotIndex(Math.floorDiv(timeMillis, slotDuration))];
+    }
+
+    /**
+     * Prédit le nombre de commandes à venir : le plus grand du rythme récent et du rythme appris pour les créneaux
+     * du début et de la fin de l'horizon
+     * @param timeMillis Instant de la prédiction
+     * @param horizonMillis Durée sur laquelle prédire les commandes
+     * @return Nombre de commandes attendues sur l'horizon
+     */
+    public synchronized double predictOrders(long timeMillis, long horizonMillis) {
+        foldUntil(timeMillis);
+        double profileRate = Math.max(slotRates[slotIndex(Math.floorDiv(timeMillis, slotDuration))],
+                slotRates[slotIndex(Math.floorDiv(timeMillis + horizonMillis, slotDuration))]);
+        return Math.max(decayedRate(timeMillis), profileRate) * horizonMillis;
+    }
+
+    private double decayedRate(double timeMillis) {
+        double elapsedTime = Math.max(0, timeMillis - recentRateTime);
+        return recentRate * Math.exp(-elapsedTime / timeConstant);
+    }
+
+    /**
+     * Reporte les arrivées de la tranche en cours dans les estimations, puis passe à la tranche de l'instant donné
+     */
+    private synchronized void foldUntil(long timeMillis) {
+        long arrivals = pendingArrivals.sumThenReset();
+        if (arrivals > 0 && currentBucket != Long.MIN_VALUE) {
+            double bucketTime = bucketMiddle(currentBucket);
+            recentRate = decayedRate(bucketTime) + arrivals / timeConstant;
+            recentRateTime = Math.max(recentRateTime, bucketTime);
+            currentSlotCount += arrivals;
+        }
+        long bucket = bucketIndex(timeMillis);
+        if (bucket > currentBucket) {
+            advance(timeMillis);
+            currentBucket = bucket;
+        }
+    }
+
+    private long bucketIndex(long timeMillis) {
+        long slot = Math.floorDiv(timeMillis, slotDuration);
+        return slot * bucketsPerSlot + Math.floorMod(timeMillis, slotDuration) * bucketsPerSlot / slotDuration;
+    }
+
+    private double bucketMiddle(long bucket) {
+        long slot = Math.floorDiv(bucket, bucketsPerSlot);
+        return slot * (double) slotDuration + (Math.floorMod(bucket, bucketsPerSlot) + 0.5) * slotDuration / bucketsPerSlot;
+    }
+
+    /**
+     * Clôt les créneaux écoulés depuis la dernière tranche et met leur rythme dans le profil.
+     * Au-delà d'une période sans commande, chaque créneau n'est mis à jour qu'une fois.
+     */
+    private void advance(long timeMillis) {
+        long slot = Math.floorDiv(timeMillis, slotDuration);
+        if (currentSlot == Long.MIN_VALUE) {
+            currentSlot = slot;
+            return;
+        }
+        if (slot <= currentSlot)
+            return;
+
+        updateSlot(currentSlot, currentSlotCount);
+        long lastEmptySlot = Math.min(slot - 1, currentSlot + slotRates.length - 1);
+        for (long emptySlot = currentSlot + 1; emptySlot <= lastEmptySlot; emptySlot++) {
+            updateSlot(emptySlot, 0);
+        }
+        currentSlot = slot;
+        currentSlotCount = 0;
+    }
+
+    private void updateSlot(long slot, long orderCount) {
+        int index = slotIndex(slot);
+        slotRates[index] += profileWeight * ((double) orderCount / slotDuration - slotRates[index]);
+    }
+
+    private int slotIndex(long slot) {
+        return (int) Math.floorMod(slot, (long) slotRates.length);
+    }
+
+    public synchronized String toString() {
+        return "last recent rate " + String.format("%.2f", recentRate * 3_600_000) + " orders/h";
+    }
+}
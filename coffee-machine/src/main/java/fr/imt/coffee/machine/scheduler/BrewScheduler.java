@@ -0,0 +1,38 @@
+package fr.imt.coffee.machine.scheduler;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ordonnanceur partagé par toutes les machines à café.
+ * Les temps de chauffe et de pompage ne sont plus des Thread.sleep mais des tâches planifiées sur ce pool :
+ * quelques threads suffisent à faire avancer des milliers de cafés en parallèle.
+ */
+public final class BrewScheduler {
+
+    private static final ScheduledExecutorService SHARED_SCHEDULER =
+            Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), new BrewThreadFactory());
+
+    private BrewScheduler() { }
+
+    /**
+     * Retourne l'ordonnanceur partagé. Ses threads sont des daemons, ils n'empêchent pas l'arrêt de la JVM.
+     * @return Ordonnanceur partagé des étapes de chauffe et de pompage
+     */
+    public static ScheduledExecutorService getSharedScheduler() {
+        return SHARED_SCHEDULER;
+    }
+
+    private static class BrewThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "coffee-brew-scheduler-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package fr.imt.coffee.machine.scheduler;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.BrewClock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Préchauffe les chaudières des machines à café avant les commandes attendues.
+ * A chaque tour, le nombre de commandes attendues sur l'horizon est prédit à partir du rythme d'arrivée de chaque
+ * machine ({@link ArrivalRateEstimator}). La probabilité qu'au moins une commande arrive sur l'horizon est celle d'un
+ * processus de Poisson : 1 - exp(-commandes attendues). Si elle atteint le seuil de demande et que la chaudière est
+ * plus froide que la température de préchauffe, la chaudière est préchauffée. Sinon la machine refroidit.
+ *
+ * Le seuil de demande règle le compromis entre énergie et latence : à 0 les chaudières restent toujours chaudes,
+ * à 1 elles ne sont jamais préchauffées.
+ */
+public class PreheatingScheduler implements Closeable {
+
+    public static final Logger logger = LogManager.getLogger(PreheatingScheduler.class);
+
+    public static final long DEFAULT_TICK = 30_000;
+    public static final long DEFAULT_HORIZON = 900_000;
+    public static final double DEFAULT_DEMAND_THRESHOLD = 0.5;
+    public static final double DEFAULT_PREHEATING_TEMPERATURE = 80;
+
+    private final BrewClock clock;
+    private final long tickMillis;
+    private final long horizonMillis;
+    private final double demandThreshold;
+    private final double preheatingTemperature;
+    private final List<CoffeeMachine> coffeeMachines = new CopyOnWriteArrayList<>();
+    private final LongAdder preheatings = new LongAdder();
+    private volatile boolean isRunning;
+
+    public PreheatingScheduler(BrewClock clock) {
+        this(clock, DEFAULT_TICK, DEFAULT_HORIZON, DEFAULT_DEMAND_THRESHOLD, DEFAULT_PREHEATING_TEMPERATURE);
+    }
+
+    /**
+     * @param clock Horloge des machines à café
+     * @param tickMillis Intervalle entre deux tours en millisecondes
+     * @param horizonMillis Durée sur laquelle les commandes sont anticipées en millisecondes
+     * @param demandThreshold Probabilité minimale d'une commande sur l'horizon pour préchauffer, entre 0 et 1
+     * @param preheatingTemperature Température de la chaudière en °C en dessous de laquelle elle est préchauffée
+     */
+    public PreheatingScheduler(BrewClock clock, long tickMillis, long horizonMillis, double demandThreshold, double preheatingTemperature) {
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.horizonMillis = horizonMillis;
+        this.demandThreshold = demandThreshold;
+        this.preheatingTemperature = preheatingTemperature;
+    }
+
+    public void addCoffeeMachine(CoffeeMachine coffeeMachine) {
+        coffeeMachines.add(coffeeMachine);
+    }
+
+    public void removeCoffeeMachine(CoffeeMachine coffeeMachine) {
+        coffeeMachines.remove(coffeeMachine);
+    }
+
+    /**
+     * Lance les tours de préchauffe sur l'horloge des machines
+     */
+    public void start() {
+        if (isRunning)
+            return;
+        isRunning = true;
+        scheduleNextTick();
+    }
+
+    private void scheduleNextTick() {
+        clock.delay(tickMillis).thenRun(() -> {
+            if (!isRunning)
+                return;
+            try {
+                preheatMachines();
+            } catch (RuntimeException e) {
+                logger.error("Preheating tick failed", e);
+            }
+            scheduleNextTick();
+        });
+    }
+
+    /**
+     * Fait un tour : préchauffe les machines pour lesquelles une commande est assez probable sur l'horizon
+     * @return Nombre de machines mises en préchauffe
+     */
+    public int preheatMachines() {
+        long now = clock.currentTimeMillis();
+        int preheatedMachines = 0;
+        for (CoffeeMachine coffeeMachine : coffeeMachines) {
+            if (shouldPreheat(coffeeMachine, now)) {
+                coffeeMachine.preheatAsync();
+                preheatings.increment();
+                preheatedMachines++;
+            }
+        }
+        return preheatedMachines;
+    }
+
+    /**
+     * @param coffeeMachine Machine à café
+     * @param timeMillis Instant de la décision
+     * @return Probabilité qu'au moins une commande arrive sur l'horizon
+     */
+    public double getDemandProbability(CoffeeMachine coffeeMachine, long timeMillis) {
+        double expectedOrders = coffeeMachine.getArrivalRateEstimator().predictOrders(timeMillis, horizonMillis);
+        return 1 - Math.exp(-expectedOrders);
+    }
+
+    private boolean shouldPreheat(CoffeeMachine coffeeMachine, long timeMillis) {
+        //Une machine qui chauffe déjà un café n'a pas besoin d'être préchauffée
+        if (!coffeeMachine.isPlugged() || coffeeMachine.isOutOfOrder() || coffeeMachine.getHeatingStage().isBusy())
+            return false;
+        if (coffeeMachine.getElectricalResistance().getBoilerTemperature() >= preheatingTemperature)
+            return false;
+        return getDemandProbability(coffeeMachine, timeMillis) >= demandThreshold;
+    }
+
+    /**
+     * @return Nombre de préchauffes lancées
+     */
+    public long getPreheatings() {
+        return preheatings.sum();
+    }
+
+    /**
+     * @return Énergie dépensée à préchauffer les machines suivies, en joules
+     */
+    public double getPreheatingEnergy() {
+        double preheatingEnergy = 0;
+        for (CoffeeMachine coffeeMachine : coffeeMachines) {
+            preheatingEnergy += coffeeMachine.getElectricalResistance().getPreheatingEnergy();
+        }
+        return preheatingEnergy;
+    }
+
+    /**
+     * Arrête les tours de préchauffe. Une préchauffe en cours va à son terme.
+     */
+    @Override
+    public void close() {
+        isRunning = false;
+    }
+
+    public String toString() {
+        return "Preheating scheduler : " + coffeeMachines.size() + " coffee machines, " + getPreheatings() + " preheatings";
+    }
+}
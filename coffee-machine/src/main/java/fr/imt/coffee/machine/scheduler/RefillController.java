@@ -0,0 +1,208 @@
+package fr.imt.coffee.machine.scheduler;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.component.WaterTank;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remplissage automatique du réservoir d'une machine à café, avec une hystérésis entre le niveau bas et le volume
+ * maximal du réservoir.
+ * Le niveau surveillé est le volume d'eau non réservé : l'eau déjà promise aux commandes en cours n'est pas comptée.
+ * Quand ce niveau passe sous le niveau bas, un remplissage démarre et l'eau arrive au débit du remplissage, par pas de
+ * temps, jusqu'à ce que le réservoir soit plein. Un nouveau remplissage ne démarre qu'une fois le niveau repassé sous
+ * le niveau bas.
+ * Le niveau bas est le volume minimal du réservoir plus une marge et l'eau que les commandes devraient consommer
+ * pendant un remplissage complet, estimée à partir du rythme d'arrivée des commandes ({@link ArrivalRateEstimator})
+ * et du volume moyen d'une commande. Une commande qui manque d'eau pendant un remplissage attend l'eau au lieu d'être
+ * refusée : elle est repassée à chaque arrivée d'eau ({@link #awaitWater()}) et non à la fin du remplissage.
+ */
+public class RefillController implements Closeable {
+
+    public static final Logger logger = LogManager.getLogger(RefillController.class);
+
+    public static final double DEFAULT_REFILL_RATE = 0.05;
+    public static final long DEFAULT_REFILL_STEP = 1000;
+    public static final double DEFAULT_LOW_WATER_MARGIN = 0.5;
+
+    private final CoffeeMachine coffeeMachine;
+    private final WaterTank waterTank;
+    private final BrewClock clock;
+    private final double refillRate;
+    private final long refillStepMillis;
+    private final double lowWaterMargin;
+    private final DoubleAdder orderedVolume = new DoubleAdder();
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final DoubleAdder refilledVolume = new DoubleAdder();
+    private final AtomicReference<CompletableFuture<Double>> currentRefill = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Double>> nextStep = new AtomicReference<>(new CompletableFuture<>());
+    private volatile boolean isRunning;
+
+    public RefillController(CoffeeMachine coffeeMachine) {
+        this(coffeeMachine, DEFAULT_REFILL_RATE, DEFAULT_REFILL_STEP, DEFAULT_LOW_WATER_MARGIN);
+    }
+
+    /**
+     * @param coffeeMachine Machine dont le réservoir est rempli
+     * @param refillRate Débit du remplissage en litres par seconde
+     * @param refillStepMillis Intervalle en millisecondes entre deux arrivées d'eau pendant un remplissage
+     * @param lowWaterMargin Volume d'eau en litres ajouté au volume minimal du réservoir pour fixer le niveau bas
+     */
+    public RefillController(CoffeeMachine coffeeMachine, double refillRate, long refillStepMillis, double lowWaterMargin) {
+        if (refillRate <= 0 || refillStepMillis <= 0)
+            throw new IllegalArgumentException("The refill rate and step must be positive.");
+        this.coffeeMachine = coffeeMachine;
+        this.waterTank = coffeeMachine.getWaterTank();
+        this.clock = coffeeMachine.getClock();
+        this.refillRate = refillRate;
+        this.refillStepMillis = refillStepMillis;
+        this.lowWaterMargin = lowWaterMargin;
+    }
+
+    /**
+     * Branche le contrôleur sur la machine : chaque commande acceptée fait vérifier le niveau du réservoir
+     */
+    public void start() {
+        isRunning = true;
+        coffeeMachine.setRefillController(this);
+        checkLevel();
+    }
+
+    /**
+     * Compte une commande acceptée par la machine puis vérifie le niveau du réservoir
+     * @param waterVolume Volume d'eau réservé par la commande
+     */
+    public void onWaterReserved(double waterVolume) {
+        orderedVolume.add(waterVolume);
+        orders.increment();
+        checkLevel();
+    }
+
+    /**
+     * Démarre un remplissage si le niveau est passé sous le niveau bas et qu'aucun remplissage n'est en cours
+     * @return Vrai si un remplissage est en cours
+     */
+    public boolean checkLevel() {
+        if (isRunning && currentRefill.get() == null && getLevel() < getLowWaterMark())
+            requestRefill();
+        return isRefilling();
+    }
+
+    /**
+     * Demande un remplissage sans attendre le niveau bas, par exemple pour une commande qui manque d'eau
+     * @return Remplissage en cours, complété avec le volume ajouté quand le réservoir est plein, null si le réservoir
+     * est déjà plein ou si le contrôleur est arrêté
+     */
+    public CompletableFuture<Double> requestRefill() {
+        while (isRunning) {
+            CompletableFuture<Double> refill = currentRefill.get();
+            if (refill != null)
+                return refill;
+            if (waterTank.getActualVolume() >= waterTank.getMaxVolume())
+                return null;
+            CompletableFuture<Double> newRefill = new CompletableFuture<>();
+            if (currentRefill.compareAndSet(null, newRefill)) {
+                refills.increment();
+                logger.info("Refilling the water tank of coffee machine " + coffeeMachine.getId() + " from " + getLevel() + " l");
+                refillStep(newRefill, 0);
+                return newRefill;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Attend la prochaine arrivée d'eau, en démarrant un remplissage si aucun n'est en cours
+     * @return Future complétée avec le volume ajouté par le prochain pas du remplissage, null si le réservoir est déjà
+     * plein ou si le contrôleur est arrêté
+     */
+    public CompletableFuture<Double> awaitWater() {
+        //Le pas est lu avant de demander le remplissage : un pas qui se termine entre-temps n'est pas manqué
+        CompletableFuture<Double> step = nextStep.get();
+        return requestRefill() == null ? null : step;
+    }
+
+    private void refillStep(CompletableFuture<Double> refill, double volumeAdded) {
+        double stepVolume = refillRate * refillStepMillis / 1000;
+        clock.delay(refillStepMillis).thenRun(() -> {
+            double added = coffeeMachine.addWaterInTank(stepVolume);
+            refilledVolume.add(added);
+            if (added < stepVolume || waterTank.getActualVolume() >= waterTank.getMaxVolume()) {
+                currentRefill.set(null);
+                refill.complete(volumeAdded + added);
+                nextStep.getAndSet(new CompletableFuture<>()).complete(added);
+                //Les commandes passées pendant le remplissage ont pu redescendre le niveau sous le niveau bas
+                checkLevel();
+            } else {
+                //Le pas suivant est planifié avant de réveiller les commandes : celles qui manquent encore d'eau l'attendent
+                refillStep(refill, volumeAdded + added);
+                nextStep.getAndSet(new CompletableFuture<>()).complete(added);
+            }
+        });
+    }
+
+    /**
+     * @return Volume d'eau du réservoir non réservé par les commandes en cours, en litres
+     */
+    public double getLevel() {
+        return waterTank.getActualVolume() - waterTank.getReservedVolume();
+    }
+
+    /**
+     * @return Niveau en litres sous lequel un remplissage démarre, au plus le volume maximal du réservoir
+     */
+    public double getLowWaterMark() {
+        long orderCount = orders.sum();
+        double meanOrderVolume = orderCount == 0 ? 0 : orderedVolume.sum() / orderCount;
+        double orderRate = coffeeMachine.getArrivalRateEstimator().getRecentRate(clock.currentTimeMillis());
+        double refillConsumption = orderRate * meanOrderVolume * getRefillDuration(waterTank.getMaxVolume() - waterTank.getMinVolume());
+        return Math.min(waterTank.getMaxVolume(), waterTank.getMinVolume() + lowWaterMargin + refillConsumption);
+    }
+
+    /**
+     * @param waterVolume Volume d'eau à ajouter en litres
+     * @return Durée en millisecondes pour ajouter ce volume
+     */
+    public double getRefillDuration(double waterVolume) {
+        return waterVolume / refillRate * 1000;
+    }
+
+    public boolean isRefilling() {
+        return currentRefill.get() != null;
+    }
+
+    /**
+     * @return Nombre de remplissages démarrés
+     */
+    public long getRefills() {
+        return refills.sum();
+    }
+
+    /**
+     * @return Volume d'eau ajouté par les remplissages en litres
+     */
+    public double getRefilledVolume() {
+        return refilledVolume.sum();
+    }
+
+    /**
+     * Débranche le contrôleur de la machine. Un remplissage en cours va à son terme.
+     */
+    @Override
+    public void close() {
+        isRunning = false;
+        coffeeMachine.setRefillController(null);
+    }
+
+    public String toString() {
+        return "Refill controller : level " + getLevel() + " l, low water mark " + getLowWaterMark() + " l, " + getRefills() + " refills";
+    }
+}
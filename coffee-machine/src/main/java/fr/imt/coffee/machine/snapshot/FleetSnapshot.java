@@ -0,0 +1,345 @@
+package fr.imt.coffee.machine.snapshot;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.ExpressoCoffeeMachine;
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.pipeline.BrewOrder;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKindRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Snapshot binaire d'un ensemble de machines à café : configuration et état de chaque machine et de ses composants,
+ * ainsi que les commandes en cours dans ses étages de chauffe et de pompage.
+ * A la lecture seuls l'en-tête et l'index des machines sont décodés, et la taille de chaque machine vérifiée : un
+ * fichier tronqué est refusé dès l'ouverture. Chaque machine n'est recréée qu'au premier appel de
+ * {@link #getCoffeeMachine(int)} : restaurer des milliers de machines ne coûte que la projection du fichier et
+ * cette vérification.
+ * Une fournée en cours est sauvegardée contenant par contenant, avec le volume d'eau de chacun.
+ *
+ * Format, version {@value #VERSION}, entiers en big-endian :
+ * <pre>
+ * en-tête  : magic (int), version (short), nombre de sortes de contenants (short), noms des sortes (short + UTF-8)
+ * index    : nombre de machines (int), position de chaque machine dans le fichier (int)
+ * machine  : type (byte), indicateurs branchée/en panne (byte), volumes min et max du réservoir, débit de la pompe
+ *            en L/s, puissance de la résistance et volume d'eau du réservoir (double), identifiant de la machine (int),
+ *            nombre de cafés faits (int), nombre de commandes en cours (int)
+ * commande : sorte du contenant (short), type de café (byte), capacité du contenant et volume d'eau (double)
+ * </pre>
+ */
+public final class FleetSnapshot {
+
+    public static final int MAGIC = 0x434F4646;
+    public static final short VERSION = 2;
+
+    private static final byte COFFEE_MACHINE = 0;
+    private static final byte EXPRESSO_COFFEE_MACHINE = 1;
+    private static final byte PLUGGED = 1;
+    private static final byte OUT_OF_ORDER = 2;
+    private static final int MACHINE_SIZE = 2 + 5 * Double.BYTES + 3 * Integer.BYTES;
+    private static final int ORDER_SIZE = Short.BYTES + 1 + 2 * Double.BYTES;
+    private static final double SECONDS_PER_HOUR = 3600;
+    private static final CoffeeType[] COFFEE_TYPES = CoffeeType.values();
+
+    private final ByteBuffer buffer;
+    private final BrewClock clock;
+    private final ContainerKind[] containerKinds;
+    private final int[] machinePositions;
+    private final AtomicReferenceArray<CoffeeMachine> coffeeMachines;
+
+    private FleetSnapshot(ByteBuffer buffer, BrewClock clock, ContainerKind[] containerKinds, int[] machinePositions) {
+        this.buffer = buffer;
+        this.clock = clock;
+        this.containerKinds = containerKinds;
+        this.machinePositions = machinePositions;
+        this.coffeeMachines = new AtomicReferenceArray<>(machinePositions.length);
+    }
+
+    /**
+     * Écrit le snapshot des machines. Le fichier est d'abord écrit à côté puis renommé : un arrêt brutal pendant
+     * l'écriture laisse le snapshot précédent intact.
+     * Les machines devraient être au repos, sinon l'état écrit de chaque machine peut mélanger deux commandes.
+     * @param path Chemin du fichier du snapshot
+     * @param machines Machines à café à sauvegarder
+     * @throws IOException Exception levée si le fichier ne peut pas être écrit
+     * @throws IllegalArgumentException Exception levée si une commande en cours utilise une sorte de contenant inconnue
+     */
+    public static void write(Path path, List<? extends CoffeeMachine> machines) throws IOException {
+        ContainerKindRegistry registry = ContainerKindRegistry.getRegistryInstance();
+        List<List<BrewOrder>> inFlightOrders = new ArrayList<>(machines.size());
+        Map<ContainerKind, Integer> kindIndexes = new HashMap<>();
+        List<byte[]> kindNames = new ArrayList<>();
+        int kindTableSize = 0;
+        int ordersSize = 0;
+        for (CoffeeMachine machine : machines) {
+            List<BrewOrder> orders = new ArrayList<>(machine.getHeatingStage().getInFlightOrders());
+            orders.addAll(machine.getPumpingStage().getInFlightOrders());
+            //Une préchauffe n'est pas une commande : elle n'est pas gardée dans le snapshot
+            orders.removeIf(BrewOrder::isPreheating);
+            orders = splitBatches(orders);
+            for (BrewOrder order : orders) {
+                ContainerKind kind = registry.getContainerKind(order.getContainer());
+                if (kind == null)
+                    throw new IllegalArgumentException("Unknown container kind : " + order.getContainer().getClass().getName());
+                if (!kindIndexes.containsKey(kind)) {
+                    byte[] kindName = kind.getName().getBytes(StandardCharsets.UTF_8);
+                    kindIndexes.put(kind, kindNames.size());
+                    kindNames.add(kindName);
+                    kindTableSize += Short.BYTES + kindName.length;
+                }
+            }
+            inFlightOrders.add(orders);
+            ordersSize += orders.size() * ORDER_SIZE;
+        }
+
+        int headerSize = Integer.BYTES + 2 * Short.BYTES + kindTableSize + Integer.BYTES + machines.size() * Integer.BYTES;
+        ByteBuffer output = ByteBuffer.allocate(headerSize + machines.size() * MACHINE_SIZE + ordersSize);
+        output.putInt(MAGIC).putShort(VERSION).putShort((short) kindNames.size());
+        for (byte[] kindName : kindNames) {
+            output.putShort((short) kindName.length).put(kindName);
+        }
+        output.putInt(machines.size());
+        int machinePosition = headerSize;
+        for (List<BrewOrder> orders : inFlightOrders) {
+            output.putInt(machinePosition);
+            machinePosition += MACHINE_SIZE + orders.size() * ORDER_SIZE;
+        }
+
+        for (int i = 0; i < machines.size(); i++) {
+            CoffeeMachine machine = machines.get(i);
+            List<BrewOrder> orders = inFlightOrders.get(i);
+            output.put(machine instanceof ExpressoCoffeeMachine ? EXPRESSO_COFFEE_MACHINE : COFFEE_MACHINE)
+                    .put((byte) ((machine.isPlugged() ? PLUGGED : 0) | (machine.isOutOfOrder() ? OUT_OF_ORDER : 0)))
+                    .putDouble(machine.getWaterTank().getMinVolume())
+                    .putDouble(machine.getWaterTank().getMaxVolume())
+                    .putDouble(machine.getWaterPump().getPumpingCapacity())
+                    .putDouble(machine.getElectricalResistance().getPower())
+                    .putDouble(machine.getWaterTank().getActualVolume())
+                    .putInt(machine.getId())
+                    .putInt(machine.getNbCoffeeMade())
+                    .putInt(orders.size());
+            for (BrewOrder order : orders) {
+                output.putShort(kindIndexes.get(registry.getContainerKind(order.getContainer())).shortValue())
+                        .put((byte) order.getCoffeeType().ordinal())
+                        .putDouble(order.getContainer().getCapacity())
+                        .putDouble(order.getWaterVolume());
+            }
+        }
+        output.flip();
+
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (output.hasRemaining()) {
+                channel.write(output);
+            }
+            channel.force(false);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Remplace chaque fournée par une commande par contenant : la fournée sera repassée café par café
+     */
+    private static List<BrewOrder> splitBatches(List<BrewOrder> orders) {
+        List<BrewOrder> splitOrders = new ArrayList<>(orders.size());
+        for (BrewOrder order : orders) {
+            if (!order.isBatch()) {
+                splitOrders.add(order);
+                continue;
+            }
+            for (Container container : order.getContainers()) {
+                splitOrders.add(new BrewOrder(container, order.getCoffeeType(), order.getSubmissionTime()));
+            }
+        }
+        return splitOrders;
+    }
+
+    /**
+     * Ouvre un snapshot. Seuls l'en-tête et l'index sont lus, les machines sont recréées à la demande.
+     * @param path Chemin du fichier du snapshot
+     * @param clock Horloge des machines recréées
+     * @return Snapshot ouvert
+     * @throws IOException Exception levée si le fichier ne peut pas être lu, n'est pas un snapshot, a une version
+     * inconnue ou est tronqué
+     */
+    public static FleetSnapshot read(Path path, BrewClock clock) throws IOException {
+        ByteBuffer input;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (input.remaining() < Integer.BYTES + Short.BYTES || input.getInt() != MAGIC)
+            throw new IOException(path + " is not a coffee machine snapshot.");
+        short version = input.getShort();
+        if (version != VERSION)
+            throw new IOException("Unsupported snapshot version " + version + " in " + path);
+
+        ContainerKindRegistry registry = ContainerKindRegistry.getRegistryInstance();
+        requireBytes(input, Short.BYTES, path);
+        ContainerKind[] containerKinds = new ContainerKind[input.getShort()];
+        for (int i = 0; i < containerKinds.length; i++) {
+            requireBytes(input, Short.BYTES, path);
+            byte[] kindName = new byte[input.getShort()];
+            requireBytes(input, kindName.length, path);
+            input.get(kindName);
+            containerKinds[i] = registry.getContainerKind(new String(kindName, StandardCharsets.UTF_8));
+            if (containerKinds[i] == null)
+                throw new IOException("Unknown container kind " + new String(kindName, StandardCharsets.UTF_8) + " in " + path);
+        }
+        requireBytes(input, Integer.BYTES, path);
+        int machineCount = input.getInt();
+        requireBytes(input, (long) machineCount * Integer.BYTES, path);
+        int[] machinePositions = new int[machineCount];
+        for (int i = 0; i < machinePositions.length; i++) {
+            machinePositions[i] = input.getInt();
+        }
+        checkMachines(input, machinePositions, containerKinds.length, path);
+        return new FleetSnapshot(input, clock, containerKinds, machinePositions);
+    }
+
+    private static void requireBytes(ByteBuffer input, long bytes, Path path) throws IOException {
+        if (bytes < 0 || input.remaining() < bytes)
+            throw new IOException("Truncated snapshot " + path + " at offset " + input.position()
+                    + " : " + bytes + " bytes expected, " + input.remaining() + " remaining");
+    }
+
+    /**
+     * Vérifie que les machines se suivent sans trou ni chevauchement jusqu'à la fin du fichier, d'après le nombre de
+     * commandes de chacune : les machines pourront ensuite être lues sans contrôle
+     */
+    private static void checkMachines(ByteBuffer input, int[] machinePositions, int kindCount, Path path) throws IOException {
+        long expectedPosition = input.position();
+        for (int i = 0; i < machinePositions.length; i++) {
+            int position = machinePositions[i];
+            if (position != expectedPosition)
+                throw new IOException("Corrupted snapshot " + path + " : machine " + i + " at offset " + position
+                        + " instead of " + expectedPosition);
+            if (input.limit() - (long) position < MACHINE_SIZE)
+                throw new IOException("Truncated snapshot " + path + " at offset " + position + " : machine " + i + " is incomplete");
+            int orderCount = input.getInt(position + MACHINE_SIZE - Integer.BYTES);
+            long machineEnd = position + MACHINE_SIZE + (long) orderCount * ORDER_SIZE;
+            if (orderCount < 0 || machineEnd > input.limit())
+                throw new IOException("Truncated snapshot " + path + " at offset " + position + " : machine " + i
+                        + " has " + orderCount + " orders, " + (input.limit() - position) + " bytes remaining");
+            for (int order = 0; order < orderCount; order++) {
+                int orderPosition = position + MACHINE_SIZE + order * ORDER_SIZE;
+                int kindIndex = input.getShort(orderPosition);
+                int coffeeTypeIndex = input.get(orderPosition + Short.BYTES);
+                if (kindIndex < 0 || kindIndex >= kindCount || coffeeTypeIndex < 0 || coffeeTypeIndex >= COFFEE_TYPES.length)
+                    throw new IOException("Corrupted snapshot " + path + " at offset " + orderPosition + " : unknown order");
+            }
+            expectedPosition = machineEnd;
+        }
+        if (expectedPosition != input.limit())
+            throw new IOException("Corrupted snapshot " + path + " : " + (input.limit() - expectedPosition)
+                    + " unexpected bytes at offset " + expectedPosition);
+    }
+
+    /**
+     * @return Nombre de machines du snapshot
+     */
+    public int getMachineCount() {
+        return machinePositions.length;
+    }
+
+    /**
+     * Recrée la machine au premier appel, puis retourne toujours la même instance
+     * @param index Rang de la machine dans le snapshot
+     * @return Machine à café restaurée, sans ses commandes en cours
+     */
+    public CoffeeMachine getCoffeeMachine(int index) {
+        CoffeeMachine coffeeMachine = coffeeMachines.get(index);
+        if (coffeeMachine == null) {
+            coffeeMachines.compareAndSet(index, null, restoreCoffeeMachine(machinePositions[index]));
+            coffeeMachine = coffeeMachines.get(index);
+        }
+        return coffeeMachine;
+    }
+
+    /**
+     * @return Toutes les machines du snapshot, recréées si besoin
+     */
+    public List<CoffeeMachine> getCoffeeMachines() {
+        List<CoffeeMachine> machines = new ArrayList<>(getMachineCount());
+        for (int i = 0; i < getMachineCount(); i++) {
+            machines.add(getCoffeeMachine(i));
+        }
+        return machines;
+    }
+
+    /**
+     * @param index Rang de la machine dans le snapshot
+     * @return Vrai si la machine a déjà été recréée
+     */
+    public boolean isMaterialized(int index) {
+        return coffeeMachines.get(index) != null;
+    }
+
+    /**
+     * Commandes qui étaient en cours dans la machine, chauffe puis pompage, avec des contenants vides neufs.
+     * Le volume d'eau de ces commandes est compté dans le réservoir restauré : elles peuvent être repassées avec
+     * {@link CoffeeMachine#makeACoffeeAsync}.
+     * @param index Rang de la machine dans le snapshot
+     * @return Commandes en cours au moment du snapshot
+     */
+    public List<BrewOrder> getInFlightOrders(int index) {
+        ByteBuffer input = buffer.duplicate();
+        input.position(machinePositions[index] + MACHINE_SIZE - Integer.BYTES);
+        int orderCount = input.getInt();
+        if (orderCount == 0)
+            return Collections.emptyList();
+
+        List<BrewOrder> orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            ContainerKind kind = containerKinds[input.getShort()];
+            CoffeeType coffeeType = COFFEE_TYPES[input.get()];
+            Container container = kind.create(input.getDouble());
+            orders.add(new BrewOrder(container, coffeeType, input.getDouble(), clock.nanoTime()));
+        }
+        return orders;
+    }
+
+    private CoffeeMachine restoreCoffeeMachine(int position) {
+        ByteBuffer input = buffer.duplicate();
+        input.position(position);
+        byte machineType = input.get();
+        byte flags = input.get();
+        double minVolume = input.getDouble();
+        double maxVolume = input.getDouble();
+        double pumpingCapacity = input.getDouble() * SECONDS_PER_HOUR;
+        double resistancePower = input.getDouble();
+        double waterVolume = input.getDouble();
+        int id = input.getInt();
+        int nbCoffeeMade = input.getInt();
+
+        CoffeeMachine coffeeMachine = machineType == EXPRESSO_COFFEE_MACHINE
+                ? new ExpressoCoffeeMachine(id, minVolume, maxVolume, pumpingCapacity, resistancePower, clock)
+                : new CoffeeMachine(id, minVolume, maxVolume, pumpingCapacity, resistancePower, clock);
+        if ((flags & PLUGGED) != 0)
+            coffeeMachine.plugToElectricalPlug();
+        coffeeMachine.setOutOfOrder((flags & OUT_OF_ORDER) != 0);
+        coffeeMachine.setNbCoffeeMade(nbCoffeeMade);
+        coffeeMachine.getWaterTank().increaseWaterVolume(waterVolume);
+        return coffeeMachine;
+    }
+
+    public String toString() {
+        return "Snapshot of " + getMachineCount() + " coffee machines";
+    }
+}
@@ -1,18 +1,28 @@
 package fr.imt.coffee.machine;
 
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.failure.ScriptedFailureModel;
 import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
 import fr.imt.coffee.storage.cupboard.container.*;
 import fr.imt.coffee.storage.cupboard.exception.CupNotEmptyException;
 import fr.imt.coffee.machine.exception.LackOfWaterInTankException;
 import fr.imt.coffee.machine.exception.MachineNotPluggedException;
+import fr.imt.coffee.machine.exception.NoCoffeeMachineAvailableException;
+import fr.imt.coffee.machine.exception.OrderQueueFullException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.readyToBrew;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 
@@ -261,6 +271,192 @@ public class CoffeeMachineTest {
         Assertions.assertEquals(2, coffeeMachineUnderTest.getNbCoffeeMade());
     }
 
+    /**
+     * On lance plusieurs cafés en même temps sans bloquer le thread de test :
+     * la chauffe et le pompage sont planifiés sur l'ordonnanceur partagé
+     */
+    @Test
+    void makeCoffeesAsyncWithoutBlocking() throws InterruptedException, ExecutionException {
+        readyToBrew(coffeeMachineUnderTest, 10);
+
+        List<CompletableFuture<CoffeeContainer>> coffees = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            coffees.add(coffeeMachineUnderTest.makeACoffeeAsync(new Cup(0.001), CoffeeType.BAHIA));
+        }
+
+        for (CompletableFuture<CoffeeContainer> coffee : coffees) {
+            CoffeeContainer coffeeContainer = coffee.get();
+            Assertions.assertTrue(coffeeContainer instanceof CoffeeCup);
+            Assertions.assertEquals(CoffeeType.BAHIA, coffeeContainer.getCoffeeType());
+        }
+        Assertions.assertEquals(10 - 20 * 0.001, coffeeMachineUnderTest.getWaterTank().getActualVolume(), 1e-9);
+    }
+
+    /**
+     * Les commandes passent par l'étage de chauffe puis par l'étage de pompage :
+     * pendant qu'une commande chauffe, les suivantes attendent dans la file de l'étage de chauffe
+     */
+    @Test
+    void makeCoffeesThroughHeatingAndPumpingStages() throws InterruptedException, ExecutionException {
+        readyToBrew(coffeeMachineUnderTest, 10);
+
+        List<CompletableFuture<CoffeeContainer>> coffees = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            coffees.add(coffeeMachineUnderTest.makeACoffeeAsync(new Mug(0.002), CoffeeType.MOKA));
+        }
+        Assertions.assertEquals(3, coffeeMachineUnderTest.getHeatingStage().getQueueDepth());
+
+        for (CompletableFuture<CoffeeContainer> coffee : coffees) {
+            Assertions.assertTrue(coffee.get() instanceof CoffeeMug);
+        }
+
+        Assertions.assertEquals(4, coffeeMachineUnderTest.getHeatingStage().getProcessedOrders());
+        Assertions.assertEquals(4, coffeeMachineUnderTest.getPumpingStage().getProcessedOrders());
+        Assertions.assertEquals(3, coffeeMachineUnderTest.getHeatingStage().getMaxQueueDepth());
+        Assertions.assertEquals(4, coffeeMachineUnderTest.getNbCoffeeMade());
+    }
+
+    /**
+     * En mode simulation la machine fait avancer un temps virtuel : une journée de commandes est simulée sans attente
+     */
+    @Test
+    void simulateOrdersWithVirtualClock() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine simulatedMachine = newSimulatedMachine(virtualClock, 0, 10, 10);
+
+        List<CoffeeContainer> coffees = new ArrayList<>();
+        //Une commande de 0.01 L toutes les 30 secondes pendant 8 heures
+        for (int i = 0; i < 960; i++) {
+            virtualClock.schedule(i * 30_000, () ->
+                    simulatedMachine.makeACoffeeAsync(new Cup(0.01), CoffeeType.ROBUSTA).thenAccept(coffees::add));
+        }
+        virtualClock.runUntilIdle();
+
+        Assertions.assertEquals(960, coffees.size());
+        Assertions.assertEquals(960, simulatedMachine.getNbCoffeeMade());
+        Assertions.assertEquals(10 - 960 * 0.01, simulatedMachine.getWaterTank().getActualVolume(), 1e-9);
+        Assertions.assertTrue(virtualClock.currentTimeMillis() >= 8 * 3600 * 1000 - 30_000);
+    }
+
+    /**
+     * L'API bloquante fait avancer l'horloge virtuelle jusqu'à ce que le café soit prêt
+     */
+    @Test
+    void makeACoffeeWithVirtualClock() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine simulatedMachine = newSimulatedMachine(virtualClock, 0, 10, 10);
+
+        CoffeeContainer coffee = simulatedMachine.makeACoffee(new Mug(0.25), CoffeeType.ARABICA);
+
+        Assertions.assertTrue(coffee instanceof CoffeeMug);
+        double brewTime = simulatedMachine.getElectricalResistance().computeHeatingTime(0.25)
+                + simulatedMachine.getWaterPump().computePumpingTime(0.25);
+        Assertions.assertEquals((long) (brewTime * 1_000_000), virtualClock.nanoTime(), 2);
+    }
+
+    /**
+     * Une fournée de cafés ne chauffe qu'une fois le volume cumulé
+     */
+    @Test
+    void makeCoffeesHeatsTheBatchOnce() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine simulatedMachine = newSimulatedMachine(virtualClock, 0, 10, 10);
+
+        List<Container> cups = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            cups.add(new Cup(0.1));
+        }
+        CoffeeBatchResult batchResult = simulatedMachine.makeCoffees(cups, CoffeeType.BAHIA);
+
+        Assertions.assertTrue(batchResult.isComplete());
+        Assertions.assertEquals(5, batchResult.getCoffees().size());
+        Assertions.assertEquals(5, simulatedMachine.getNbCoffeeMade());
+        Assertions.assertEquals(1, simulatedMachine.getHeatingStage().getProcessedOrders());
+        Assertions.assertEquals(5, simulatedMachine.getPumpingStage().getProcessedOrders());
+        Assertions.assertEquals(9.5, simulatedMachine.getWaterTank().getActualVolume(), 1e-9);
+        Assertions.assertEquals(0, simulatedMachine.getPendingOrders());
+    }
+
+    /**
+     * Les erreurs d'une fournée sont données contenant par contenant
+     */
+    @Test
+    void makeCoffeesReportsPartialFailures() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine simulatedMachine = newSimulatedMachine(virtualClock, 0, 10, 0.25);
+
+        List<Container> containers = List.of(new Cup(0.1), new CoffeeCup(0.1, CoffeeType.MOKA), new Mug(0.1), new Cup(0.1));
+        CoffeeBatchResult batchResult = simulatedMachine.makeCoffees(containers, CoffeeType.MOKA);
+
+        List<CoffeeBatchResult.Item> items = batchResult.getItems();
+        Assertions.assertTrue(items.get(0).isSuccess());
+        Assertions.assertTrue(items.get(1).getFailure() instanceof CupNotEmptyException);
+        Assertions.assertTrue(items.get(2).getCoffee() instanceof CoffeeMug);
+        Assertions.assertTrue(items.get(3).getFailure() instanceof LackOfWaterInTankException);
+        Assertions.assertFalse(batchResult.isComplete());
+        Assertions.assertEquals(2, batchResult.getNbCoffeeMade());
+        Assertions.assertEquals(0.05, simulatedMachine.getWaterTank().getActualVolume(), 1e-9);
+    }
+
+    @Test
+    void makeACoffeeAsyncFailsWhenNotPlugged() {
+        CompletableFuture<CoffeeContainer> coffee = coffeeMachineUnderTest.makeACoffeeAsync(new Cup(0.001), CoffeeType.BAHIA);
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, coffee::get);
+        Assertions.assertTrue(exception.getCause() instanceof MachineNotPluggedException);
+    }
+
+    /**
+     * Les refus courants sont des issues partagées et non des exceptions
+     */
+    @Test
+    void brewReturnsResultsWithoutExceptions() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine simulatedMachine = newSimulatedMachine(virtualClock, 0, 10, 0.3);
+
+        BrewResult success = simulatedMachine.brew(new Cup(0.2), CoffeeType.ARABICA);
+        Assertions.assertTrue(success.isSuccess());
+        Assertions.assertTrue(success.getCoffee() instanceof CoffeeCup);
+
+        BrewResult lackOfWater = simulatedMachine.brew(new Cup(0.2), CoffeeType.ARABICA);
+        Assertions.assertTrue(lackOfWater.isRejected());
+        Assertions.assertEquals(BrewResult.RejectionReason.LACK_OF_WATER, lackOfWater.getRejectionReason());
+        Assertions.assertSame(lackOfWater, simulatedMachine.brew(new Mug(0.5), CoffeeType.MOKA));
+
+        BrewResult notEmpty = simulatedMachine.brew(new CoffeeCup(0.05, CoffeeType.MOKA), CoffeeType.MOKA);
+        Assertions.assertEquals(BrewResult.RejectionReason.CONTAINER_NOT_EMPTY, notEmpty.getRejectionReason());
+        Assertions.assertNull(notEmpty.getCoffee());
+
+        simulatedMachine.setFailureModel(new ScriptedFailureModel(true));
+        Assertions.assertSame(BrewResult.outOfOrder(), simulatedMachine.brew(new Cup(0.05), CoffeeType.MOKA));
+        Assertions.assertEquals(1, simulatedMachine.getNbCoffeeMade());
+        Assertions.assertEquals(0.1, simulatedMachine.getWaterTank().getAvailableVolume(), 1e-9);
+    }
+
+    /**
+     * Les exceptions des refus restantes n'ont pas de pile d'appels
+     */
+    @Test
+    void rejectionExceptionsAreStackless() {
+        Exception exception = BrewResult.RejectionReason.LACK_OF_WATER.toException();
+
+        Assertions.assertTrue(exception instanceof LackOfWaterInTankException);
+        Assertions.assertEquals("You must add more water in the water tank.", exception.getMessage());
+        Assertions.assertEquals(0, exception.getStackTrace().length);
+    }
+
+    /**
+     * Une file pleine se distingue d'une flotte sans machine disponible, tout en restant attrapée comme telle
+     */
+    @Test
+    void queueFullIsRejectedWithItsOwnException() {
+        Exception exception = BrewResult.RejectionReason.QUEUE_FULL.toException();
+
+        Assertions.assertTrue(exception instanceof OrderQueueFullException);
+        Assertions.assertTrue(exception instanceof NoCoffeeMachineAvailableException);
+        Assertions.assertEquals("The order queue of the coffee machine is full.", exception.getMessage());
+    }
+
     @AfterEach
     public void afterTest(){
 
@@ -0,0 +1,62 @@
+package fr.imt.coffee.machine;
+
+import fr.imt.coffee.machine.clock.BrewClock;
+import fr.imt.coffee.machine.failure.BernoulliFailureModel;
+import fr.imt.coffee.machine.failure.FailureModel;
+
+/**
+ * Machines à café des tests : branchées, remplies et qui ne tombent pas en panne, sauf modèle de panne donné
+ */
+public final class SimulatedCoffeeMachines {
+
+    public static final double PUMPING_CAPACITY = 700;
+    public static final long SEED = 42;
+
+    private SimulatedCoffeeMachines() {
+    }
+
+    /**
+     * @param clock Horloge de la machine, virtuelle pour une simulation
+     * @param maxWaterTank Volume d'eau maximal du réservoir en litres, le réservoir est rempli
+     * @return Machine prête à faire des cafés, sans volume d'eau minimal
+     */
+    public static CoffeeMachine newSimulatedMachine(BrewClock clock, double maxWaterTank) {
+        return newSimulatedMachine(clock, 0, maxWaterTank, maxWaterTank);
+    }
+
+    /**
+     * @param clock Horloge de la machine, virtuelle pour une simulation
+     * @param minWaterTank Volume d'eau minimal du réservoir en litres
+     * @param maxWaterTank Volume d'eau maximal du réservoir en litres
+     * @param waterVolume Volume d'eau versé dans le réservoir en litres
+     * @return Machine prête à faire des cafés
+     */
+    public static CoffeeMachine newSimulatedMachine(BrewClock clock, double minWaterTank, double maxWaterTank, double waterVolume) {
+        return readyToBrew(new CoffeeMachine(minWaterTank, maxWaterTank, PUMPING_CAPACITY, clock), waterVolume);
+    }
+
+    /**
+     * Branche la machine et remplit son réservoir, avec un modèle qui ne fait jamais tomber la machine en panne
+     * @param coffeeMachine Machine à préparer
+     * @param waterVolume Volume d'eau versé dans le réservoir en litres
+     * @return La machine donnée
+     */
+    public static <T extends CoffeeMachine> T readyToBrew(T coffeeMachine, double waterVolume) {
+        return readyToBrew(coffeeMachine, waterVolume, new BernoulliFailureModel(0, SEED));
+    }
+
+    /**
+     * Branche la machine et remplit son réservoir
+     * @param coffeeMachine Machine à préparer
+     * @param waterVolume Volume d'eau versé dans le réservoir en litres
+     * @param failureModel Modèle de panne de la machine
+     * @return La machine donnée
+     */
+    public static <T extends CoffeeMachine> T readyToBrew(T coffeeMachine, double waterVolume, FailureModel failureModel) {
+        coffeeMachine.setFailureModel(failureModel);
+        coffeeMachine.plugToElectricalPlug();
+        if (waterVolume > 0)
+            coffeeMachine.addWaterInTank(waterVolume);
+        return coffeeMachine;
+    }
+}
@@ -0,0 +1,59 @@
+package fr.imt.coffee.machine.clock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualBrewClockTest {
+
+    @Test
+    void eventsRunInVirtualTimeOrder() {
+        VirtualBrewClock clock = new VirtualBrewClock(0);
+        List<String> executedEvents = new ArrayList<>();
+
+        clock.schedule(3000, () -> executedEvents.add("third"));
+        clock.schedule(1000, () -> executedEvents.add("first"));
+        clock.schedule(1000, () -> executedEvents.add("second"));
+        assertEquals(3, clock.getPendingEvents());
+
+        clock.runUntilIdle();
+
+        assertEquals(List.of("first", "second", "third"), executedEvents);
+        assertEquals(3_000_000_000L, clock.nanoTime());
+        assertEquals(3000, clock.currentTimeMillis());
+        assertEquals(3, clock.getProcessedEvents());
+    }
+
+    @Test
+    void sleepAdvancesVirtualTimeAndRunsEventsOnTheWay() {
+        VirtualBrewClock clock = new VirtualBrewClock(0);
+        CompletableFuture<Void> delayed = clock.delay(500);
+
+        clock.sleep(2000);
+
+        assertTrue(delayed.isDone());
+        assertEquals(2_000_000_000L, clock.nanoTime());
+    }
+
+    @Test
+    void awaitRunsEventsUntilTheFutureIsDone() throws Exception {
+        VirtualBrewClock clock = new VirtualBrewClock(0);
+        CompletableFuture<String> coffee = clock.delay(7000).thenApply(done -> "coffee");
+        clock.schedule(60_000, () -> { });
+
+        assertEquals("coffee", clock.await(coffee));
+        assertEquals(7_000_000_000L, clock.nanoTime());
+        assertEquals(1, clock.getPendingEvents());
+    }
+
+    @Test
+    void awaitFailsWhenNoEventCanCompleteTheFuture() {
+        VirtualBrewClock clock = new VirtualBrewClock(0);
+
+        assertThrows(IllegalStateException.class, () -> clock.await(new CompletableFuture<>()));
+    }
+}
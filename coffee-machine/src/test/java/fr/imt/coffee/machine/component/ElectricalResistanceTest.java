@@ -1,8 +1,11 @@
 package fr.imt.coffee.machine.component;
 
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 
@@ -59,5 +62,59 @@ public class ElectricalResistanceTest {
         assertThat(heatingTimeExpected, is(heatingTimeActual));
     }
 
+    /**
+     * Test de la chauffe non bloquante : la future est complétée avec le même temps de chauffe
+     * @throws Exception
+     */
+    @Test
+    public void testWaterHeatingAsync() throws Exception {
+        double power = 1000;
+        double waterVolume = 0.01;
+
+        ElectricalResistance electricalResistance = new ElectricalResistance(power);
+        CompletableFuture<Double> heatingTime = electricalResistance.waterHeatingAsync(waterVolume);
+
+        Assertions.assertEquals(computeHeatingTime(power, waterVolume), heatingTime.get());
+    }
 
+    /**
+     * Une chauffe juste après la précédente part de l'eau gardée chaude par la chaudière : elle est plus courte et le
+     * temps gagné est compté. Une fois la chaudière refroidie, la chauffe reprend son temps à froid.
+     * @throws InterruptedException
+     */
+    @Test
+    public void testBackToBackHeatingIsFasterThanColdStart() throws InterruptedException {
+        double power = 1000;
+        double waterVolume = 0.15;
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        ElectricalResistance electricalResistance = new ElectricalResistance(power, virtualClock);
+
+        double coldHeatingTime = electricalResistance.waterHeating(waterVolume);
+        Assertions.assertEquals(ElectricalResistance.TARGET_TEMPERATURE, electricalResistance.getBoilerTemperature());
+        double warmHeatingTime = electricalResistance.waterHeating(waterVolume);
+
+        Assertions.assertEquals(computeHeatingTime(power, waterVolume), coldHeatingTime);
+        //Eau froide mélangée à 0.1 L d'eau à 90 °C : départ à 48 °C au lieu de 20 °C
+        Assertions.assertEquals(computeHeatingTime(power, waterVolume) * (90 - 48) / (90 - 20), warmHeatingTime, 1e-6);
+        Assertions.assertEquals(coldHeatingTime - warmHeatingTime, electricalResistance.getSavedHeatingTime(), 1e-6);
+
+        virtualClock.sleep(30 * ElectricalResistance.DEFAULT_COOLING_TIME_CONSTANT);
+        Assertions.assertEquals(ElectricalResistance.AMBIENT_TEMPERATURE, electricalResistance.getBoilerTemperature(), 1e-6);
+        Assertions.assertEquals(coldHeatingTime, electricalResistance.waterHeating(waterVolume), 1e-3);
+    }
+
+    /**
+     * Sans eau gardée par la chaudière, chaque chauffe repart de la température ambiante
+     * @throws InterruptedException
+     */
+    @Test
+    public void testHeatingWithoutRetainedWater() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        ElectricalResistance electricalResistance = new ElectricalResistance(1000, virtualClock, 0, ElectricalResistance.DEFAULT_COOLING_TIME_CONSTANT);
+
+        electricalResistance.waterHeating(0.15);
+
+        Assertions.assertEquals(computeHeatingTime(1000, 0.15), electricalResistance.waterHeating(0.15));
+        Assertions.assertEquals(0, electricalResistance.getSavedHeatingTime());
+    }
 }
@@ -4,6 +4,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class WaterPumpTest {
@@ -33,4 +35,19 @@ class WaterPumpTest {
 
         assertEquals(20, waterTank.getActualVolume());
     }
-}
\ No newline at end of file
+
+    @Test
+    void pumpWaterAsync() throws Exception {
+        double pumpingCapacity = 5.5;
+        double volume = 1;
+        WaterPump waterPump = new WaterPump(pumpingCapacity);
+        WaterTank waterTank = new WaterTank(30, 0, 60);
+        assertTrue(waterTank.tryReserve(volume));
+
+        CompletableFuture<Double> pumpingTime = waterPump.pumpWaterAsync(volume, waterTank);
+
+        assertEquals(pumpDuration(volume, pumpingCapacity), pumpingTime.get());
+        assertEquals(29, waterTank.getActualVolume());
+        assertEquals(0, waterTank.getReservedVolume());
+    }
+}
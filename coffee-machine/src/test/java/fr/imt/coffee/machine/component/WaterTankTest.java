@@ -4,10 +4,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class WaterTankTest {
-    //TODO: Check for water below min or above max
     WaterTank waterTank;
 
     @BeforeEach
@@ -36,4 +37,92 @@ class WaterTankTest {
 
         assertEquals(18, waterTank.getActualVolume());
     }
-}
\ No newline at end of file
+
+    @Test
+    void increaseWaterVolumeDoesNotExceedMaxVolume() {
+        assertEquals(5, waterTank.increaseWaterVolume(8));
+
+        assertEquals(20, waterTank.getActualVolume());
+    }
+
+    @Test
+    void reserveCommitAndRelease() {
+        assertTrue(waterTank.tryReserve(3));
+        assertEquals(15, waterTank.getActualVolume());
+        assertEquals(3, waterTank.getReservedVolume());
+        assertEquals(2, waterTank.getAvailableVolume());
+
+        waterTank.commit(3);
+        assertEquals(12, waterTank.getActualVolume());
+        assertEquals(0, waterTank.getReservedVolume());
+
+        assertTrue(waterTank.tryReserve(1.5));
+        waterTank.release(1.5);
+        assertEquals(12, waterTank.getActualVolume());
+        assertEquals(2, waterTank.getAvailableVolume());
+    }
+
+    @Test
+    void reserveDoesNotGoBelowMinVolume() {
+        assertFalse(waterTank.tryReserve(5.5));
+        assertTrue(waterTank.tryReserve(5));
+        assertFalse(waterTank.tryReserve(0.001));
+        assertEquals(0, waterTank.getAvailableVolume());
+    }
+
+    /**
+     * Plusieurs threads réservent en même temps : le volume réservé ne dépasse jamais le volume disponible
+     */
+    @Test
+    void concurrentReservationsNeverOverdrawTheTank() throws InterruptedException {
+        WaterTank sharedTank = new WaterTank(10, 1, 10);
+        AtomicInteger reservations = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (sharedTank.tryReserve(0.01)) {
+                        reservations.incrementAndGet();
+                        sharedTank.commit(0.01);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(900, reservations.get());
+        assertEquals(1, sharedTank.getActualVolume(), 1e-9);
+    }
+
+    @Test
+    void reservationRejectsInvalidVolumes() {
+        for (double invalidVolume : new double[]{0, -1, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            assertThrows(IllegalArgumentException.class, () -> waterTank.tryReserve(invalidVolume));
+            assertThrows(IllegalArgumentException.class, () -> waterTank.commit(invalidVolume));
+            assertThrows(IllegalArgumentException.class, () -> waterTank.release(invalidVolume));
+        }
+
+        //Le réservoir n'a pas bougé : une réservation négative ne peut plus y ajouter d'eau
+        assertEquals(15, waterTank.getActualVolume());
+        assertEquals(0, waterTank.getReservedVolume());
+        assertEquals(5, waterTank.getAvailableVolume());
+    }
+
+    @Test
+    void increaseAndDecreaseRejectInvalidVolumes() {
+        for (double invalidVolume : new double[]{-1, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            assertThrows(IllegalArgumentException.class, () -> waterTank.increaseWaterVolume(invalidVolume));
+            assertThrows(IllegalArgumentException.class, () -> waterTank.decreaseWaterVolume(invalidVolume));
+        }
+        assertEquals(15, waterTank.getActualVolume());
+        assertEquals(5, waterTank.getAvailableVolume());
+
+        //Un volume nul est accepté et ne change rien
+        assertEquals(0, waterTank.increaseWaterVolume(0));
+        waterTank.decreaseWaterVolume(0);
+        assertEquals(15, waterTank.getActualVolume());
+    }
+}
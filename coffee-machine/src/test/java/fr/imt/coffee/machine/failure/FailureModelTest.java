@@ -0,0 +1,150 @@
+package fr.imt.coffee.machine.failure;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FailureModelTest {
+
+    private CoffeeMachine coffeeMachine;
+
+    @BeforeEach
+    void beforeEach() {
+        coffeeMachine = new CoffeeMachine(0, 10, 700, new VirtualBrewClock(0));
+    }
+
+    @Test
+    void sameSeedGivesSameFailures() {
+        GaussianFailureModel firstModel = new GaussianFailureModel(42);
+        GaussianFailureModel secondModel = new GaussianFailureModel(42);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(firstModel.isFailing(coffeeMachine), secondModel.isFailing(coffeeMachine));
+        }
+    }
+
+    @Test
+    void gaussianModelFailsAboutOneTimeInThree() {
+        GaussianFailureModel model = new GaussianFailureModel(7);
+        int failures = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (model.isFailing(coffeeMachine))
+                failures++;
+        }
+        assertEquals(0.3173, failures / 100_000.0, 0.01);
+    }
+
+    /**
+     * Les tirages d'une machine ne dépendent pas des threads qui les font : 2 threads qui tirent chacun 10 000 fois
+     * obtiennent ensemble les mêmes pannes qu'un seul thread qui tire 20 000 fois
+     */
+    @Test
+    void drawsOfAMachineDoNotDependOnTheThreads() throws Exception {
+        GaussianFailureModel model = new GaussianFailureModel(42);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        int concurrentFailures;
+        try {
+            Future<Integer> firstThread = executor.submit(() -> countFailures(model, 10_000));
+            Future<Integer> secondThread = executor.submit(() -> countFailures(model, 10_000));
+            concurrentFailures = firstThread.get() + secondThread.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(countFailures(new GaussianFailureModel(42), 20_000), concurrentFailures);
+        assertEquals(0.3173, concurrentFailures / 20_000.0, 0.02);
+    }
+
+    @Test
+    void eachMachineDrawsInItsOwnStream() {
+        CoffeeMachine otherMachine = new CoffeeMachine(0, 10, 700, new VirtualBrewClock(0));
+        RandomStreams randomStreams = new RandomStreams(42);
+        BernoulliFailureModel firstModel = new BernoulliFailureModel(0.5, 42);
+        BernoulliFailureModel secondModel = new BernoulliFailureModel(0.5, 42);
+
+        for (int i = 0; i < 1000; i++) {
+            //Les tirages d'une autre machine ne décalent pas ceux de la première
+            secondModel.isFailing(otherMachine);
+            assertEquals(firstModel.isFailing(coffeeMachine), secondModel.isFailing(coffeeMachine));
+            assertEquals(randomStreams.draw(coffeeMachine.getId(), i).nextDouble(),
+                    randomStreams.nextDraw(coffeeMachine.getId()).nextDouble());
+        }
+        assertEquals(1000, randomStreams.getDrawCount(coffeeMachine.getId()));
+        assertEquals(0, randomStreams.getDrawCount(otherMachine.getId()));
+    }
+
+    private int countFailures(FailureModel model, int draws) {
+        int failures = 0;
+        for (int i = 0; i < draws; i++) {
+            if (model.isFailing(coffeeMachine))
+                failures++;
+        }
+        return failures;
+    }
+
+    @Test
+    void bernoulliModelFailsWithItsProbability() {
+        assertEquals(0, countFailures(new BernoulliFailureModel(0, 1), 1000));
+        assertEquals(1000, countFailures(new BernoulliFailureModel(1, 1), 1000));
+        assertEquals(0.05, countFailures(new BernoulliFailureModel(0.05, 1), 100_000) / 100_000.0, 0.005);
+        assertThrows(IllegalArgumentException.class, () -> new BernoulliFailureModel(1.5, 1));
+    }
+
+    @Test
+    void wornMachinesFailMoreOften() {
+        WearFailureModel model = new WearFailureModel(1000, 2, 3);
+
+        assertTrue(model.getFailureProbability(0) < model.getFailureProbability(500));
+        assertTrue(model.getFailureProbability(500) < model.getFailureProbability(2000));
+        //Une forme de 1 donne une probabilité constante de 1 - exp(-1/vie caractéristique)
+        WearFailureModel constantModel = new WearFailureModel(1000, 1, 3);
+        assertEquals(-Math.expm1(-1 / 1000.0), constantModel.getFailureProbability(10), 1e-12);
+        assertEquals(constantModel.getFailureProbability(10), constantModel.getFailureProbability(5000), 1e-12);
+
+        coffeeMachine.setNbCoffeeMade(0);
+        int newMachineFailures = countFailures(model, 10_000);
+        coffeeMachine.setNbCoffeeMade(2000);
+        int wornMachineFailures = countFailures(model, 10_000);
+        assertTrue(newMachineFailures < wornMachineFailures);
+    }
+
+    @Test
+    void scriptedModelPlaysItsScript() {
+        ScriptedFailureModel model = new ScriptedFailureModel(false, true, true);
+
+        assertFalse(model.isFailing(coffeeMachine));
+        assertTrue(model.isFailing(coffeeMachine));
+        assertTrue(model.isFailing(coffeeMachine));
+        assertFalse(model.isFailing(coffeeMachine));
+        assertEquals(4, model.getDraws());
+
+        ScriptedFailureModel cyclicModel = ScriptedFailureModel.cyclic(true, false);
+        assertTrue(cyclicModel.isFailing(coffeeMachine));
+        assertFalse(cyclicModel.isFailing(coffeeMachine));
+        assertTrue(cyclicModel.isFailing(coffeeMachine));
+    }
+
+    @Test
+    void coffeeMachineUsesItsFailureModel() {
+        coffeeMachine.setFailureModel(new ScriptedFailureModel(true, false));
+
+        coffeeMachine.coffeeMachineFailure();
+        assertTrue(coffeeMachine.isOutOfOrder());
+        coffeeMachine.coffeeMachineFailure();
+        assertFalse(coffeeMachine.isOutOfOrder());
+        assertNull(coffeeMachine.getRandomGenerator());
+
+        Random randomGenerator = new Random(1);
+        coffeeMachine.setRandomGenerator(randomGenerator);
+        assertSame(randomGenerator, coffeeMachine.getRandomGenerator());
+        assertTrue(coffeeMachine.getFailureModel() instanceof RandomGeneratorFailureModel);
+    }
+}
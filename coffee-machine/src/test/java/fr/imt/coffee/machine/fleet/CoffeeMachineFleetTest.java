@@ -0,0 +1,74 @@
+package fr.imt.coffee.machine.fleet;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.ExpressoCoffeeMachine;
+import fr.imt.coffee.machine.exception.NoCoffeeMachineAvailableException;
+import fr.imt.coffee.machine.failure.ScriptedFailureModel;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.container.CoffeeCup;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.readyToBrew;
+
+class CoffeeMachineFleetTest {
+
+    @Test
+    void leastLoadedPolicySpreadsOrdersAcrossMachines() throws Exception {
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy());
+        CoffeeMachine first = readyToBrew(new ExpressoCoffeeMachine(0, 10, 700), 5);
+        CoffeeMachine second = readyToBrew(new ExpressoCoffeeMachine(0, 10, 700), 5);
+        fleet.addCoffeeMachine(first);
+        fleet.addCoffeeMachine(second);
+
+        List<CompletableFuture<CoffeeContainer>> coffees = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            coffees.add(fleet.makeACoffeeAsync(new Cup(0.001), CoffeeType.ROBUSTA));
+        }
+        Assertions.assertEquals(6, fleet.getPendingOrders());
+        Assertions.assertEquals(3, first.getPendingOrders());
+        Assertions.assertEquals(3, second.getPendingOrders());
+
+        for (CompletableFuture<CoffeeContainer> coffee : coffees) {
+            Assertions.assertTrue(coffee.get() instanceof CoffeeCup);
+        }
+        Assertions.assertEquals(6, fleet.getNbCoffeeMade());
+        Assertions.assertTrue(fleet.getThroughput() > 0);
+    }
+
+    @Test
+    void orderFailsOverWhenMachineGoesOutOfOrder() throws Exception {
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new PowerOfTwoChoicesRoutingPolicy());
+        CoffeeMachine failing = readyToBrew(new ExpressoCoffeeMachine(0, 10, 700), 5, ScriptedFailureModel.cyclic(true));
+        CoffeeMachine healthy = readyToBrew(new ExpressoCoffeeMachine(0, 10, 700), 5);
+        fleet.addCoffeeMachine(failing);
+        fleet.addCoffeeMachine(healthy);
+
+        for (int i = 0; i < 3; i++) {
+            CoffeeContainer coffee = fleet.makeACoffee(new Cup(0.001), CoffeeType.BAHIA);
+            Assertions.assertEquals(CoffeeType.BAHIA, coffee.getCoffeeType());
+        }
+        Assertions.assertEquals(3, healthy.getNbCoffeeMade());
+        Assertions.assertEquals(0, failing.getNbCoffeeMade());
+    }
+
+    @Test
+    void noMachineAvailable() {
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy());
+        CoffeeMachine unplugged = new CoffeeMachine(0, 10, 700);
+        unplugged.addWaterInTank(5);
+        CoffeeMachine empty = readyToBrew(new ExpressoCoffeeMachine(0, 10, 700), 5);
+        empty.getWaterTank().decreaseWaterVolume(5);
+        fleet.addCoffeeMachine(unplugged);
+        fleet.addCoffeeMachine(empty);
+
+        Assertions.assertThrows(NoCoffeeMachineAvailableException.class,
+                () -> fleet.makeACoffee(new Cup(0.001), CoffeeType.MOKA));
+    }
+}
@@ -0,0 +1,194 @@
+package fr.imt.coffee.machine.history;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.readyToBrew;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderHistoryTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @TempDir
+    Path temporaryFolder;
+
+    @Test
+    void reportsGroupOrdersByCoffeeTypeCapacityHourAndMachine() throws Exception {
+        try (OrderHistory history = new OrderHistory(temporaryFolder, 4)) {
+            history.append(0, 1, CoffeeType.ARABICA, 0.15, 2_000_000, 1_000_000);
+            history.append(10 * 60_000, 1, CoffeeType.ARABICA, 0.35, 4_000_000, 1_000_000);
+            history.append(HOUR + 1, 2, CoffeeType.MOKA, 0.15, 6_000_000, 2_000_000);
+            history.append(2 * HOUR, 2, CoffeeType.ARABICA, 5, 1_000_000, 1_000_000);
+            history.append(25 * HOUR, 3, CoffeeType.BAHIA, 0.15, 1_000_000, 1_000_000);
+
+            assertEquals(5, history.getRowCount());
+            assertEquals(2, history.getSegmentCount());
+
+            OrderReport byCoffeeType = history.aggregate(OrderGrouping.COFFEE_TYPE);
+            assertEquals(5, byCoffeeType.getTotalCount());
+            assertEquals(3, byCoffeeType.getCount(CoffeeType.ARABICA.ordinal()));
+            assertEquals(5.5, byCoffeeType.getVolume(CoffeeType.ARABICA.ordinal()), 1e-9);
+            assertEquals(8, byCoffeeType.getMaxLatency(CoffeeType.MOKA.ordinal()), 1e-9);
+            assertEquals(10.0 / 3, byCoffeeType.getMeanLatency(CoffeeType.ARABICA.ordinal()), 1e-9);
+            assertEquals(7.0 / 3, byCoffeeType.getMeanHeatingTime(CoffeeType.ARABICA.ordinal()), 1e-9);
+
+            OrderReport byCapacity = history.aggregate(OrderGrouping.CAPACITY);
+            assertEquals(3, byCapacity.getCount(15));
+            assertEquals(1, byCapacity.getCount(35));
+            assertEquals(1, byCapacity.getCount(OrderGrouping.MAX_CAPACITY_CENTILITRES));
+            assertEquals("15 cl", byCapacity.getLabel(15));
+
+            OrderReport byHour = history.aggregate(OrderGrouping.HOUR, 0, 3 * HOUR);
+            assertEquals(3, byHour.getGroupCount());
+            assertEquals(2, byHour.getCount(0));
+            assertEquals(2, byHour.getThroughput(0), 1e-9);
+            assertEquals(1, byHour.getCount(1));
+            assertEquals(1, byHour.getCount(2));
+            assertEquals("1970-01-01T01:00:00Z", byHour.getLabel(1));
+
+            OrderReport byHourOfDay = history.aggregate(OrderGrouping.HOUR_OF_DAY);
+            assertEquals(2, byHourOfDay.getCount(1));
+            assertEquals(2, byHourOfDay.getCount(0));
+
+            OrderReport byMachine = history.aggregate(OrderGrouping.MACHINE, HOUR, 26 * HOUR);
+            assertEquals(2, byMachine.getGroupCount());
+            assertEquals(-1, byMachine.getMachineGroup(1));
+            assertEquals(2, byMachine.getCount(byMachine.getMachineGroup(2)));
+            assertEquals(1, byMachine.getCount(byMachine.getMachineGroup(3)));
+            assertEquals("machine 3", byMachine.getLabel(1));
+        }
+    }
+
+    @Test
+    void historyIsReopenedFromItsSegments() throws Exception {
+        try (OrderHistory history = new OrderHistory(temporaryFolder, 3)) {
+            for (int i = 0; i < 7; i++) {
+                history.append(i * 1000, 1, CoffeeType.MOKA, 0.2, 1_000_000, 1_000_000);
+            }
+        }
+
+        try (OrderHistory history = new OrderHistory(temporaryFolder, 3)) {
+            assertEquals(7, history.getRowCount());
+            history.append(7000, 4, CoffeeType.MOKA, 0.2, 1_000_000, 1_000_000);
+            assertEquals(3, history.getSegmentCount());
+            assertEquals(8, history.aggregate(OrderGrouping.COFFEE_TYPE).getCount(CoffeeType.MOKA.ordinal()));
+            OrderReport byMachine = history.aggregate(OrderGrouping.MACHINE);
+            assertEquals(1, byMachine.getCount(byMachine.getMachineGroup(4)));
+        }
+    }
+
+    /**
+     * Rouvrir un historique ne réécrit pas ses segments, y compris ceux dont l'en-tête a le plus grand identifiant de
+     * machine de la version 2
+     */
+    @Test
+    void reopeningAHistoryDoesNotRewriteItsSegments() throws Exception {
+        try (OrderHistory history = new OrderHistory(temporaryFolder, 3)) {
+            history.append(0, 12, CoffeeType.MOKA, 0.2, 1_000_000, 1_000_000);
+            history.append(1000, 7, CoffeeType.MOKA, 0.2, 1_000_000, 1_000_000);
+            history.append(2000, 3, CoffeeType.MOKA, 0.2, 1_000_000, 1_000_000);
+            history.append(3000, 5, CoffeeType.MOKA, 0.2, 1_000_000, 1_000_000);
+        }
+        Path firstSegment = temporaryFolder.resolve("orders-00000000.col");
+        try (FileChannel channel = FileChannel.open(firstSegment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 2), 4);
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 12), 32);
+        }
+        byte[] firstSegmentBytes = Files.readAllBytes(firstSegment);
+        byte[] secondSegmentBytes = Files.readAllBytes(temporaryFolder.resolve("orders-00000001.col"));
+
+        try (OrderHistory history = new OrderHistory(temporaryFolder, 3)) {
+            OrderReport byMachine = history.aggregate(OrderGrouping.MACHINE);
+            assertEquals(4, byMachine.getGroupCount());
+            assertEquals(1, byMachine.getCount(byMachine.getMachineGroup(12)));
+        }
+        assertArrayEquals(firstSegmentBytes, Files.readAllBytes(firstSegment));
+        assertArrayEquals(secondSegmentBytes, Files.readAllBytes(temporaryFolder.resolve("orders-00000001.col")));
+    }
+
+    /**
+     * Un rapport par machine ne dépend que du nombre de machines, pas de la valeur de leurs identifiants
+     */
+    @Test
+    void machineReportAcceptsAnyMachineId() throws Exception {
+        try (OrderHistory history = new OrderHistory(temporaryFolder, 100_000)) {
+            int[] machineIds = {Integer.MAX_VALUE, 2_000_000_000, -7, Integer.MIN_VALUE, 0};
+            for (int i = 0; i < 300_000; i++) {
+                history.append(i, machineIds[i % machineIds.length], CoffeeType.MOKA, 0.1, 1_000_000, 1_000_000);
+            }
+
+            OrderReport byMachine = history.aggregate(OrderGrouping.MACHINE);
+            assertEquals(5, byMachine.getGroupCount());
+            assertEquals(Integer.MIN_VALUE, byMachine.getMachineId(0));
+            assertEquals(-7, byMachine.getMachineId(1));
+            assertEquals(Integer.MAX_VALUE, byMachine.getMachineId(4));
+            for (int machineId : machineIds) {
+                assertEquals(60_000, byMachine.getCount(byMachine.getMachineGroup(machineId)));
+            }
+            assertEquals("machine 2000000000", byMachine.getLabel(3));
+            assertEquals(-1, byMachine.getMachineGroup(1));
+            assertThrows(IllegalStateException.class, () -> history.aggregate(OrderGrouping.HOUR_OF_DAY).getMachineGroup(0));
+        }
+    }
+
+    /**
+     * Le parcours parallèle donne les mêmes totaux que le cumul des lignes une à une
+     */
+    @Test
+    void parallelScanMatchesTheRows() throws Exception {
+        try (OrderHistory history = new OrderHistory(temporaryFolder, 100_000)) {
+            long expectedHeating = 0;
+            int coffeeTypes = CoffeeType.values().length;
+            for (int i = 0; i < 500_000; i++) {
+                long heatingNanos = (i % 1000) * 1000L;
+                history.append(i * 10L, i % 5, CoffeeType.values()[i % coffeeTypes], 0.1, heatingNanos, 0);
+                if (i % coffeeTypes == 0)
+                    expectedHeating += heatingNanos / 1000;
+            }
+
+            OrderReport report = history.aggregate(OrderGrouping.COFFEE_TYPE);
+            assertEquals(500_000, report.getTotalCount());
+            long expectedCount = (500_000 + coffeeTypes - 1) / coffeeTypes;
+            assertEquals(expectedCount, report.getCount(0));
+            assertEquals(expectedHeating / 1000.0 / expectedCount, report.getMeanHeatingTime(0), 1e-9);
+            OrderReport byMachine = history.aggregate(OrderGrouping.MACHINE);
+            assertEquals(5, byMachine.getGroupCount());
+            assertEquals(100_000, byMachine.getCount(byMachine.getMachineGroup(3)));
+        }
+    }
+
+    @Test
+    void coffeeMachineRecordsServedCoffees() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = readyToBrew(new CoffeeMachine(42, 0, 10, 700, 1000, virtualClock), 10);
+
+        try (OrderHistory history = new OrderHistory(temporaryFolder)) {
+            coffeeMachine.setOrderHistory(history);
+            coffeeMachine.makeACoffee(new Cup(0.2), CoffeeType.ARABICA);
+            coffeeMachine.makeACoffee(new Mug(0.3), CoffeeType.ARABICA);
+            coffeeMachine.makeCoffees(java.util.List.of(new Cup(0.1), new Cup(0.1)), CoffeeType.MOKA);
+
+            OrderReport report = history.aggregate(OrderGrouping.COFFEE_TYPE);
+            assertEquals(2, report.getCount(CoffeeType.ARABICA.ordinal()));
+            assertEquals(2, report.getCount(CoffeeType.MOKA.ordinal()));
+            double pumpingTime = coffeeMachine.getWaterPump().computePumpingTime(0.2);
+            assertTrue(report.getMeanPumpingTime(CoffeeType.ARABICA.ordinal()) >= pumpingTime);
+            assertTrue(report.getMeanHeatingTime(CoffeeType.ARABICA.ordinal()) > 0);
+            //C'est l'identifiant stable de la machine qui est rangé, pas son rang de création dans la JVM
+            OrderReport byMachine = history.aggregate(OrderGrouping.MACHINE);
+            assertEquals(4, byMachine.getCount(byMachine.getMachineGroup(42)));
+        }
+    }
+}
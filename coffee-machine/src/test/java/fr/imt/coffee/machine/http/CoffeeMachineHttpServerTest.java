@@ -0,0 +1,209 @@
+package fr.imt.coffee.machine.http;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.SystemBrewClock;
+import fr.imt.coffee.machine.failure.ScriptedFailureModel;
+import fr.imt.coffee.storage.cupboard.Cupboard;
+import fr.imt.coffee.storage.cupboard.kind.StandardContainerKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.readyToBrew;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoffeeMachineHttpServerTest {
+
+    private CoffeeMachine coffeeMachine;
+    private CoffeeMachineHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        //Pompe et résistance très puissantes : un café coule en quelques millisecondes
+        coffeeMachine = readyToBrew(new CoffeeMachine(0, 10, 360_000, 1_000_000, SystemBrewClock.getDefaultClock()), 10);
+        server = new CoffeeMachineHttpServer(coffeeMachine, new InetSocketAddress("localhost", 0));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String pathAndQuery) throws IOException, InterruptedException {
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + pathAndQuery);
+        HttpRequest request = HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testOrderAndStatus() throws IOException, InterruptedException {
+        HttpResponse<String> order = send("POST", "/order?container=mug&capacity=0.35&type=arabica");
+        assertEquals(200, order.statusCode());
+        assertTrue(order.body().contains("\"served\":true"));
+        assertTrue(order.body().contains("\"type\":\"ARABICA\""));
+        assertEquals(1, coffeeMachine.getNbCoffeeMade());
+
+        HttpResponse<String> status = send("GET", "/status");
+        assertEquals(200, status.statusCode());
+        assertTrue(status.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        assertTrue(status.body().contains("\"nbCoffeeMade\":1"));
+        assertTrue(status.body().contains("\"plugged\":true"));
+    }
+
+    @Test
+    void testInvalidRequestsAndRejections() throws IOException, InterruptedException {
+        assertEquals(400, send("POST", "/order?container=bowl&capacity=0.35&type=MOKA").statusCode());
+        assertEquals(400, send("POST", "/order?container=cup&capacity=abc&type=MOKA").statusCode());
+        assertEquals(400, send("POST", "/order?container=cup&capacity=0.15&type=LATTE").statusCode());
+        assertEquals(400, send("POST", "/order?container=cup&capacity=0.15").statusCode());
+        assertEquals(400, send("POST", "/order?container=cup&capacity=NaN&type=MOKA").statusCode());
+        assertEquals(400, send("POST", "/order?container=cup&capacity=Infinity&type=MOKA").statusCode());
+        assertEquals(400, send("POST", "/order?container=cup&capacity=0&type=MOKA").statusCode());
+        assertEquals(400, send("POST", "/order?container=cup&capacity=-0.15&type=MOKA").statusCode());
+        assertEquals(405, send("GET", "/order").statusCode());
+
+        //Réservoir vide : la commande est refusée, puis servie après le remplissage
+        coffeeMachine.getWaterTank().decreaseWaterVolume(10);
+        HttpResponse<String> lackOfWater = send("POST", "/order?container=cup&capacity=0.15&type=MOKA");
+        assertEquals(503, lackOfWater.statusCode());
+        assertTrue(lackOfWater.body().contains("LACK_OF_WATER"));
+        send("POST", "/refill");
+        assertEquals(200, send("POST", "/order?container=cup&capacity=0.15&type=MOKA").statusCode());
+
+        coffeeMachine.setOutOfOrder(true);
+        HttpResponse<String> reset = send("POST", "/reset");
+        assertTrue(reset.body().contains("\"outOfOrder\":false"));
+        assertFalse(coffeeMachine.isOutOfOrder());
+    }
+
+    @Test
+    void testRefill() throws IOException, InterruptedException {
+        coffeeMachine.getWaterTank().decreaseWaterVolume(6);
+        HttpResponse<String> refill = send("POST", "/refill?volume=1.5");
+        assertEquals(200, refill.statusCode());
+        assertEquals(5.5, coffeeMachine.getWaterTank().getActualVolume(), 1e-6);
+
+        //Sans volume, le réservoir est rempli
+        send("POST", "/refill");
+        assertEquals(10, coffeeMachine.getWaterTank().getActualVolume(), 1e-6);
+        assertEquals(400, send("POST", "/refill?volume=-1").statusCode());
+        assertEquals(400, send("POST", "/refill?volume=NaN").statusCode());
+        assertEquals(400, send("POST", "/refill?volume=Infinity").statusCode());
+        assertEquals(10, coffeeMachine.getWaterTank().getActualVolume(), 1e-6);
+    }
+
+    @Test
+    void testConcurrentOrdersAreCountedInMetrics() throws IOException, InterruptedException {
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/order?container=cup&capacity=0.15&type=BAHIA");
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.join().statusCode());
+        }
+        assertEquals(20, coffeeMachine.getNbCoffeeMade());
+
+        HttpServerMetrics metrics = server.getMetrics();
+        assertEquals(20, metrics.getRequests());
+        assertEquals(20, metrics.getResponses(2));
+        assertEquals(0, metrics.getActiveRequests());
+        assertTrue(metrics.getAcceptedConnections() >= 1);
+        assertTrue(metrics.getOpenConnections() >= 1);
+        assertEquals(20, metrics.getLatencyHistogram().getCount());
+
+        HttpResponse<String> metricsResponse = send("GET", "/metrics");
+        assertTrue(metricsResponse.body().contains("\"requests\":21"));
+    }
+
+    @Test
+    void testOrdersTakeContainersFromTheCupboard() throws IOException, InterruptedException {
+        Cupboard cupboard = new Cupboard(1, 4);
+        AtomicLong lowStock = new AtomicLong(-1);
+        cupboard.addLowStockListener((containerKind, capacity, stock) -> lowStock.set(stock));
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 3);
+        server.setCupboard(cupboard);
+
+        assertEquals(200, send("POST", "/order?container=cup&capacity=0.15&type=ROBUSTA").statusCode());
+        assertEquals(-1, lowStock.get());
+        assertEquals(200, send("POST", "/order?container=cup&capacity=0.15&type=ROBUSTA").statusCode());
+        assertEquals(1, lowStock.get());
+
+        //Une commande refusée par la machine rend son contenant au placard
+        coffeeMachine.getWaterTank().decreaseWaterVolume(10);
+        assertEquals(503, send("POST", "/order?container=cup&capacity=0.15&type=ROBUSTA").statusCode());
+        assertEquals(1, cupboard.getStock(StandardContainerKind.CUP, 0.15));
+        send("POST", "/refill");
+
+        assertEquals(200, send("POST", "/order?container=cup&capacity=0.15&type=ROBUSTA").statusCode());
+        HttpResponse<String> noContainer = send("POST", "/order?container=cup&capacity=0.15&type=ROBUSTA");
+        assertEquals(503, noContainer.statusCode());
+        assertTrue(noContainer.body().contains(CoffeeMachineHttpServer.NO_CONTAINER));
+        //Aucun mug n'a jamais été rangé dans le placard
+        assertEquals(503, send("POST", "/order?container=mug&capacity=0.35&type=ROBUSTA").statusCode());
+        assertEquals(3, coffeeMachine.getNbCoffeeMade());
+        assertEquals(4, cupboard.getTakes());
+        assertEquals(1, cupboard.getReturns());
+    }
+
+    @Test
+    void testContainerOfAFailedOrderReturnsToTheCupboard() throws IOException, InterruptedException {
+        Cupboard cupboard = new Cupboard(0, 4);
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 2);
+        server.setCupboard(cupboard);
+
+        //Panne pendant la préparation
+        coffeeMachine.setFailureModel(new ScriptedFailureModel(true));
+        assertEquals(503, send("POST", "/order?container=cup&capacity=0.15&type=MOKA").statusCode());
+        assertEquals(2, cupboard.getStock(StandardContainerKind.CUP, 0.15));
+
+        //Erreur inattendue de la machine
+        coffeeMachine.reset();
+        coffeeMachine.setFailureModel(machine -> {
+            throw new IllegalStateException("Broken failure model");
+        });
+        assertEquals(500, send("POST", "/order?container=cup&capacity=0.15&type=MOKA").statusCode());
+        assertEquals(2, cupboard.getStock(StandardContainerKind.CUP, 0.15));
+        assertEquals(2, cupboard.getReturns());
+    }
+
+    @Test
+    void testCupboardStockIsConsistentUnderConcurrentTakes() throws InterruptedException {
+        Cupboard cupboard = new Cupboard(0, 8);
+        cupboard.restock(StandardContainerKind.MUG, 0.35, 1000);
+        AtomicLong taken = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                while (cupboard.take(StandardContainerKind.MUG, 0.35) != null) {
+                    //Un contenant sur deux est rendu après usage
+                    if (taken.incrementAndGet() % 2 == 0)
+                        cupboard.returnContainer(StandardContainerKind.MUG, StandardContainerKind.MUG.create(0.35));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(cupboard.isAvailable(StandardContainerKind.MUG, 0.35));
+        assertEquals(0, cupboard.getTotalStock());
+        assertEquals(cupboard.getTakes(), 1000 + cupboard.getReturns());
+    }
+}
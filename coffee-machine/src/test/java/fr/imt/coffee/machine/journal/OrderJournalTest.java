@@ -0,0 +1,216 @@
+package fr.imt.coffee.machine.journal;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.failure.ScriptedFailureModel;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderJournalTest {
+
+    @TempDir
+    Path temporaryFolder;
+
+    @Test
+    void replayStartsFromTheLastSnapshot() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath)) {
+            journal.appendRefill(2);
+            journal.appendBrew(CoffeeType.ARABICA, 0.5);
+            journal.appendSnapshot(10, 1.5, true);
+            journal.appendReset();
+            journal.appendBrew(CoffeeType.MOKA, 0.25);
+            journal.appendRefill(0.5);
+        }
+
+        try (OrderJournal journal = new OrderJournal(journalPath)) {
+            JournalState state = journal.replay();
+
+            assertEquals(6, journal.getRecordCount());
+            assertEquals(6, journal.getDurableRecordCount());
+            assertEquals(11, state.getNbCoffeeMade());
+            assertEquals(1.75, state.getWaterVolume(), 1e-9);
+            assertFalse(state.isOutOfOrder());
+            assertEquals(3, state.getReplayedRecords());
+        }
+    }
+
+    @Test
+    void journalGrowsWhenTheMappingIsFull() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath, 4, 0)) {
+            journal.appendRefill(1000);
+            for (int i = 0; i < 100; i++) {
+                journal.appendBrew(CoffeeType.BAHIA, 0.1);
+            }
+            journal.flush();
+
+            assertEquals(101, journal.getDurableRecordCount());
+            assertEquals(100, journal.replay().getNbCoffeeMade());
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyTheRecordsFromTheLastSnapshot() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 0)) {
+            assertEquals(0, journal.compact());
+            journal.appendRefill(2);
+            journal.appendBrew(CoffeeType.ARABICA, 0.5);
+            journal.appendSnapshot(10, 1.5, false);
+            journal.appendBrew(CoffeeType.MOKA, 0.25);
+
+            assertEquals(2, journal.compact());
+            assertEquals(2, journal.getRecordCount());
+            assertEquals(2, journal.getDurableRecordCount());
+            journal.appendRefill(0.5);
+            assertEquals(1.75, journal.replay().getWaterVolume(), 1e-9);
+        }
+
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 0)) {
+            JournalState state = journal.replay();
+
+            assertEquals(3, journal.getRecordCount());
+            assertEquals(11, state.getNbCoffeeMade());
+            assertEquals(1.75, state.getWaterVolume(), 1e-9);
+            assertEquals(2, state.getReplayedRecords());
+        }
+    }
+
+    /**
+     * Avec un snapshot régulier, le journal se compacte au lieu de grossir
+     */
+    @Test
+    void fullJournalIsCompactedInsteadOfGrowing() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath, 4, 0)) {
+            for (int i = 1; i <= 100; i++) {
+                journal.appendBrew(CoffeeType.BAHIA, 0.1);
+                journal.appendSnapshot(i, 10 - i * 0.1, false);
+            }
+            journal.appendBrew(CoffeeType.BAHIA, 0.1);
+
+            assertTrue(journal.getRecordCount() <= 4);
+            assertEquals(101, journal.replay().getNbCoffeeMade());
+        }
+        assertEquals(4 * OrderJournal.RECORD_SIZE, Files.size(journalPath));
+
+        try (OrderJournal journal = new OrderJournal(journalPath, 4, 0)) {
+            JournalState state = journal.replay();
+            assertEquals(101, state.getNbCoffeeMade());
+            assertEquals(-0.1, state.getWaterVolume(), 1e-9);
+        }
+    }
+
+    @Test
+    void groupCommitMakesRecordsDurableWithoutFlush() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 1)) {
+            journal.appendRefill(1);
+            journal.appendBrew(CoffeeType.ARABICA, 0.2);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (journal.getDurableRecordCount() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(2, journal.getDurableRecordCount());
+        }
+    }
+
+    /**
+     * Un enregistrement écrit à moitié avant un arrêt brutal est ignoré au redémarrage puis écrasé
+     */
+    @Test
+    void tornRecordIsIgnoredOnRecovery() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 0)) {
+            journal.appendRefill(1);
+            journal.appendBrew(CoffeeType.ARABICA, 0.2);
+            journal.appendBrew(CoffeeType.ARABICA, 0.3);
+        }
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, 42), 2L * OrderJournal.RECORD_SIZE + 16);
+        }
+
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 0)) {
+            assertEquals(2, journal.getRecordCount());
+            assertEquals(0.8, journal.replay().getWaterVolume(), 1e-9);
+
+            journal.appendBrew(CoffeeType.ARABICA, 0.1);
+            assertEquals(3, journal.getRecordCount());
+            assertEquals(0.7, journal.replay().getWaterVolume(), 1e-9);
+        }
+    }
+
+    /**
+     * Les enregistrements qui suivent un enregistrement écrit à moitié ne sont pas rejoués après avoir été
+     * partiellement écrasés par l'exécution suivante
+     */
+    @Test
+    void recordsAfterATornRecordAreNotReplayedAfterAPartialOverwrite() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 0)) {
+            journal.appendRefill(2);
+            for (int i = 0; i < 9; i++) {
+                journal.appendBrew(CoffeeType.ARABICA, 0.1);
+            }
+        }
+        //Arrêt brutal pendant l'écriture du 5e enregistrement, alors que les suivants étaient déjà sur le disque
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, 42), 4L * OrderJournal.RECORD_SIZE + 16);
+        }
+
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 0)) {
+            assertEquals(4, journal.getRecordCount());
+            journal.appendRefill(1);
+        }
+
+        try (OrderJournal journal = new OrderJournal(journalPath, 16, 0)) {
+            JournalState state = journal.replay();
+            assertEquals(5, journal.getRecordCount());
+            assertEquals(3, state.getNbCoffeeMade());
+            assertEquals(2.7, state.getWaterVolume(), 1e-9);
+        }
+    }
+
+    @Test
+    void coffeeMachineRecoversItsStateFromTheJournal() throws Exception {
+        Path journalPath = temporaryFolder.resolve("machine.journal");
+        try (OrderJournal journal = new OrderJournal(journalPath)) {
+            CoffeeMachine coffeeMachine = newSimulatedMachine(new VirtualBrewClock(0), 0, 10, 0);
+            //La troisième commande fait tomber la machine en panne
+            coffeeMachine.setFailureModel(new ScriptedFailureModel(false, false, true));
+            coffeeMachine.recover(journal);
+            coffeeMachine.addWaterInTank(2);
+            coffeeMachine.makeACoffee(new Cup(0.2), CoffeeType.ARABICA);
+            coffeeMachine.checkpoint();
+            coffeeMachine.makeACoffee(new Mug(0.4), CoffeeType.MOKA);
+            assertNull(coffeeMachine.makeACoffee(new Cup(0.2), CoffeeType.ARABICA));
+        }
+
+        try (OrderJournal journal = new OrderJournal(journalPath)) {
+            CoffeeMachine restartedMachine = newSimulatedMachine(new VirtualBrewClock(0), 0, 10, 0);
+            restartedMachine.recover(journal);
+
+            assertEquals(2, restartedMachine.getNbCoffeeMade());
+            assertEquals(1.4, restartedMachine.getWaterTank().getActualVolume(), 1e-6);
+            assertTrue(restartedMachine.isOutOfOrder());
+
+            restartedMachine.reset();
+            assertFalse(journal.replay().isOutOfOrder());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package fr.imt.coffee.machine.load;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.fleet.CoffeeMachineFleet;
+import fr.imt.coffee.machine.fleet.LeastLoadedRoutingPolicy;
+import fr.imt.coffee.machine.queue.BackpressurePolicy;
+import fr.imt.coffee.machine.queue.FifoSchedulingPolicy;
+import fr.imt.coffee.machine.queue.OrderQueue;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.kind.StandardContainerKind;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+
+    @Test
+    void testTraceReaderSkipsCommentsAndReadsWindowsLines(@TempDir Path directory) throws IOException {
+        Path trace = directory.resolve("orders.csv");
+        Files.writeString(trace, "# arrival,kind,capacity,type\r\n0,cup,0.15,ARABICA\r\n\r\n250,Mug,0.35,moka\r\n1000,cup,0.2,BAHIA");
+
+        try (OrderTraceReader reader = new OrderTraceReader(trace)) {
+            assertTrue(reader.next());
+            assertEquals(0, reader.getArrivalMillis());
+            assertEquals(StandardContainerKind.CUP, reader.getContainerKind());
+            assertEquals(0.15, reader.getCapacity(), 1e-9);
+            assertEquals(CoffeeType.ARABICA, reader.getCoffeeType());
+
+            assertTrue(reader.next());
+            assertEquals(250, reader.getArrivalMillis());
+            assertEquals(StandardContainerKind.MUG, reader.getContainerKind());
+            assertEquals(CoffeeType.MOKA, reader.getCoffeeType());
+            assertEquals(4, reader.getLineNumber());
+
+            //Dernière ligne sans saut de ligne
+            assertTrue(reader.next());
+            assertEquals(1000, reader.getArrivalMillis());
+            assertEquals(0.2, reader.getCapacity(), 1e-9);
+            assertFalse(reader.next());
+        }
+
+        Path invalidTrace = directory.resolve("invalid.csv");
+        Files.writeString(invalidTrace, "10,cup,0.15,ARABICA\n5,cup,0.15,LATTE\n");
+        try (OrderTraceReader reader = new OrderTraceReader(invalidTrace)) {
+            assertTrue(reader.next());
+            IOException exception = assertThrows(IOException.class, reader::next);
+            assertTrue(exception.getMessage().contains("line 2"));
+        }
+    }
+
+    @Test
+    void testReplayedTraceIsServedAtItsArrivalTimes(@TempDir Path directory) throws IOException {
+        Path trace = directory.resolve("orders.csv");
+        Files.writeString(trace, "0,cup,0.15,ARABICA\n60000,mug,0.35,ROBUSTA\n120000,cup,0.15,BAHIA\n");
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 100);
+
+        LoadReport report = new LoadGenerator(virtualClock, coffeeMachine).run(new OrderTraceReader(trace));
+
+        assertEquals(3, report.getOrders());
+        assertEquals(3, report.getServedOrders());
+        assertEquals(0, report.getUnfinishedOrders());
+        assertTrue(report.getRejections().isEmpty());
+        //Les commandes espacées d'une minute n'attendent jamais : la dernière finit peu après 120 s
+        assertTrue(report.getElapsedSeconds() > 120 && report.getElapsedSeconds() < 180);
+        assertEquals(3, coffeeMachine.getNbCoffeeMade());
+    }
+
+    @Test
+    void testPoissonOverloadIsReportedAsRejections() throws IOException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        OrderQueue orderQueue = new OrderQueue(newSimulatedMachine(virtualClock, 100), 4, BackpressurePolicy.REJECT, new FifoSchedulingPolicy());
+
+        //Bien plus de commandes qu'une machine ne peut en servir
+        LoadReport report = new LoadGenerator(virtualClock, Collections.singletonList(orderQueue))
+                .run(new PoissonOrderSource(5, 60_000, 7));
+
+        assertTrue(report.getOrders() > 200);
+        long rejected = report.getRejections().getOrDefault("QUEUE_FULL", 0L);
+        assertTrue(rejected > 0);
+        assertEquals(report.getOrders(), report.getServedOrders() + rejected);
+        assertEquals(report.getServedOrders(), report.getLatencyHistogram().getCount());
+        assertTrue(report.getLatencyPercentileMillis(99) >= report.getLatencyPercentileMillis(50));
+        assertTrue(report.toString().contains("QUEUE_FULL"));
+
+        //Une même graine redonne le même bilan
+        VirtualBrewClock otherClock = new VirtualBrewClock(0);
+        OrderQueue otherQueue = new OrderQueue(newSimulatedMachine(otherClock, 100), 4, BackpressurePolicy.REJECT, new FifoSchedulingPolicy());
+        LoadReport otherReport = new LoadGenerator(otherClock, Collections.singletonList(otherQueue))
+                .run(new PoissonOrderSource(5, 60_000, 7));
+        assertEquals(report.getOrders(), otherReport.getOrders());
+        assertEquals(report.getServedOrders(), otherReport.getServedOrders());
+    }
+
+    @Test
+    void testFleetWithoutMachineRejectsEveryOrder() throws IOException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy(), virtualClock);
+
+        LoadReport report = new LoadGenerator(virtualClock, fleet).run(new PoissonOrderSource(2, 10_000, 3));
+
+        assertTrue(report.getOrders() > 0);
+        assertEquals(0, report.getServedOrders());
+        assertEquals(report.getOrders(), report.getRejections().get(LoadGenerator.NO_MACHINE_AVAILABLE));
+    }
+
+    @Test
+    void testCommandRejectsInvalidOptions() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> LoadTestCommand.parse(new String[]{"--rate", "5", "--scheduling", "lifo"}));
+        assertTrue(exception.getMessage().contains(LoadTestCommand.USAGE));
+        assertThrows(IllegalArgumentException.class, () -> LoadTestCommand.parse(new String[]{"--machines", "2"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadTestCommand.parse(new String[]{"--rate"}));
+    }
+}
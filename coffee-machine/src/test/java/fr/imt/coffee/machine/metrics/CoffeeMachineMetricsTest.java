@@ -0,0 +1,49 @@
+package fr.imt.coffee.machine.metrics;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.SimulatedCoffeeMachines;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.exception.MachineNotPluggedException;
+import fr.imt.coffee.machine.failure.BernoulliFailureModel;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoffeeMachineMetricsTest {
+
+    @Test
+    void metricsAreReadableThroughJmx() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = new CoffeeMachine(0, 10, 700, virtualClock);
+        coffeeMachine.setFailureModel(new BernoulliFailureModel(0, SimulatedCoffeeMachines.SEED));
+
+        assertThrows(MachineNotPluggedException.class, () -> coffeeMachine.makeACoffee(new Cup(0.1), CoffeeType.MOKA));
+        coffeeMachine.plugToElectricalPlug();
+        coffeeMachine.addWaterInTank(1);
+        for (int i = 0; i < 3; i++) {
+            coffeeMachine.makeACoffee(new Cup(0.1), CoffeeType.MOKA);
+        }
+
+        CoffeeMachineMetrics metrics = coffeeMachine.getMetrics();
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        metrics.register();
+        try {
+            assertEquals(3L, mBeanServer.getAttribute(metrics.getObjectName(), "NbCoffeeMade"));
+            assertEquals(1L, mBeanServer.getAttribute(metrics.getObjectName(), "NotPluggedRejections"));
+            assertEquals(3L, mBeanServer.getAttribute(metrics.getObjectName(), "HeatingCount"));
+            assertEquals(0.7, (double) mBeanServer.getAttribute(metrics.getObjectName(), "TankLevel"), 1e-9);
+
+            double heatingTime = coffeeMachine.getElectricalResistance().computeHeatingTime(0.1);
+            double heatingP99 = (double) mBeanServer.getAttribute(metrics.getObjectName(), "HeatingP99Millis");
+            assertEquals(heatingTime, heatingP99, heatingTime * 0.125);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(mBeanServer.isRegistered(metrics.getObjectName()));
+    }
+}
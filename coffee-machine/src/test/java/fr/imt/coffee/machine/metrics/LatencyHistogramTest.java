@@ -0,0 +1,46 @@
+package fr.imt.coffee.machine.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void eachValueFallsIntoABucketBoundingIt() {
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+            if (index > 0)
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+
+    @Test
+    void percentilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5e6, histogram.getMean(), 1);
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50e6, histogram.getPercentile(50), 50e6 * 0.125);
+        assertEquals(99e6, histogram.getPercentile(99), 99e6 * 0.125);
+        assertEquals(100_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    void resetClearsTheRecordedLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.record(-5);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMax());
+    }
+}
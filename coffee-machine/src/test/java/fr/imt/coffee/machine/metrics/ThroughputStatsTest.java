@@ -0,0 +1,82 @@
+package fr.imt.coffee.machine.metrics;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.fleet.CoffeeMachineFleet;
+import fr.imt.coffee.machine.fleet.LeastLoadedRoutingPolicy;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThroughputStatsTest {
+
+    @Test
+    void rollingRateForgetsExpiredBuckets() {
+        RollingRate rate = new RollingRate(60_000, 60);
+        for (long time = 0; time < 60_000; time += 500) {
+            rate.record(time);
+        }
+
+        assertEquals(2, rate.getRate(59_999), 1e-9);
+        //30 s plus tard, seule la seconde moitié de la fenêtre compte encore
+        assertEquals(1, rate.getRate(89_999), 1e-9);
+        assertEquals(0, rate.getRate(200_000), 1e-9);
+    }
+
+    @Test
+    void countersDoNotLoseConcurrentUpdates() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        ThroughputStats stats = new ThroughputStats(virtualClock);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 100_000; j++) {
+                    stats.record(CoffeeType.MOKA);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400_000, stats.getCount(CoffeeType.MOKA));
+        assertEquals(0, stats.getCount(CoffeeType.ARABICA));
+        assertEquals(stats.getRate(CoffeeType.MOKA, ThroughputStats.RateWindow.ONE_SECOND),
+                stats.getRate(ThroughputStats.RateWindow.ONE_SECOND), 1e-9);
+    }
+
+    @Test
+    void machineAndFleetExposeRatesByCoffeeType() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy(), virtualClock);
+        for (int i = 0; i < 2; i++) {
+            fleet.addCoffeeMachine(newSimulatedMachine(virtualClock, 100));
+        }
+
+        for (int i = 0; i < 30; i++) {
+            virtualClock.schedule(i * 2000, () -> fleet.makeACoffeeAsync(new Cup(0.1), CoffeeType.BAHIA));
+            virtualClock.schedule(i * 2000 + 1000, () -> fleet.makeACoffeeAsync(new Cup(0.1), CoffeeType.ARABICA));
+        }
+        virtualClock.runUntilIdle();
+
+        assertEquals(30, fleet.getNbCoffeeMade(CoffeeType.BAHIA));
+        assertEquals(30, fleet.getNbCoffeeMade(CoffeeType.ARABICA));
+        assertEquals(60, fleet.getNbCoffeeMade());
+        CoffeeMachine firstMachine = fleet.getCoffeeMachines().get(0);
+        assertEquals(firstMachine.getNbCoffeeMade(), firstMachine.getThroughputStats().getCount(CoffeeType.BAHIA)
+                + firstMachine.getThroughputStats().getCount(CoffeeType.ARABICA));
+        double fleetRate = fleet.getRate(CoffeeType.BAHIA, ThroughputStats.RateWindow.FIFTEEN_MINUTES);
+        assertTrue(fleetRate > 0);
+        assertEquals(fleetRate * 2, fleet.getRate(ThroughputStats.RateWindow.FIFTEEN_MINUTES), 1e-9);
+        assertEquals(firstMachine.getThroughputStats().getRate(ThroughputStats.RateWindow.ONE_MINUTE),
+                firstMachine.getMetrics().getCoffeesPerSecondLastMinute(), 1e-9);
+    }
+}
@@ -0,0 +1,86 @@
+package fr.imt.coffee.machine.pipeline;
+
+import fr.imt.coffee.machine.clock.SystemBrewClock;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrewStageTest {
+
+    private CompletableFuture<Void> delay(long millis) {
+        return SystemBrewClock.getDefaultClock().delay(millis);
+    }
+
+    @Test
+    void stageProcessesOneOrderAtATime() throws Exception {
+        AtomicInteger ordersInStage = new AtomicInteger();
+        AtomicInteger maxOrdersInStage = new AtomicInteger();
+        BrewStage stage = new BrewStage("heating", order -> {
+            maxOrdersInStage.accumulateAndGet(ordersInStage.incrementAndGet(), Math::max);
+            return delay(20).thenRun(ordersInStage::decrementAndGet);
+        });
+
+        List<CompletableFuture<BrewOrder>> orders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            orders.add(stage.submit(new BrewOrder(new Cup(0.1), CoffeeType.MOKA, System.nanoTime())));
+        }
+        assertTrue(stage.isBusy());
+        assertEquals(3, stage.getQueueDepth());
+        assertEquals(3, stage.getWaitingOrders().size());
+
+        for (CompletableFuture<BrewOrder> order : orders) {
+            assertNotNull(order.get());
+        }
+
+        assertEquals(1, maxOrdersInStage.get());
+        assertEquals(4, stage.getProcessedOrders());
+        assertEquals(3, stage.getMaxQueueDepth());
+        assertEquals(0, stage.getQueueDepth());
+        assertFalse(stage.isBusy());
+        assertTrue(stage.getBusyTime() >= TimeUnit.MILLISECONDS.toNanos(80));
+        assertTrue(stage.getOccupancy() > 0 && stage.getOccupancy() <= 1);
+    }
+
+    @Test
+    void stageFailureIsPropagatedAndNextOrderStarts() throws Exception {
+        BrewStage stage = new BrewStage("pumping", order -> {
+            if (order.getCoffeeType() == CoffeeType.ROBUSTA)
+                return CompletableFuture.failedFuture(new IllegalStateException("pump failure"));
+            return delay(5);
+        });
+
+        CompletableFuture<BrewOrder> failed = stage.submit(new BrewOrder(new Cup(0.1), CoffeeType.ROBUSTA, System.nanoTime()));
+        CompletableFuture<BrewOrder> succeeded = stage.submit(new BrewOrder(new Cup(0.1), CoffeeType.MOKA, System.nanoTime()));
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(CoffeeType.MOKA, succeeded.get().getCoffeeType());
+        assertEquals(2, stage.getProcessedOrders());
+    }
+
+    @Test
+    void longQueueOfImmediateOrdersDoesNotOverflowTheStack() {
+        CompletableFuture<Void> firstOrderDone = new CompletableFuture<>();
+        AtomicInteger startedOrders = new AtomicInteger();
+        BrewStage stage = new BrewStage("heating", order ->
+                startedOrders.getAndIncrement() == 0 ? firstOrderDone : CompletableFuture.completedFuture(null));
+
+        List<CompletableFuture<BrewOrder>> orders = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            orders.add(stage.submit(new BrewOrder(new Cup(0.1), CoffeeType.MOKA, System.nanoTime())));
+        }
+        //Les 99 999 commandes en attente sont terminées dès leur lancement, dans le thread qui libère l'étage
+        firstOrderDone.complete(null);
+
+        assertTrue(orders.get(orders.size() - 1).isDone());
+        assertEquals(100_000, stage.getProcessedOrders());
+        assertFalse(stage.isBusy());
+    }
+}
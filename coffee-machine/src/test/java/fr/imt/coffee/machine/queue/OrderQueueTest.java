@@ -0,0 +1,121 @@
+package fr.imt.coffee.machine.queue;
+
+import fr.imt.coffee.machine.BrewResult;
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderQueueTest {
+
+    @Test
+    void fullQueueRejectsOrders() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 100);
+        OrderQueue orderQueue = new OrderQueue(coffeeMachine, 3, BackpressurePolicy.REJECT);
+
+        List<CompletableFuture<BrewResult>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(orderQueue.submit(new Cup(0.1), CoffeeType.ARABICA));
+        }
+        //2 commandes en préparation, 4 places dans la file (capacité arrondie à 4), 4 refus
+        assertSame(orderQueue, coffeeMachine.getOrderQueue());
+        assertEquals(4, orderQueue.getCapacity());
+        assertEquals(2, orderQueue.getInFlightOrders());
+        assertEquals(4, orderQueue.getQueueDepth());
+        assertEquals(4, orderQueue.getRejectedOrders());
+        assertEquals(BrewResult.RejectionReason.QUEUE_FULL, results.get(9).getNow(null).getRejectionReason());
+
+        virtualClock.runUntilIdle();
+
+        assertEquals(6, coffeeMachine.getNbCoffeeMade());
+        assertEquals(0, orderQueue.getQueueDepth());
+        assertEquals(0, orderQueue.getInFlightOrders());
+        assertEquals(4, orderQueue.getMaxQueueDepth());
+        assertEquals(4, coffeeMachine.getMetrics().getOrderQueueRejections());
+        assertTrue(orderQueue.getQueueTimeHistogram().getMax() > 0);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(results.get(i).getNow(null).isSuccess());
+        }
+    }
+
+    @Test
+    void fullQueueSpillsToAnotherMachine() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine firstMachine = newSimulatedMachine(virtualClock, 100);
+        CoffeeMachine secondMachine = newSimulatedMachine(virtualClock, 100);
+        OrderQueue firstQueue = new OrderQueue(firstMachine, 2, BackpressurePolicy.SPILL);
+        OrderQueue secondQueue = new OrderQueue(secondMachine, 2, BackpressurePolicy.REJECT);
+        firstQueue.setSpillQueue(secondQueue);
+
+        AtomicInteger servedCoffees = new AtomicInteger();
+        int acceptedOrders = 0;
+        for (int i = 0; i < 10; i++) {
+            if (firstQueue.offer(new Cup(0.1), CoffeeType.MOKA, (result, failure) -> {
+                if (result != null && result.isSuccess())
+                    servedCoffees.incrementAndGet();
+            }))
+                acceptedOrders++;
+        }
+        virtualClock.runUntilIdle();
+
+        assertEquals(8, acceptedOrders);
+        assertEquals(4, firstQueue.getSpilledOrders());
+        assertEquals(2, firstQueue.getRejectedOrders());
+        assertEquals(0, secondQueue.getRejectedOrders());
+        assertEquals(8, servedCoffees.get());
+        assertEquals(4, firstMachine.getNbCoffeeMade());
+        assertEquals(4, secondMachine.getNbCoffeeMade());
+    }
+
+    @Test
+    void blockedProducersWaitForFreeSlots() throws InterruptedException {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 100);
+        OrderQueue orderQueue = new OrderQueue(coffeeMachine, 2, BackpressurePolicy.BLOCK, new FifoSchedulingPolicy(), 4, 2);
+
+        AtomicInteger servedCoffees = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 50; j++) {
+                        orderQueue.offer(new Cup(0.1), CoffeeType.BAHIA, (result, failure) -> {
+                            if (result != null && result.isSuccess())
+                                servedCoffees.incrementAndGet();
+                        });
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        //Le thread de test fait avancer la simulation pendant que les producteurs attendent des places
+        while (producers.stream().anyMatch(Thread::isAlive) || virtualClock.getPendingEvents() > 0) {
+            if (!virtualClock.runNextEvent())
+                Thread.yield();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(200, servedCoffees.get());
+        assertEquals(200, coffeeMachine.getNbCoffeeMade());
+        assertEquals(200, orderQueue.getEnqueuedOrders());
+        assertEquals(0, orderQueue.getRejectedOrders());
+        assertTrue(orderQueue.getBlockedOffers() > 0);
+        assertTrue(orderQueue.getMaxQueueDepth() <= orderQueue.getCapacity());
+    }
+}
@@ -0,0 +1,89 @@
+package fr.imt.coffee.machine.queue;
+
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchedulingPolicyTest {
+
+    private static OrderQueue newOrderQueue(VirtualBrewClock virtualClock, SchedulingPolicy schedulingPolicy, int maxInFlightOrders) {
+        return new OrderQueue(newSimulatedMachine(virtualClock, 100), 64, BackpressurePolicy.REJECT, schedulingPolicy, 64, maxInFlightOrders);
+    }
+
+    /**
+     * Rafale de mugs et de tasses alternés
+     * @return Temps moyen en millisecondes entre l'entrée d'une commande dans la file et son service
+     */
+    private static double meanLatencyOfMixedBurst(SchedulingPolicy schedulingPolicy) {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        OrderQueue orderQueue = newOrderQueue(virtualClock, schedulingPolicy, 2);
+        for (int i = 0; i < 20; i++) {
+            Container container = i % 2 == 0 ? new Mug(0.35) : new Cup(0.15);
+            assertTrue(orderQueue.tryOffer(container, CoffeeType.ARABICA, (result, failure) -> assertTrue(result.isSuccess())));
+        }
+        virtualClock.runUntilIdle();
+        assertEquals(20, orderQueue.getCoffeeMachine().getNbCoffeeMade());
+        return orderQueue.getLatencyHistogram().getMean() / 1e6;
+    }
+
+    @Test
+    void shortestJobFirstLowersMeanLatency() {
+        double fifoLatency = meanLatencyOfMixedBurst(new FifoSchedulingPolicy());
+        double shortestJobFirstLatency = meanLatencyOfMixedBurst(new ShortestJobFirstSchedulingPolicy());
+
+        assertTrue(shortestJobFirstLatency < 0.9 * fifoLatency,
+                "SJF " + shortestJobFirstLatency + " ms, FIFO " + fifoLatency + " ms");
+    }
+
+    /**
+     * Un mug commandé juste après une tasse, puis une tasse par seconde pendant 60 s
+     * @return Rang du mug parmi les cafés servis
+     */
+    private static int servingRankOfMugBehindCups(double agingRate) {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        OrderQueue orderQueue = newOrderQueue(virtualClock, new ShortestJobFirstSchedulingPolicy(agingRate), 1);
+        List<String> servedOrders = Collections.synchronizedList(new ArrayList<>());
+        orderQueue.tryOffer(new Cup(0.15), CoffeeType.MOKA, (result, failure) -> servedOrders.add("cup"));
+        orderQueue.tryOffer(new Mug(0.35), CoffeeType.MOKA, (result, failure) -> servedOrders.add("mug"));
+        for (int i = 1; i <= 60; i++) {
+            virtualClock.schedule(i * 1000, () -> orderQueue.tryOffer(new Cup(0.15), CoffeeType.MOKA,
+                    (result, failure) -> servedOrders.add("cup")));
+        }
+        virtualClock.runUntilIdle();
+        assertEquals(62, servedOrders.size());
+        return servedOrders.indexOf("mug");
+    }
+
+    @Test
+    void agingPreventsStarvationOfLargeOrders() {
+        //Sans vieillissement le mug passe après toutes les tasses qui s'accumulent dans la file
+        assertEquals(61, servingRankOfMugBehindCups(0));
+        assertTrue(servingRankOfMugBehindCups(ShortestJobFirstSchedulingPolicy.DEFAULT_AGING_RATE) < 10);
+    }
+
+    @Test
+    void earliestDeadlineFirstServesUrgentOrdersFirst() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        OrderQueue orderQueue = newOrderQueue(virtualClock, new EarliestDeadlineFirstSchedulingPolicy(), 1);
+        List<Long> servedDeadlines = Collections.synchronizedList(new ArrayList<>());
+        long[] deadlines = {0, 90_000, 30_000, OrderQueue.NO_DEADLINE, 15_000, 45_000};
+        for (long deadline : deadlines) {
+            orderQueue.tryOffer(new Cup(0.15), CoffeeType.BAHIA, deadline, (result, failure) -> servedDeadlines.add(deadline));
+        }
+        virtualClock.runUntilIdle();
+
+        //La première commande part en préparation dès son arrivée, la commande sans échéance attend 60 s par défaut
+        assertEquals(List.of(0L, 15_000L, 30_000L, 45_000L, OrderQueue.NO_DEADLINE, 90_000L), servedDeadlines);
+        assertEquals(1, orderQueue.getMissedDeadlines());
+    }
+}
@@ -0,0 +1,44 @@
+package fr.imt.coffee.machine.recovery;
+
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    @Test
+    void breakerOpensAfterTooManyFailuresThenHalfOpens() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(virtualClock, 3, 10_000, 5000);
+
+        assertFalse(circuitBreaker.recordFailure());
+        virtualClock.sleep(20_000);
+        //La première panne est sortie de la fenêtre
+        assertFalse(circuitBreaker.recordFailure());
+        assertFalse(circuitBreaker.recordFailure());
+        assertTrue(circuitBreaker.allowRequest());
+        assertTrue(circuitBreaker.recordFailure());
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+        virtualClock.sleep(5000);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+
+        assertTrue(circuitBreaker.recordFailure());
+        assertEquals(2, circuitBreaker.getOpenings());
+        virtualClock.sleep(5000);
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void backoffGrowsUpToItsMaximalDelay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 2, 1000);
+
+        assertEquals(100, backoff.getDelay(0));
+        assertEquals(400, backoff.getDelay(2));
+        assertEquals(1000, backoff.getDelay(10));
+    }
+}
@@ -0,0 +1,84 @@
+package fr.imt.coffee.machine.recovery;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.exception.NoCoffeeMachineAvailableException;
+import fr.imt.coffee.machine.failure.ScriptedFailureModel;
+import fr.imt.coffee.machine.fleet.CoffeeMachineFleet;
+import fr.imt.coffee.machine.fleet.LeastLoadedRoutingPolicy;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.junit.jupiter.api.Test;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecoveryManagerTest {
+
+    /**
+     * La seule machine de la flotte tombe en panne : la commande attend sa remise à zéro automatique au lieu d'être perdue
+     */
+    @Test
+    void orderWaitsForTheAutomaticReset() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        RecoveryManager recoveryManager = new RecoveryManager(virtualClock);
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy(), virtualClock, recoveryManager);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 0, 10, 5);
+        coffeeMachine.setFailureModel(new ScriptedFailureModel(true));
+        fleet.addCoffeeMachine(coffeeMachine);
+
+        CoffeeContainer coffee = fleet.makeACoffee(new Cup(0.1), CoffeeType.ARABICA);
+
+        assertEquals(CoffeeType.ARABICA, coffee.getCoffeeType());
+        assertEquals(1, recoveryManager.getAutoResets());
+        assertFalse(coffeeMachine.isOutOfOrder());
+        assertTrue(virtualClock.currentTimeMillis() >= RecoveryManager.DEFAULT_RESET_BACKOFF.getInitialDelay());
+    }
+
+    /**
+     * Une machine qui retombe sans cesse en panne est écartée par son disjoncteur, les commandes sont servies par
+     * l'autre machine
+     */
+    @Test
+    void flappingMachineIsTrippedAndOrdersAreRetriedOnAHealthyMachine() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        RecoveryManager recoveryManager = new RecoveryManager(virtualClock, new ExponentialBackoff(100, 2, 1000),
+                3, 60_000, 30_000, 3);
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy(), virtualClock, recoveryManager);
+        //La machine qui tombe en panne a plus d'eau : elle est choisie en premier tant que son disjoncteur est fermé
+        CoffeeMachine flappingMachine = newSimulatedMachine(virtualClock, 0, 10, 9);
+        flappingMachine.setFailureModel(ScriptedFailureModel.cyclic(true));
+        CoffeeMachine healthyMachine = newSimulatedMachine(virtualClock, 0, 10, 5);
+        fleet.addCoffeeMachine(flappingMachine);
+        fleet.addCoffeeMachine(healthyMachine);
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(fleet.makeACoffee(new Cup(0.01), CoffeeType.MOKA));
+            virtualClock.sleep(2000);
+        }
+
+        assertEquals(10, healthyMachine.getNbCoffeeMade());
+        assertEquals(0, flappingMachine.getNbCoffeeMade());
+        assertEquals(CircuitBreaker.State.OPEN, recoveryManager.getCircuitBreaker(flappingMachine).getState());
+        assertEquals(1, recoveryManager.getCircuitBreaker(flappingMachine).getOpenings());
+        assertEquals(3, healthyMachine.getBrewMetrics().getOutOfOrderRejections() + flappingMachine.getBrewMetrics().getOutOfOrderRejections());
+    }
+
+    /**
+     * Une commande n'attend qu'un nombre limité de remises en service
+     */
+    @Test
+    void orderFailsWhenTheMachineNeverRecovers() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        RecoveryManager recoveryManager = new RecoveryManager(virtualClock, new ExponentialBackoff(100, 2, 1000),
+                10, 60_000, 30_000, 2);
+        CoffeeMachineFleet fleet = new CoffeeMachineFleet(new LeastLoadedRoutingPolicy(), virtualClock, recoveryManager);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 0, 10, 5);
+        coffeeMachine.setFailureModel(ScriptedFailureModel.cyclic(true));
+        fleet.addCoffeeMachine(coffeeMachine);
+
+        assertThrows(NoCoffeeMachineAvailableException.class, () -> fleet.makeACoffee(new Cup(0.1), CoffeeType.BAHIA));
+        assertEquals(2, recoveryManager.getAutoResets());
+    }
+}
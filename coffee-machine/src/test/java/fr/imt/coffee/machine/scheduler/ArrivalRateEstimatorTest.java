@@ -0,0 +1,62 @@
+package fr.imt.coffee.machine.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrivalRateEstimatorTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    @Test
+    void recentRateDecaysAfterTheLastOrder() {
+        ArrivalRateEstimator estimator = new ArrivalRateEstimator();
+        //Une commande par minute pendant une heure
+        for (long time = 0; time < HOUR; time += MINUTE) {
+            estimator.record(time);
+        }
+
+        assertEquals(1.0 / MINUTE, estimator.getRecentRate(HOUR), 0.1 / MINUTE);
+        assertEquals(0, estimator.getRecentRate(HOUR + 3 * HOUR), 0.001 / MINUTE);
+    }
+
+    @Test
+    void dailyProfileAnticipatesTheMorningOrders() {
+        ArrivalRateEstimator estimator = new ArrivalRateEstimator();
+        for (int day = 0; day < 3; day++) {
+            for (long time = 7 * HOUR; time < 8 * HOUR; time += 2 * MINUTE) {
+                estimator.record(day * DAY + time);
+            }
+        }
+
+        long beforeMorning = 3 * DAY + 6 * HOUR + 50 * MINUTE;
+        assertEquals(0, estimator.getRecentRate(beforeMorning), 1e-9);
+        assertTrue(estimator.predictOrders(beforeMorning, 15 * MINUTE) > 1);
+        assertEquals(0, estimator.predictOrders(3 * DAY + 3 * HOUR, 15 * MINUTE), 1e-9);
+    }
+
+    @Test
+    void concurrentArrivalsAreAllCounted() throws InterruptedException {
+        ArrivalRateEstimator estimator = new ArrivalRateEstimator();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int order = 0; order < 10_000; order++) {
+                    estimator.record(MINUTE);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        //Les arrivées sont datées du milieu de leur tranche, à quelques secondes près
+        double expectedRate = 80_000 / ArrivalRateEstimator.DEFAULT_TIME_CONSTANT;
+        assertEquals(expectedRate, estimator.getRecentRate(MINUTE), expectedRate * 0.01);
+        double expectedProfileRate = ArrivalRateEstimator.DEFAULT_PROFILE_WEIGHT * 80_000 / ArrivalRateEstimator.DEFAULT_SLOT_DURATION;
+        assertEquals(expectedProfileRate, estimator.getProfileRate(DAY + MINUTE), 1e-12);
+    }
+}
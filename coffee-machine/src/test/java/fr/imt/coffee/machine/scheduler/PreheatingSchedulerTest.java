@@ -0,0 +1,86 @@
+package fr.imt.coffee.machine.scheduler;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.component.ElectricalResistance;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreheatingSchedulerTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    /**
+     * Trois matinées de commandes entre 7h et 8h : la troisième, la chaudière est préchauffée avant la première
+     * commande, sans être restée chaude pendant la nuit
+     */
+    @Test
+    void firstMorningOrderIsServedFasterWithPreheating() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coldMachine = newSimulatedMachine(virtualClock, 10);
+        CoffeeMachine preheatedMachine = newSimulatedMachine(virtualClock, 10);
+        PreheatingScheduler scheduler = new PreheatingScheduler(virtualClock);
+        scheduler.addCoffeeMachine(preheatedMachine);
+        scheduler.start();
+
+        AtomicLong coldLatency = new AtomicLong();
+        AtomicLong preheatedLatency = new AtomicLong();
+        for (int day = 0; day < 3; day++) {
+            for (long time = 7 * HOUR + 10_000; time < 8 * HOUR; time += 2 * MINUTE) {
+                boolean isFirstOrderOfLastDay = day == 2 && time == 7 * HOUR + 10_000;
+                virtualClock.schedule(day * DAY + time, () -> {
+                    orderACoffee(coldMachine, virtualClock, isFirstOrderOfLastDay ? coldLatency : new AtomicLong());
+                    orderACoffee(preheatedMachine, virtualClock, isFirstOrderOfLastDay ? preheatedLatency : new AtomicLong());
+                });
+            }
+        }
+
+        virtualClock.runUntil((2 * DAY + 3 * HOUR) * 1_000_000);
+        double nightTemperature = preheatedMachine.getElectricalResistance().getBoilerTemperature();
+        virtualClock.runUntil((2 * DAY + 9 * HOUR) * 1_000_000);
+        scheduler.close();
+
+        assertEquals(90, coldMachine.getNbCoffeeMade());
+        assertEquals(90, preheatedMachine.getNbCoffeeMade());
+        assertEquals(ElectricalResistance.AMBIENT_TEMPERATURE, nightTemperature, 0.01);
+        assertTrue(scheduler.getPreheatings() > 0);
+        assertTrue(scheduler.getPreheatingEnergy() > 0);
+        assertTrue(preheatedLatency.get() > 0);
+        assertTrue(preheatedLatency.get() < coldLatency.get() * 0.75,
+                "preheated " + preheatedLatency.get() + " ns, cold " + coldLatency.get() + " ns");
+    }
+
+    /**
+     * Avec un seuil de demande de 1 les chaudières ne sont jamais préchauffées
+     */
+    @Test
+    void maximalDemandThresholdNeverPreheats() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 10);
+        PreheatingScheduler scheduler = new PreheatingScheduler(virtualClock, PreheatingScheduler.DEFAULT_TICK,
+                PreheatingScheduler.DEFAULT_HORIZON, 1, PreheatingScheduler.DEFAULT_PREHEATING_TEMPERATURE);
+        scheduler.addCoffeeMachine(coffeeMachine);
+        for (long time = 0; time < HOUR; time += MINUTE) {
+            virtualClock.schedule(time, () -> coffeeMachine.makeACoffeeAsync(new Cup(0.01), CoffeeType.ARABICA));
+        }
+
+        virtualClock.runUntilIdle();
+
+        assertEquals(0, scheduler.preheatMachines());
+        assertEquals(0, scheduler.getPreheatings());
+    }
+
+    private static void orderACoffee(CoffeeMachine coffeeMachine, VirtualBrewClock virtualClock, AtomicLong latency) {
+        long orderTime = virtualClock.nanoTime();
+        coffeeMachine.makeACoffeeAsync(new Cup(0.05), CoffeeType.ARABICA)
+                .thenRun(() -> latency.set(virtualClock.nanoTime() - orderTime));
+    }
+}
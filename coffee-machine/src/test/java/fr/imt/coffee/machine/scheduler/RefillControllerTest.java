@@ -0,0 +1,153 @@
+package fr.imt.coffee.machine.scheduler;
+
+import fr.imt.coffee.machine.BrewResult;
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.exception.LackOfWaterInTankException;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.newSimulatedMachine;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefillControllerTest {
+
+    /**
+     * Le remplissage démarre sous le niveau bas, remplit jusqu'au volume maximal au débit donné puis ne redémarre
+     * qu'une fois le niveau repassé sous le niveau bas
+     */
+    @Test
+    void refillsFromLowWaterMarkToMaxVolume() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 0.1, 2, 0.5);
+        RefillController controller = new RefillController(coffeeMachine, 0.1, 1000, 0.5);
+
+        controller.start();
+        assertTrue(controller.isRefilling());
+        assertEquals(1, controller.getRefills());
+        virtualClock.runUntilIdle();
+
+        assertFalse(controller.isRefilling());
+        assertEquals(2, coffeeMachine.getWaterTank().getActualVolume(), 1e-9);
+        assertEquals(1.5, controller.getRefilledVolume(), 1e-9);
+        assertEquals(15_000, virtualClock.currentTimeMillis());
+
+        //Au-dessus du niveau bas, les commandes ne déclenchent pas de remplissage
+        coffeeMachine.brewAsync(new Mug(0.5), CoffeeType.ARABICA);
+        assertFalse(controller.isRefilling());
+        virtualClock.runUntilIdle();
+        coffeeMachine.brewAsync(new Mug(0.5), CoffeeType.ARABICA);
+        coffeeMachine.brewAsync(new Mug(0.5), CoffeeType.ARABICA);
+        //Les deux commandes en cours ont réservé leur eau : le niveau surveillé est déjà sous le niveau bas
+        assertEquals(1.5, coffeeMachine.getWaterTank().getActualVolume(), 1e-9);
+        assertTrue(controller.isRefilling());
+        assertEquals(2, controller.getRefills());
+        virtualClock.runUntilIdle();
+        //Le réservoir a été rempli jusqu'à son volume maximal avant que les deux commandes ne pompent leur eau
+        assertEquals(1, coffeeMachine.getWaterTank().getActualVolume(), 1e-9);
+        assertEquals(2, controller.getRefills());
+        controller.close();
+        assertNull(coffeeMachine.getRefillController());
+    }
+
+    /**
+     * Une commande qui manque d'eau pendant un remplissage attend l'eau au lieu d'être refusée
+     */
+    @Test
+    void orderWaitsForTheRefillInsteadOfBeingRejected() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine manualMachine = newSimulatedMachine(virtualClock, 0.1, 2, 0.3);
+        CoffeeMachine controlledMachine = newSimulatedMachine(virtualClock, 0.1, 2, 0.3);
+        RefillController controller = new RefillController(controlledMachine, 0.1, 1000, 0);
+        controller.start();
+
+        CompletableFuture<BrewResult> rejectedOrder = manualMachine.brewAsync(new Mug(0.5), CoffeeType.MOKA);
+        CompletableFuture<BrewResult> waitingOrder = controlledMachine.brewAsync(new Mug(0.5), CoffeeType.MOKA);
+        virtualClock.runUntilIdle();
+
+        assertTrue(rejectedOrder.join().isRejected());
+        assertTrue(waitingOrder.join().isSuccess());
+        assertEquals(0, controlledMachine.getBrewMetrics().getLackOfWaterRejections());
+        assertEquals(1, controlledMachine.getNbCoffeeMade());
+        //Un contenant plus grand que le réservoir reste refusé
+        assertTrue(controlledMachine.brewAsync(new Mug(5), CoffeeType.MOKA).join().isRejected());
+    }
+
+    /**
+     * Une commande qui attend l'eau est repassée à chaque arrivée d'eau : elle est servie dès que le réservoir en
+     * contient assez, sans attendre qu'il soit plein
+     */
+    @Test
+    void waitingOrderIsRetriedAfterEachRefillStep() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 0.1, 2, 0.3);
+        RefillController controller = new RefillController(coffeeMachine, 0.1, 1000, 0);
+        controller.start();
+        long reservationTime = 0;
+
+        CompletableFuture<BrewResult> waitingOrder = coffeeMachine.brewAsync(new Mug(0.5), CoffeeType.MOKA);
+        for (long time = 1000; reservationTime == 0 && time <= 20_000; time += 1000) {
+            virtualClock.runUntil(time * 1_000_000);
+            if (coffeeMachine.getWaterTank().getReservedVolume() > 0)
+                reservationTime = virtualClock.currentTimeMillis();
+        }
+        //0,3 l de plus suffisent : la commande est acceptée au 3e pas, bien avant la fin du remplissage
+        assertEquals(3000, reservationTime);
+        assertTrue(controller.isRefilling());
+
+        virtualClock.runUntilIdle();
+        assertTrue(waitingOrder.join().isSuccess());
+        assertEquals(0, coffeeMachine.getBrewMetrics().getLackOfWaterRejections());
+    }
+
+    /**
+     * Une commande qui attend l'eau et qui est refusée après l'arrêt du contrôleur lève l'exception du refus
+     */
+    @Test
+    void waitingOrderRejectedLaterFailsWithTheRejectionException() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 0.1, 2, 0.3);
+        RefillController controller = new RefillController(coffeeMachine, 0.1, 1000, 0);
+        controller.start();
+
+        CompletableFuture<CoffeeContainer> waitingOrder = coffeeMachine.makeACoffeeAsync(new Mug(0.5), CoffeeType.MOKA);
+        assertFalse(waitingOrder.isDone());
+        controller.close();
+        virtualClock.runUntilIdle();
+
+        CompletionException exception = assertThrows(CompletionException.class, waitingOrder::join);
+        assertTrue(exception.getCause() instanceof LackOfWaterInTankException);
+        assertEquals(1, coffeeMachine.getBrewMetrics().getLackOfWaterRejections());
+    }
+
+    /**
+     * Avec des commandes régulières, le niveau bas monte pour anticiper l'eau consommée pendant un remplissage et
+     * aucune commande n'est refusée
+     */
+    @Test
+    void lowWaterMarkAnticipatesTheOrdersDuringARefill() {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = newSimulatedMachine(virtualClock, 0.1, 2, 2);
+        RefillController controller = new RefillController(coffeeMachine, 0.02, 1000, 0.1);
+        controller.start();
+        double emptyMark = controller.getLowWaterMark();
+
+        for (int i = 0; i < 200; i++) {
+            virtualClock.schedule(i * 20_000, () -> coffeeMachine.brewAsync(new Cup(0.2), CoffeeType.BAHIA)
+                    .thenAccept(result -> assertTrue(result.isSuccess())));
+        }
+        virtualClock.runUntil(200L * 20_000 * 1_000_000);
+
+        assertEquals(200, coffeeMachine.getNbCoffeeMade());
+        assertEquals(0, coffeeMachine.getBrewMetrics().getLackOfWaterRejections());
+        assertTrue(controller.getRefills() > 1);
+        assertTrue(controller.getLowWaterMark() > emptyMark);
+        assertTrue(coffeeMachine.getWaterTank().getActualVolume() <= 2);
+    }
+}
@@ -0,0 +1,157 @@
+package fr.imt.coffee.machine.snapshot;
+
+import fr.imt.coffee.machine.CoffeeMachine;
+import fr.imt.coffee.machine.ExpressoCoffeeMachine;
+import fr.imt.coffee.machine.clock.VirtualBrewClock;
+import fr.imt.coffee.machine.pipeline.BrewOrder;
+import fr.imt.coffee.storage.cupboard.coffee.type.CoffeeType;
+import fr.imt.coffee.storage.cupboard.container.CoffeeContainer;
+import fr.imt.coffee.storage.cupboard.container.CoffeeMug;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static fr.imt.coffee.machine.SimulatedCoffeeMachines.readyToBrew;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetSnapshotTest {
+
+    @TempDir
+    Path temporaryFolder;
+
+    @Test
+    void machinesAndInFlightOrdersAreRestored() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine expressoMachine = readyToBrew(new ExpressoCoffeeMachine(1234, 0.1, 5, 600, 1500, virtualClock), 2);
+        expressoMachine.setNbCoffeeMade(12);
+        expressoMachine.makeACoffeeAsync(new Mug(0.3), CoffeeType.MOKA);
+        expressoMachine.makeACoffeeAsync(new Cup(0.1), CoffeeType.BAHIA);
+        CoffeeMachine brokenMachine = new CoffeeMachine(0, 10, 700, virtualClock);
+        brokenMachine.setOutOfOrder(true);
+
+        Path snapshotPath = temporaryFolder.resolve("fleet.snapshot");
+        FleetSnapshot.write(snapshotPath, List.of(expressoMachine, brokenMachine));
+
+        VirtualBrewClock restoredClock = new VirtualBrewClock(0);
+        FleetSnapshot snapshot = FleetSnapshot.read(snapshotPath, restoredClock);
+        assertEquals(2, snapshot.getMachineCount());
+        assertFalse(snapshot.isMaterialized(0));
+
+        CoffeeMachine restoredMachine = snapshot.getCoffeeMachine(0);
+        assertTrue(snapshot.isMaterialized(0));
+        assertFalse(snapshot.isMaterialized(1));
+        assertSame(restoredMachine, snapshot.getCoffeeMachine(0));
+        assertTrue(restoredMachine instanceof ExpressoCoffeeMachine);
+        assertEquals(1234, restoredMachine.getId());
+        assertEquals(brokenMachine.getId(), snapshot.getCoffeeMachine(1).getId());
+        assertTrue(restoredMachine.isPlugged());
+        assertFalse(restoredMachine.isOutOfOrder());
+        assertEquals(12, restoredMachine.getNbCoffeeMade());
+        assertEquals(2, restoredMachine.getWaterTank().getActualVolume(), 1e-9);
+        assertEquals(0.1, restoredMachine.getWaterTank().getMinVolume());
+        assertEquals(1500, restoredMachine.getElectricalResistance().getPower());
+        assertEquals(expressoMachine.getWaterPump().getPumpingCapacity(), restoredMachine.getWaterPump().getPumpingCapacity(), 1e-12);
+        assertTrue(snapshot.getCoffeeMachine(1).isOutOfOrder());
+        assertFalse(snapshot.getCoffeeMachine(1).isPlugged());
+        assertTrue(snapshot.getInFlightOrders(1).isEmpty());
+
+        List<BrewOrder> inFlightOrders = snapshot.getInFlightOrders(0);
+        assertEquals(2, inFlightOrders.size());
+        assertTrue(inFlightOrders.get(0).getContainer() instanceof Mug);
+        assertEquals(CoffeeType.MOKA, inFlightOrders.get(0).getCoffeeType());
+        assertEquals(0.1, inFlightOrders.get(1).getWaterVolume());
+
+        restoredMachine.setFailureModel(expressoMachine.getFailureModel());
+        List<CompletableFuture<CoffeeContainer>> resumedOrders = new ArrayList<>();
+        for (BrewOrder order : inFlightOrders) {
+            resumedOrders.add(restoredMachine.makeACoffeeAsync(order.getContainer(), order.getCoffeeType()));
+        }
+        restoredClock.runUntilIdle();
+        assertTrue(resumedOrders.get(0).get() instanceof CoffeeMug);
+        assertEquals(14, restoredMachine.getNbCoffeeMade());
+        assertEquals(1.6, restoredMachine.getWaterTank().getActualVolume(), 1e-6);
+    }
+
+    @Test
+    void machinesAreOnlyRestoredOnDemand() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        List<CoffeeMachine> machines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            CoffeeMachine coffeeMachine = new CoffeeMachine(0, 10, 700, virtualClock);
+            coffeeMachine.setNbCoffeeMade(i);
+            machines.add(coffeeMachine);
+        }
+        Path snapshotPath = temporaryFolder.resolve("fleet.snapshot");
+        FleetSnapshot.write(snapshotPath, machines);
+
+        FleetSnapshot snapshot = FleetSnapshot.read(snapshotPath, virtualClock);
+
+        assertEquals(5000, snapshot.getMachineCount());
+        assertEquals(4321, snapshot.getCoffeeMachine(4321).getNbCoffeeMade());
+        assertFalse(snapshot.isMaterialized(1234));
+    }
+
+    @Test
+    void batchInFlightIsRestoredContainerByContainer() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = readyToBrew(new CoffeeMachine(0, 5, 600, virtualClock), 2);
+        coffeeMachine.makeCoffeesAsync(List.of(new Cup(0.1), new Mug(0.3), new Cup(0.15)), CoffeeType.ARABICA);
+
+        Path snapshotPath = temporaryFolder.resolve("fleet.snapshot");
+        FleetSnapshot.write(snapshotPath, List.of(coffeeMachine));
+        List<BrewOrder> inFlightOrders = FleetSnapshot.read(snapshotPath, virtualClock).getInFlightOrders(0);
+
+        assertEquals(3, inFlightOrders.size());
+        assertTrue(inFlightOrders.get(1).getContainer() instanceof Mug);
+        assertEquals(0.1, inFlightOrders.get(0).getWaterVolume());
+        assertEquals(0.3, inFlightOrders.get(1).getWaterVolume());
+        assertEquals(0.15, inFlightOrders.get(2).getWaterVolume());
+        for (BrewOrder order : inFlightOrders) {
+            assertEquals(CoffeeType.ARABICA, order.getCoffeeType());
+            assertFalse(order.isBatch());
+        }
+    }
+
+    /**
+     * Un snapshot coupé à n'importe quel endroit est refusé à l'ouverture, et non à la lecture d'une machine
+     */
+    @Test
+    void truncatedSnapshotIsRejected() throws Exception {
+        VirtualBrewClock virtualClock = new VirtualBrewClock(0);
+        CoffeeMachine coffeeMachine = readyToBrew(new CoffeeMachine(0, 5, 600, virtualClock), 2);
+        coffeeMachine.makeACoffeeAsync(new Mug(0.3), CoffeeType.MOKA);
+        Path snapshotPath = temporaryFolder.resolve("fleet.snapshot");
+        FleetSnapshot.write(snapshotPath, List.of(coffeeMachine, new CoffeeMachine(0, 10, 700, virtualClock)));
+        long size = Files.size(snapshotPath);
+
+        for (long truncatedSize = size - 1; truncatedSize >= 0; truncatedSize--) {
+            try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+                channel.truncate(truncatedSize);
+            }
+            IOException exception = assertThrows(IOException.class, () -> FleetSnapshot.read(snapshotPath, virtualClock));
+            assertTrue(exception.getMessage().contains(snapshotPath.toString()));
+        }
+    }
+
+    @Test
+    void unknownVersionIsRejected() throws Exception {
+        Path snapshotPath = temporaryFolder.resolve("fleet.snapshot");
+        FleetSnapshot.write(snapshotPath, List.of(new CoffeeMachine(0, 10, 700)));
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Short.BYTES).putShort(0, (short) 99), Integer.BYTES);
+        }
+
+        assertThrows(IOException.class, () -> FleetSnapshot.read(snapshotPath, new VirtualBrewClock(0)));
+    }
+}
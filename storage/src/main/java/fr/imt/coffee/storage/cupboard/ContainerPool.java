@@ -0,0 +1,200 @@
+package fr.imt.coffee.storage.cupboard;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Réserve bornée de contenants vides réutilisables, rangés par type et par capacité et partagée par tous les threads :
+ * un contenant rendu par un thread peut être repris par n'importe quel autre, ce qui compte avec un thread par requête.
+ * Chaque type et capacité a un tableau de cases prises et rendues par compare-and-set ; un thread commence son
+ * parcours à une case qui dépend de son identifiant pour que les threads ne se disputent pas les mêmes cases.
+ * Prendre ou rendre un contenant ne demande aucun verrou et ne crée aucun objet. Un même contenant rendu deux fois
+ * n'est gardé qu'une fois.
+ */
+public class ContainerPool {
+
+    private final int maxContainersPerKey;
+    private volatile PoolSlot[] slots = new PoolSlot[0];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     * @param maxContainersPerKey Nombre maximal de contenants gardés pour un même type et une même capacité
+     */
+    public ContainerPool(int maxContainersPerKey) {
+        if (maxContainersPerKey <= 0)
+            throw new IllegalArgumentException("The pool must keep at least one container per key.");
+        this.maxContainersPerKey = maxContainersPerKey;
+    }
+
+    /**
+     * Prend un contenant vide dans la réserve
+     * @param containerKind Type de contenant
+     * @param capacity Capacité en litre du contenant
+     * @return Contenant vide, ou null si la réserve n'en a pas (le contenant doit alors être créé par l'appelant)
+     */
+    public Container acquire(ContainerKind containerKind, double capacity) {
+        PoolSlot slot = findSlot(containerKind, capacity);
+        Container container = slot == null ? null : slot.poll(startIndex());
+        if (container == null)
+            misses.increment();
+        else
+            hits.increment();
+        return container;
+    }
+
+    /**
+     * Rend un contenant à la réserve après l'avoir vidé
+     * @param containerKind Type du contenant
+     * @param container Contenant à rendre
+     * @return false si la réserve est pleine pour ce type et cette capacité ou si le contenant y est déjà, le
+     * contenant n'est alors pas gardé une seconde fois
+     */
+    public boolean release(ContainerKind containerKind, Container container) {
+        container.setEmpty(true);
+        if (getOrCreateSlot(containerKind, container.getCapacity()).offer(container, startIndex())) {
+            releases.increment();
+            return true;
+        }
+        discards.increment();
+        return false;
+    }
+
+    /**
+     * Compte un contenant rendu qui ne peut pas être réutilisé
+     */
+    void discard() {
+        discards.increment();
+    }
+
+    private PoolSlot findSlot(ContainerKind containerKind, double capacity) {
+        //Il y a peu de types et de capacités différents : un parcours linéaire évite de créer une clé à chaque appel
+        PoolSlot[] currentSlots = slots;
+        for (PoolSlot slot : currentSlots) {
+            if (slot.capacity == capacity && slot.containerKind == containerKind)
+                return slot;
+        }
+        return null;
+    }
+
+    private PoolSlot getOrCreateSlot(ContainerKind containerKind, double capacity) {
+        PoolSlot slot = findSlot(containerKind, capacity);
+        if (slot != null)
+            return slot;
+        synchronized (this) {
+            slot = findSlot(containerKind, capacity);
+            if (slot == null) {
+                slot = new PoolSlot(containerKind, capacity, maxContainersPerKey);
+                PoolSlot[] newSlots = new PoolSlot[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, slots.length);
+                newSlots[slots.length] = slot;
+                slots = newSlots;
+            }
+            return slot;
+        }
+    }
+
+    private static int startIndex() {
+        long id = Thread.currentThread().getId();
+        //Mélange des bits de l'identifiant : des threads créés à la suite commencent à des cases éloignées
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 33);
+    }
+
+    public int getMaxContainersPerKey() {
+        return maxContainersPerKey;
+    }
+
+    /**
+     * @return Nombre de contenants pris dans la réserve
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Nombre de demandes que la réserve n'a pas pu satisfaire
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Nombre de contenants rendus et gardés dans la réserve
+     */
+    public long getReleases() {
+        return releases.sum();
+    }
+
+    /**
+     * @return Nombre de contenants rendus mais abandonnés, réserve pleine ou contenant non réutilisable
+     */
+    public long getDiscards() {
+        return discards.sum();
+    }
+
+    /**
+     * @return Part des demandes satisfaites par la réserve, entre 0 et 1
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public String toString() {
+        return "Container pool : " + getHits() + " hits, " + getMisses() + " misses, " +
+                getReleases() + " releases, " + getDiscards() + " discards";
+    }
+
+    private static class PoolSlot {
+        private final ContainerKind containerKind;
+        private final double capacity;
+        private final AtomicReferenceArray<Container> containers;
+
+        private PoolSlot(ContainerKind containerKind, double capacity, int maxContainers) {
+            this.containerKind = containerKind;
+            this.capacity = capacity;
+            this.containers = new AtomicReferenceArray<>(maxContainers);
+        }
+
+        private Container poll(int startIndex) {
+            int length = containers.length();
+            for (int i = 0; i < length; i++) {
+                int index = Math.floorMod(startIndex + i, length);
+                Container container = containers.get(index);
+                if (container != null && containers.compareAndSet(index, container, null))
+                    return container;
+            }
+            return null;
+        }
+
+        private boolean offer(Container container, int startIndex) {
+            int length = containers.length();
+            if (indexOf(container, -1) >= 0)
+                return false;
+            for (int i = 0; i < length; i++) {
+                int index = Math.floorMod(startIndex + i, length);
+                if (containers.get(index) == null && containers.compareAndSet(index, null, container)) {
+                    //Le même contenant rendu en même temps par un autre thread : on retire notre exemplaire
+                    if (indexOf(container, index) >= 0 && containers.compareAndSet(index, container, null))
+                        return false;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int indexOf(Container container, int excludedIndex) {
+            for (int i = 0; i < containers.length(); i++) {
+                if (i != excludedIndex && containers.get(i) == container)
+                    return i;
+            }
+            return -1;
+        }
+    }
+}
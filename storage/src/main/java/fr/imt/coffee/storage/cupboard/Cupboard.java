@@ -0,0 +1,334 @@
+package fr.imt.coffee.storage.cupboard;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.exception.ExceptionContainerCreation;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inventaire des contenants propres rangés dans le placard, par type et par capacité.
+ * Le stock d'un type et d'une capacité est réparti sur plusieurs compteurs (stripes), chacun sur sa propre ligne de
+ * cache : un thread prend et rend ses contenants dans son compteur par compare-and-set, et ne va voir les autres
+ * compteurs que si le sien est vide. Prendre, rendre ou vérifier la disponibilité d'un contenant ne prend aucun verrou.
+ * Seul l'ajout d'un nouveau type ou d'une nouvelle capacité au placard, lors d'un réapprovisionnement, est synchronisé.
+ * Les objets contenants eux-mêmes viennent de la réserve de {@link FabricCupboardContainer}.
+ */
+public class Cupboard {
+
+    public static final long DEFAULT_LOW_STOCK_THRESHOLD = 10;
+    public static final int MAX_STRIPES = 64;
+
+    //8 longs de 8 octets : une ligne de cache de 64 octets par compteur
+    private static final int STRIPE_PADDING = 8;
+
+    private final FabricCupboardContainer fabricCupboardContainer = FabricCupboardContainer.getFabricContainerInstance();
+    private final int stripeCount;
+    private final long defaultLowStockThreshold;
+    private final List<LowStockListener> lowStockListeners = new CopyOnWriteArrayList<>();
+    private volatile StockSlot[] slots = new StockSlot[0];
+    private final LongAdder takes = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder returns = new LongAdder();
+
+    public Cupboard() {
+        this(DEFAULT_LOW_STOCK_THRESHOLD);
+    }
+
+    /**
+     * @param defaultLowStockThreshold Stock en dessous duquel les {@link LowStockListener} sont prévenus, pour les types
+     *                                 et capacités sans seuil propre
+     */
+    public Cupboard(long defaultLowStockThreshold) {
+        this(defaultLowStockThreshold, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param defaultLowStockThreshold Stock en dessous duquel les {@link LowStockListener} sont prévenus, pour les types
+     *                                 et capacités sans seuil propre
+     * @param stripes Nombre de compteurs par type et capacité, arrondi à la puissance de 2 supérieure et borné à {@value #MAX_STRIPES}
+     */
+    public Cupboard(long defaultLowStockThreshold, int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("At least one stripe is needed.");
+        int stripeCount = 1;
+        while (stripeCount < Math.min(stripes, MAX_STRIPES)) {
+            stripeCount <<= 1;
+        }
+        this.stripeCount = stripeCount;
+        this.defaultLowStockThreshold = defaultLowStockThreshold;
+    }
+
+    /**
+     * Range des contenants neufs dans le placard
+     * @param containerKind Type de contenant
+     * @param capacity Capacité en litre des contenants
+     * @param count Nombre de contenants ajoutés, répartis sur tous les compteurs
+     */
+    public void restock(ContainerKind containerKind, double capacity, long count) {
+        if (count < 0)
+            throw new IllegalArgumentException("The restocked count must not be negative.");
+        StockSlot slot = getOrCreateSlot(containerKind, capacity);
+        long share = count / stripeCount;
+        long remainder = count % stripeCount;
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            long added = share + (stripe < remainder ? 1 : 0);
+            if (added > 0)
+                slot.stock.addAndGet(stripe * STRIPE_PADDING, added);
+        }
+        slot.resetLowStockSignal();
+    }
+
+    /**
+     * Range des contenants neufs dans le placard
+     * @param typeContainer Nom du type de contenant
+     * @param capacity Capacité en litre des contenants
+     * @param count Nombre de contenants ajoutés
+     * @throws ExceptionContainerCreation Exception levée quand le type de contenant n'est pas reconnu
+     */
+    public void restock(String typeContainer, double capacity, long count) throws ExceptionContainerCreation {
+        restock(fabricCupboardContainer.getContainerKind(typeContainer), capacity, count);
+    }
+
+    /**
+     * Prend un contenant propre dans le placard
+     * @param containerKind Type de contenant
+     * @param capacity Capacité en litre du contenant
+     * @return Contenant vide, ou null si le placard n'en a plus
+     */
+    public Container take(ContainerKind containerKind, double capacity) {
+        StockSlot slot = findSlot(containerKind, capacity);
+        if (slot == null || !slot.tryDecrement(stripeIndex())) {
+            misses.increment();
+            return null;
+        }
+        takes.increment();
+        if (!slot.isLowStockSignaled.get()) {
+            long stock = slot.getStock();
+            if (stock <= slot.lowStockThreshold && slot.isLowStockSignaled.compareAndSet(false, true)) {
+                for (LowStockListener listener : lowStockListeners) {
+                    listener.onLowStock(containerKind, capacity, stock);
+                }
+            }
+        }
+        return fabricCupboardContainer.acquireContainer(containerKind, capacity);
+    }
+
+    /**
+     * Prend un contenant propre dans le placard
+     * @param typeContainer Nom du type de contenant
+     * @param capacity Capacité en litre du contenant
+     * @return Contenant vide, ou null si le placard n'en a plus
+     * @throws ExceptionContainerCreation Exception levée quand le type de contenant n'est pas reconnu
+     */
+    public Container take(String typeContainer, double capacity) throws ExceptionContainerCreation {
+        return take(fabricCupboardContainer.getContainerKind(typeContainer), capacity);
+    }
+
+    /**
+     * Range un contenant lavé dans le placard
+     * @param containerKind Type du contenant
+     * @param container Contenant rendu, vidé par le placard
+     */
+    public void returnContainer(ContainerKind containerKind, Container container) {
+        StockSlot slot = getOrCreateSlot(containerKind, container.getCapacity());
+        slot.stock.getAndIncrement(stripeIndex() * STRIPE_PADDING);
+        returns.increment();
+        if (slot.isLowStockSignaled.get() && slot.getStock() > slot.lowStockThreshold)
+            slot.resetLowStockSignal();
+        fabricCupboardContainer.releaseContainer(container);
+    }
+
+    /**
+     * Range un contenant lavé dans le placard
+     * @param container Contenant rendu
+     * @return false si le contenant n'est d'aucun type enregistré, il n'est alors pas rangé
+     */
+    public boolean returnContainer(Container container) {
+        ContainerKind containerKind = fabricCupboardContainer.getContainerKindRegistry().getContainerKind(container);
+        if (containerKind == null)
+            return false;
+        returnContainer(containerKind, container);
+        return true;
+    }
+
+    /**
+     * Vérifie sans verrou qu'un contenant est disponible, par exemple avant d'accepter une commande.
+     * La réponse peut être périmée dès son retour si d'autres threads prennent des contenants en même temps :
+     * seul {@link #take(ContainerKind, double)} réserve vraiment un contenant.
+     * @param containerKind Type de contenant
+     * @param capacity Capacité en litre du contenant
+     * @return Vrai si au moins un contenant est en stock
+     */
+    public boolean isAvailable(ContainerKind containerKind, double capacity) {
+        StockSlot slot = findSlot(containerKind, capacity);
+        if (slot == null)
+            return false;
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            if (slot.stock.get(stripe * STRIPE_PADDING) > 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param containerKind Type de contenant
+     * @param capacity Capacité en litre des contenants
+     * @return Stock du type et de la capacité, somme de compteurs lus sans verrou
+     */
+    public long getStock(ContainerKind containerKind, double capacity) {
+        StockSlot slot = findSlot(containerKind, capacity);
+        return slot == null ? 0 : slot.getStock();
+    }
+
+    /**
+     * @return Stock de tous les types et capacités
+     */
+    public long getTotalStock() {
+        long stock = 0;
+        for (StockSlot slot : slots) {
+            stock += slot.getStock();
+        }
+        return stock;
+    }
+
+    /**
+     * Change le seuil de stock bas d'un type et d'une capacité
+     * @param containerKind Type de contenant
+     * @param capacity Capacité en litre des contenants
+     * @param lowStockThreshold Stock en dessous duquel les {@link LowStockListener} sont prévenus
+     */
+    public void setLowStockThreshold(ContainerKind containerKind, double capacity, long lowStockThreshold) {
+        StockSlot slot = getOrCreateSlot(containerKind, capacity);
+        slot.lowStockThreshold = lowStockThreshold;
+        slot.resetLowStockSignal();
+    }
+
+    public void addLowStockListener(LowStockListener listener) {
+        lowStockListeners.add(listener);
+    }
+
+    public void removeLowStockListener(LowStockListener listener) {
+        lowStockListeners.remove(listener);
+    }
+
+    private StockSlot findSlot(ContainerKind containerKind, double capacity) {
+        //Il y a peu de types et de capacités différents : un parcours linéaire évite de créer une clé à chaque appel
+        StockSlot[] currentSlots = slots;
+        for (StockSlot slot : currentSlots) {
+            if (slot.capacity == capacity && slot.containerKind == containerKind)
+                return slot;
+        }
+        return null;
+    }
+
+    private StockSlot getOrCreateSlot(ContainerKind containerKind, double capacity) {
+        StockSlot slot = findSlot(containerKind, capacity);
+        if (slot != null)
+            return slot;
+        synchronized (this) {
+            slot = findSlot(containerKind, capacity);
+            if (slot == null) {
+                slot = new StockSlot(containerKind, capacity, stripeCount, defaultLowStockThreshold);
+                StockSlot[] newSlots = new StockSlot[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, slots.length);
+                newSlots[slots.length] = slot;
+                slots = newSlots;
+            }
+            return slot;
+        }
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        //Mélange des bits de l'identifiant : des threads créés à la suite tombent sur des compteurs différents
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & (stripeCount - 1);
+    }
+
+    public int getStripeCount() {
+        return stripeCount;
+    }
+
+    /**
+     * @return Nombre de contenants pris dans le placard
+     */
+    public long getTakes() {
+        return takes.sum();
+    }
+
+    /**
+     * @return Nombre de demandes que le placard n'a pas pu satisfaire
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Nombre de contenants rangés après usage
+     */
+    public long getReturns() {
+        return returns.sum();
+    }
+
+    public String toString() {
+        StringBuilder description = new StringBuilder("Cupboard : " + getTotalStock() + " containers in stock");
+        for (StockSlot slot : slots) {
+            description.append("\n- ").append(slot.containerKind.getName()).append(" ").append(slot.capacity)
+                    .append(" l : ").append(slot.getStock());
+        }
+        return description.toString();
+    }
+
+    private static class StockSlot {
+        private final ContainerKind containerKind;
+        private final double capacity;
+        private final AtomicLongArray stock;
+        private final int stripeCount;
+        private final AtomicBoolean isLowStockSignaled = new AtomicBoolean();
+        private volatile long lowStockThreshold;
+
+        private StockSlot(ContainerKind containerKind, double capacity, int stripeCount, long lowStockThreshold) {
+            this.containerKind = containerKind;
+            this.capacity = capacity;
+            this.stripeCount = stripeCount;
+            this.stock = new AtomicLongArray(stripeCount * STRIPE_PADDING);
+            this.lowStockThreshold = lowStockThreshold;
+        }
+
+        /**
+         * Retire un contenant du compteur du thread, ou à défaut du premier compteur non vide
+         */
+        private boolean tryDecrement(int firstStripe) {
+            for (int i = 0; i < stripeCount; i++) {
+                int index = ((firstStripe + i) & (stripeCount - 1)) * STRIPE_PADDING;
+                long count = stock.get(index);
+                while (count > 0) {
+                    if (stock.compareAndSet(index, count, count - 1))
+                        return true;
+                    count = stock.get(index);
+                }
+            }
+            return false;
+        }
+
+        private long getStock() {
+            long total = 0;
+            for (int stripe = 0; stripe < stripeCount; stripe++) {
+                total += stock.get(stripe * STRIPE_PADDING);
+            }
+            return total;
+        }
+
+        /**
+         * Réarme le signal de stock bas une fois le stock remonté au dessus du seuil
+         */
+        private void resetLowStockSignal() {
+            if (getStock() > lowStockThreshold)
+                isLowStockSignaled.set(false);
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package fr.imt.coffee.storage.cupboard;
 
 import fr.imt.coffee.storage.cupboard.container.Container;
-import fr.imt.coffee.storage.cupboard.container.Cup;
-import fr.imt.coffee.storage.cupboard.container.Mug;
 import fr.imt.coffee.storage.cupboard.exception.ExceptionContainerCreation;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+import fr.imt.coffee.storage.cupboard.kind.ContainerKindRegistry;
 
 public class FabricCupboardContainer {
 
+    private static final int MAX_POOLED_CONTAINERS_PER_KEY = 64;
+
     private static FabricCupboardContainer instance = new FabricCupboardContainer();
 
+    private final ContainerKindRegistry containerKindRegistry = ContainerKindRegistry.getRegistryInstance();
+    private final ContainerPool containerPool = new ContainerPool(MAX_POOLED_CONTAINERS_PER_KEY);
+
     private FabricCupboardContainer() { }
 
     /**
@@ -20,18 +25,90 @@ public class FabricCupboardContainer {
     }
 
     /**
-     * Permet de crééer un contenant en fonction de la chaine de caractères passée en paramètre
+     * Permet de crééer un contenant en fonction de la chaine de caractères passée en paramètre.
+     * Le nom doit être exactement celui du type ("cup", "mug"), contrairement à {@link #getContainerKind(String)}
+     * qui ignore la casse.
      * @param typeContainer Type de contenant à créer
      * @param capacity Capacité en litre du contenant à créer
      * @return Le contenant désiré en fonction de la chaine de caractères passée en paramètre
      * @throws ExceptionContainerCreation Exception levée quand le type de contenant à créer n'est pas reconnu
      */
     public Container getContainer(String typeContainer, double capacity) throws ExceptionContainerCreation {
-        if (typeContainer.equals("mug"))
-            return new Mug(capacity);
-        else if (typeContainer.equals("cup"))
-            return new Cup(capacity);
-        else
+        ContainerKind containerKind = containerKindRegistry.getContainerKind(typeContainer);
+        if (containerKind == null || !containerKind.getName().equals(typeContainer))
             throw new ExceptionContainerCreation("Container not available in the storage fr.imt.cofee.storage.cupboard : " + typeContainer);
+        return getContainer(containerKind, capacity);
+    }
+
+    /**
+     * Permet de créer un contenant vide du type donné
+     * @param containerKind Type de contenant à créer
+     * @param capacity Capacité en litre du contenant à créer
+     * @return Le contenant vide désiré
+     */
+    public Container getContainer(ContainerKind containerKind, double capacity) {
+        return containerKind.create(capacity);
+    }
+
+    /**
+     * Retrouve un type de contenant à partir de son nom
+     * @param typeContainer Nom du type de contenant
+     * @return Type de contenant enregistré sous ce nom
+     * @throws ExceptionContainerCreation Exception levée quand le type de contenant n'est pas reconnu
+     */
+    public ContainerKind getContainerKind(String typeContainer) throws ExceptionContainerCreation {
+        ContainerKind containerKind = containerKindRegistry.getContainerKind(typeContainer);
+        if (containerKind == null)
+            throw new ExceptionContainerCreation("Container not available in the storage fr.imt.cofee.storage.cupboard : " + typeContainer);
+        return containerKind;
+    }
+
+    /**
+     * Prend un contenant vide dans la réserve de contenants réutilisables, ou le crée si la réserve n'en a pas.
+     * Le contenant doit être rendu avec {@link #releaseContainer(Container)} une fois le café bu.
+     * @param typeContainer Type de contenant à obtenir
+     * @param capacity Capacité en litre du contenant à obtenir
+     * @return Contenant vide du type et de la capacité désirés
+     * @throws ExceptionContainerCreation Exception levée quand le type de contenant à créer n'est pas reconnu
+     */
+    public Container acquireContainer(String typeContainer, double capacity) throws ExceptionContainerCreation {
+        return acquireContainer(getContainerKind(typeContainer), capacity);
+    }
+
+    /**
+     * Prend un contenant vide du type donné dans la réserve de contenants réutilisables, ou le crée si la réserve
+     * n'en a pas.
+     * @param containerKind Type de contenant à obtenir
+     * @param capacity Capacité en litre du contenant à obtenir
+     * @return Contenant vide du type et de la capacité désirés
+     */
+    public Container acquireContainer(ContainerKind containerKind, double capacity) {
+        Container container = containerPool.acquire(containerKind, capacity);
+        if (container != null)
+            return container;
+        return containerKind.create(capacity);
+    }
+
+    /**
+     * Rend un contenant à la réserve de contenants réutilisables. Le contenant est vidé.
+     * Seuls les contenants d'un type enregistré (Cup, Mug...) sont réutilisables, les autres sont abandonnés.
+     * @param container Contenant à rendre
+     * @return true si le contenant a été gardé dans la réserve
+     */
+    public boolean releaseContainer(Container container) {
+        ContainerKind containerKind = containerKindRegistry.getContainerKind(container);
+        if (containerKind == null) {
+            containerPool.discard();
+            return false;
+        }
+        return containerPool.release(containerKind, container);
+    }
+
+    public ContainerKindRegistry getContainerKindRegistry() {
+        return containerKindRegistry;
+    }
+
+    public ContainerPool getContainerPool() {
+        return containerPool;
     }
 }
@@ -0,0 +1,18 @@
+package fr.imt.coffee.storage.cupboard;
+
+import fr.imt.coffee.storage.cupboard.kind.ContainerKind;
+
+/**
+ * Prévenu quand le stock d'un type et d'une capacité de contenant du {@link Cupboard} passe sous son seuil
+ */
+public interface LowStockListener {
+
+    /**
+     * Appelé une seule fois par passage sous le seuil, dans le thread qui a pris le contenant : le traitement doit
+     * être court, par exemple planifier un réapprovisionnement
+     * @param containerKind Type de contenant
+     * @param capacity Capacité en litre des contenants
+     * @param stock Stock restant au moment du passage sous le seuil
+     */
+    void onLowStock(ContainerKind containerKind, double capacity, long stock);
+}
@@ -2,6 +2,6 @@ package fr.imt.coffee.storage.cupboard.exception;
 
 public class CupNotEmptyException extends Exception {
     public CupNotEmptyException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -0,0 +1,27 @@
+package fr.imt.coffee.storage.cupboard.kind;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+/**
+ * Type de contenant vide que la fabrique {@link fr.imt.coffee.storage.cupboard.FabricCupboardContainer} sait créer.
+ * Les nouveaux types de contenants sont déclarés par un {@link ContainerKindProvider}.
+ */
+public interface ContainerKind {
+
+    /**
+     * @return Nom du type de contenant, par exemple "cup", utilisé par l'API à base de chaînes de caractères
+     */
+    String getName();
+
+    /**
+     * @return Classe exacte des contenants créés par ce type
+     */
+    Class<? extends Container> getContainerClass();
+
+    /**
+     * Crée un contenant vide de ce type
+     * @param capacity Capacité en litre du contenant
+     * @return Contenant vide
+     */
+    Container create(double capacity);
+}
@@ -0,0 +1,16 @@
+package fr.imt.coffee.storage.cupboard.kind;
+
+import java.util.Collection;
+
+/**
+ * Interface de service (SPI) permettant d'ajouter des types de contenants sans modifier la fabrique.
+ * Les implémentations sont déclarées dans un fichier
+ * META-INF/services/fr.imt.coffee.storage.cupboard.kind.ContainerKindProvider et chargées par {@link java.util.ServiceLoader}.
+ */
+public interface ContainerKindProvider {
+
+    /**
+     * @return Types de contenants apportés par ce fournisseur
+     */
+    Collection<? extends ContainerKind> getContainerKinds();
+}
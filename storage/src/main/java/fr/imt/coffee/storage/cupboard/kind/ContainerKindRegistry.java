@@ -0,0 +1,76 @@
+package fr.imt.coffee.storage.cupboard.kind;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Registre des types de contenants disponibles.
+ * Les types sont chargés une seule fois depuis les {@link ContainerKindProvider} déclarés comme services, puis
+ * retrouvés par une simple recherche dans une table de hachage, par nom ou par classe de contenant.
+ * Les noms ne tiennent pas compte de la casse : "cup" et "Cup" désignent le même type.
+ */
+public class ContainerKindRegistry {
+
+    private static ContainerKindRegistry instance = new ContainerKindRegistry(
+            ServiceLoader.load(ContainerKindProvider.class, ContainerKindRegistry.class.getClassLoader()));
+
+    private final Map<String, ContainerKind> kindsByName;
+    private final Map<Class<? extends Container>, ContainerKind> kindsByClass;
+
+    /**
+     * @param providers Fournisseurs de types de contenants
+     * @throws IllegalStateException Exception levée si deux types de contenants ont le même nom, casse mise à part, ou la même classe
+     */
+    public ContainerKindRegistry(Iterable<? extends ContainerKindProvider> providers) {
+        Map<String, ContainerKind> byName = new HashMap<>();
+        Map<Class<? extends Container>, ContainerKind> byClass = new HashMap<>();
+        for (ContainerKindProvider provider : providers) {
+            for (ContainerKind kind : provider.getContainerKinds()) {
+                if (byName.putIfAbsent(normalize(kind.getName()), kind) != null)
+                    throw new IllegalStateException("Container kind already registered : " + kind.getName());
+                if (byClass.putIfAbsent(kind.getContainerClass(), kind) != null)
+                    throw new IllegalStateException("Container class already registered : " + kind.getContainerClass());
+            }
+        }
+        this.kindsByName = Collections.unmodifiableMap(byName);
+        this.kindsByClass = Collections.unmodifiableMap(byClass);
+    }
+
+    /**
+     * @return Registre des types de contenants déclarés comme services sur le classpath
+     */
+    public static ContainerKindRegistry getRegistryInstance() {
+        return instance;
+    }
+
+    /**
+     * @param name Nom du type de contenant, quelle que soit sa casse
+     * @return Type de contenant, ou null s'il n'existe pas
+     */
+    public ContainerKind getContainerKind(String name) {
+        return name == null ? null : kindsByName.get(normalize(name));
+    }
+
+    private static String normalize(String name) {
+        //toLowerCase rend la même chaîne, sans copie, si le nom est déjà en minuscules
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param container Contenant dont on cherche le type
+     * @return Type du contenant, ou null si la classe exacte du contenant n'est celle d'aucun type enregistré
+     */
+    public ContainerKind getContainerKind(Container container) {
+        return kindsByClass.get(container.getClass());
+    }
+
+    public Collection<ContainerKind> getContainerKinds() {
+        return kindsByName.values();
+    }
+}
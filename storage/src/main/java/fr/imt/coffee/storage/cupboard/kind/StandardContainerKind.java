@@ -0,0 +1,40 @@
+package fr.imt.coffee.storage.cupboard.kind;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+
+import java.util.function.DoubleFunction;
+
+/**
+ * Types de contenants fournis par le module storage
+ */
+public enum StandardContainerKind implements ContainerKind {
+    CUP("cup", Cup.class, Cup::new),
+    MUG("mug", Mug.class, Mug::new);
+
+    private final String name;
+    private final Class<? extends Container> containerClass;
+    private final DoubleFunction<Container> constructor;
+
+    StandardContainerKind(String name, Class<? extends Container> containerClass, DoubleFunction<Container> constructor) {
+        this.name = name;
+        this.containerClass = containerClass;
+        this.constructor = constructor;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Class<? extends Container> getContainerClass() {
+        return containerClass;
+    }
+
+    @Override
+    public Container create(double capacity) {
+        return constructor.apply(capacity);
+    }
+}
@@ -0,0 +1,15 @@
+package fr.imt.coffee.storage.cupboard.kind;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Fournisseur des types de contenants standards : tasse et mug
+ */
+public class StandardContainerKindProvider implements ContainerKindProvider {
+
+    @Override
+    public Collection<? extends ContainerKind> getContainerKinds() {
+        return Arrays.asList(StandardContainerKind.values());
+    }
+}
@@ -0,0 +1,104 @@
+package fr.imt.coffee.storage.cupboard;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.kind.StandardContainerKind;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContainerPoolTest {
+
+    @Test
+    void containerReleasedOnOneThreadIsReusedOnAnother() throws InterruptedException {
+        ContainerPool containerPool = new ContainerPool(4);
+        Container cup = StandardContainerKind.CUP.create(0.15);
+        cup.setEmpty(false);
+
+        Thread releasingThread = new Thread(() -> assertTrue(containerPool.release(StandardContainerKind.CUP, cup)));
+        releasingThread.start();
+        releasingThread.join();
+
+        AtomicReference<Container> acquired = new AtomicReference<>();
+        Thread acquiringThread = new Thread(() -> acquired.set(containerPool.acquire(StandardContainerKind.CUP, 0.15)));
+        acquiringThread.start();
+        acquiringThread.join();
+
+        assertSame(cup, acquired.get());
+        assertTrue(cup.isEmpty());
+        assertEquals(1, containerPool.getHits());
+        //Ni un autre type ni une autre capacité ne reprennent le contenant
+        containerPool.release(StandardContainerKind.CUP, cup);
+        assertNull(containerPool.acquire(StandardContainerKind.MUG, 0.15));
+        assertNull(containerPool.acquire(StandardContainerKind.CUP, 0.2));
+        assertEquals(2, containerPool.getMisses());
+    }
+
+    @Test
+    void poolKeepsAtMostMaxContainersPerKey() {
+        ContainerPool containerPool = new ContainerPool(3);
+        for (int i = 0; i < 5; i++) {
+            boolean isKept = containerPool.release(StandardContainerKind.MUG, StandardContainerKind.MUG.create(0.35));
+            assertEquals(i < 3, isKept);
+        }
+        assertEquals(3, containerPool.getReleases());
+        assertEquals(2, containerPool.getDiscards());
+
+        //La limite est par type et par capacité
+        assertTrue(containerPool.release(StandardContainerKind.CUP, StandardContainerKind.CUP.create(0.35)));
+
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(containerPool.acquire(StandardContainerKind.MUG, 0.35));
+        }
+        assertNull(containerPool.acquire(StandardContainerKind.MUG, 0.35));
+    }
+
+    @Test
+    void containerReleasedTwiceIsKeptOnce() {
+        ContainerPool containerPool = new ContainerPool(8);
+        Container mug = StandardContainerKind.MUG.create(0.35);
+
+        assertTrue(containerPool.release(StandardContainerKind.MUG, mug));
+        assertFalse(containerPool.release(StandardContainerKind.MUG, mug));
+
+        assertSame(mug, containerPool.acquire(StandardContainerKind.MUG, 0.35));
+        assertNull(containerPool.acquire(StandardContainerKind.MUG, 0.35));
+        assertEquals(1, containerPool.getDiscards());
+    }
+
+    @Test
+    void concurrentAcquireAndReleaseNeverShareAContainer() throws InterruptedException {
+        ContainerPool containerPool = new ContainerPool(16);
+        for (int i = 0; i < 16; i++) {
+            containerPool.release(StandardContainerKind.CUP, StandardContainerKind.CUP.create(0.15));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    Container cup = containerPool.acquire(StandardContainerKind.CUP, 0.15);
+                    if (cup == null)
+                        continue;
+                    //Un contenant pris n'appartient qu'à ce thread jusqu'à ce qu'il le rende
+                    if (!cup.isEmpty())
+                        failure.set(new AssertionError("container shared by two threads"));
+                    cup.setEmpty(false);
+                    containerPool.release(StandardContainerKind.CUP, cup);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        int pooled = 0;
+        while (containerPool.acquire(StandardContainerKind.CUP, 0.15) != null) {
+            pooled++;
+        }
+        assertEquals(16, pooled);
+    }
+}
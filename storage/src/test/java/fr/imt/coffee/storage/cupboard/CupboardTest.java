@@ -0,0 +1,159 @@
+package fr.imt.coffee.storage.cupboard;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.kind.StandardContainerKind;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CupboardTest {
+
+    @Test
+    void stripeCountIsRoundedToAPowerOfTwo() {
+        assertEquals(1, new Cupboard(0, 1).getStripeCount());
+        assertEquals(4, new Cupboard(0, 3).getStripeCount());
+        assertEquals(Cupboard.MAX_STRIPES, new Cupboard(0, 1000).getStripeCount());
+        assertThrows(IllegalArgumentException.class, () -> new Cupboard(0, 0));
+    }
+
+    /**
+     * Le réapprovisionnement répartit le stock sur tous les compteurs : un seul thread prend pourtant tout le stock,
+     * en allant chercher dans les compteurs des autres quand le sien est vide
+     */
+    @Test
+    void restockedContainersAreSpreadOverStripesAndAllTakable() {
+        Cupboard cupboard = new Cupboard(0, 8);
+        //Moins de contenants que de compteurs : certains compteurs restent vides
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 3);
+        cupboard.restock(StandardContainerKind.MUG, 0.35, 21);
+        assertEquals(3, cupboard.getStock(StandardContainerKind.CUP, 0.15));
+        assertEquals(21, cupboard.getStock(StandardContainerKind.MUG, 0.35));
+        assertEquals(24, cupboard.getTotalStock());
+
+        for (int i = 0; i < 21; i++) {
+            Container mug = cupboard.take(StandardContainerKind.MUG, 0.35);
+            assertNotNull(mug);
+            assertEquals(0.35, mug.getCapacity());
+            assertTrue(mug.isEmpty());
+        }
+        assertNull(cupboard.take(StandardContainerKind.MUG, 0.35));
+        assertEquals(3, cupboard.getTotalStock());
+        assertEquals(21, cupboard.getTakes());
+        assertEquals(1, cupboard.getMisses());
+        assertThrows(IllegalArgumentException.class, () -> cupboard.restock(StandardContainerKind.CUP, 0.15, -1));
+    }
+
+    /**
+     * Des threads qui prennent et rendent des contenants en même temps ne perdent ni ne créent de stock
+     */
+    @Test
+    void concurrentTakesAndReturnsKeepTheStock() throws InterruptedException {
+        Cupboard cupboard = new Cupboard(0, 8);
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 100);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    Container cup = cupboard.take(StandardContainerKind.CUP, 0.15);
+                    assertNotNull(cup);
+                    cup.setEmpty(false);
+                    cupboard.returnContainer(StandardContainerKind.CUP, cup);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, cupboard.getStock(StandardContainerKind.CUP, 0.15));
+        assertEquals(80_000, cupboard.getTakes());
+        assertEquals(80_000, cupboard.getReturns());
+        assertEquals(0, cupboard.getMisses());
+    }
+
+    @Test
+    void returnedContainerOfAnUnknownKindIsNotStored() {
+        Cupboard cupboard = new Cupboard(0, 2);
+
+        assertTrue(cupboard.returnContainer(StandardContainerKind.MUG.create(0.35)));
+        assertEquals(1, cupboard.getStock(StandardContainerKind.MUG, 0.35));
+        assertFalse(cupboard.returnContainer(new Container(0.35) {
+        }));
+        assertEquals(1, cupboard.getTotalStock());
+        assertEquals(1, cupboard.getReturns());
+    }
+
+    /**
+     * Le signal de stock bas n'est envoyé qu'une fois par passage sous le seuil, puis réarmé quand le stock remonte
+     */
+    @Test
+    void lowStockListenerFiresOncePerCrossingAndIsRearmed() {
+        Cupboard cupboard = new Cupboard(2, 4);
+        List<Long> signals = new ArrayList<>();
+        LowStockListener listener = (containerKind, capacity, stock) -> {
+            assertEquals(StandardContainerKind.CUP, containerKind);
+            assertEquals(0.15, capacity);
+            signals.add(stock);
+        };
+        cupboard.addLowStockListener(listener);
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 5);
+
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertEquals(List.of(), signals);
+        Container cup = cupboard.take(StandardContainerKind.CUP, 0.15);
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertEquals(List.of(2L), signals);
+
+        //Un retour qui ne repasse pas au dessus du seuil ne réarme pas le signal
+        cupboard.returnContainer(StandardContainerKind.CUP, cup);
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertEquals(List.of(2L), signals);
+
+        //Le réapprovisionnement réarme le signal
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 10);
+        for (int i = 0; i < 9; i++) {
+            cupboard.take(StandardContainerKind.CUP, 0.15);
+        }
+        assertEquals(List.of(2L, 2L), signals);
+
+        //Seuil propre au type et à la capacité
+        cupboard.setLowStockThreshold(StandardContainerKind.CUP, 0.15, 0);
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertEquals(List.of(2L, 2L), signals);
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertEquals(List.of(2L, 2L, 0L), signals);
+
+        cupboard.removeLowStockListener(listener);
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 1);
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertEquals(3, signals.size());
+    }
+
+    @Test
+    void containerIsNoLongerAvailableOnceTheStockRunsOut() {
+        Cupboard cupboard = new Cupboard(0, 4);
+        assertFalse(cupboard.isAvailable(StandardContainerKind.CUP, 0.15));
+        assertNull(cupboard.take(StandardContainerKind.CUP, 0.15));
+
+        cupboard.restock(StandardContainerKind.CUP, 0.15, 2);
+        assertTrue(cupboard.isAvailable(StandardContainerKind.CUP, 0.15));
+        //Une autre capacité du même type n'est pas en stock
+        assertFalse(cupboard.isAvailable(StandardContainerKind.CUP, 0.2));
+
+        Container first = cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertTrue(cupboard.isAvailable(StandardContainerKind.CUP, 0.15));
+        cupboard.take(StandardContainerKind.CUP, 0.15);
+        assertFalse(cupboard.isAvailable(StandardContainerKind.CUP, 0.15));
+        assertNull(cupboard.take(StandardContainerKind.CUP, 0.15));
+        assertEquals(2, cupboard.getMisses());
+
+        cupboard.returnContainer(StandardContainerKind.CUP, first);
+        assertTrue(cupboard.isAvailable(StandardContainerKind.CUP, 0.15));
+    }
+}
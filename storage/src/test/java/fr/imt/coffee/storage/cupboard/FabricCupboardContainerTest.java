@@ -0,0 +1,43 @@
+package fr.imt.coffee.storage.cupboard;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import fr.imt.coffee.storage.cupboard.exception.ExceptionContainerCreation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FabricCupboardContainerTest {
+
+    private final FabricCupboardContainer fabricCupboardContainer = FabricCupboardContainer.getFabricContainerInstance();
+
+    @Test
+    void containersAreCreatedByKindName() throws ExceptionContainerCreation {
+        Container cup = fabricCupboardContainer.getContainer("cup", 0.15);
+        Container mug = fabricCupboardContainer.getContainer("mug", 0.35);
+
+        assertEquals(Cup.class, cup.getClass());
+        assertEquals(0.15, cup.getCapacity());
+        assertTrue(cup.isEmpty());
+        assertEquals(Mug.class, mug.getClass());
+    }
+
+    @Test
+    void kindNameMustMatchExactlyWhenCreatingByName() throws ExceptionContainerCreation {
+        assertThrows(ExceptionContainerCreation.class, () -> fabricCupboardContainer.getContainer("Mug", 0.35));
+        assertThrows(ExceptionContainerCreation.class, () -> fabricCupboardContainer.getContainer("CUP", 0.15));
+        //La recherche par type ignore toujours la casse
+        assertEquals(Mug.class, fabricCupboardContainer.getContainer(fabricCupboardContainer.getContainerKind("Mug"), 0.35).getClass());
+        assertEquals(Mug.class, fabricCupboardContainer.acquireContainer("Mug", 0.35).getClass());
+    }
+
+    @Test
+    void unknownKindIsAnError() {
+        ExceptionContainerCreation exception = assertThrows(ExceptionContainerCreation.class,
+                () -> fabricCupboardContainer.getContainer("bowl", 0.5));
+        assertTrue(exception.getMessage().contains("bowl"));
+        assertThrows(ExceptionContainerCreation.class, () -> fabricCupboardContainer.acquireContainer("bowl", 0.5));
+        assertThrows(ExceptionContainerCreation.class, () -> fabricCupboardContainer.getContainerKind("bowl"));
+    }
+}
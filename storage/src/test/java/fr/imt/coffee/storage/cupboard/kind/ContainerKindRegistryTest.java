@@ -0,0 +1,78 @@
+package fr.imt.coffee.storage.cupboard.kind;
+
+import fr.imt.coffee.storage.cupboard.container.Container;
+import fr.imt.coffee.storage.cupboard.container.Cup;
+import fr.imt.coffee.storage.cupboard.container.Mug;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContainerKindRegistryTest {
+
+    /**
+     * Type de contenant de test, déclaré sans passer par le ServiceLoader
+     */
+    private static ContainerKind kind(String name, Class<? extends Container> containerClass) {
+        return new ContainerKind() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Class<? extends Container> getContainerClass() {
+                return containerClass;
+            }
+
+            @Override
+            public Container create(double capacity) {
+                return new Cup(capacity);
+            }
+        };
+    }
+
+    @Test
+    void serviceLoaderDiscoversStandardKinds() {
+        ContainerKindRegistry registry = ContainerKindRegistry.getRegistryInstance();
+
+        assertTrue(registry.getContainerKinds().containsAll(Arrays.asList(StandardContainerKind.values())));
+        assertSame(StandardContainerKind.CUP, registry.getContainerKind(new Cup(0.15)));
+        assertSame(StandardContainerKind.MUG, registry.getContainerKind(new Mug(0.35)));
+    }
+
+    @Test
+    void lookupByNameIgnoresCase() {
+        ContainerKindRegistry registry = ContainerKindRegistry.getRegistryInstance();
+
+        assertSame(StandardContainerKind.CUP, registry.getContainerKind("cup"));
+        assertSame(StandardContainerKind.CUP, registry.getContainerKind("Cup"));
+        assertSame(StandardContainerKind.MUG, registry.getContainerKind("MUG"));
+        assertNull(registry.getContainerKind("bowl"));
+        assertNull(registry.getContainerKind((String) null));
+    }
+
+    @Test
+    void duplicateNamesAndClassesAreRejected() {
+        ContainerKindProvider standardKinds = new StandardContainerKindProvider();
+        ContainerKindProvider sameName = () -> Collections.singletonList(kind("Cup", Mug.class));
+        ContainerKindProvider sameClass = () -> Collections.singletonList(kind("teacup", Cup.class));
+
+        IllegalStateException duplicateName = assertThrows(IllegalStateException.class,
+                () -> new ContainerKindRegistry(Arrays.asList(standardKinds, sameName)));
+        assertTrue(duplicateName.getMessage().contains("Cup"));
+        assertThrows(IllegalStateException.class, () -> new ContainerKindRegistry(Arrays.asList(standardKinds, sameClass)));
+    }
+
+    @Test
+    void providerAddsNewKinds() {
+        ContainerKind bowl = kind("bowl", Container.class);
+        ContainerKindProvider bowlProvider = () -> Collections.singletonList(bowl);
+        ContainerKindRegistry registry = new ContainerKindRegistry(Arrays.asList(new StandardContainerKindProvider(), bowlProvider));
+
+        assertSame(bowl, registry.getContainerKind("Bowl"));
+        assertEquals(3, registry.getContainerKinds().size());
+    }
+}